@@ -225,24 +225,22 @@ public class JahiaClusterNode extends ClusterNode {
 
         @SuppressWarnings("unchecked")
         private void unlockNodes(Update update) throws JournalException {
-            Journal journal = getJournal();
-            if (journal instanceof NodeLevelLockableJournal) {
+            if (isNodeLevelLocking()) {
                 Set<NodeId> ids = (Set<NodeId>) update.getAttribute("allIds");
-                ((NodeLevelLockableJournal) journal).unlockNodes(ids);
+                ((NodeLevelLockableJournal) getJournal()).unlockNodes(ids);
             }
         }
 
         @SuppressWarnings("unchecked")
         private void lockNodes(Update update) throws JournalException {
-            Journal journal = getJournal();
-            if (journal instanceof NodeLevelLockableJournal) {
+            if (isNodeLevelLocking()) {
                 Set<NodeId> ids = (Set<NodeId>) update.getAttribute("allIds");
-                ((NodeLevelLockableJournal) journal).lockNodes(ids);
+                ((NodeLevelLockableJournal) getJournal()).lockNodes(ids);
             }
         }
 
         private void storeNodeIds(Update update) {
-            if (getJournal() instanceof NodeLevelLockableJournal) {
+            if (isNodeLevelLocking()) {
                 Set<NodeId> nodeIdList = new HashSet<>();
                 for (ItemState state : update.getChanges().addedStates()) {
                     // For added states we always lock the parent, whatever the type. The node itself does not exist yet,
@@ -295,11 +293,17 @@ public class JahiaClusterNode extends ClusterNode {
     public void setRevision(long revision) {
         // Revision will be set by the NodeLevelLockableJournal earlier by calling reallySetRevision.
         // Ignore all ClusterNode internal call to setRevision
-        if (!(getJournal() instanceof NodeLevelLockableJournal)) {
+        if (!isNodeLevelLocking()) {
             super.setRevision(revision);
         }
     }
 
+    private boolean isNodeLevelLocking() {
+        Journal journal = getJournal();
+        return journal instanceof NodeLevelLockableJournal
+                && ((NodeLevelLockableJournal) journal).isNodeLevelLockingEnabled();
+    }
+
     public void reallySetRevision(long revision) {
         // Should be called by NodeLevelLockableJournal when syncing
         log.debug("Set revision: {}", revision);
@@ -55,4 +55,13 @@ public interface NodeLevelLockableJournal {
     public void lockNodes(Set<NodeId> ids) throws JournalException;
 
     public void unlockNodes(Set<NodeId> ids) throws JournalException;
+
+    /**
+     * Return whether the changes are locked at node level by this journal, instead of locking the whole journal.
+     *
+     * @return <code>true</code> if {@link #lockNodes(Set)} is to be used
+     */
+    default boolean isNodeLevelLockingEnabled() {
+        return true;
+    }
 }
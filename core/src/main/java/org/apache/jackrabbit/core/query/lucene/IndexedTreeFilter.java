@@ -0,0 +1,116 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/Apache2 OR 2/JSEL
+ *
+ *     1/ Apache2
+ *     ==================================================================================
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.apache.jackrabbit.core.query.lucene;
+
+import org.apache.jackrabbit.core.id.NodeId;
+import org.apache.jackrabbit.core.state.ItemStateException;
+import org.apache.jackrabbit.core.state.ItemStateManager;
+import org.apache.jackrabbit.core.state.NodeState;
+
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Selects the nodes to index when the initial index is built from the node IDs of the persistence manager instead of
+ * a traversal of the tree: only the descendants of the root node which are not part of an excluded sub-tree are
+ * indexed, the same as {@link MultiIndex#createInitialIndex(ItemStateManager, NodeId, org.apache.jackrabbit.spi.Path)}
+ * does. Safe for use by several threads.
+ */
+class IndexedTreeFilter {
+
+    /**
+     * Maximum number of ancestors remembered as being part of the indexed tree.
+     */
+    private static final int MAX_KNOWN_ANCESTORS = 100000;
+
+    private final ItemStateManager stateMgr;
+    private final NodeId rootId;
+    private final Set<NodeId> excludedIDs;
+    private final Set<NodeId> knownAncestors = Collections.newSetFromMap(new ConcurrentHashMap<NodeId, Boolean>());
+
+    IndexedTreeFilter(ItemStateManager stateMgr, NodeId rootId, Set<NodeId> excludedIDs) {
+        this.stateMgr = stateMgr;
+        this.rootId = rootId;
+        this.excludedIDs = excludedIDs;
+    }
+
+    /**
+     * @param id the ID of a node
+     * @return the state of the node if it has to be indexed, <code>null</code> otherwise
+     * @throws ItemStateException if the node or one of its ancestors cannot be read
+     */
+    NodeState getIndexedState(NodeId id) throws ItemStateException {
+        if (excludedIDs.contains(id) || !stateMgr.hasItemState(id)) {
+            return null;
+        }
+        NodeState state = (NodeState) stateMgr.getItemState(id);
+        return isInIndexedTree(state) ? state : null;
+    }
+
+    private boolean isInIndexedTree(NodeState state) throws ItemStateException {
+        List<NodeId> visited = new LinkedList<>();
+        NodeState current = state;
+        while (!rootId.equals(current.getNodeId())) {
+            NodeId parentId = current.getParentId();
+            if (parentId == null || excludedIDs.contains(parentId)) {
+                return false;
+            }
+            if (knownAncestors.contains(parentId)) {
+                break;
+            }
+            if (!stateMgr.hasItemState(parentId)) {
+                return false;
+            }
+            visited.add(parentId);
+            current = (NodeState) stateMgr.getItemState(parentId);
+        }
+        if (knownAncestors.size() > MAX_KNOWN_ANCESTORS) {
+            knownAncestors.clear();
+        }
+        knownAncestors.addAll(visited);
+        return true;
+    }
+}
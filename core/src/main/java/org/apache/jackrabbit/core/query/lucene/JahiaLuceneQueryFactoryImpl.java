@@ -52,6 +52,7 @@ import org.apache.jackrabbit.core.NodeImpl;
 import org.apache.jackrabbit.core.SessionImpl;
 import org.apache.jackrabbit.core.id.NodeId;
 import org.apache.jackrabbit.core.query.lucene.join.SelectorRow;
+import org.apache.jackrabbit.core.security.AccessManager;
 import org.apache.jackrabbit.core.security.JahiaAccessManager;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.KeywordAnalyzer;
@@ -189,6 +190,16 @@ public class JahiaLuceneQueryFactoryImpl extends LuceneQueryFactory {
         return canRead;
     }
 
+    /**
+     * Returns the read permission checks done on the indexed ACL UUIDs, kept by the access manager of the session for
+     * its following queries until the ACLs change.
+     */
+    static Map<String, Boolean> getCheckedAcls(SessionImpl session) {
+        AccessManager accessManager = session.getAccessManager();
+        return accessManager instanceof JahiaAccessManager ? ((JahiaAccessManager) accessManager).getIndexedAclChecks()
+                : new HashMap<>();
+    }
+
     public JahiaLuceneQueryFactoryImpl(SessionImpl session, SearchIndex index, Map<String, Value> bindVariables) throws RepositoryException {
         super(session, index, bindVariables);
     }
@@ -241,7 +252,7 @@ public class JahiaLuceneQueryFactoryImpl extends LuceneQueryFactory {
             int hitsSize = 0;
 
             ScoreNode node = hits.nextScoreNode();
-            Map<String, Boolean> checkedAcls = new HashMap<>();
+            Map<String, Boolean> checkedAcls = getCheckedAcls(session);
 
             while (node != null) {
                 if (isCount && countType.isApproxCount()) {
@@ -273,42 +284,24 @@ public class JahiaLuceneQueryFactoryImpl extends LuceneQueryFactory {
                                     && (infos.getCheckInvalidLanguages() == null || getLocale() == null || !infos.getCheckInvalidLanguages().contains(getLocale().toString()))))) {
                                 if (filter == Predicate.TRUE) { // <-- Added by jahia
                                     if ((hasFacets & FacetHandler.ONLY_FACET_COLUMNS) == 0) {
-                                        Row row = null;
+                                        NodeImpl objectNode = null;
 
                                         if (checkVisibility || !isAclUuidInIndex()) {
-                                            NodeImpl objectNode = getNodeWithAclAndVisibilityCheck(node, checkVisibility);
-                                            if (isCount) {
-                                                resultCount++;
-                                            } else {
-                                                row = new LazySelectorRow(
-                                                        columns,
-                                                        evaluator,
-                                                        selector.getSelectorName(),
-                                                        objectNode,
-                                                        node.getScore());
-                                            }
-                                        } else {
-                                            if (isCount) {
-                                                resultCount++;
-                                            } else {
-                                                row = new LazySelectorRow(columns,
-                                                        evaluator,
-                                                        selector.getSelectorName(),
-                                                        node.getNodeId(),
-                                                        node.getScore());
-                                            }
+                                            objectNode = getNodeWithAclAndVisibilityCheck(node, checkVisibility);
                                         }
 
-                                        if (row == null)  {
+                                        if (isCount) {
+                                            resultCount++;
                                             continue;
                                         }
 
                                         if (externalSort) {
-                                            rowList.add(row);
+                                            rowList.add(createRow(columns, selector, node, objectNode));
                                         } else {
-                                            // apply limit and offset rules locally
+                                            // apply limit and offset rules locally, the rows before the offset are
+                                            // only checked, they are not created
                                             if (currentNode >= offset && currentNode - offset < limit) {
-                                                rows.put(node.getNodeId().toString(), row);
+                                                rows.put(node.getNodeId().toString(), createRow(columns, selector, node, objectNode));
                                                 addedNodes++;
                                             }
                                             currentNode++;
@@ -414,6 +407,13 @@ public class JahiaLuceneQueryFactoryImpl extends LuceneQueryFactory {
         }
     }
 
+    private Row createRow(Map<String, PropertyValue> columns, Selector selector, ScoreNode node, NodeImpl objectNode) {
+        // the node is loaded when the row is read if it was not needed for the checks
+        return objectNode != null
+                ? new LazySelectorRow(columns, evaluator, selector.getSelectorName(), objectNode, node.getScore())
+                : new LazySelectorRow(columns, evaluator, selector.getSelectorName(), node.getNodeId(), node.getScore());
+    }
+
     private NodeImpl getNodeWithAclAndVisibilityCheck(ScoreNode node, boolean checkVisibility) throws RepositoryException {
         NodeImpl objectNode = session.getNodeById(node.getNodeId());
 
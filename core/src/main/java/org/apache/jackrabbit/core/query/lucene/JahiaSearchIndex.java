@@ -87,8 +87,11 @@ import javax.jcr.RepositoryException;
 import javax.jcr.observation.Event;
 import javax.jcr.query.InvalidQueryException;
 import javax.jcr.query.qom.QueryObjectModel;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import java.io.File;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.util.*;
@@ -161,12 +164,18 @@ public class JahiaSearchIndex extends SearchIndex {
 
     public static final int PARTITION_SIZE = 2000;
 
+    public static final String REINDEX_THREADS_SYSTEM_PROPERTY = "jahia.jackrabbit.searchIndex.reindexThreads";
+
+    private static final String REINDEX_PROGRESS_MBEAN_NAME = "org.jahia.services.search:type=ReindexProgress,workspace=";
+
     private Boolean versionIndex;
 
     private int maxClauseCount = 1024;
 
     private int batchSize = 100;
 
+    private int reindexThreads = 1;
+
     private boolean addAclUuidInIndex = true;
 
     private Set<String> typesUsingOptimizedACEIndexation = new HashSet<>();
@@ -205,6 +214,21 @@ public class JahiaSearchIndex extends SearchIndex {
     }
 
 
+    public int getReindexThreads() {
+        return reindexThreads;
+    }
+
+    /**
+     * Set the number of threads used to build the new index when re-indexing the workspace content in background.
+     * With a single thread the repository tree is traversed, otherwise the node IDs are read in partitions from the
+     * persistence manager and indexed concurrently.
+     *
+     * @param reindexThreads
+     */
+    public void setReindexThreads(int reindexThreads) {
+        this.reindexThreads = Math.max(1, reindexThreads);
+    }
+
     /**
      * Returns <code>true</code> if ACL-UUID should be resolved and stored in index.
      * This can have a negative effect on performance, when setting rights on a node,
@@ -788,10 +812,24 @@ public class JahiaSearchIndex extends SearchIndex {
 
         FileUtils.deleteQuietly(new File(newIndex.getPath()));
 
+        ReindexProgress progress = new ReindexProgress(workspace, index.numDocs(), getReindexThreads());
+        newIndex.setProgress(progress);
+        ObjectName progressMBeanName = registerReindexProgress(progress);
+        try {
+            doReindexAndSwitch(startTime, dest, workspace, progress);
+        } finally {
+            unregisterReindexProgress(progressMBeanName);
+        }
+    }
+
+    private void doReindexAndSwitch(long startTime, File dest, String workspace, ReindexProgress progress)
+            throws RepositoryException, IOException {
         log.info("Start initializing new index for {} workspace", workspace);
         try {
             newIndex.newIndexInit();
             log.info("New index for workspace {} initialized in {} ms", workspace, System.currentTimeMillis() - startTime);
+            // drain the updates received while building the new index before blocking the readers for the switch
+            progress.setPhase(ReindexProgress.PHASE_REPLAYING_UPDATES);
             newIndex.replayDelayedUpdates(newIndex);
         } catch (IOException | RepositoryException e) {
             // cleanup state before aborting if anything goes wrong
@@ -804,6 +842,7 @@ public class JahiaSearchIndex extends SearchIndex {
         long startTimeIntern = System.currentTimeMillis();
         boolean indexClosed = false;
         try {
+            progress.setPhase(ReindexProgress.PHASE_SWITCHING);
             switching = true;
             quietClose(newIndex);
 
@@ -858,6 +897,35 @@ public class JahiaSearchIndex extends SearchIndex {
                 DateUtils.formatDurationWords(System.currentTimeMillis() - startTime));
     }
 
+    private ObjectName registerReindexProgress(ReindexProgress progress) {
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        if (mBeanServer != null) {
+            try {
+                ObjectName name = new ObjectName(REINDEX_PROGRESS_MBEAN_NAME + ObjectName.quote(progress.getWorkspace()));
+                if (!mBeanServer.isRegistered(name)) {
+                    mBeanServer.registerMBean(progress, name);
+                    return name;
+                }
+            } catch (Exception e) {
+                log.warn("Unable to register JMX bean for the re-indexing progress due to {}", e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    private void unregisterReindexProgress(ObjectName name) {
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        if (name != null && mBeanServer != null) {
+            try {
+                if (mBeanServer.isRegistered(name)) {
+                    mBeanServer.unregisterMBean(name);
+                }
+            } catch (Exception e) {
+                log.warn("Unable to unregister JMX bean for the re-indexing progress due to {}", e.getMessage());
+            }
+        }
+    }
+
     private void quietClose(JahiaSearchIndex index) {
         try {
             if (index.getSpellChecker() != null) {
@@ -42,16 +42,21 @@
  */
 package org.apache.jackrabbit.core.query.lucene;
 
+import org.apache.commons.lang.StringUtils;
 import org.apache.jackrabbit.core.RepositoryImpl;
 import org.apache.jackrabbit.core.id.NodeId;
+import org.apache.jackrabbit.core.persistence.IterablePersistenceManager;
+import org.apache.jackrabbit.core.persistence.PersistenceManager;
 import org.apache.jackrabbit.core.query.OnWorkspaceInconsistency;
 import org.apache.jackrabbit.core.query.QueryHandlerContext;
 import org.apache.jackrabbit.core.query.lucene.directory.DirectoryManager;
 import org.apache.jackrabbit.core.state.ItemStateException;
+import org.apache.jackrabbit.core.state.ItemStateManager;
 import org.apache.jackrabbit.core.state.NodeState;
 import org.apache.jackrabbit.core.state.PropertyState;
 import org.apache.jackrabbit.spi.Path;
 import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.document.Document;
 import org.apache.lucene.search.Similarity;
 import org.apache.tika.parser.Parser;
 import org.slf4j.Logger;
@@ -59,7 +64,12 @@ import org.slf4j.Logger;
 import javax.jcr.RepositoryException;
 
 import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Temporary index used for reindexing only.
@@ -86,6 +96,8 @@ public class JahiaSecondaryIndex extends JahiaSearchIndex {
 
     private String path;
 
+    private volatile ReindexProgress progress;
+
     /**
      * Initializes an instance of this class.
      * 
@@ -128,14 +140,23 @@ public class JahiaSecondaryIndex extends JahiaSearchIndex {
             } else {
                 rootPath = ROOT_PATH;
             }
-            index.createInitialIndex(context.getItemStateManager(),
-                    context.getRootId(), rootPath);
+            int threads = getReindexThreads();
+            PersistenceManager pm = context.getPersistenceManager();
+            if (threads > 1 && context.getExcludedNodeId() != null && pm instanceof IterablePersistenceManager) {
+                createInitialIndexInParallel((IterablePersistenceManager) pm, excludedIDs, threads);
+            } else {
+                index.createInitialIndex(context.getItemStateManager(),
+                        context.getRootId(), rootPath);
+            }
         }
         
         log.info("Creation of initial index finished in {} ms", System.currentTimeMillis() - startTime);
 
         startTime = System.currentTimeMillis();
         
+        if (progress != null) {
+            progress.setPhase(ReindexProgress.PHASE_CONSISTENCY_CHECK);
+        }
         log.info("Running consistency check...");
         try {
             ConsistencyCheck check = runConsistencyCheck();
@@ -149,6 +170,157 @@ public class JahiaSecondaryIndex extends JahiaSearchIndex {
         initSpellChecker();
     }
 
+    /**
+     * Builds the initial index using several threads. The node IDs of the workspace are read in partitions from the
+     * persistence manager, each partition being indexed by a worker thread and written to the index in batches.
+     * Only nodes which are descendants of the root node and not part of an excluded sub-tree are indexed, the same as
+     * {@link MultiIndex#createInitialIndex(ItemStateManager, NodeId, Path)} does when traversing the tree. As it does,
+     * the multi index is flagged as re-indexing while building, and the documents whose text extraction completed in
+     * the background meanwhile are moved from the indexing queue to the index once all the partitions are indexed.
+     */
+    private void createInitialIndexInParallel(IterablePersistenceManager pm, Set<NodeId> excludedIDs, int threads)
+            throws IOException {
+        log.info("Creating initial index using {} threads", threads);
+
+        final String workspace = StringUtils.defaultIfEmpty(getContext().getWorkspace(), "system");
+        final AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "Re-indexing of " + workspace + " workspace #" + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        // limits the number of partitions waiting to be indexed
+        final Semaphore pending = new Semaphore(threads * 2);
+        final IndexedTreeFilter filter = new IndexedTreeFilter(getContext().getItemStateManager(),
+                getContext().getRootId(), excludedIDs);
+        List<Future<?>> tasks = new LinkedList<>();
+        setReindexing(true);
+        try {
+            NodeId after = null;
+            List<NodeId> ids;
+            do {
+                ids = pm.getAllNodeIds(after, PARTITION_SIZE);
+                if (!ids.isEmpty()) {
+                    after = ids.get(ids.size() - 1);
+                    pending.acquire();
+                    final List<NodeId> partition = ids;
+                    tasks.add(executor.submit(new Callable<Void>() {
+                        @Override
+                        public Void call() throws Exception {
+                            try {
+                                indexPartition(partition, filter);
+                            } finally {
+                                pending.release();
+                            }
+                            return null;
+                        }
+                    }));
+                    for (Iterator<Future<?>> it = tasks.iterator(); it.hasNext(); ) {
+                        Future<?> task = it.next();
+                        if (!task.isDone()) {
+                            break;
+                        }
+                        task.get();
+                        it.remove();
+                    }
+                }
+            } while (ids.size() == PARTITION_SIZE);
+
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+            checkIndexingQueue();
+            index.flush();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Error creating initial index", cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Current thread has been interrupted", e);
+        } catch (ItemStateException | RepositoryException e) {
+            throw new IOException("Error reading node identifiers while creating initial index", e);
+        } finally {
+            setReindexing(false);
+            executor.shutdownNow();
+        }
+    }
+
+    private void indexPartition(List<NodeId> ids, IndexedTreeFilter filter) throws IOException, RepositoryException {
+        List<Document> docs = new ArrayList<>(getBatchSize());
+        for (NodeId id : ids) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new IOException("Re-indexing has been interrupted");
+            }
+            try {
+                NodeState state = filter.getIndexedState(id);
+                if (state == null) {
+                    continue;
+                }
+                Document doc = createDocument(state, getNamespaceMappings(), getIndexFormatVersion());
+                if (doc != null) {
+                    docs.add(doc);
+                }
+            } catch (ItemStateException e) {
+                log.warn("Unable to index node {}: {}", id, e.getMessage());
+            }
+            if (docs.size() >= getBatchSize()) {
+                index.update(Collections.<NodeId>emptyList(), docs);
+                docs = new ArrayList<>(getBatchSize());
+            }
+        }
+        if (!docs.isEmpty()) {
+            index.update(Collections.<NodeId>emptyList(), docs);
+        }
+    }
+
+    // The following methods access private members of MultiIndex using the reflection API, which is thus relying on
+    // implementation specifics of a given version of Jackrabbit (2.18.4). They are the ones createInitialIndex() uses,
+    // and have no public counterpart.
+
+    private void setReindexing(boolean reindexing) {
+        try {
+            Field field = MultiIndex.class.getDeclaredField("reindexing");
+            field.setAccessible(true);
+            field.setBoolean(index, reindexing);
+        } catch (ReflectiveOperationException e) {
+            log.warn("Unable to flag the index as re-indexing: {}", e.getMessage());
+        }
+    }
+
+    private void checkIndexingQueue() throws IOException {
+        try {
+            Method method = MultiIndex.class.getDeclaredMethod("checkIndexingQueue");
+            method.setAccessible(true);
+            method.invoke(index);
+        } catch (InvocationTargetException e) {
+            throw new IOException("Error moving the documents of the indexing queue to the index", e.getCause());
+        } catch (ReflectiveOperationException e) {
+            // the periodic flush task of the index checks the indexing queue as well
+            log.warn("Unable to check the indexing queue, it will be checked by the index flush task: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    protected Document createDocument(NodeState node, NamespaceMappings nsMappings,
+                                      IndexFormatVersion indexFormatVersion) throws RepositoryException {
+        Document doc = super.createDocument(node, nsMappings, indexFormatVersion);
+        ReindexProgress currentProgress = progress;
+        if (doc != null && currentProgress != null) {
+            currentProgress.nodeIndexed();
+        }
+        return doc;
+    }
+
+    void setProgress(ReindexProgress progress) {
+        this.progress = progress;
+    }
+
     private void initSpellChecker() {
         // initialize spell checker
         SpellChecker spCheck = null;
@@ -189,6 +361,16 @@ public class JahiaSecondaryIndex extends JahiaSearchIndex {
         delayedUpdates.add(new DelayedIndexUpdate(remove, add));
     }
 
+    @Override
+    public int getReindexThreads() {
+        return mainIndex.getReindexThreads();
+    }
+
+    @Override
+    public int getBatchSize() {
+        return mainIndex.getBatchSize();
+    }
+
     @Override
     public SpellChecker getSpellChecker() {
         return spellChecker;
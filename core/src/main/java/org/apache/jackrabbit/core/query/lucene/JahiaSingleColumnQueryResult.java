@@ -43,7 +43,6 @@
 package org.apache.jackrabbit.core.query.lucene;
 
 import java.io.IOException;
-import java.util.HashMap;
 import java.util.Map;
 
 import javax.jcr.ItemNotFoundException;
@@ -115,7 +114,7 @@ public class JahiaSingleColumnQueryResult extends SingleColumnQueryResult {
     protected boolean isAccessGranted(ScoreNode[] nodes, MultiColumnQueryHits hits) throws RepositoryException {
         if (hits instanceof IndexReaderAware) {
             if (checkedAcls == null) {
-                checkedAcls = new HashMap<>();
+                checkedAcls = JahiaLuceneQueryFactoryImpl.getCheckedAcls(sessionContext.getSessionImpl());
             }
             return checkGranted(nodes, ((IndexReaderAware) hits).getReader());
         } else {
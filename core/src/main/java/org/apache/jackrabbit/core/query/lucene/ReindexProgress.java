@@ -0,0 +1,147 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/Apache2 OR 2/JSEL
+ *
+ *     1/ Apache2
+ *     ==================================================================================
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.apache.jackrabbit.core.query.lucene;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks the progress of a background re-indexing of a workspace, see {@link JahiaSearchIndex#reindexAndSwitch()}.
+ */
+public class ReindexProgress implements ReindexProgressMBean {
+
+    static final String PHASE_INDEXING = "indexing";
+
+    static final String PHASE_CONSISTENCY_CHECK = "consistency check";
+
+    static final String PHASE_REPLAYING_UPDATES = "replaying updates";
+
+    static final String PHASE_SWITCHING = "switching";
+
+    private final String workspace;
+
+    private final long estimatedTotalNodes;
+
+    private final int threads;
+
+    private final long startTime;
+
+    private final AtomicLong indexedNodes = new AtomicLong();
+
+    private volatile String phase = PHASE_INDEXING;
+
+    public ReindexProgress(String workspace, long estimatedTotalNodes, int threads) {
+        this(workspace, estimatedTotalNodes, threads, System.currentTimeMillis());
+    }
+
+    ReindexProgress(String workspace, long estimatedTotalNodes, int threads, long startTime) {
+        this.workspace = workspace;
+        this.estimatedTotalNodes = estimatedTotalNodes;
+        this.threads = threads;
+        this.startTime = startTime;
+    }
+
+    void nodeIndexed() {
+        indexedNodes.incrementAndGet();
+    }
+
+    void setPhase(String phase) {
+        this.phase = phase;
+    }
+
+    @Override
+    public String getWorkspace() {
+        return workspace;
+    }
+
+    @Override
+    public String getPhase() {
+        return phase;
+    }
+
+    @Override
+    public int getThreads() {
+        return threads;
+    }
+
+    @Override
+    public long getIndexedNodes() {
+        return indexedNodes.get();
+    }
+
+    @Override
+    public long getEstimatedTotalNodes() {
+        return estimatedTotalNodes;
+    }
+
+    @Override
+    public long getElapsedTime() {
+        return System.currentTimeMillis() - startTime;
+    }
+
+    @Override
+    public double getThroughput() {
+        return getThroughput(System.currentTimeMillis());
+    }
+
+    @Override
+    public long getEstimatedRemainingTime() {
+        return getEstimatedRemainingTime(System.currentTimeMillis());
+    }
+
+    double getThroughput(long now) {
+        long elapsed = now - startTime;
+        return elapsed > 0 ? indexedNodes.get() * 1000.0 / elapsed : 0;
+    }
+
+    long getEstimatedRemainingTime(long now) {
+        if (!PHASE_INDEXING.equals(phase)) {
+            return 0;
+        }
+        double throughput = getThroughput(now);
+        if (throughput <= 0 || estimatedTotalNodes <= 0) {
+            return -1;
+        }
+        long remaining = Math.max(0, estimatedTotalNodes - indexedNodes.get());
+        return (long) (remaining * 1000 / throughput);
+    }
+}
@@ -42,7 +42,6 @@
  */
 package org.apache.jackrabbit.core.security;
 
-import org.apache.commons.collections.map.LRUMap;
 import org.apache.jackrabbit.api.security.authorization.PrivilegeManager;
 import org.apache.jackrabbit.core.HierarchyManager;
 import org.apache.jackrabbit.core.RepositoryContext;
@@ -117,8 +116,7 @@ public class JahiaAccessManager extends AbstractAccessControlManager implements
     private RepositoryContext repositoryContext;
     private WorkspaceConfig workspaceConfig;
 
-    private Map<String, Boolean> pathPermissionCache = null;
-    private Map<Object, AccessManagerUtils.CompiledAcl> compiledAcls = new HashMap<>();
+    private PathPermissionCache pathPermissionCache = null;
 
     private boolean isAliased = false;
     private DefaultNamePathResolver pr;
@@ -178,7 +176,7 @@ public class JahiaAccessManager extends AbstractAccessControlManager implements
             throw new IllegalStateException("already initialized");
         }
 
-        pathPermissionCache = Collections.synchronizedMap(new LRUMap(SettingsBean.getInstance().getAccessManagerPathPermissionCacheMaxSize()));
+        pathPermissionCache = new PathPermissionCache(SettingsBean.getInstance().getAccessManagerPathPermissionCacheMaxSize());
         subject = context.getSubject();
         resolver = context.getNamePathResolver();
         hierMgr = context.getHierarchyManager();
@@ -198,8 +196,19 @@ public class JahiaAccessManager extends AbstractAccessControlManager implements
         initialized = true;
     }
 
+    /**
+     * @return the read permission checks done on the ACL UUIDs stored in the index, shared by the queries of the
+     * session and invalidated with the path permission cache
+     */
+    public Map<String, Boolean> getIndexedAclChecks() {
+        return pathPermissionCache != null ? pathPermissionCache.getIndexedAclChecks() : new HashMap<String, Boolean>();
+    }
+
     @Override
     public void close() throws Exception {
+        if (pathPermissionCache != null) {
+            pathPermissionCache.close();
+        }
         if (securitySession != null) {
             securitySession.logout();
         }
@@ -357,7 +366,7 @@ public class JahiaAccessManager extends AbstractAccessControlManager implements
     public boolean isGranted(Path absPath, Set<String> permissions) throws RepositoryException {
         JahiaJCRPathWrapperImpl pathImpl = new JahiaJCRPathWrapperImpl(absPath.getCanonicalPath(), pr, getSecuritySession());
         return AccessManagerUtils.isGranted(pathImpl, permissions, getSecuritySession(), jahiaPrincipal,
-                workspaceName, isAliased, pathPermissionCache, compiledAcls, privilegeRegistry);
+                workspaceName, isAliased, pathPermissionCache, pathPermissionCache.getCompiledAcls(), privilegeRegistry);
     }
 
     @Override
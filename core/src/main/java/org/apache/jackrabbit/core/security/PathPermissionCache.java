@@ -0,0 +1,242 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/Apache2 OR 2/JSEL
+ *
+ *     1/ Apache2
+ *     ==================================================================================
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.apache.jackrabbit.core.security;
+
+import org.jahia.utils.security.AccessManagerUtils;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of the permission checks done by a {@link JahiaAccessManager}, together with the ACLs compiled while
+ * checking them. The entries are keyed by path and permission set, as <code>path : [permissions]</code>.
+ * <p/>
+ * Lookups do not lock, so that the threads sharing a session do not serialize on the cache. When the cache is full,
+ * arbitrary entries are evicted rather than the least recently used ones. The caches of the open sessions are
+ * registered, so that the entries of a subtree can be invalidated when an ACL changes in that subtree, see
+ * {@link PathPermissionCacheListener}.
+ */
+public class PathPermissionCache extends AbstractMap<String, Boolean> {
+
+    private static final String KEY_SEPARATOR = " : ";
+
+    private static final Set<PathPermissionCache> openCaches =
+            Collections.newSetFromMap(new ConcurrentHashMap<PathPermissionCache, Boolean>());
+
+    private static final LongAdder hitCount = new LongAdder();
+    private static final LongAdder missCount = new LongAdder();
+    private static final LongAdder evictionCount = new LongAdder();
+    private static final LongAdder invalidationCount = new LongAdder();
+
+    private final int maxSize;
+    private final Map<String, Boolean> permissions = new ConcurrentHashMap<String, Boolean>();
+    private final Map<Object, AccessManagerUtils.CompiledAcl> compiledAcls =
+            new ConcurrentHashMap<Object, AccessManagerUtils.CompiledAcl>();
+    private final Map<String, Boolean> indexedAclChecks = new ConcurrentHashMap<String, Boolean>();
+
+    /**
+     * Creates a cache and registers it for invalidation, until it is closed.
+     *
+     * @param maxSize the maximum number of permission checks to keep, 0 to keep none
+     */
+    public PathPermissionCache(int maxSize) {
+        this.maxSize = maxSize;
+        openCaches.add(this);
+    }
+
+    /**
+     * @return the ACLs compiled for the permission checks, by path
+     */
+    public Map<Object, AccessManagerUtils.CompiledAcl> getCompiledAcls() {
+        return compiledAcls;
+    }
+
+    /**
+     * @return the read permission checks done by the queries on the ACL UUIDs stored in the index, kept for the
+     * following queries of the session
+     */
+    public Map<String, Boolean> getIndexedAclChecks() {
+        return maxSize > 0 ? indexedAclChecks : new HashMap<String, Boolean>();
+    }
+
+    @Override
+    public Boolean get(Object key) {
+        Boolean value = permissions.get(key);
+        if (value != null) {
+            hitCount.increment();
+        } else {
+            missCount.increment();
+        }
+        return value;
+    }
+
+    @Override
+    public Boolean put(String key, Boolean value) {
+        if (maxSize <= 0) {
+            return null;
+        }
+        if (permissions.size() >= maxSize && !permissions.containsKey(key)) {
+            for (Iterator<String> iterator = permissions.keySet().iterator(); iterator.hasNext() && permissions.size() >= maxSize; ) {
+                iterator.next();
+                iterator.remove();
+                evictionCount.increment();
+            }
+        }
+        return permissions.put(key, value);
+    }
+
+    @Override
+    public Boolean remove(Object key) {
+        return permissions.remove(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return permissions.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return permissions.size();
+    }
+
+    @Override
+    public void clear() {
+        permissions.clear();
+        compiledAcls.clear();
+        indexedAclChecks.clear();
+    }
+
+    @Override
+    public Set<Entry<String, Boolean>> entrySet() {
+        return permissions.entrySet();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        // identity, the caches are registered while their content changes
+        return this == o;
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(this);
+    }
+
+    /**
+     * Removes the permission checks done on the specified path and its descendants. The compiled ACLs and the checks of
+     * the indexed ACLs are all removed, as they are rebuilt at a low cost.
+     *
+     * @param path the root path of the subtree
+     */
+    public void invalidate(String path) {
+        if ("/".equals(path)) {
+            clear();
+            return;
+        }
+        String pathKeyPrefix = path + KEY_SEPARATOR;
+        String descendantKeyPrefix = path + "/";
+        for (Iterator<String> iterator = permissions.keySet().iterator(); iterator.hasNext(); ) {
+            String key = iterator.next();
+            if (key.startsWith(pathKeyPrefix) || key.startsWith(descendantKeyPrefix)) {
+                iterator.remove();
+            }
+        }
+        compiledAcls.clear();
+        indexedAclChecks.clear();
+    }
+
+    /**
+     * Unregisters this cache, once the session using it is closed.
+     */
+    public void close() {
+        openCaches.remove(this);
+        clear();
+    }
+
+    /**
+     * Removes the permission checks done on the specified path and its descendants from the caches of all the open
+     * sessions.
+     *
+     * @param path the root path of the subtree, <code>/</code> to flush the caches entirely
+     */
+    public static void invalidateSubtree(String path) {
+        for (PathPermissionCache cache : openCaches) {
+            cache.invalidate(path);
+        }
+        invalidationCount.increment();
+    }
+
+    public static long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public static long getMissCount() {
+        return missCount.sum();
+    }
+
+    public static long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    public static long getInvalidationCount() {
+        return invalidationCount.sum();
+    }
+
+    public static int getOpenCacheCount() {
+        return openCaches.size();
+    }
+
+    public static void resetStatistics() {
+        hitCount.reset();
+        missCount.reset();
+        evictionCount.reset();
+        invalidationCount.reset();
+    }
+}
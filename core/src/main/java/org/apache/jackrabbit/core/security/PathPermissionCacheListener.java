@@ -0,0 +1,137 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/Apache2 OR 2/JSEL
+ *
+ *     1/ Apache2
+ *     ==================================================================================
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.apache.jackrabbit.core.security;
+
+import org.jahia.services.content.DefaultEventListener;
+import org.jahia.services.content.ExternalEventListener;
+import org.jahia.utils.security.AclIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.observation.Event;
+import javax.jcr.observation.EventIterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Invalidates the {@link PathPermissionCache}s of the open sessions when an ACL changes: the permission checks done
+ * in the subtree of the node owning the ACL are removed. Changes on roles, moves and removals of nodes, which change
+ * the permissions inherited by a whole subtree, are handled as well. The {@link AclIndex} of the workspace is updated
+ * the same way, only the entry of the node owning the ACL being invalidated on ACL changes.
+ */
+public class PathPermissionCacheListener extends DefaultEventListener implements ExternalEventListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(PathPermissionCacheListener.class);
+
+    private static final String ACL_NODE = "/j:acl";
+
+    @Override
+    public int getEventTypes() {
+        return Event.NODE_ADDED + Event.NODE_REMOVED + Event.NODE_MOVED + Event.PROPERTY_ADDED + Event.PROPERTY_CHANGED
+                + Event.PROPERTY_REMOVED;
+    }
+
+    @Override
+    public void onEvent(EventIterator events) {
+        Set<String> aclOwners = new LinkedHashSet<String>();
+        Set<String> paths = new LinkedHashSet<String>();
+        boolean rolesChanged = false;
+        while (events.hasNext()) {
+            Event event = events.nextEvent();
+            try {
+                String path = event.getPath();
+                if (path.startsWith("/roles/")) {
+                    rolesChanged = true;
+                    continue;
+                }
+                String aclOwner = getAclOwner(path);
+                if (aclOwner != null) {
+                    aclOwners.add(aclOwner);
+                } else if (event.getType() == Event.NODE_REMOVED) {
+                    paths.add(path);
+                } else if (event.getType() == Event.NODE_MOVED) {
+                    paths.add(path);
+                    Object srcAbsPath = event.getInfo().get("srcAbsPath");
+                    if (srcAbsPath != null) {
+                        paths.add(srcAbsPath.toString());
+                    }
+                }
+            } catch (RepositoryException e) {
+                logger.warn("Unable to read event, flushing the path permission caches", e);
+                PathPermissionCache.invalidateSubtree("/");
+                AclIndex.invalidate(getWorkspace(), "/", true);
+                return;
+            }
+        }
+        for (String aclOwner : aclOwners) {
+            AclIndex.invalidate(getWorkspace(), aclOwner, false);
+        }
+        for (String path : paths) {
+            AclIndex.invalidate(getWorkspace(), path, true);
+        }
+        if (rolesChanged) {
+            // the privileges of a role apply everywhere
+            PathPermissionCache.invalidateSubtree("/");
+        } else {
+            for (String aclOwner : aclOwners) {
+                PathPermissionCache.invalidateSubtree(aclOwner);
+            }
+            for (String path : paths) {
+                PathPermissionCache.invalidateSubtree(path);
+            }
+        }
+    }
+
+    private static String getAclOwner(String path) {
+        int index = path.indexOf(ACL_NODE);
+        while (index >= 0) {
+            int end = index + ACL_NODE.length();
+            if (end == path.length() || path.charAt(end) == '/') {
+                return index == 0 ? "/" : path.substring(0, index);
+            }
+            index = path.indexOf(ACL_NODE, end);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/Apache2 OR 2/JSEL
+ *
+ *     1/ Apache2
+ *     ==================================================================================
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.apache.jackrabbit.core.security;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Exposes the statistics of the {@link PathPermissionCache}s through JMX.
+ */
+public class PathPermissionCacheStatistics implements InitializingBean, DisposableBean, PathPermissionCacheStatisticsMBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(PathPermissionCacheStatistics.class);
+
+    private static final String MBEAN_NAME = "org.jahia.services.cache:type=PathPermissionCache";
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        if (mBeanServer != null) {
+            try {
+                ObjectName name = new ObjectName(MBEAN_NAME);
+                if (!mBeanServer.isRegistered(name)) {
+                    mBeanServer.registerMBean(this, name);
+                }
+            } catch (Exception e) {
+                logger.warn("Unable to register JMX bean for the path permission caches due to {}", e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        if (mBeanServer != null) {
+            try {
+                ObjectName name = new ObjectName(MBEAN_NAME);
+                if (mBeanServer.isRegistered(name)) {
+                    mBeanServer.unregisterMBean(name);
+                }
+            } catch (Exception e) {
+                logger.warn("Unable to unregister JMX bean for the path permission caches due to {}", e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public long getHitCount() {
+        return PathPermissionCache.getHitCount();
+    }
+
+    @Override
+    public long getMissCount() {
+        return PathPermissionCache.getMissCount();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return PathPermissionCache.getEvictionCount();
+    }
+
+    @Override
+    public long getInvalidationCount() {
+        return PathPermissionCache.getInvalidationCount();
+    }
+
+    @Override
+    public int getOpenCacheCount() {
+        return PathPermissionCache.getOpenCacheCount();
+    }
+
+    @Override
+    public void flush() {
+        PathPermissionCache.invalidateSubtree("/");
+    }
+
+    @Override
+    public void resetStatistics() {
+        PathPermissionCache.resetStatistics();
+    }
+}
@@ -0,0 +1,321 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/Apache2 OR 2/JSEL
+ *
+ *     1/ Apache2
+ *     ==================================================================================
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.apache.jackrabbit.core.state;
+
+import org.apache.jackrabbit.core.id.ItemId;
+import org.apache.jackrabbit.core.id.NodeId;
+import org.apache.jackrabbit.core.id.PropertyId;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.apache.jackrabbit.data.core.TransactionContext.getCurrentThreadId;
+import static org.apache.jackrabbit.data.core.TransactionContext.isSameThreadId;
+
+/**
+ * Item state locking strategy with read locks striped by item. As with the
+ * {@link FineGrainedISMLocking}, there is at most one active writer and readers are only blocked when the change log of
+ * the active writer has a dependency on the item they read. The read locks are counted per item in stripes, selected
+ * by the node identifier, so that readers of unrelated items only contend on their own stripe and no latch is
+ * allocated when a reader or a writer has to wait.
+ * <p>
+ * Only <code>java.util.concurrent</code> locks are used, which do not pin virtual threads while waiting. As with the
+ * other strategies, a lock may be released by another thread of the same transaction.
+ */
+public class JahiaStripedISMLocking implements ISMLocking {
+
+    private static final int DEFAULT_STRIPES = 64;
+
+    private Stripe[] stripes;
+
+    /**
+     * Guards the writer state: the active writer and the downgraded write locks.
+     */
+    private final ReentrantLock writerStateLock = new ReentrantLock();
+
+    private final Condition writerStateChanged = writerStateLock.newCondition();
+
+    /**
+     * The active writer or <code>null</code> if there is none.
+     */
+    private volatile WriteLockImpl activeWriter;
+
+    /**
+     * Number of write locks downgraded to read locks and not released yet. While greater than zero, no writer is
+     * allowed to proceed.
+     */
+    private int downgradedLocks;
+
+    public JahiaStripedISMLocking() {
+        setStripes(DEFAULT_STRIPES);
+    }
+
+    public int getStripes() {
+        return stripes.length;
+    }
+
+    /**
+     * Sets the number of stripes of read locks, rounded up to a power of two. Must be set before the locking is used.
+     *
+     * @param count the number of stripes
+     */
+    public void setStripes(int count) {
+        int size = 1;
+        while (size < count) {
+            size <<= 1;
+        }
+        Stripe[] newStripes = new Stripe[size];
+        for (int i = 0; i < size; i++) {
+            newStripes[i] = new Stripe();
+        }
+        stripes = newStripes;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ReadLock acquireReadLock(ItemId id) throws InterruptedException {
+        Object currentId = getCurrentThreadId();
+        Stripe stripe = getStripe(id);
+        stripe.lock.lockInterruptibly();
+        try {
+            WriteLockImpl writer;
+            while ((writer = activeWriter) != null && !isSameThreadId(writer.writerId, currentId)
+                    && hasDependency(writer.changes, id)) {
+                stripe.released.await();
+            }
+            stripe.addLock(id);
+        } finally {
+            stripe.lock.unlock();
+        }
+        return new ReadLockImpl(id, stripe);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public WriteLock acquireWriteLock(ChangeLog changeLog) throws InterruptedException {
+        WriteLockImpl writer = new WriteLockImpl(changeLog, getCurrentThreadId());
+        writerStateLock.lockInterruptibly();
+        try {
+            while (activeWriter != null || downgradedLocks > 0) {
+                writerStateChanged.await();
+            }
+            activeWriter = writer;
+        } finally {
+            writerStateLock.unlock();
+        }
+
+        // new readers with a dependency on the change log now wait for the writer, wait for the current ones
+        boolean acquired = false;
+        try {
+            for (Stripe stripe : stripes) {
+                stripe.lock.lockInterruptibly();
+                try {
+                    while (stripe.hasDependency(changeLog)) {
+                        stripe.released.await();
+                    }
+                } finally {
+                    stripe.lock.unlock();
+                }
+            }
+            acquired = true;
+        } finally {
+            if (!acquired) {
+                writer.release();
+            }
+        }
+        return writer;
+    }
+
+    private Stripe getStripe(ItemId id) {
+        NodeId nodeId = id.denotesNode() ? (NodeId) id : ((PropertyId) id).getParentId();
+        return stripes[(int) nodeId.getLeastSignificantBits() & (stripes.length - 1)];
+    }
+
+    private void signalStripes() {
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                stripe.released.signalAll();
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+    }
+
+    private static boolean hasDependency(ChangeLog changeLog, ItemId id) {
+        try {
+            if (changeLog != null && changeLog.get(id) == null) {
+                if (!id.denotesNode() || changeLog.getReferencesTo((NodeId) id) == null) {
+                    // change log does not contain the item
+                    return false;
+                }
+            }
+        } catch (NoSuchItemStateException e) {
+            // is deleted
+        }
+        return true;
+    }
+
+    //----------------------------< internal >----------------------------------
+
+    private static final class Stripe {
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        /**
+         * Signalled when a read lock of this stripe or the write lock is released.
+         */
+        private final Condition released = lock.newCondition();
+
+        /**
+         * Number of read locks per item, guarded by {@link #lock}.
+         */
+        private final Map<ItemId, Integer> readLocks = new HashMap<>();
+
+        private void addLock(ItemId id) {
+            readLocks.merge(id, 1, Integer::sum);
+        }
+
+        private void removeLock(ItemId id) {
+            Integer count = readLocks.get(id);
+            if (count == null) {
+                throw new IllegalStateException("No lock present for id: " + id);
+            }
+            if (count == 1) {
+                readLocks.remove(id);
+            } else {
+                readLocks.put(id, count - 1);
+            }
+        }
+
+        private boolean hasDependency(ChangeLog changes) {
+            if (changes == null) {
+                return !readLocks.isEmpty();
+            }
+            for (ItemId id : readLocks.keySet()) {
+                if (JahiaStripedISMLocking.hasDependency(changes, id)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private final class ReadLockImpl implements ReadLock {
+
+        private final ItemId id;
+
+        private final Stripe stripe;
+
+        private ReadLockImpl(ItemId id, Stripe stripe) {
+            this.id = id;
+            this.stripe = stripe;
+        }
+
+        @Override
+        public void release() {
+            stripe.lock.lock();
+            try {
+                stripe.removeLock(id);
+                stripe.released.signalAll();
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+    }
+
+    private final class WriteLockImpl implements WriteLock {
+
+        private final ChangeLog changes;
+
+        private final Object writerId;
+
+        private WriteLockImpl(ChangeLog changes, Object writerId) {
+            this.changes = changes;
+            this.writerId = writerId;
+        }
+
+        @Override
+        public void release() {
+            writerStateLock.lock();
+            try {
+                activeWriter = null;
+                writerStateChanged.signalAll();
+            } finally {
+                writerStateLock.unlock();
+            }
+            signalStripes();
+        }
+
+        @Override
+        public ReadLock downgrade() {
+            writerStateLock.lock();
+            try {
+                // still exclusive with respect to other writers until released
+                downgradedLocks++;
+                activeWriter = null;
+            } finally {
+                writerStateLock.unlock();
+            }
+            signalStripes();
+            return new ReadLock() {
+                @Override
+                public void release() {
+                    writerStateLock.lock();
+                    try {
+                        downgradedLocks--;
+                        writerStateChanged.signalAll();
+                    } finally {
+                        writerStateLock.unlock();
+                    }
+                }
+            };
+        }
+    }
+}
@@ -265,7 +265,7 @@ public class PublicationHelper {
                     logger.debug("Cannot get item " + uuid, e);
                 }
             }
-            JobDetail jobDetail = BackgroundJob.createJahiaJob("Publication", PublicationJob.class);
+            JobDetail jobDetail = BackgroundJob.createJahiaJob("Publication", PublicationJob.class, true);
             JobDataMap jobDataMap = jobDetail.getJobDataMap();
             jobDataMap.put(BackgroundJob.JOB_SITEKEY, site.getName());
             jobDataMap.put(PublicationJob.PUBLICATION_PROPERTIES, properties);
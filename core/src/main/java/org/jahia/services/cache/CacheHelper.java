@@ -77,6 +77,7 @@ import java.util.*;
 public final class CacheHelper {
 
     public static final String CMD_FLUSH_ALL_CACHES = "FLUSH_ALL_CACHES";
+    public static final String CMD_FLUSH_BATCH = "FLUSH_BATCH";
     public static final String CMD_FLUSH_CHILDREN = "FLUSH_CHILDREN";
     /**
      * @deprecated in favour of {@link #CMD_FLUSH_CHILDREN}
@@ -261,32 +262,16 @@ public final class CacheHelper {
             }
         }
         if (flushSubtree) {
-            Set<String> pathsWithSubTree = new HashSet<>(paths);
-
-            @SuppressWarnings("rawtypes")
-            List keys = cache.getKeys();
-            for (Object key : keys) {
-                String stringKey = key.toString();
-                if (isKeyMatched(stringKey, paths)) {
-                    pathsWithSubTree.add(stringKey);
-                    cacheKeys.add(key);
-                }
-            }
-            paths = pathsWithSubTree;
+            Set<String> subTree = new HashSet<>();
+            cacheProvider.getDependenciesPathIndex().collectSubtrees(paths, subTree);
+            cacheKeys.addAll(subTree);
+            subTree.addAll(paths);
+            paths = subTree;
         }
         cacheProvider.invalidate(paths, true);
         cache.removeAll(cacheKeys);
     }
 
-    private static boolean isKeyMatched(String stringKey, Set<String> paths) {
-        for (String path : paths) {
-            if (stringKey.equals(path) || stringKey.startsWith(path + '/')) {
-                return true;
-            }
-        }
-        return false;
-    }
-
     @SuppressWarnings("deprecation")
     private static CacheInfo getCacheInfo(Ehcache cache, boolean withConfig, boolean withSizeInBytes) {
         CacheInfo info = new CacheInfo(cache);
@@ -127,6 +127,8 @@ public class FlushCacheEventListener extends CacheEventListenerAdapter implement
             ModuleCacheProvider.getInstance().invalidateRegexp(event, false);
         } else if (command.startsWith(CMD_FLUSH_CHILDREN) || command.startsWith(CMD_FLUSH_CHILDS)) {
             flushChildrenDependenciesOfPath(event);
+        } else if (command.startsWith(CMD_FLUSH_BATCH)) {
+            ModuleCacheProvider.getInstance().flushBatch(event);
         } else if (command.startsWith(CMD_FLUSH_MATCHINGPERMISSIONS)) {
             JahiaAccessManager.flushMatchingPermissions();
         } else if (command.equals(CMD_FLUSH_OUTPUT_CACHES)) {
@@ -583,7 +583,7 @@ public class ComplexPublicationServiceImpl implements ComplexPublicationService
                 throw new JahiaRuntimeException(e);
             }
         }
-        JobDetail jobDetail = BackgroundJob.createJahiaJob("Publication", PublicationJob.class);
+        JobDetail jobDetail = BackgroundJob.createJahiaJob("Publication", PublicationJob.class, true);
         JobDataMap jobDataMap = jobDetail.getJobDataMap();
         jobDataMap.put(PublicationJob.PUBLICATION_UUIDS, uuids);
         jobDataMap.put(PublicationJob.PUBLICATION_PATHS, paths);
@@ -64,7 +64,15 @@ import javax.jcr.version.Version;
 import javax.jcr.version.VersionHistory;
 import javax.jcr.version.VersionManager;
 import java.util.*;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.jahia.api.Constants.*;
 
@@ -83,6 +91,8 @@ public class JCRPublicationService extends JahiaService {
 
     private int batchSize;
 
+    private int publicationInfoThreads;
+
     private JCRSessionFactory sessionFactory;
     private MetricsLoggingService loggingService;
 
@@ -96,6 +106,30 @@ public class JCRPublicationService extends JahiaService {
 
     private Set<PublicationEventListener> listeners = Collections.newSetFromMap(new ConcurrentHashMap<PublicationEventListener, Boolean>());
 
+    /**
+     * An independently publishable node, whose publication info is computed separately from the one of its parent.
+     */
+    private static final class PublicationInfoUnit {
+
+        final String uuid;
+
+        final PublicationInfoNode parent;
+
+        PublicationInfoUnit(String uuid, PublicationInfoNode parent) {
+            this.uuid = uuid;
+            if (parent != null) {
+                // detached copy, the parent node is still being filled while the unit is computed
+                this.parent = new PublicationInfoNode(parent.getUuid(), parent.getPath());
+                this.parent.setStatus(parent.getStatus());
+                this.parent.setLocked(parent.isLocked());
+                this.parent.setWorkInProgress(parent.isWorkInProgress());
+                this.parent.setSubtreeProcessed(true);
+            } else {
+                this.parent = null;
+            }
+        }
+    }
+
     private JCRPublicationService() {
         super();
     }
@@ -261,6 +295,29 @@ public class JCRPublicationService extends JahiaService {
 
     public void publish(final List<String> uuids, final String sourceWorkspace,
                         final String destinationWorkspace, boolean checkPermissions, final boolean updateMetadata, final List<String> comments) throws RepositoryException {
+        publish(uuids, sourceWorkspace, destinationWorkspace, checkPermissions, updateMetadata, comments, 0, null);
+    }
+
+    /**
+     * Publishes the specified nodes in batches, each batch being saved separately in the destination workspace, and
+     * notifies the listener once each batch is published. If the publication fails, the nodes reported to the listener
+     * are published and the publication can be resumed with the remaining ones.
+     *
+     * @param uuids                the uuids of the nodes to publish
+     * @param sourceWorkspace      the source workspace
+     * @param destinationWorkspace the destination workspace
+     * @param checkPermissions     whether to only publish the nodes the current user has the publish permission on
+     * @param updateMetadata       whether to update the last published metadata of the nodes
+     * @param comments             the publication comments
+     * @param batchSize            the number of nodes to publish per batch, 0 to use the configured batch size or -1 for a
+     *                             single batch
+     * @param progressListener     the listener notified of the published batches, can be null
+     * @throws RepositoryException in case of JCR-related errors
+     */
+    public void publish(final List<String> uuids, final String sourceWorkspace,
+                        final String destinationWorkspace, boolean checkPermissions, final boolean updateMetadata,
+                        final List<String> comments, int batchSize, final PublicationProgressListener progressListener)
+            throws RepositoryException {
         if (uuids.isEmpty())
             return;
 
@@ -283,6 +340,7 @@ public class JCRPublicationService extends JahiaService {
         }
 
         if (!checkedUuids.isEmpty()) {
+            final int effectiveBatchSize = batchSize != 0 ? batchSize : this.batchSize;
             JCRTemplate.getInstance().doExecuteWithSystemSessionAsUser(user, sourceWorkspace, null, new JCRCallback<Object>() {
 
                 @Override
@@ -293,7 +351,8 @@ public class JCRPublicationService extends JahiaService {
                         public Object doInJCR(final JCRSessionWrapper destinationSession) throws RepositoryException {
                             sourceSession.setSkipValidation(true);
                             destinationSession.setSkipValidation(true);
-                            publish(checkedUuids, sourceSession, destinationSession, updateMetadata, comments);
+                            publish(checkedUuids, sourceSession, destinationSession, updateMetadata, comments,
+                                    effectiveBatchSize, progressListener);
                             return null;
                         }
                     });
@@ -310,13 +369,18 @@ public class JCRPublicationService extends JahiaService {
     }
 
     private void publish(final Set<String> uuidsToPublish, JCRSessionWrapper sourceSession,
-                         JCRSessionWrapper destinationSession, boolean updateMetadata, final List<String> comments)
+                         JCRSessionWrapper destinationSession, boolean updateMetadata, final List<String> comments,
+                         int batchSize, PublicationProgressListener progressListener)
             throws RepositoryException {
         int totalCount = uuidsToPublish.size();
         if (batchSize < 0 || totalCount <= batchSize) {
             // no limit on the batch size
             long startTime = System.currentTimeMillis();
+            List<String> published = progressListener != null ? new ArrayList<String>(uuidsToPublish) : null;
             doPublish(uuidsToPublish, sourceSession, destinationSession, updateMetadata, comments);
+            if (progressListener != null) {
+                progressListener.onBatchPublished(published, totalCount, totalCount);
+            }
             logger.info("Published {} nodes in {} ms", totalCount, System.currentTimeMillis() - startTime);
         } else {
             logger.info("Publishing {} nodes in batches of {}", totalCount, batchSize);
@@ -324,6 +388,7 @@ public class JCRPublicationService extends JahiaService {
             Set<String> batch = new LinkedHashSet<String>(batchSize);
             int batchIndex = 1;
             int batchTotalCount = (int) Math.ceil((double) totalCount / (double) batchSize);
+            int publishedCount = 0;
             while (uuidsToPublish.size() > batchSize) {
                 int batchCount = 0;
                 for (Iterator<String> iterator = uuidsToPublish.iterator(); iterator.hasNext(); ) {
@@ -337,13 +402,23 @@ public class JCRPublicationService extends JahiaService {
 
                 logger.info("Processing batch {}/{}", batchIndex++, batchTotalCount);
 
+                // the batch is modified by the publication, keep the uuids for the checkpoint
+                List<String> published = progressListener != null ? new ArrayList<String>(batch) : null;
                 doPublish(batch, sourceSession, destinationSession, updateMetadata, comments);
+                publishedCount += batchCount;
+                if (progressListener != null) {
+                    progressListener.onBatchPublished(published, publishedCount, totalCount);
+                }
 
                 batch.clear();
             }
 
             if (uuidsToPublish.size() > 0) {
+                List<String> published = progressListener != null ? new ArrayList<String>(uuidsToPublish) : null;
                 doPublish(uuidsToPublish, sourceSession, destinationSession, updateMetadata, comments);
+                if (progressListener != null) {
+                    progressListener.onBatchPublished(published, totalCount, totalCount);
+                }
             }
 
             logger.info("Batch-published {} nodes in {} ms", totalCount, System.currentTimeMillis() - startTime);
@@ -1156,10 +1231,236 @@ public class JCRPublicationService extends JahiaService {
         PublicationInfo tree = new PublicationInfo();
         infos.add(tree);
         tree.setRoot(getPublicationInfo(stageNode, languages, includesReferences, includesSubnodes, allsubtree,
-                sourceSession, destinationSession, new HashMap<String, PublicationInfoNode>(), infos, tree));
+                sourceSession, destinationSession, new HashMap<String, PublicationInfoNode>(), infos, tree, null));
         return infos;
     }
 
+    /**
+     * Computes the publication infos of the whole subtrees of the specified nodes and hands every independently
+     * publishable unit over to the callback as soon as it is computed, instead of building the complete list in memory.
+     * Each unit is computed with its own map of processed nodes, which is released once the unit has been emitted, and
+     * the units are distributed over the configured number of publication info threads (see
+     * {@link #setPublicationInfoThreads(int)}), each of them using its own pair of sessions opened for the user of the
+     * source session. The callback is always invoked from the calling thread.
+     * <p>
+     * Nodes of a parent unit are only referenced by the child units through a node holding their uuid, path and status.
+     * Referenced nodes are computed in every unit referencing them, as each unit has its own map of processed nodes: a node
+     * referenced from several units is computed and handed over once per unit, where the list returned by
+     * {@link #getPublicationInfos(List, Set, boolean, boolean, boolean, String, String)} shares a single instance.
+     * The computation is done sequentially with the provided sessions if no additional threads are configured or if the
+     * source session has pending changes, which would not be visible from other sessions.
+     *
+     * @param uuids              the uuids of the nodes to get the publication info for
+     * @param languages          Languages list to use for publication info, or null for all languages (only appplied if includesSubnodes is true)
+     * @param includesReferences If true include info for referenced nodes
+     * @param includesSubnodes   If true include info for subnodes
+     * @param sourceSession      source session (default workspace)
+     * @param destinationSession destination session (live workspace)
+     * @param callback           the callback receiving the publication infos, returning false to abort the computation
+     * @return the number of publication infos handed over to the callback
+     * @throws RepositoryException in case of JCR-related errors
+     */
+    public int getPublicationInfos(List<String> uuids, final Set<String> languages, final boolean includesReferences,
+                                   final boolean includesSubnodes, final JCRSessionWrapper sourceSession,
+                                   final JCRSessionWrapper destinationSession, PublicationInfoCallback callback)
+            throws RepositoryException {
+        if (publicationInfoThreads <= 1 || sourceSession.hasPendingChanges()) {
+            return getPublicationInfosSequentially(uuids, languages, includesReferences, includesSubnodes, sourceSession,
+                    destinationSession, callback);
+        }
+
+        final BlockingQueue<PublicationInfoUnit> pendingUnits = new LinkedBlockingQueue<PublicationInfoUnit>();
+        final BlockingQueue<Object> results = new LinkedBlockingQueue<Object>();
+        final Set<String> scheduledUuids = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        // units scheduled but not yet computed, a unit is only accounted as done once its result has been queued
+        final AtomicInteger remainingUnits = new AtomicInteger();
+        final AtomicBoolean stopped = new AtomicBoolean();
+        for (String uuid : uuids) {
+            if (scheduledUuids.add(uuid)) {
+                remainingUnits.incrementAndGet();
+                pendingUnits.add(new PublicationInfoUnit(uuid, null));
+            }
+        }
+
+        final JahiaUser user = sourceSession.getUser();
+        final Locale locale = sourceSession.getLocale();
+        final boolean system = sourceSession.isSystem();
+        final String sourceWorkspace = sourceSession.getWorkspace().getName();
+        final String destinationWorkspace = destinationSession.getWorkspace().getName();
+        final int threads = Math.min(publicationInfoThreads, remainingUnits.get());
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Publication info " + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            for (int i = 0; i < threads; i++) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        sessionFactory.setCurrentUser(user);
+                        sessionFactory.setCurrentLocale(locale);
+                        try {
+                            doExecute(user, sourceWorkspace, locale, system, new JCRCallback<Object>() {
+                                @Override
+                                public Object doInJCR(final JCRSessionWrapper workerSourceSession) throws RepositoryException {
+                                    return doExecute(user, destinationWorkspace, locale, system, new JCRCallback<Object>() {
+                                        @Override
+                                        public Object doInJCR(JCRSessionWrapper workerDestinationSession) throws RepositoryException {
+                                            while (!stopped.get()) {
+                                                PublicationInfoUnit unit;
+                                                try {
+                                                    unit = pendingUnits.poll(100, TimeUnit.MILLISECONDS);
+                                                } catch (InterruptedException e) {
+                                                    Thread.currentThread().interrupt();
+                                                    return null;
+                                                }
+                                                if (unit == null) {
+                                                    if (remainingUnits.get() == 0) {
+                                                        return null;
+                                                    }
+                                                    continue;
+                                                }
+                                                try {
+                                                    List<PublicationInfoUnit> deferredUnits = new ArrayList<PublicationInfoUnit>();
+                                                    PublicationInfo info = getPublicationInfo(unit, languages, includesReferences,
+                                                            includesSubnodes, workerSourceSession, workerDestinationSession, deferredUnits);
+                                                    for (PublicationInfoUnit deferredUnit : deferredUnits) {
+                                                        if (scheduledUuids.add(deferredUnit.uuid)) {
+                                                            remainingUnits.incrementAndGet();
+                                                            pendingUnits.add(deferredUnit);
+                                                        }
+                                                    }
+                                                    if (info != null) {
+                                                        results.add(info);
+                                                    }
+                                                } catch (RepositoryException | RuntimeException e) {
+                                                    // queued before the unit is accounted as done, so that it cannot be missed
+                                                    results.add(e);
+                                                    stopped.set(true);
+                                                    return null;
+                                                } finally {
+                                                    remainingUnits.decrementAndGet();
+                                                }
+                                                // only keep the nodes of the current unit in the session caches
+                                                workerSourceSession.refresh(false);
+                                                workerDestinationSession.refresh(false);
+                                            }
+                                            return null;
+                                        }
+                                    });
+                                }
+                            });
+                        } catch (RepositoryException | RuntimeException e) {
+                            results.add(e);
+                            stopped.set(true);
+                        } finally {
+                            sessionFactory.closeAllSessions();
+                            sessionFactory.setCurrentUser(null);
+                            sessionFactory.setCurrentLocale(null);
+                        }
+                    }
+                });
+            }
+
+            int count = 0;
+            while (true) {
+                Object result;
+                try {
+                    result = results.poll(100, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RepositoryException("Interrupted while computing publication infos", e);
+                }
+                if (result instanceof RepositoryException) {
+                    throw (RepositoryException) result;
+                } else if (result instanceof RuntimeException) {
+                    throw (RuntimeException) result;
+                } else if (result != null) {
+                    count++;
+                    if (!callback.onPublicationInfo((PublicationInfo) result)) {
+                        break;
+                    }
+                } else if (remainingUnits.get() == 0 && results.isEmpty()) {
+                    break;
+                }
+            }
+            return count;
+        } finally {
+            stopped.set(true);
+            executor.shutdown();
+        }
+    }
+
+    private int getPublicationInfosSequentially(List<String> uuids, Set<String> languages, boolean includesReferences,
+                                                boolean includesSubnodes, JCRSessionWrapper sourceSession,
+                                                JCRSessionWrapper destinationSession, PublicationInfoCallback callback)
+            throws RepositoryException {
+        Deque<PublicationInfoUnit> pendingUnits = new ArrayDeque<PublicationInfoUnit>();
+        Set<String> scheduledUuids = new HashSet<String>();
+        for (String uuid : uuids) {
+            if (scheduledUuids.add(uuid)) {
+                pendingUnits.add(new PublicationInfoUnit(uuid, null));
+            }
+        }
+        int count = 0;
+        List<PublicationInfoUnit> deferredUnits = new ArrayList<PublicationInfoUnit>();
+        while (!pendingUnits.isEmpty()) {
+            PublicationInfo info = getPublicationInfo(pendingUnits.poll(), languages, includesReferences, includesSubnodes,
+                    sourceSession, destinationSession, deferredUnits);
+            for (PublicationInfoUnit deferredUnit : deferredUnits) {
+                if (scheduledUuids.add(deferredUnit.uuid)) {
+                    pendingUnits.add(deferredUnit);
+                }
+            }
+            deferredUnits.clear();
+            if (info != null) {
+                count++;
+                if (!callback.onPublicationInfo(info)) {
+                    break;
+                }
+            }
+        }
+        return count;
+    }
+
+    private PublicationInfo getPublicationInfo(PublicationInfoUnit unit, Set<String> languages, boolean includesReferences,
+                                               boolean includesSubnodes, JCRSessionWrapper sourceSession,
+                                               JCRSessionWrapper destinationSession, List<PublicationInfoUnit> deferredUnits)
+            throws RepositoryException {
+        JCRNodeWrapper node;
+        try {
+            node = sourceSession.getNodeByUUID(unit.uuid);
+        } catch (ItemNotFoundException e) {
+            if (unit.parent == null) {
+                logger.warn("ItemNotFoundException for {} in workspace {}", unit.uuid, sourceSession.getWorkspace().getName());
+                throw e;
+            }
+            // removed since its parent has been processed
+            logger.debug("Item does not exist anymore : {}", unit.uuid);
+            return null;
+        }
+        Map<String, PublicationInfoNode> infosMap = new HashMap<String, PublicationInfoNode>();
+        if (unit.parent != null) {
+            infosMap.put(unit.parent.getUuid(), unit.parent);
+        }
+        PublicationInfo info = new PublicationInfo();
+        info.setRoot(getPublicationInfo(node, languages, includesReferences, includesSubnodes, true, sourceSession,
+                destinationSession, infosMap, new ArrayList<PublicationInfo>(), info, deferredUnits));
+        return info;
+    }
+
+    private static <T> T doExecute(JahiaUser user, String workspace, Locale locale, boolean system,
+                                   JCRCallback<T> callback) throws RepositoryException {
+        return system ? JCRTemplate.getInstance().doExecuteWithSystemSessionAsUser(user, workspace, locale, callback)
+                : JCRTemplate.getInstance().doExecute(user, workspace, locale, callback);
+    }
+
 
     /**
      * Gets the publication info for the current node and if acquired also for referenced nodes and subnodes.
@@ -1183,7 +1484,8 @@ public class JCRPublicationService extends JahiaService {
                                                    boolean allsubtree, final JCRSessionWrapper sourceSession,
                                                    final JCRSessionWrapper destinationSession,
                                                    Map<String, PublicationInfoNode> infosMap,
-                                                   List<PublicationInfo> infos, PublicationInfo currentPublicationInfo) throws
+                                                   List<PublicationInfo> infos, PublicationInfo currentPublicationInfo,
+                                                   List<PublicationInfoUnit> deferredUnits) throws
             RepositoryException {
 
         Set<String> wipLanguages = new HashSet<>();
@@ -1288,7 +1590,7 @@ public class JCRPublicationService extends JahiaService {
         if (includesReferences || includesSubnodes) {
             if (includesReferences) {
                 getReferences(node, languages, includesReferences, includesSubnodes, sourceSession, destinationSession,
-                        infosMap, infos, info);
+                        infosMap, infos, info, deferredUnits);
             }
             NodeIterator ni = node.getNodes();
             while (ni.hasNext()) {
@@ -1298,13 +1600,13 @@ public class JCRPublicationService extends JahiaService {
 
                 if (info.getStatus() == PublicationInfo.MARKED_FOR_DELETION || info.getStatus() == PublicationInfo.DELETED) {
                     info.addChild(getPublicationInfo(n, languages, includesReferences, true, true,
-                            sourceSession, destinationSession, infosMap, infos, currentPublicationInfo));
+                            sourceSession, destinationSession, infosMap, infos, currentPublicationInfo, deferredUnits));
                 } else if (languages != null && n.isNodeType(Constants.JAHIANT_TRANSLATION)) {
                     String translationLanguage = n.getProperty(Constants.JCR_LANGUAGE).getString();
                     if (languages.contains(translationLanguage)) {
                         PublicationInfoNode child =
                                 getPublicationInfo(n, languages, includesReferences, includesSubnodes, allsubtree,
-                                        sourceSession, destinationSession, infosMap, infos, currentPublicationInfo);
+                                        sourceSession, destinationSession, infosMap, infos, currentPublicationInfo, deferredUnits);
                         info.addChild(child);
 
                         if (wipAllContent || (wipLanguages != null && wipLanguages.contains(translationLanguage))) {
@@ -1319,18 +1621,23 @@ public class JCRPublicationService extends JahiaService {
                 } else {
                     boolean hasIndependantPublication = hasIndependantPublication(n);
                     if (allsubtree && hasIndependantPublication) {
-                        PublicationInfo newinfo = new PublicationInfo();
-                        infos.add(newinfo);
-                        newinfo.setRoot(getPublicationInfo(n, languages, includesReferences, includesSubnodes, allsubtree, sourceSession,
-                                destinationSession, infosMap, infos, newinfo));
+                        if (deferredUnits != null) {
+                            // computed later on as a separate unit, only the parent is needed for conflict detection
+                            deferredUnits.add(new PublicationInfoUnit(n.getIdentifier(), info));
+                        } else {
+                            PublicationInfo newinfo = new PublicationInfo();
+                            infos.add(newinfo);
+                            newinfo.setRoot(getPublicationInfo(n, languages, includesReferences, includesSubnodes, allsubtree, sourceSession,
+                                    destinationSession, infosMap, infos, newinfo, null));
+                        }
                     }
                     if (!hasIndependantPublication) {
                         if (n.isNodeType(Constants.JAHIAMIX_LASTPUBLISHED)) {
                             info.addChild(getPublicationInfo(n, languages, includesReferences, includesSubnodes, allsubtree,
-                                    sourceSession, destinationSession, infosMap, infos, currentPublicationInfo));
+                                    sourceSession, destinationSession, infosMap, infos, currentPublicationInfo, deferredUnits));
                         } else if (includesReferences) {
                             getReferences(n, languages, includesReferences, includesSubnodes, sourceSession, destinationSession, infosMap,
-                                    infos, info);
+                                    infos, info, deferredUnits);
                         }
                     }
                 }
@@ -1450,7 +1757,8 @@ public class JCRPublicationService extends JahiaService {
     private void getReferences(JCRNodeWrapper node, Set<String> languages, boolean includesReferences,
                                boolean includesSubnodes, JCRSessionWrapper sourceSession,
                                JCRSessionWrapper destinationSession, Map<String, PublicationInfoNode> infosMap,
-                               List<PublicationInfo> infos, PublicationInfoNode info) throws RepositoryException {
+                               List<PublicationInfo> infos, PublicationInfoNode info,
+                               List<PublicationInfoUnit> deferredUnits) throws RepositoryException {
         if (skipAllReferenceProperties) {
             return;
         }
@@ -1472,7 +1780,7 @@ public class JCRPublicationService extends JahiaService {
                             PublicationInfo refInfo = new PublicationInfo();
                             info.addReference(refInfo);
                             refInfo.setRoot(getPublicationInfo(ref, languages, includesReferences,
-                                    includesSubnodes, false, sourceSession, destinationSession, infosMap, infos, refInfo));
+                                    includesSubnodes, false, sourceSession, destinationSession, infosMap, infos, refInfo, deferredUnits));
                         }
                     } catch (ItemNotFoundException e) {
                         if (def.getRequiredType() == PropertyType.REFERENCE) {
@@ -1498,7 +1806,7 @@ public class JCRPublicationService extends JahiaService {
                         PublicationInfo refInfo = new PublicationInfo();
                         info.addReference(refInfo);
                         refInfo.setRoot(getPublicationInfo(ref, languages, includesReferences,
-                                includesSubnodes, false, sourceSession, destinationSession, infosMap, infos, refInfo));
+                                includesSubnodes, false, sourceSession, destinationSession, infosMap, infos, refInfo, deferredUnits));
                     }
                 } catch (ItemNotFoundException e) {
                     if (def.getRequiredType() == PropertyType.REFERENCE) {
@@ -1618,6 +1926,20 @@ public class JCRPublicationService extends JahiaService {
         this.batchSize = batchSize;
     }
 
+    /**
+     * Sets the number of threads used to compute the publication infos handed over to a {@link PublicationInfoCallback}.
+     * A value lower than 2 computes them sequentially in the calling thread.
+     *
+     * @param publicationInfoThreads the number of threads
+     */
+    public void setPublicationInfoThreads(int publicationInfoThreads) {
+        this.publicationInfoThreads = publicationInfoThreads;
+    }
+
+    public int getPublicationInfoThreads() {
+        return publicationInfoThreads;
+    }
+
     /**
      * Register a listener of publication events.
      *
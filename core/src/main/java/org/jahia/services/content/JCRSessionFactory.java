@@ -97,6 +97,7 @@ public class JCRSessionFactory implements Repository, ServletContextAware, ReadO
     private Map<String, JCRStoreProvider> providers = new HashMap<String, JCRStoreProvider>();
     private List<JCRStoreProvider> providerList = new LinkedList<JCRStoreProvider>();
     private SortedMap<String, JCRStoreProvider> mountPoints;
+    private volatile MountPointTrie<JCRStoreProvider> mountPointTrie = MountPointTrie.empty();
     private String servletContextAttributeName;
     private ServletContext servletContext;
     private ThreadLocal<JahiaUser> currentUser = new ThreadLocal<JahiaUser>();
@@ -107,6 +108,7 @@ public class JCRSessionFactory implements Repository, ServletContextAware, ReadO
     private ThreadLocal<Calendar> currentPreviewDate = new ThreadLocal<Calendar>();
     private ThreadLocal<Boolean> readOnlyCacheEnabled = new ThreadLocal<Boolean>();
     private LocalValidatorFactoryBean validatorFactoryBean;
+    private JCRSharedNodeCache sharedNodeCache;
     private boolean readOnlyModeEnabled;
     private final ReadWriteLock readOnlyModeLock = new ReentrantReadWriteLock();
 
@@ -117,6 +119,7 @@ public class JCRSessionFactory implements Repository, ServletContextAware, ReadO
     public void start() {
         synchronized (this) {
             mountPoints = new TreeMap<String, JCRStoreProvider>(invertedStringComparator);
+            mountPointTrie = MountPointTrie.empty();
         }
         namespaceRegistry = new NamespaceRegistryWrapper();
 
@@ -393,6 +396,9 @@ public class JCRSessionFactory implements Repository, ServletContextAware, ReadO
         String mountPoint = p.getMountPoint();
 
         synchronized (this) {
+            if (sharedNodeCache != null) {
+                sharedNodeCache.invalidateSubtree(mountPoint);
+            }
             for (JCRSessionWrapper wrapper : JCRSessionWrapper.getActiveSessionsObjects().values()) {
                 try {
                     wrapper.removeFromCache(mountPoint);
@@ -412,6 +418,7 @@ public class JCRSessionFactory implements Repository, ServletContextAware, ReadO
                 SortedMap<String, JCRStoreProvider> newMountPoints = new TreeMap<String, JCRStoreProvider>(mountPoints);
                 newMountPoints.put(mountPoint, p);
                 mountPoints = Collections.unmodifiableSortedMap(newMountPoints);
+                updateMountPointTrie();
             }
         }
         logger.info("Added provider " + key + " at mount point " + mountPoint + " using implementation "
@@ -442,6 +449,9 @@ public class JCRSessionFactory implements Repository, ServletContextAware, ReadO
             return;
         }
         synchronized (this) {
+            if (sharedNodeCache != null) {
+                sharedNodeCache.invalidateSubtree(p.getMountPoint());
+            }
             for (JCRSessionWrapper wrapper : JCRSessionWrapper.getActiveSessionsObjects().values()) {
                 try {
                     wrapper.removeFromCache(p.getMountPoint());
@@ -460,11 +470,23 @@ public class JCRSessionFactory implements Repository, ServletContextAware, ReadO
                 SortedMap<String, JCRStoreProvider> newMountPoints = new TreeMap<String, JCRStoreProvider>(mountPoints);
                 newMountPoints.remove(p.getMountPoint());
                 mountPoints = Collections.unmodifiableSortedMap(newMountPoints);
+                updateMountPointTrie();
             }
         }
         logger.info("Removed provider " + key + " at mount point " + p.getMountPoint() + " using implementation " + p.getClass().getName());
     }
 
+    private void updateMountPointTrie() {
+        JCRStoreProvider defaultProvider = null;
+        for (JCRStoreProvider provider : mountPoints.values()) {
+            if (provider.isDefault()) {
+                defaultProvider = provider;
+                break;
+            }
+        }
+        mountPointTrie = MountPointTrie.build(mountPoints, defaultProvider);
+    }
+
     private void initProviders() {
         Map<String, JCRStoreProvider> providerMap = new LinkedHashMap<String, JCRStoreProvider>(providerList.size());
         for (JCRStoreProvider p : providerList) {
@@ -545,17 +567,15 @@ public class JCRSessionFactory implements Repository, ServletContextAware, ReadO
      *         provider which can handle the specified node path
      */
     public JCRStoreProvider getProvider(String path, boolean includeDefault) {
-        Map<String, JCRStoreProvider> currentMountPoints = getMountPoints();
+        MountPointTrie<JCRStoreProvider> currentMountPoints = mountPointTrie;
         if (includeDefault && currentMountPoints.size() == 1) {
             return getDefaultProvider();
         }
-        for (Map.Entry<String, JCRStoreProvider> mp : currentMountPoints.entrySet()) {
-            if ((includeDefault && mp.getValue().isDefault()) || path.equals(mp.getKey())
-                    || path.startsWith(mp.getKey() + "/")) {
-                return mp.getValue();
-            }
+        JCRStoreProvider provider = currentMountPoints.find(path);
+        if (provider == null && includeDefault) {
+            provider = currentMountPoints.getDefault();
         }
-        return null;
+        return provider;
     }
 
     public NamespaceRegistry getNamespaceRegistry() throws RepositoryException {
@@ -637,6 +657,17 @@ public class JCRSessionFactory implements Repository, ServletContextAware, ReadO
         this.validatorFactoryBean = validatorFactoryBean;
     }
 
+    /**
+     * @return the cache of the live workspace nodes shared by the sessions, or <code>null</code> if none is configured
+     */
+    public JCRSharedNodeCache getSharedNodeCache() {
+        return sharedNodeCache;
+    }
+
+    public void setSharedNodeCache(JCRSharedNodeCache sharedNodeCache) {
+        this.sharedNodeCache = sharedNodeCache;
+    }
+
     /**
      * Returns <code>true</code> if more than one (default) mount points are registered.
      *
@@ -256,6 +256,14 @@ public class JCRSessionWrapper implements Session {
         if (sessionCacheByIdentifier.containsKey(uuid)) {
             return sessionCacheByIdentifier.get(uuid);
         }
+        JCRSharedNodeCache sharedNodeCache = getSharedNodeCache();
+        if (sharedNodeCache != null) {
+            JCRSharedNodeCache.NodeSnapshot snapshot = sharedNodeCache.getByIdentifier(uuid);
+            JCRNodeWrapper wrapper = snapshot != null ? getSharedNode(sharedNodeCache, snapshot) : null;
+            if (wrapper != null) {
+                return wrapper;
+            }
+        }
         RepositoryException originalEx = null;
         for (JCRStoreProvider provider : sessionFactory.getProviderList()) {
             if (!provider.isInitialized()) {
@@ -280,6 +288,9 @@ public class JCRSessionWrapper implements Session {
                 if (!isAliased) {
                     sessionCacheByIdentifier.put(uuid, wrapper);
                     sessionCacheByPath.put(wrapper.getPath(), wrapper);
+                    if (sharedNodeCache != null && provider.isDefault()) {
+                        sharedNodeCache.put(uuid, wrapper.getPath());
+                    }
                 }
 
                 return wrapper;
@@ -336,54 +347,105 @@ public class JCRSessionWrapper implements Session {
             JCRNodeWrapper parent = (JCRNodeWrapper) getItem(StringUtils.substringBeforeLast(path, DEREF_SEPARATOR), checkVersion);
             return dereference(parent, StringUtils.substringAfterLast(path, DEREF_SEPARATOR));
         }
-        for (Map.Entry<String, JCRStoreProvider> mp : sessionFactory.getMountPoints().entrySet()) {
-            String key = mp.getKey();
-            JCRStoreProvider provider = mp.getValue();
-            if (provider.isDefault() || path.equals(key) || path.startsWith(key + "/")) {
-                String localPath = path;
-                if (!key.equals("/")) {
-                    localPath = localPath.substring(key.length());
-                }
-                if (localPath.equals("")) {
-                    localPath = "/";
-                }
+        JCRSharedNodeCache sharedNodeCache = getSharedNodeCache();
+        if (sharedNodeCache != null) {
+            JCRSharedNodeCache.NodeSnapshot snapshot = sharedNodeCache.getByPath(path);
+            JCRNodeWrapper wrapper = snapshot != null ? getSharedNode(sharedNodeCache, snapshot) : null;
+            if (wrapper != null && path.equals(wrapper.getPath())) {
+                return wrapper;
+            }
+        }
+        JCRStoreProvider provider = sessionFactory.getProvider(path);
+        if (provider != null) {
+            String key = provider.getMountPoint();
+            String localPath = path;
+            if (!key.equals("/")) {
+                localPath = localPath.substring(key.length());
+            }
+            if (localPath.equals("")) {
+                localPath = "/";
+            }
 
-                Session session = getProviderSession(provider);
-                boolean isAliased = sessionFactory.checkAliasedStatusAndToggleSessionIfNeeded(session, getUser());
-                Item item = session.getItem(provider.getRelativeRoot() + localPath);
-                if (item.isNode()) {
-                    final Node node = (Node) item;
-                    JCRNodeWrapper wrapper = null;
-                    if (checkVersion && (versionDate != null || versionLabel != null) && node.isNodeType("mix:versionable")) {
-                        JCRNodeWrapper frozen = getFrozenVersionAsRegular(node, provider, false);
-                        if (frozen != null) {
-                            wrapper = frozen;
-                        }
-                    }
-                    if (wrapper == null) {
-                        wrapper = provider.getNodeWrapper(node, localPath, null, this);
+            Session session = getProviderSession(provider);
+            boolean isAliased = sessionFactory.checkAliasedStatusAndToggleSessionIfNeeded(session, getUser());
+            Item item = session.getItem(provider.getRelativeRoot() + localPath);
+            if (item.isNode()) {
+                final Node node = (Node) item;
+                JCRNodeWrapper wrapper = null;
+                if (checkVersion && (versionDate != null || versionLabel != null) && node.isNodeType("mix:versionable")) {
+                    JCRNodeWrapper frozen = getFrozenVersionAsRegular(node, provider, false);
+                    if (frozen != null) {
+                        wrapper = frozen;
                     }
+                }
+                if (wrapper == null) {
+                    wrapper = provider.getNodeWrapper(node, localPath, null, this);
+                }
 
-                    if (!isAliased) {
-                        sessionCacheByPath.put(path, wrapper);
-                        sessionCacheByIdentifier.put(wrapper.getIdentifier(), wrapper);
+                if (!isAliased) {
+                    sessionCacheByPath.put(path, wrapper);
+                    sessionCacheByIdentifier.put(wrapper.getIdentifier(), wrapper);
+                    if (sharedNodeCache != null && provider.isDefault() && path.equals(wrapper.getPath())) {
+                        sharedNodeCache.put(wrapper.getIdentifier(), path);
                     }
-
-                    return wrapper;
-                } else {
-                    // because of https://jira.jahia.org/browse/QA-6810, we retrieve the property from the parent
-                    // node to make sure that we go through any filtering that is implemented at a node decorator level,
-                    // as it is the case for the JCRUserNode. A more complete solution would involve implementing
-                    // the same decorator system around properties but this is much more complex and risky to do
-                    // than this (simple) method.
-                    JCRPropertyWrapper jcrPropertyWrapper = provider.getPropertyWrapper((Property) item, this);
-                    return jcrPropertyWrapper.getParent().getProperty(jcrPropertyWrapper.getName());
                 }
+
+                return wrapper;
+            } else {
+                // because of https://jira.jahia.org/browse/QA-6810, we retrieve the property from the parent
+                // node to make sure that we go through any filtering that is implemented at a node decorator level,
+                // as it is the case for the JCRUserNode. A more complete solution would involve implementing
+                // the same decorator system around properties but this is much more complex and risky to do
+                // than this (simple) method.
+                JCRPropertyWrapper jcrPropertyWrapper = provider.getPropertyWrapper((Property) item, this);
+                return jcrPropertyWrapper.getParent().getProperty(jcrPropertyWrapper.getName());
             }
         }
         throw new PathNotFoundException(path);
     }
 
+    /**
+     * Returns the shared node cache if it can be used by this session: only for the live workspace and when no
+     * version is requested.
+     */
+    private JCRSharedNodeCache getSharedNodeCache() {
+        JCRSharedNodeCache sharedNodeCache = sessionFactory.getSharedNodeCache();
+        if (sharedNodeCache == null || !sharedNodeCache.isEnabled() || versionDate != null || versionLabel != null
+                || !Constants.LIVE_WORKSPACE.equals(workspace.getName())) {
+            return null;
+        }
+        return sharedNodeCache;
+    }
+
+    /**
+     * Reads, with the permissions of this session, the node of the default provider located by the shared node cache.
+     *
+     * @return the node or <code>null</code> if it cannot be read that way, the caller then looking it up as usual
+     */
+    private JCRNodeWrapper getSharedNode(JCRSharedNodeCache sharedNodeCache, JCRSharedNodeCache.NodeSnapshot snapshot) {
+        JCRStoreProvider provider = sessionFactory.getDefaultProvider();
+        if (provider == null) {
+            return null;
+        }
+        try {
+            Session session = getProviderSession(provider);
+            boolean isAliased = sessionFactory.checkAliasedStatusAndToggleSessionIfNeeded(session, getUser());
+            JCRNodeWrapper wrapper = provider.getNodeWrapper(session.getNodeByIdentifier(snapshot.getIdentifier()), this);
+            if (!snapshot.getPath().equals(wrapper.getPath())) {
+                sharedNodeCache.invalidateIdentifier(snapshot.getIdentifier());
+            }
+            if (!isAliased) {
+                sessionCacheByIdentifier.put(wrapper.getIdentifier(), wrapper);
+                sessionCacheByPath.put(wrapper.getPath(), wrapper);
+            }
+            return wrapper;
+        } catch (RepositoryException e) {
+            // not readable by this session or removed in the meantime
+            logger.debug("Node {} not available from the shared node cache: {}", snapshot, e.getMessage());
+            return null;
+        }
+    }
+
     private JCRNodeWrapper dereference(JCRNodeWrapper parent, String refPath) throws RepositoryException {
         JCRNodeWrapper wrapper;
         JCRNodeWrapper referencedNode = ((JCRNodeWrapper) parent.getProperty(Constants.NODE).getNode());
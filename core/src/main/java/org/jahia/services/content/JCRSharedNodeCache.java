@@ -0,0 +1,267 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/Apache2 OR 2/JSEL
+ *
+ *     1/ Apache2
+ *     ==================================================================================
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.services.content;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.observation.Event;
+import javax.jcr.observation.EventIterator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache of the location of the nodes of the live workspace, shared by all the sessions.
+ * <p/>
+ * Each {@link JCRSessionWrapper} only caches the nodes it has read, so every request resolves again the same site,
+ * template and area nodes. This cache keeps, for the nodes of the default provider, an immutable snapshot of their
+ * identifier and path: a session looking up a known path reads the node by its identifier, without resolving the path
+ * nor trying the other providers. The node itself is still read through the session, so the permissions of the
+ * session user are checked as usual, and the path of the node read is compared to the requested one, so that a stale
+ * entry is never returned.
+ * <p/>
+ * Entries are invalidated by the removal and move events of the live workspace, including the events coming from the
+ * other cluster nodes, and when a provider is mounted or unmounted.
+ */
+public class JCRSharedNodeCache extends DefaultEventListener implements ExternalEventListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(JCRSharedNodeCache.class);
+
+    private int maxEntries = 0;
+
+    private final ConcurrentNavigableMap<String, NodeSnapshot> byPath = new ConcurrentSkipListMap<String, NodeSnapshot>();
+    private final ConcurrentMap<String, NodeSnapshot> byIdentifier = new ConcurrentHashMap<String, NodeSnapshot>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Immutable location of a node of the default provider.
+     */
+    public static final class NodeSnapshot {
+
+        private final String identifier;
+        private final String path;
+
+        NodeSnapshot(String identifier, String path) {
+            this.identifier = identifier;
+            this.path = path;
+        }
+
+        public String getIdentifier() {
+            return identifier;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        @Override
+        public String toString() {
+            return identifier + " " + path;
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the cache is enabled
+     */
+    public boolean isEnabled() {
+        return maxEntries > 0;
+    }
+
+    /**
+     * Returns the snapshot of the node at the specified path.
+     *
+     * @param path the path of the node
+     * @return the snapshot of the node or <code>null</code> if the path is not in the cache
+     */
+    public NodeSnapshot getByPath(String path) {
+        return count(byPath.get(path));
+    }
+
+    /**
+     * Returns the snapshot of the node with the specified identifier.
+     *
+     * @param identifier the identifier of the node
+     * @return the snapshot of the node or <code>null</code> if the identifier is not in the cache
+     */
+    public NodeSnapshot getByIdentifier(String identifier) {
+        return count(byIdentifier.get(identifier));
+    }
+
+    private NodeSnapshot count(NodeSnapshot snapshot) {
+        (snapshot != null ? hits : misses).increment();
+        return snapshot;
+    }
+
+    /**
+     * Stores the location of a node of the default provider read by a session.
+     *
+     * @param identifier the identifier of the node
+     * @param path       the path of the node
+     */
+    public void put(String identifier, String path) {
+        if (!isEnabled() || identifier == null || path == null || path.contains(JCRSessionWrapper.DEREF_SEPARATOR)
+                || path.startsWith("/jcr:system")) {
+            return;
+        }
+        if (byIdentifier.size() >= maxEntries) {
+            // the working set changed, start over rather than maintaining a usage order on every read
+            logger.debug("Shared node cache is full, clearing it");
+            clear();
+        }
+        NodeSnapshot snapshot = new NodeSnapshot(identifier, path);
+        NodeSnapshot previous = byIdentifier.put(identifier, snapshot);
+        if (previous != null && !previous.path.equals(path)) {
+            byPath.remove(previous.path, previous);
+        }
+        byPath.put(path, snapshot);
+    }
+
+    /**
+     * Removes the node at the specified path and all its descendants from the cache.
+     *
+     * @param path the path of the subtree root
+     */
+    public void invalidateSubtree(String path) {
+        if (path == null || byPath.isEmpty()) {
+            return;
+        }
+        if ("/".equals(path)) {
+            clear();
+            return;
+        }
+        remove(byPath.remove(path));
+        Iterator<NodeSnapshot> descendants = byPath.subMap(path + "/", path + "0").values().iterator();
+        while (descendants.hasNext()) {
+            NodeSnapshot snapshot = descendants.next();
+            descendants.remove();
+            remove(snapshot);
+        }
+    }
+
+    /**
+     * Removes the node with the specified identifier from the cache.
+     *
+     * @param identifier the identifier of the node
+     */
+    public void invalidateIdentifier(String identifier) {
+        NodeSnapshot snapshot = byIdentifier.remove(identifier);
+        if (snapshot != null) {
+            byPath.remove(snapshot.path, snapshot);
+        }
+    }
+
+    private void remove(NodeSnapshot snapshot) {
+        if (snapshot != null) {
+            byIdentifier.remove(snapshot.identifier, snapshot);
+        }
+    }
+
+    /**
+     * Removes all the entries of the cache.
+     */
+    public void clear() {
+        byIdentifier.clear();
+        byPath.clear();
+    }
+
+    @Override
+    public int getEventTypes() {
+        return Event.NODE_REMOVED + Event.NODE_MOVED;
+    }
+
+    @Override
+    public void onEvent(EventIterator events) {
+        if (byPath.isEmpty()) {
+            return;
+        }
+        while (events.hasNext()) {
+            Event event = events.nextEvent();
+            try {
+                invalidateSubtree(event.getPath());
+                if (event.getType() == Event.NODE_MOVED) {
+                    Map<?, ?> info = event.getInfo();
+                    Object source = info != null ? info.get("srcAbsPath") : null;
+                    if (source != null) {
+                        invalidateSubtree(source.toString());
+                    }
+                }
+                if (event.getIdentifier() != null) {
+                    invalidateIdentifier(event.getIdentifier());
+                }
+            } catch (RepositoryException e) {
+                logger.warn("Unable to process event, clearing the shared node cache", e);
+                clear();
+            }
+        }
+    }
+
+    public int getSize() {
+        return byIdentifier.size();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @param maxEntries the maximum number of nodes in the cache, 0 to disable it
+     */
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+        if (maxEntries <= 0) {
+            clear();
+        }
+    }
+}
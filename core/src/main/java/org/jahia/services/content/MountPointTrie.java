@@ -0,0 +1,221 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/Apache2 OR 2/JSEL
+ *
+ *     1/ Apache2
+ *     ==================================================================================
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.services.content;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Immutable tree of the mount points, by path segment, resolving the mount point handling a node path without
+ * iterating over all of them nor allocating any object. A new instance is built each time a provider is mounted or
+ * unmounted.
+ *
+ * @param <T> the type of the mounted objects
+ */
+final class MountPointTrie<T> {
+
+    private static final MountPointTrie<Object> EMPTY = new MountPointTrie<Object>(new Node<Object>(null, null, 0), null, 0);
+
+    private final Node<T> root;
+    private final T defaultValue;
+    private final int size;
+
+    /**
+     * A path segment, with the object mounted there if any and its child segments sorted by name.
+     */
+    private static final class Node<T> {
+
+        private final String segment;
+        private final T value;
+        private final Node<T>[] children;
+
+        @SuppressWarnings("unchecked")
+        private Node(String segment, T value, int childCount) {
+            this.segment = segment;
+            this.value = value;
+            this.children = new Node[childCount];
+        }
+
+        private Node<T> getChild(String path, int start, int end) {
+            int low = 0;
+            int high = children.length - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int comparison = compare(children[middle].segment, path, start, end);
+                if (comparison < 0) {
+                    low = middle + 1;
+                } else if (comparison > 0) {
+                    high = middle - 1;
+                } else {
+                    return children[middle];
+                }
+            }
+            return null;
+        }
+
+        private static int compare(String segment, String path, int start, int end) {
+            int length = Math.min(segment.length(), end - start);
+            for (int i = 0; i < length; i++) {
+                char c1 = segment.charAt(i);
+                char c2 = path.charAt(start + i);
+                if (c1 != c2) {
+                    return c1 - c2;
+                }
+            }
+            return segment.length() - (end - start);
+        }
+    }
+
+    private MountPointTrie(Node<T> root, T defaultValue, int size) {
+        this.root = root;
+        this.defaultValue = defaultValue;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> MountPointTrie<T> empty() {
+        return (MountPointTrie<T>) EMPTY;
+    }
+
+    /**
+     * Builds the tree of the specified mount points.
+     *
+     * @param mountPoints  the mounted objects by mount point path
+     * @param defaultValue the object handling the paths not matching any mount point, if any
+     * @return the tree of the mount points
+     */
+    static <T> MountPointTrie<T> build(Map<String, T> mountPoints, T defaultValue) {
+        TreeMap<String, Object> tree = new TreeMap<String, Object>();
+        T rootValue = null;
+        for (Map.Entry<String, T> mountPoint : mountPoints.entrySet()) {
+            if ("/".equals(mountPoint.getKey())) {
+                rootValue = mountPoint.getValue();
+                continue;
+            }
+            // intermediate segments are maps of their children, mount points hold their value under the "" key
+            TreeMap<String, Object> current = tree;
+            for (String segment : mountPoint.getKey().substring(1).split("/")) {
+                if (segment.isEmpty()) {
+                    continue;
+                }
+                @SuppressWarnings("unchecked")
+                TreeMap<String, Object> child = (TreeMap<String, Object>) current.get(segment);
+                if (child == null) {
+                    child = new TreeMap<String, Object>();
+                    current.put(segment, child);
+                }
+                current = child;
+            }
+            current.put("", mountPoint.getValue());
+        }
+        return new MountPointTrie<T>(toNode(null, rootValue, tree), defaultValue, mountPoints.size());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Node<T> toNode(String segment, T value, TreeMap<String, Object> tree) {
+        List<Map.Entry<String, Object>> children = new ArrayList<Map.Entry<String, Object>>(tree.size());
+        for (Map.Entry<String, Object> entry : tree.entrySet()) {
+            if (!entry.getKey().isEmpty()) {
+                children.add(entry);
+            }
+        }
+        Node<T> node = new Node<T>(segment, value, children.size());
+        for (int i = 0; i < children.size(); i++) {
+            TreeMap<String, Object> child = (TreeMap<String, Object>) children.get(i).getValue();
+            node.children[i] = toNode(children.get(i).getKey(), (T) child.get(""), child);
+        }
+        return node;
+    }
+
+    /**
+     * Returns the object mounted at the deepest mount point which is the specified path or one of its ancestors. The
+     * root mount point only matches the root path (and the paths starting with an empty segment).
+     *
+     * @param path the node path
+     * @return the object mounted at the deepest matching mount point or <code>null</code> if none matches
+     */
+    T find(String path) {
+        int length = path.length();
+        if (length == 0 || path.charAt(0) != '/') {
+            return null;
+        }
+        if (length == 1 || path.charAt(1) == '/') {
+            return root.value;
+        }
+        Node<T> node = root;
+        T found = null;
+        int start = 1;
+        while (start <= length) {
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = length;
+            }
+            node = node.getChild(path, start, end);
+            if (node == null) {
+                break;
+            }
+            if (node.value != null) {
+                found = node.value;
+            }
+            start = end + 1;
+        }
+        return found;
+    }
+
+    /**
+     * @return the object handling the paths not matching any mount point, if any
+     */
+    T getDefault() {
+        return defaultValue;
+    }
+
+    /**
+     * @return the number of mount points
+     */
+    int size() {
+        return size;
+    }
+}
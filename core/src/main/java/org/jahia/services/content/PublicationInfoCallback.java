@@ -0,0 +1,63 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/Apache2 OR 2/JSEL
+ *
+ *     1/ Apache2
+ *     ==================================================================================
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.services.content;
+
+import javax.jcr.RepositoryException;
+
+/**
+ * Callback interface receiving the publication infos computed by
+ * {@link JCRPublicationService#getPublicationInfos(java.util.List, java.util.Set, boolean, boolean, JCRSessionWrapper, JCRSessionWrapper, PublicationInfoCallback)}
+ * as soon as each of them is available, so that callers can page through the results or stop early.
+ */
+public interface PublicationInfoCallback {
+
+    /**
+     * Called once for every computed publication unit, always from the thread that requested the publication infos.
+     * A node referenced from several units is part of the references of each of them.
+     *
+     * @param info the publication info of an independently publishable node and its subtree
+     * @return <code>true</code> to continue with the remaining nodes, <code>false</code> to abort the computation
+     * @throws RepositoryException in case of JCR errors, the computation is then aborted and the exception propagated
+     */
+    boolean onPublicationInfo(PublicationInfo info) throws RepositoryException;
+}
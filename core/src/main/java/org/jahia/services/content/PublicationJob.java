@@ -49,8 +49,14 @@ import org.jahia.services.workflow.WorkflowService;
 import org.quartz.JobDataMap;
 import org.quartz.JobDetail;
 import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.quartz.SchedulerException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import javax.jcr.RepositoryException;
 import java.text.SimpleDateFormat;
+import java.util.Collection;
 import java.util.GregorianCalendar;
 import java.util.List;
 
@@ -58,6 +64,8 @@ import java.util.List;
  * Publication job
  */
 public class PublicationJob extends BackgroundJob {
+    private static final Logger logger = LoggerFactory.getLogger(PublicationJob.class);
+
     public static final String PUBLICATION_UUIDS = "publicationInfos";
     public static final String PUBLICATION_PATHS = "publicationPaths";
     public static final String PUBLICATION_PROPERTIES = "publicationProperties";
@@ -67,19 +75,46 @@ public class PublicationJob extends BackgroundJob {
     public static final String DESTINATION = "destination";
     public static final String LOCK = "lock";
     public static final String CHECK_PERMISSIONS = "checkPermissions";
+    public static final String BATCH_SIZE = "batchSize";
+    /**
+     * number of leading entries of the {@link #PUBLICATION_UUIDS} already handled by a previous, interrupted execution of
+     * the job, skipped when the job is executed again
+     */
+    public static final String PUBLISHED_COUNT = "publishedCount";
+    /** percentage of the nodes published so far */
+    public static final String PROGRESS = "progress";
+
+    /**
+     * Publishes a list of uuids, reporting the published batches.
+     */
+    interface Publisher {
+        void publish(List<String> uuids, PublicationProgressListener progressListener) throws RepositoryException;
+    }
 
-    public void executeJahiaJob(JobExecutionContext jobExecutionContext) throws Exception {
+    /**
+     * Persists the job data holding the publication checkpoint.
+     */
+    interface Checkpoint {
+        void store() throws SchedulerException;
+    }
+
+    public void executeJahiaJob(final JobExecutionContext jobExecutionContext) throws Exception {
         JobDetail jobDetail = jobExecutionContext.getJobDetail();
-        JobDataMap jobDataMap = jobDetail.getJobDataMap();
+        final JobDataMap jobDataMap = jobDetail.getJobDataMap();
 
         List<String> uuids = (List<String>) jobDataMap.get(PUBLICATION_UUIDS);
-        String source = (String) jobDataMap.get(SOURCE);
-        String destination = (String) jobDataMap.get(DESTINATION);
+        final String source = (String) jobDataMap.get(SOURCE);
+        final String destination = (String) jobDataMap.get(DESTINATION);
         String lock = (String) jobDataMap.get(LOCK);
-        Boolean checkPermissions = (Boolean) jobDataMap.get(CHECK_PERMISSIONS);
-        List<String> comments = (List<String>) jobDataMap.get(PUBLICATION_COMMENTS);
+        final Boolean checkPermissions = (Boolean) jobDataMap.get(CHECK_PERMISSIONS);
+        final List<String> comments = (List<String>) jobDataMap.get(PUBLICATION_COMMENTS);
+
+        final Integer batchSize = (Integer) jobDataMap.get(BATCH_SIZE);
 
-        JCRPublicationService.getInstance().publish(uuids, source, destination, checkPermissions, comments);
+        publishRemaining(uuids, jobDataMap, (remainingUuids, progressListener) ->
+                JCRPublicationService.getInstance().publish(remainingUuids, source, destination, checkPermissions,
+                        true, comments, batchSize != null ? batchSize : 0, progressListener),
+                () -> storeCheckpoint(jobExecutionContext));
 
         if (lock != null) {
             JCRPublicationService.getInstance().unlockForPublication(uuids, source, lock);
@@ -101,4 +136,86 @@ public class PublicationJob extends BackgroundJob {
             }
         }
     }
+
+    /**
+     * Publishes the uuids not published yet by a previous execution of the job. Each published batch is recorded in
+     * the job data, which is persisted right away: Quartz only stores the data of a stateful job once its execution
+     * ends, so a crash of the server would lose it. As publication jobs request recovery, a job interrupted by a crash
+     * is executed again and resumes from the last checkpoint. A job failing after having published some batches is
+     * executed again immediately, and fails for good if it cannot publish any further batch.
+     * <p>
+     * The batches are published in the order of the uuids, so the checkpoint is the number of leading uuids up to the
+     * last one of the last published batch. The uuids skipped by the publication within that prefix, because the user
+     * cannot publish them or they are listed twice, are skipped again when resuming.
+     *
+     * @param uuids      all the uuids to publish
+     * @param jobDataMap the job data, holding the checkpoint
+     * @param publisher  publishes the remaining uuids
+     * @param checkpoint persists the job data
+     * @throws JobExecutionException if the publication fails
+     */
+    static void publishRemaining(final List<String> uuids, final JobDataMap jobDataMap, Publisher publisher,
+                                 final Checkpoint checkpoint) throws JobExecutionException {
+        final int alreadyPublishedCount = jobDataMap.containsKey(PUBLISHED_COUNT)
+                ? Math.min((Integer) jobDataMap.get(PUBLISHED_COUNT), uuids.size()) : 0;
+        final int[] publishedCount = {alreadyPublishedCount};
+        List<String> remainingUuids = uuids;
+        if (alreadyPublishedCount > 0) {
+            remainingUuids = uuids.subList(alreadyPublishedCount, uuids.size());
+            logger.info("Resuming publication of {} nodes, {} nodes were already published", remainingUuids.size(),
+                    alreadyPublishedCount);
+        }
+        jobDataMap.put(PROGRESS, getProgress(alreadyPublishedCount, uuids.size()));
+
+        try {
+            publisher.publish(remainingUuids, new PublicationProgressListener() {
+                @Override
+                public void onBatchPublished(Collection<String> batchUuids, int batchPublishedCount, int totalCount) {
+                    publishedCount[0] = getPublishedCount(uuids, publishedCount[0], batchUuids);
+                    jobDataMap.put(PUBLISHED_COUNT, publishedCount[0]);
+                    jobDataMap.put(PROGRESS, getProgress(publishedCount[0], uuids.size()));
+                    try {
+                        checkpoint.store();
+                    } catch (SchedulerException e) {
+                        logger.warn("Unable to store the publication checkpoint, the job would be resumed from the " +
+                                "previous one", e);
+                    }
+                }
+            });
+        } catch (Exception e) {
+            boolean progressed = publishedCount[0] > alreadyPublishedCount;
+            if (progressed) {
+                logger.warn("Publication failed after {} nodes, it will be resumed", publishedCount[0]);
+            }
+            throw new JobExecutionException(e, progressed);
+        }
+        jobDataMap.put(PROGRESS, 100);
+        jobDataMap.remove(PUBLISHED_COUNT);
+    }
+
+    /**
+     * Moves the checkpoint past the last uuid of the published batch, which is its first occurrence after the
+     * previous checkpoint as the batches are published in order.
+     */
+    private static int getPublishedCount(List<String> uuids, int publishedCount, Collection<String> batchUuids) {
+        String last = null;
+        for (String uuid : batchUuids) {
+            last = uuid;
+        }
+        for (int i = publishedCount; i < uuids.size(); i++) {
+            if (uuids.get(i).equals(last)) {
+                return i + 1;
+            }
+        }
+        return publishedCount;
+    }
+
+    private static int getProgress(int publishedCount, int totalCount) {
+        return totalCount > 0 ? (int) (100L * publishedCount / totalCount) : 100;
+    }
+
+    private static void storeCheckpoint(JobExecutionContext jobExecutionContext) throws SchedulerException {
+        // replacing the durable job updates its persisted data, its triggers are left as is
+        jobExecutionContext.getScheduler().addJob(jobExecutionContext.getJobDetail(), true);
+    }
 }
@@ -0,0 +1,237 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/Apache2 OR 2/JSEL
+ *
+ *     1/ Apache2
+ *     ==================================================================================
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.services.content.impl.jackrabbit;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.jackrabbit.core.cluster.NodeLevelLockableJournal;
+import org.apache.jackrabbit.core.id.NodeId;
+import org.apache.jackrabbit.core.journal.JournalException;
+import org.apache.jackrabbit.core.util.db.ConnectionHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Locks the nodes modified by a change in the <code>LOCKS</code> table, for the journals implementing
+ * {@link NodeLevelLockableJournal}. A lock is a row holding the node ID, as primary key, and the ID of the journal
+ * of the cluster node owning it.
+ */
+class DatabaseNodeLocker {
+
+    private static final Logger log = LoggerFactory.getLogger(DatabaseNodeLocker.class);
+
+    /**
+     * SQLState class of the integrity constraint violations, reported when inserting the lock of an already locked
+     * node. Not all drivers throw a {@link SQLIntegrityConstraintViolationException} for them.
+     */
+    private static final String INTEGRITY_CONSTRAINT_VIOLATION_CLASS = "23";
+
+    /**
+     * Synchronizes the journal with the changes of the other cluster nodes.
+     */
+    interface Synchronizer {
+        void sync() throws JournalException;
+    }
+
+    private final ConnectionHelper conHelper;
+
+    private final String journalId;
+
+    private final String insertLockSQL;
+
+    private final String deleteLockSQL;
+
+    private final String deleteJournalLocksSQL;
+
+    /**
+     * Create a new instance of this class.
+     *
+     * @param conHelper          the connection helper of the journal
+     * @param schemaObjectPrefix the prefix of the journal tables
+     * @param journalId          the ID of the journal of this cluster node
+     */
+    DatabaseNodeLocker(ConnectionHelper conHelper, String schemaObjectPrefix, String journalId) {
+        this.conHelper = conHelper;
+        this.journalId = journalId;
+        insertLockSQL = "insert into " + schemaObjectPrefix + "LOCKS (NODE_ID, JOURNAL_ID) values (?,?)";
+        deleteLockSQL = "delete from " + schemaObjectPrefix + "LOCKS where NODE_ID = ? and JOURNAL_ID = ?";
+        deleteJournalLocksSQL = "delete from " + schemaObjectPrefix + "LOCKS where JOURNAL_ID = ?";
+    }
+
+    /**
+     * Locks the given nodes. If one of them is locked by another change, the journal is synchronized and the lock
+     * attempted again, until the retry strategy gives up. Once the nodes are locked, the journal is synchronized
+     * again: a change to the same nodes committed by another cluster node before the locks were acquired must be
+     * seen by the save, for its stale item check.
+     *
+     * @param ids           the IDs of the nodes to lock
+     * @param retryStrategy the strategy for the attempts to lock nodes locked by another change
+     * @param synchronizer  synchronizes the journal
+     * @throws JournalException if the nodes cannot be locked or the journal synchronized
+     */
+    void lockNodes(Set<NodeId> ids, RetryOnExceptionStrategy retryStrategy, Synchronizer synchronizer)
+            throws JournalException {
+        while (retryStrategy.canRetry()) {
+            try {
+                internalLockNodes(ids);
+            } catch (SQLException e) {
+                // a node is currently locked by a concurrent change, wait until the lock is released
+                log.debug("Cannot lock {} . Reason: {}", StringUtils.join(ids, ","), e.getMessage());
+                try {
+                    retryStrategy.onErrorOccured();
+                } catch (RetryStrategyException rsex) {
+                    throw new JournalException(rsex.getMessage(), rsex);
+                }
+                synchronizer.sync();
+                continue;
+            }
+            boolean synced = false;
+            try {
+                synchronizer.sync();
+                synced = true;
+            } finally {
+                if (!synced) {
+                    unlockNodesQuietly(ids);
+                }
+            }
+            return;
+        }
+    }
+
+    /**
+     * Inserts the locks of the nodes in a single transaction.
+     *
+     * @throws SQLException if a node is already locked
+     */
+    private void internalLockNodes(Set<NodeId> ids) throws JournalException, SQLException {
+        boolean success = false;
+        try {
+            conHelper.startBatch();
+        } catch (SQLException e) {
+            throw new JournalException("Unable to set autocommit to false.", e);
+        }
+        try {
+            // Inserting IDs in a predefined order avoids deadlocks between changes locking the same nodes
+            for (NodeId id : new TreeSet<>(ids)) {
+                log.debug("Lock {}", id);
+                conHelper.exec(insertLockSQL, id.toString(), journalId);
+            }
+            success = true;
+        } catch (SQLException e) {
+            if (isLockConflict(e)) {
+                throw e;
+            }
+            throw new JournalException("Unable to lock nodes.", e);
+        } finally {
+            try {
+                conHelper.endBatch(success);
+            } catch (SQLException e) {
+                log.error("failed to end batch", e);
+            }
+        }
+    }
+
+    /**
+     * Unlocks the given nodes, if they are locked by this cluster node.
+     *
+     * @param ids the IDs of the nodes to unlock
+     * @throws JournalException if the locks cannot be deleted
+     */
+    void unlockNodes(Set<NodeId> ids) throws JournalException {
+        try {
+            for (NodeId id : ids) {
+                log.debug("Unlock {}", id);
+                conHelper.exec(deleteLockSQL, new Object[]{id.toString(), journalId}, false, 0);
+            }
+        } catch (SQLException e) {
+            throw new JournalException("Unable to unlock nodes.", e);
+        }
+    }
+
+    private void unlockNodesQuietly(Set<NodeId> ids) {
+        try {
+            unlockNodes(ids);
+        } catch (JournalException e) {
+            log.error("Unable to unlock nodes: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Deletes all the locks of this cluster node. Called at startup, when no change of this cluster node can be in
+     * progress: the remaining locks were left by a crash and would block the changes to their nodes forever.
+     *
+     * @throws JournalException if the locks cannot be deleted
+     */
+    void unlockAllNodes() throws JournalException {
+        try {
+            int count = conHelper.update(deleteJournalLocksSQL, journalId);
+            if (count > 0) {
+                log.info("Removed {} node locks left by a previous run of cluster node {}", count, journalId);
+            }
+        } catch (SQLException e) {
+            throw new JournalException("Unable to remove the node locks of " + journalId + ".", e);
+        }
+    }
+
+    /**
+     * Checks whether the exception reports a violation of the primary key of the <code>LOCKS</code> table, meaning
+     * that a node is already locked by another change. Some drivers, like PostgreSQL and SQL Server, throw a plain
+     * {@link SQLException} and only report it in the SQLState.
+     *
+     * @param e the exception thrown when inserting a lock
+     * @return <code>true</code> if a node is already locked
+     */
+    static boolean isLockConflict(SQLException e) {
+        for (SQLException current = e; current != null; current = current.getNextException()) {
+            if (current instanceof SQLIntegrityConstraintViolationException
+                    || StringUtils.startsWith(current.getSQLState(), INTEGRITY_CONSTRAINT_VIOLATION_CLASS)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
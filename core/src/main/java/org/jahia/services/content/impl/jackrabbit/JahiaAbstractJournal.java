@@ -42,16 +42,22 @@
  */
 package org.jahia.services.content.impl.jackrabbit;
 
+import org.apache.jackrabbit.core.cluster.JahiaClusterNode;
+import org.apache.jackrabbit.core.cluster.NodeLevelLockableJournal;
 import org.apache.jackrabbit.core.journal.*;
 import org.apache.jackrabbit.core.util.XAReentrantWriterPreferenceReadWriteLock;
 import org.apache.jackrabbit.core.version.InternalVersionManagerImpl;
 import org.apache.jackrabbit.core.version.VersioningLock;
+import org.apache.jackrabbit.spi.commons.namespace.NamespaceResolver;
 import org.jahia.osgi.BundleUtils;
 import org.jahia.osgi.FrameworkService;
 import org.jahia.services.hazelcast.HazelcastCP;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Random;
@@ -72,6 +78,7 @@ public abstract class JahiaAbstractJournal extends AbstractJournal {
     public static final int MAX_LOCK_TIME_INT = 500;
     public static final long MAX_LOCK_TIME_LONG = 500L;
     public static final int DEFAULT_MAX_LOCK_TIME = 30000;
+    private static final String SYNC_STATISTICS_MBEAN_NAME = "org.jahia.services.cluster:type=JournalSync";
 
     /**
      * Map of registered consumers.
@@ -97,6 +104,46 @@ public abstract class JahiaAbstractJournal extends AbstractJournal {
 
     private HazelcastCP lockService;
 
+    private final JournalSyncStatistics syncStatistics = new JournalSyncStatistics(this);
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void init(String id, NamespaceResolver resolver) throws JournalException {
+        super.init(id, resolver);
+
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        if (mBeanServer != null) {
+            try {
+                ObjectName name = new ObjectName(SYNC_STATISTICS_MBEAN_NAME);
+                if (!mBeanServer.isRegistered(name)) {
+                    mBeanServer.registerMBean(syncStatistics, name);
+                }
+            } catch (Exception e) {
+                log.warn("Unable to register JMX bean for the journal synchronization due to {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        if (mBeanServer != null) {
+            try {
+                ObjectName name = new ObjectName(SYNC_STATISTICS_MBEAN_NAME);
+                if (mBeanServer.isRegistered(name)) {
+                    mBeanServer.unregisterMBean(name);
+                }
+            } catch (Exception e) {
+                log.warn("Unable to unregister JMX bean for the journal synchronization due to {}", e.getMessage());
+            }
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -130,7 +177,7 @@ public abstract class JahiaAbstractJournal extends AbstractJournal {
      * Return the minimal revision of all registered consumers.
      */
     @SuppressWarnings("java:S2177")
-    private long getMinimalRevision() {
+    long getMinimalRevision() {
         long minimalRevision = Long.MAX_VALUE;
 
         synchronized (consumers) {
@@ -225,10 +272,12 @@ public abstract class JahiaAbstractJournal extends AbstractJournal {
         RecordIterator iterator = getRecords(startRevision);
         long startTime = System.currentTimeMillis();
         long stopRevision = Long.MIN_VALUE;
+        int count = 0;
 
         boolean timeOut = false;
         try {
             while (!timeOut && iterator.hasNext()) {
+                count++;
                 Record record = iterator.nextRecord();
                 if (record.getJournalId().equals(getId())) {
                     log.debug("Record with revision '{}}' created by this journal, skipped.", record.getRevision());
@@ -252,10 +301,15 @@ public abstract class JahiaAbstractJournal extends AbstractJournal {
 
         if (stopRevision > 0) {
             for (RecordConsumer consumer : consumers.values()) {
-                consumer.setRevision(stopRevision);
+                if (consumer instanceof JahiaClusterNode) {
+                    ((JahiaClusterNode) consumer).reallySetRevision(stopRevision);
+                } else {
+                    consumer.setRevision(stopRevision);
+                }
             }
             log.debug("Synchronized from revision {} to revision: {}", startRevision, stopRevision);
         }
+        syncStatistics.synchronizedRecords(count, startTime, !timeOut);
 
         return !timeOut;
     }
@@ -286,6 +340,20 @@ public abstract class JahiaAbstractJournal extends AbstractJournal {
     private void internalLockAndSync() throws JournalException {
         acquireWriteLock();
 
+        if (isNodeLevelLocking()) {
+            // concurrent changes are serialized by the node locks, the revision is only allocated when appending
+            boolean succeeded = false;
+            try {
+                doSync(getMinimalRevision());
+                succeeded = true;
+            } finally {
+                if (!succeeded) {
+                    rwLock.writeLock().release();
+                }
+            }
+            return;
+        }
+
         boolean succeeded = false;
         int tryCount = 0;
         try {
@@ -354,6 +422,16 @@ public abstract class JahiaAbstractJournal extends AbstractJournal {
 
     protected abstract long getLockedRevision();
 
+    /**
+     * Return the revision of the latest record appended to the journal, by any cluster node.
+     *
+     * @return the latest revision or <code>-1</code> if it is not known
+     * @throws JournalException if an error occurs
+     */
+    protected long getLatestRevision() throws JournalException {
+        return -1L;
+    }
+
     /**
      * Unlock the journal revision.
      *
@@ -364,7 +442,9 @@ public abstract class JahiaAbstractJournal extends AbstractJournal {
     public void unlock(boolean successful) {
         try {
             doUnlock(successful);
-            unlockCluster(successful ? getLockedRevision() : null);
+            if (!isNodeLevelLocking()) {
+                unlockCluster(successful ? getLockedRevision() : null);
+            }
         } finally {
             //Should not happen that a RuntimeException will be thrown in subCode, but it's safer
             //to release the rwLock in finally block.
@@ -375,6 +455,11 @@ public abstract class JahiaAbstractJournal extends AbstractJournal {
         }
     }
 
+    private boolean isNodeLevelLocking() {
+        return this instanceof NodeLevelLockableJournal
+                && ((NodeLevelLockableJournal) this).isNodeLevelLockingEnabled();
+    }
+
     private long lockCluster() {
         HazelcastCP hcp = getLockService();
         if (hcp != null) {
@@ -42,6 +42,8 @@
  */
 package org.jahia.services.content.impl.jackrabbit;
 
+import org.apache.jackrabbit.core.cluster.NodeLevelLockableJournal;
+import org.apache.jackrabbit.core.id.NodeId;
 import org.apache.jackrabbit.core.journal.*;
 import org.apache.jackrabbit.core.util.db.*;
 import org.apache.jackrabbit.spi.commons.namespace.NamespaceResolver;
@@ -57,12 +59,13 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
+import java.util.Set;
 import java.util.TimeZone;
 
 /**
  * JahiaDatabaseJournal is a copy of DatabaseJournal, but extends JahiaAbstractJournal to use lockAndSync timeouts
  */
-public class JahiaDatabaseJournal extends JahiaAbstractJournal implements DatabaseAware {
+public class JahiaDatabaseJournal extends JahiaAbstractJournal implements DatabaseAware, NodeLevelLockableJournal {
 
     /**
      * Default journal table name, used to check schema completeness.
@@ -158,6 +161,11 @@ public class JahiaDatabaseJournal extends JahiaAbstractJournal implements Databa
      */
     protected String selectRevisionsStmtSQL;
 
+    /**
+     * SQL statement returning the latest revision of the journal.
+     */
+    protected String selectMaxRevisionStmtSQL;
+
     /**
      * SQL statement updating the global revision.
      */
@@ -213,6 +221,31 @@ public class JahiaDatabaseJournal extends JahiaAbstractJournal implements Databa
      */
     protected long janitorBatchLimit = 10000L;
 
+    /**
+     * Maximum number of records read ahead while synchronizing, <code>0</code> to read them one at a time.
+     */
+    private int syncPrefetchSize = 0;
+
+    /**
+     * Whether changes are locked at node level instead of locking the global revision for the whole save.
+     */
+    private boolean nodeLevelLocking = false;
+
+    /**
+     * Time to wait in ms before trying again to lock nodes locked by another change.
+     */
+    private int sleepTimeWaitingForLock = 500;
+
+    /**
+     * Number of attempts to lock nodes locked by another change.
+     */
+    private int numberOfRetries = 3;
+
+    /**
+     * Locks the nodes in the <code>LOCKS</code> table, when node level locking is enabled.
+     */
+    private DatabaseNodeLocker nodeLocker;
+
     /**
      * The repositories {@link ConnectionFactory}.
      */
@@ -263,6 +296,10 @@ public class JahiaDatabaseJournal extends JahiaAbstractJournal implements Databa
 
             buildSQLStatements();
             initInstanceRevisionAndJanitor();
+            if (nodeLevelLocking) {
+                nodeLocker = new DatabaseNodeLocker(conHelper, schemaObjectPrefix, getId());
+                nodeLocker.unlockAllNodes();
+            }
         } catch (Exception e) {
             String msg = "Unable to create connection.";
             throw new JournalException(msg, e);
@@ -418,8 +455,11 @@ public class JahiaDatabaseJournal extends JahiaAbstractJournal implements Databa
      */
     public RecordIterator getRecords(long startRevision) throws JournalException {
         try {
-            return new DatabaseRecordIterator(conHelper.exec(selectRevisionsStmtSQL, new Object[]{startRevision}, false, 0),
-                                              getResolver(), getNamePathResolver());
+            ResultSet rs = conHelper.exec(selectRevisionsStmtSQL, new Object[]{startRevision}, false, 0);
+            if (syncPrefetchSize > 0) {
+                return new PrefetchingRecordIterator(rs, getResolver(), getNamePathResolver(), syncPrefetchSize);
+            }
+            return new DatabaseRecordIterator(rs, getResolver(), getNamePathResolver());
         } catch (SQLException e) {
             throw new JournalException("Unable to return record iterator.", e);
         }
@@ -467,6 +507,22 @@ public class JahiaDatabaseJournal extends JahiaAbstractJournal implements Databa
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected long getLatestRevision() throws JournalException {
+        ResultSet rs = null;
+        try {
+            rs = conHelper.exec(selectMaxRevisionStmtSQL, null, false, 0);
+            return rs.next() ? rs.getLong(1) : 0L;
+        } catch (SQLException e) {
+            throw new JournalException("Unable to read the latest revision.", e);
+        } finally {
+            DbUtility.close(rs);
+        }
+    }
+
     /**
      * {@inheritDoc}
      * <p/>
@@ -476,6 +532,10 @@ public class JahiaDatabaseJournal extends JahiaAbstractJournal implements Databa
      * appended record, because a save may entail multiple appends (JCR-884).
      */
     protected void doLock() throws JournalException {
+        if (nodeLevelLocking) {
+            // the revision is allocated when appending the record
+            return;
+        }
         ResultSet rs = null;
         boolean succeeded = false;
 
@@ -513,9 +573,47 @@ public class JahiaDatabaseJournal extends JahiaAbstractJournal implements Databa
      * {@inheritDoc}
      */
     protected void doUnlock(boolean successful) {
+        if (nodeLevelLocking) {
+            return;
+        }
         endBatch(successful);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isNodeLevelLockingEnabled() {
+        return nodeLevelLocking;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * The nodes are locked by inserting them in the <code>LOCKS</code> table. If one of them is already locked by
+     * another change, the journal is synchronized and the lock attempted again. The journal is synchronized once more
+     * after the nodes are locked, so that the save sees the changes committed to them in the meantime.
+     */
+    @Override
+    public void lockNodes(Set<NodeId> ids) throws JournalException {
+        if (!nodeLevelLocking || ids == null || ids.isEmpty()) {
+            return;
+        }
+        nodeLocker.lockNodes(ids, new RetryOnExceptionStrategy(numberOfRetries, sleepTimeWaitingForLock),
+                () -> sync(false));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void unlockNodes(Set<NodeId> ids) throws JournalException {
+        if (!nodeLevelLocking || ids == null) {
+            return;
+        }
+        nodeLocker.unlockNodes(ids);
+    }
+
     private void startBatch() throws SQLException {
         if (lockLevel++ == 0) {
             conHelper.startBatch();
@@ -554,6 +652,9 @@ public class JahiaDatabaseJournal extends JahiaAbstractJournal implements Databa
      */
     @Override
     protected void appending(AppendRecord record) {
+        if (nodeLevelLocking) {
+            return;
+        }
         log.info("Creating revision: {}", lockedRevision);
         record.setRevision(lockedRevision);
     }
@@ -565,6 +666,10 @@ public class JahiaDatabaseJournal extends JahiaAbstractJournal implements Databa
      */
     protected void append(AppendRecord record, InputStream in, int length)
             throws JournalException {
+        if (nodeLevelLocking) {
+            appendWithNewRevision(record, in, length);
+            return;
+        }
 
         try {
             conHelper.exec(insertRevisionStmtSQL, record.getRevision(), getId(), record.getProducerId(),
@@ -576,10 +681,44 @@ public class JahiaDatabaseJournal extends JahiaAbstractJournal implements Databa
         }
     }
 
+    /**
+     * Allocates the revision of the record and appends it, in a transaction only locking the global revision for the
+     * time of the insert. Incrementing the global revision in the same transaction keeps the records visible to the
+     * other cluster nodes in revision order.
+     */
+    private void appendWithNewRevision(AppendRecord record, InputStream in, int length) throws JournalException {
+        ResultSet rs = null;
+        boolean succeeded = false;
+        try {
+            startBatch();
+        } catch (SQLException e) {
+            throw new JournalException("Unable to set autocommit to false.", e);
+        }
+        try {
+            conHelper.exec(updateGlobalStmtSQL);
+            rs = conHelper.exec(selectGlobalStmtSQL, null, false, 0);
+            if (!rs.next()) {
+                throw new JournalException("No revision available.");
+            }
+            lockedRevision = rs.getLong(1);
+            log.info("Creating revision: {}", lockedRevision);
+            record.setRevision(lockedRevision);
+            conHelper.exec(insertRevisionStmtSQL, lockedRevision, getId(), record.getProducerId(),
+                           new StreamWrapper(in, length));
+            succeeded = true;
+        } catch (SQLException e) {
+            throw new JournalException("Unable to append revision " + lockedRevision + ".", e);
+        } finally {
+            DbUtility.close(rs);
+            endBatch(succeeded);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
     public void close() {
+        super.close();
         if (janitorThread != null) {
             janitorThread.interrupt();
         }
@@ -628,6 +767,8 @@ public class JahiaDatabaseJournal extends JahiaAbstractJournal implements Databa
         selectRevisionsStmtSQL =
                 "select REVISION_ID, JOURNAL_ID, PRODUCER_ID, REVISION_DATA from "
                         + schemaObjectPrefix + DEFAULT_JOURNAL_TABLE + " where REVISION_ID > ? order by REVISION_ID";
+        selectMaxRevisionStmtSQL =
+                "select MAX(REVISION_ID) from " + schemaObjectPrefix + DEFAULT_JOURNAL_TABLE;
         updateGlobalStmtSQL =
                 "update " + schemaObjectPrefix + "GLOBAL_REVISION"
                         + " set REVISION_ID = REVISION_ID + 1";
@@ -710,6 +851,22 @@ public class JahiaDatabaseJournal extends JahiaAbstractJournal implements Databa
         return janitorNextRun.get(Calendar.HOUR_OF_DAY);
     }
 
+    public int getSyncPrefetchSize() {
+        return syncPrefetchSize;
+    }
+
+    public boolean isNodeLevelLocking() {
+        return nodeLevelLocking;
+    }
+
+    public int getSleepTimeWaitingForLock() {
+        return sleepTimeWaitingForLock;
+    }
+
+    public int getNumberOfRetries() {
+        return numberOfRetries;
+    }
+
     /**
      * Bean setters
      */
@@ -761,6 +918,36 @@ public class JahiaDatabaseJournal extends JahiaAbstractJournal implements Databa
         this.janitorSleep = sleep;
     }
 
+    /**
+     * Set the maximum number of journal records read ahead by a background thread while synchronizing, so that
+     * reading the records from the database overlaps with applying them. The records read ahead are kept in memory.
+     *
+     * @param syncPrefetchSize the number of records, <code>0</code> to disable reading ahead
+     */
+    public void setSyncPrefetchSize(int syncPrefetchSize) {
+        this.syncPrefetchSize = syncPrefetchSize;
+    }
+
+    /**
+     * Set whether the changes are locked at node level, in the <code>LOCKS</code> table, instead of locking the
+     * global revision for the whole save. Changes to distinct nodes can then be saved concurrently by the cluster
+     * nodes, the global revision being only locked while appending the record. All cluster nodes must use the same
+     * setting.
+     *
+     * @param nodeLevelLocking <code>true</code> to lock the changes at node level
+     */
+    public void setNodeLevelLocking(boolean nodeLevelLocking) {
+        this.nodeLevelLocking = nodeLevelLocking;
+    }
+
+    public void setSleepTimeWaitingForLock(int sleepTimeWaitingForLock) {
+        this.sleepTimeWaitingForLock = sleepTimeWaitingForLock;
+    }
+
+    public void setNumberOfRetries(int numberOfRetries) {
+        this.numberOfRetries = numberOfRetries;
+    }
+
     public void setJanitorFirstRunHourOfDay(int hourOfDay) {
         janitorNextRun = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
         if (janitorNextRun.get(Calendar.HOUR_OF_DAY) >= hourOfDay) {
@@ -101,7 +101,6 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.SQLIntegrityConstraintViolationException;
 import java.util.*;
 
 /**
@@ -234,15 +233,9 @@ public class JahiaJournal extends AbstractJournal implements DatabaseAware, Node
     private String updateLocalRevisionStmtSQL;
 
     /**
-     * SQL statement for updating the local revision of this cluster node.
+     * Locks the nodes in the <code>LOCKS</code> table.
      */
-
-    private String insertLockSQL;
-
-    /**
-     * SQL statement for updating the local revision of this cluster node.
-     */
-    private String deleteLockSQL;
+    private DatabaseNodeLocker nodeLocker;
 
     /**
      * Schema object prefix, bean property.
@@ -280,6 +273,8 @@ public class JahiaJournal extends AbstractJournal implements DatabaseAware, Node
             schemaObjectPrefix = conHelper.prepareDbIdentifier(schemaObjectPrefix); // make sure schemaObjectPrefix consists of legal name characters only
             buildSQLStatements();
             initInstanceRevisionAndJanitor();
+            nodeLocker = new DatabaseNodeLocker(conHelper, schemaObjectPrefix, getId());
+            nodeLocker.unlockAllNodes();
         } catch (Exception e) {
             throw new JournalException("Error when initalizing the journal", e);
         }
@@ -488,62 +483,12 @@ public class JahiaJournal extends AbstractJournal implements DatabaseAware, Node
 
     @Override
     public void lockNodes(Set<NodeId> ids) throws JournalException {
-        RetryOnExceptionStrategy retryStrategy = new RetryOnExceptionStrategy(numberOfRetries, sleepTimeWaitingForLock);
-        while (retryStrategy.canRetry()) {
-            try {
-                internalLockNodes(ids);
-                return;
-            } catch (SQLIntegrityConstraintViolationException e) {
-                // The meaning of the exception in this case is inability to insert a record into JR_J_LOCKS table
-                // due to primary key constraint violation, which means a node is currently locked by a concurrent process.
-                // We should wait until the lock is released.
-                log.debug("Cannot lock {} . Reason: {}", StringUtils.join(ids, ","), e.getMessage());
-                try {
-                    retryStrategy.onErrorOccured();
-                } catch (RetryStrategyException rsex) {
-                    throw new JournalException(rsex.getMessage(), rsex);
-                }
-                sync(false);
-            }
-        }
-    }
-
-    private void internalLockNodes(Set<NodeId> ids) throws JournalException, SQLIntegrityConstraintViolationException {
-
-        // Inserting IDs in a predefined order helps avoid potential database deadlock
-        // when one process inserts id1 then id2, and another one inserts id2 then id1 simultaneously.
-        ids = new TreeSet<>(ids);
-
-        boolean success = false;
-        startBatch();
-
-        try {
-            for (NodeId id : ids) {
-                log.debug("Lock {}", id);
-                conHelper.exec(insertLockSQL, id.toString(), getId());
-            }
-            success = true;
-        } catch (SQLIntegrityConstraintViolationException sicvEx) {
-            // The meaning of the exception in this case is inability to insert a record into JR_J_LOCKS table
-            // due to primary key constraint violation, which means a node is currently locked by a concurrent process.
-            // Let the invoker deal with this specific case.
-            throw sicvEx;
-        } catch (SQLException e) {
-            throw new JournalException(e.getMessage(), e);
-        } finally {
-            endBatch(success);
-        }
+        nodeLocker.lockNodes(ids, new RetryOnExceptionStrategy(numberOfRetries, sleepTimeWaitingForLock),
+                () -> sync(false));
     }
 
     public void unlockNodes(Set<NodeId> ids) throws JournalException {
-        try {
-            for (NodeId id : ids) {
-                log.debug("Unlock {}", id);
-                conHelper.exec(deleteLockSQL, new Object[]{id.toString()}, false, 0);
-            }
-        } catch (SQLException e) {
-            throw new JournalException("Unable to unlock nodes.", e);
-        }
+        nodeLocker.unlockNodes(ids);
     }
 
     private void startBatch() throws JournalException {
@@ -635,10 +580,6 @@ public class JahiaJournal extends AbstractJournal implements DatabaseAware, Node
         updateLocalRevisionStmtSQL =
                 "update " + schemaObjectPrefix + "LOCAL_REVISIONS "
                         + "set REVISION_ID = ? where JOURNAL_ID = ?";
-        insertLockSQL =
-                "insert into " + schemaObjectPrefix + "LOCKS " + "(NODE_ID, JOURNAL_ID) values (?,?)";
-        deleteLockSQL =
-                "delete from " + schemaObjectPrefix + "LOCKS where NODE_ID = ?";
 
     }
 
@@ -0,0 +1,131 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/Apache2 OR 2/JSEL
+ *
+ *     1/ Apache2
+ *     ==================================================================================
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.services.content.impl.jackrabbit;
+
+import org.apache.jackrabbit.core.journal.JournalException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Statistics of the synchronization of a {@link JahiaAbstractJournal} with the records appended by the other cluster
+ * nodes.
+ */
+public class JournalSyncStatistics implements JournalSyncStatisticsMBean {
+
+    private static final Logger log = LoggerFactory.getLogger(JournalSyncStatistics.class);
+
+    private final JahiaAbstractJournal journal;
+
+    private final AtomicLong synchronizedRecordCount = new AtomicLong();
+
+    private volatile int lastSyncRecordCount;
+
+    private volatile long lastSyncDuration;
+
+    private volatile long lastInSyncTime = System.currentTimeMillis();
+
+    JournalSyncStatistics(JahiaAbstractJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Records the outcome of a synchronization.
+     *
+     * @param count     the number of records read
+     * @param startTime the time the synchronization started
+     * @param complete  <code>true</code> if all available records were read
+     */
+    void synchronizedRecords(int count, long startTime, boolean complete) {
+        if (count > 0) {
+            synchronizedRecordCount.addAndGet(count);
+            lastSyncRecordCount = count;
+            lastSyncDuration = System.currentTimeMillis() - startTime;
+        }
+        if (complete) {
+            lastInSyncTime = startTime;
+        }
+    }
+
+    @Override
+    public long getLocalRevision() {
+        return journal.getMinimalRevision();
+    }
+
+    @Override
+    public long getLatestRevision() {
+        try {
+            return journal.getLatestRevision();
+        } catch (JournalException e) {
+            log.warn("Unable to read the latest revision of the journal due to {}", e.getMessage());
+            return -1L;
+        }
+    }
+
+    @Override
+    public long getRevisionLag() {
+        long latestRevision = getLatestRevision();
+        return latestRevision < 0 ? -1L : Math.max(0, latestRevision - getLocalRevision());
+    }
+
+    @Override
+    public long getTimeLag() {
+        return getRevisionLag() > 0 ? System.currentTimeMillis() - lastInSyncTime : 0;
+    }
+
+    @Override
+    public long getSynchronizedRecordCount() {
+        return synchronizedRecordCount.get();
+    }
+
+    @Override
+    public int getLastSyncRecordCount() {
+        return lastSyncRecordCount;
+    }
+
+    @Override
+    public long getLastSyncDuration() {
+        return lastSyncDuration;
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/Apache2 OR 2/JSEL
+ *
+ *     1/ Apache2
+ *     ==================================================================================
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.services.content.impl.jackrabbit;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.jackrabbit.core.journal.JournalException;
+import org.apache.jackrabbit.core.journal.ReadRecord;
+import org.apache.jackrabbit.core.journal.Record;
+import org.apache.jackrabbit.core.journal.RecordIterator;
+import org.apache.jackrabbit.spi.commons.conversion.NamePathResolver;
+import org.apache.jackrabbit.spi.commons.namespace.NamespaceResolver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import static org.jahia.services.content.impl.jackrabbit.DatabaseRecordIterator.*;
+
+/**
+ * Record iterator reading the journal records ahead in a background thread. The records are read from the result set
+ * and their data is fully loaded in memory by the reader thread, while the records already read are consumed by the
+ * synchronizing thread, in revision order. At most <code>prefetchSize</code> records are kept in memory.
+ */
+public class PrefetchingRecordIterator implements RecordIterator {
+
+    /**
+     * Logger.
+     */
+    private static Logger log = LoggerFactory.getLogger(PrefetchingRecordIterator.class);
+
+    /**
+     * Marker put in the queue once all records were read.
+     */
+    private static final Object END = new Object();
+
+    /**
+     * Underlying result set, only accessed by the reader thread.
+     */
+    private final ResultSet rs;
+
+    /**
+     * Namespace resolver.
+     */
+    private final NamespaceResolver resolver;
+
+    /**
+     * Name and Path resolver.
+     */
+    private final NamePathResolver npResolver;
+
+    /**
+     * Records read ahead, followed by the end marker or by the error which stopped the reader.
+     */
+    private final BlockingQueue<Object> queue;
+
+    private final Thread reader;
+
+    private volatile boolean closed;
+
+    /**
+     * Next element taken from the queue.
+     */
+    private Object next;
+
+    /**
+     * Create a new instance of this class and starts reading the records.
+     * @param rs the result set to iterate over
+     * @param resolver a namespace resolver
+     * @param npResolver a name path resolver
+     * @param prefetchSize maximum number of records read ahead
+     */
+    public PrefetchingRecordIterator(ResultSet rs, NamespaceResolver resolver, NamePathResolver npResolver,
+                                     int prefetchSize) {
+        this.rs = rs;
+        this.resolver = resolver;
+        this.npResolver = npResolver;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, prefetchSize) + 1);
+        this.reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                readRecords();
+            }
+        }, "Journal record reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean hasNext() {
+        if (next == null) {
+            try {
+                next = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("Interrupted while waiting for the next record.");
+                return false;
+            }
+        }
+        if (next instanceof Exception) {
+            String msg = "Error while moving to next record.";
+            log.error(msg, (Exception) next);
+            next = END;
+            return false;
+        }
+        return next != END;
+    }
+
+    /**
+     * Return the next record. If there are no more records, throws
+     * a <code>NoSuchElementException</code>.
+     *
+     * @return next record
+     * @throws NoSuchElementException if there are no more records
+     * @throws JournalException if another error occurs
+     */
+    @SuppressWarnings("java:S1130")
+    public Record nextRecord() throws NoSuchElementException, JournalException {
+        if (!hasNext()) {
+            String msg = "No current record.";
+            throw new NoSuchElementException(msg);
+        }
+        Record record = (Record) next;
+        next = null;
+        return record;
+    }
+
+    /**
+     * Stops the reader thread and closes the result set.
+     */
+    public void close() {
+        closed = true;
+        reader.interrupt();
+        queue.clear();
+        try {
+            reader.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void readRecords() {
+        Object last = END;
+        try {
+            while (!closed && rs.next()) {
+                long revision = rs.getLong(REVISION_COLUMN);
+                String journalId = rs.getString(JOURNAL_ID_COLUMN);
+                String producerId = rs.getString(PRODUCER_ID_COLUMN);
+                byte[] data;
+                try (InputStream in = rs.getBinaryStream(DATA_BLOB_COLUMN)) {
+                    data = in != null ? IOUtils.toByteArray(in) : new byte[0];
+                }
+                queue.put(new ReadRecord(journalId, producerId, revision,
+                        new DataInputStream(new ByteArrayInputStream(data)), data.length, resolver, npResolver));
+            }
+        } catch (InterruptedException e) {
+            // iterator closed
+            return;
+        } catch (SQLException | IOException e) {
+            last = e;
+        } finally {
+            try {
+                rs.close();
+            } catch (SQLException e) {
+                String msg = "Error while closing result set: " + e.getMessage();
+                log.warn(msg);
+            }
+        }
+        if (!closed) {
+            try {
+                queue.put(last);
+            } catch (InterruptedException e) {
+                // iterator closed
+            }
+        }
+    }
+}
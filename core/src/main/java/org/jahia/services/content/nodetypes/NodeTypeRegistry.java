@@ -95,6 +95,8 @@ public class NodeTypeRegistry implements NodeTypeManager {
     private final Lock readLock = readWriteLock.readLock();
     private final Lock writeLock = readWriteLock.writeLock();
 
+    private volatile long modificationCount;
+
     // Initialization on demand holder idiom: thread-safe singleton initialization
     private static class Holder {
         static final NodeTypeRegistry INSTANCE = new NodeTypeRegistry();
@@ -405,6 +407,7 @@ public class NodeTypeRegistry implements NodeTypeManager {
             }
 
             nodetypes.put(name, nodeType);
+            modificationCount++;
 
         } finally {
             writeLock.unlock();
@@ -417,6 +420,7 @@ public class NodeTypeRegistry implements NodeTypeManager {
             Set<ExtendedNodeType> mixins = mixinExtensions.computeIfAbsent(baseType, k -> new HashSet<>());
             mixins.remove(mixin);
             mixins.add(mixin);
+            modificationCount++;
         } finally {
             writeLock.unlock();
         }
@@ -462,6 +466,16 @@ public class NodeTypeRegistry implements NodeTypeManager {
         }
     }
 
+    /**
+     * Returns a counter incremented each time a node type or a mixin extension is registered or unregistered, so that
+     * the data computed from the definitions can be discarded when they change.
+     *
+     * @return the modification counter of the registry
+     */
+    public long getModificationCount() {
+        return modificationCount;
+    }
+
     public Map<ExtendedNodeType, Set<ExtendedNodeType>> getMixinExtensions() {
         readLock.lock();
         try {
@@ -503,6 +517,7 @@ public class NodeTypeRegistry implements NodeTypeManager {
     private void removeNodeType(Name name) {
         ExtendedNodeType ent = nodetypes.remove(name);
         if (ent != null) {
+            modificationCount++;
             // Remove type from supertype subtypes list and mixin extends list
             for (ExtendedNodeType type : ent.getDeclaredSupertypes()) {
                 if (type != null) {
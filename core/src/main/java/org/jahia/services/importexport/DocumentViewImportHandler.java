@@ -101,6 +101,7 @@ public class DocumentViewImportHandler extends BaseDocumentViewHandler implement
 
     private Locator documentLocator;
     private Resource archive;
+    private ImportArchive importArchive;
     private NoCloseZipInputStream zis;
     private ZipEntry nextEntry;
     private List<String> fileList = new ArrayList<String>();
@@ -524,7 +525,16 @@ public class DocumentViewImportHandler extends BaseDocumentViewHandler implement
     }
 
     private void uploadFile(Attributes atts, String decodedQName, String path, JCRNodeWrapper child) throws IOException, RepositoryException {
-        if (!expandImportedFilesOnDisk) {
+        if (!expandImportedFilesOnDisk && importArchive != null) {
+            String entryName = findContentInArchive();
+            if (entryName != null) {
+                try (InputStream is = importArchive.getInputStream(entryName)) {
+                    if (is != null) {
+                        uploadFile(atts, decodedQName, path, child, is);
+                    }
+                }
+            }
+        } else if (!expandImportedFilesOnDisk) {
             boolean contentFound = findContent();
             if (contentFound) {
                 uploadFile(atts, decodedQName, path, child, zis);
@@ -821,6 +831,22 @@ public class DocumentViewImportHandler extends BaseDocumentViewHandler implement
         return false;
     }
 
+    private String findContentInArchive() {
+        String path = pathes.peek();
+        if (path.endsWith("/jcr:content")) {
+            String[] p = Patterns.SLASH.split(path);
+            path = path.replace("/jcr:content", "/" + p[p.length - 2]);
+        } else {
+            path = JCRContentUtils.replaceColon(path);
+        }
+        String entryName = StringUtils.removeStart(baseFilesPath + path, "/");
+        if (!importArchive.contains(entryName) && path.startsWith("/content")) {
+            // Case of root node export - root node has been renamed to "content" during export
+            entryName = StringUtils.removeStart(baseFilesPath + path.substring("/content".length()), "/");
+        }
+        return importArchive.contains(entryName) ? entryName : null;
+    }
+
     private String findContentInExpandedPath() throws IOException {
         if (archive == null) {
             return null;
@@ -1038,4 +1064,13 @@ public class DocumentViewImportHandler extends BaseDocumentViewHandler implement
     public void setRemoveMixins(boolean removeMixins) {
         this.removeMixins = removeMixins;
     }
+
+    /**
+     * Sets the indexed archive the binaries are read from, by name, instead of scanning the archive stream for each file.
+     *
+     * @param importArchive the indexed import archive
+     */
+    public void setImportArchive(ImportArchive importArchive) {
+        this.importArchive = importArchive;
+    }
 }
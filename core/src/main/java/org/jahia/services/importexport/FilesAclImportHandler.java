@@ -79,6 +79,7 @@ public class FilesAclImportHandler extends DefaultHandler {
     private static Logger corruptedFilesLogger = org.slf4j.LoggerFactory.getLogger(FilesAclImportHandler.class.getName()+".CorruptedFiles");
 
     private Resource archive;
+    private ImportArchive importArchive;
     private NoCloseZipInputStream zis;
     private ZipEntry nextEntry;
     private List<String> fileList = new ArrayList<String>();
@@ -115,7 +116,9 @@ public class FilesAclImportHandler extends DefaultHandler {
 
             try {
                 boolean contentFound = false;
-                if(this.filePath != null){
+                if (importArchive != null) {
+                    content = importArchive.getInputStream(StringUtils.removeStart(JCRContentUtils.replaceColon(path), "/"));
+                } else if(this.filePath != null){
                     content = findExtractedContent(path);
                 } else {
                     contentFound = findContent(path);
@@ -458,4 +461,13 @@ public class FilesAclImportHandler extends DefaultHandler {
         }
         return null;
     }
+
+    /**
+     * Sets the indexed archive the binaries are read from, by name, instead of extracting or scanning the whole archive.
+     *
+     * @param importArchive the indexed import archive
+     */
+    public void setImportArchive(ImportArchive importArchive) {
+        this.importArchive = importArchive;
+    }
 }
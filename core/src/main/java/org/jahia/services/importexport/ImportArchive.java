@@ -0,0 +1,221 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/Apache2 OR 2/JSEL
+ *
+ *     1/ Apache2
+ *     ==================================================================================
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.services.importexport;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.filefilter.TrueFileFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Random access view on an import archive.
+ * <p>
+ * The archive is indexed once, from the ZIP central directory or by listing the expanded import folder, and the content of
+ * any entry can then be opened by its name without scanning the archive again. Entry names are normalized to use
+ * <code>/</code> as separator. Resources which are not backed by a file are copied once to a temporary file, which is
+ * deleted when the archive is closed.
+ */
+public class ImportArchive implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImportArchive.class);
+
+    private final ZipFile zipFile;
+    private final File tempFile;
+    private final Map<String, ZipArchiveEntry> zipEntries = new LinkedHashMap<>();
+    private final Map<String, File> directoryEntries = new LinkedHashMap<>();
+
+    private ImportArchive(File directory, File archiveFile, File tempFile) throws IOException {
+        this.tempFile = tempFile;
+        if (archiveFile != null) {
+            this.zipFile = new ZipFile(archiveFile);
+            for (Enumeration<ZipArchiveEntry> e = zipFile.getEntries(); e.hasMoreElements(); ) {
+                ZipArchiveEntry entry = e.nextElement();
+                zipEntries.putIfAbsent(entry.getName().replace('\\', '/'), entry);
+            }
+        } else {
+            this.zipFile = null;
+            List<File> files = new ArrayList<>(FileUtils.listFilesAndDirs(directory, TrueFileFilter.INSTANCE, TrueFileFilter.INSTANCE));
+            String prefix = directory.getPath() + File.separator;
+            for (File f : files) {
+                if (f.equals(directory) || !f.getPath().startsWith(prefix)) {
+                    continue;
+                }
+                String name = f.getPath().substring(prefix.length()).replace(File.separatorChar, '/');
+                directoryEntries.put(f.isDirectory() ? name + "/" : name, f);
+            }
+        }
+    }
+
+    /**
+     * Indexes the specified import archive.
+     *
+     * @param file the ZIP file or the expanded import folder (a non-readable {@link FileSystemResource})
+     * @return the indexed archive, which has to be closed by the caller
+     * @throws IOException in case the archive cannot be read
+     */
+    public static ImportArchive open(Resource file) throws IOException {
+        if (!file.isReadable() && file instanceof FileSystemResource) {
+            return new ImportArchive(file.getFile(), null, null);
+        }
+        File archiveFile = null;
+        try {
+            archiveFile = file.getFile();
+        } catch (IOException e) {
+            logger.debug("Resource {} is not available as a file", file);
+        }
+        if (archiveFile != null && archiveFile.isFile()) {
+            return new ImportArchive(null, archiveFile, null);
+        }
+
+        long timer = System.currentTimeMillis();
+        File temp = File.createTempFile("import", ".zip");
+        try {
+            try (InputStream is = file.getInputStream()) {
+                FileUtils.copyInputStreamToFile(is, temp);
+            }
+            logger.debug("Copied {} to {} in {} ms", file, temp, System.currentTimeMillis() - timer);
+            return new ImportArchive(null, temp, temp);
+        } catch (IOException | RuntimeException e) {
+            FileUtils.deleteQuietly(temp);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the normalized names of all entries, in archive order.
+     *
+     * @return the names of all entries
+     */
+    public Collection<String> getEntryNames() {
+        return Collections.unmodifiableSet(zipFile != null ? zipEntries.keySet() : directoryEntries.keySet());
+    }
+
+    /**
+     * Checks if the archive contains an entry with the specified name.
+     *
+     * @param name the normalized entry name
+     * @return <code>true</code> if the entry exists
+     */
+    public boolean contains(String name) {
+        return zipFile != null ? zipEntries.containsKey(name) : directoryEntries.containsKey(name);
+    }
+
+    /**
+     * Checks if the specified entry is a directory.
+     *
+     * @param name the normalized entry name
+     * @return <code>true</code> if the entry exists and is a directory
+     */
+    public boolean isDirectory(String name) {
+        if (zipFile != null) {
+            ZipArchiveEntry entry = zipEntries.get(name);
+            return entry != null && entry.isDirectory();
+        }
+        File f = directoryEntries.get(name);
+        return f != null && f.isDirectory();
+    }
+
+    /**
+     * Returns the uncompressed size of the specified entry, as stored in the central directory.
+     *
+     * @param name the normalized entry name
+     * @return the size of the entry, or -1 if it is unknown
+     */
+    public long getSize(String name) {
+        if (zipFile != null) {
+            ZipArchiveEntry entry = zipEntries.get(name);
+            return entry != null ? entry.getSize() : -1;
+        }
+        File f = directoryEntries.get(name);
+        return f != null ? f.length() : -1;
+    }
+
+    /**
+     * Opens the content of the specified entry. The returned stream has to be closed by the caller.
+     *
+     * @param name the normalized entry name
+     * @return the content of the entry, or <code>null</code> if the entry does not exist or is a directory
+     * @throws IOException in case the entry cannot be read
+     */
+    public InputStream getInputStream(String name) throws IOException {
+        if (zipFile != null) {
+            ZipArchiveEntry entry = zipEntries.get(name);
+            if (entry == null || entry.isDirectory()) {
+                return null;
+            }
+            return new BufferedInputStream(zipFile.getInputStream(entry));
+        }
+        File f = directoryEntries.get(name);
+        if (f == null || f.isDirectory()) {
+            return null;
+        }
+        return new BufferedInputStream(new FileInputStream(f));
+    }
+
+    /**
+     * @return the temporary copy of the archive, or <code>null</code> if the archive is read in place
+     */
+    File getTempFile() {
+        return tempFile;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (zipFile != null) {
+                zipFile.close();
+            }
+        } finally {
+            if (tempFile != null) {
+                FileUtils.deleteQuietly(tempFile);
+            }
+        }
+    }
+}
@@ -92,7 +92,6 @@ import org.jahia.utils.LanguageCodeConverters;
 import org.jahia.utils.Patterns;
 import org.jahia.utils.Url;
 import org.jahia.utils.xml.JahiaSAXParserFactory;
-import org.jahia.utils.zip.DirectoryZipInputStream;
 import org.jahia.utils.zip.DirectoryZipOutputStream;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -101,7 +100,6 @@ import org.quartz.JobDetail;
 import org.quartz.SchedulerException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.InputStreamResource;
 import org.springframework.core.io.Resource;
 import org.xml.sax.SAXException;
@@ -127,10 +125,13 @@ import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.text.SimpleDateFormat;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
@@ -171,8 +172,9 @@ public final class ImportExportBaseService extends JahiaService implements Impor
     private static final String DEFINITIONS_MAP = "definitions.map";
     private static final File EXPORT_PATH = new File(SettingsBean.getInstance().getJahiaExportsDiskPath());
     private static final FileCleaningTracker fileCleaningTracker = new FileCleaningTracker();
-    private static final HashSet<String> siteExportNodeTypesToIgnore = Sets.newHashSet("jnt:templatesFolder", "jnt:externalUser", "jnt:workflowTask", "jmix:noImportExport");
-    private static final HashSet<String> defaultExportNodeTypesToIgnore = Sets.newHashSet(Constants.JAHIANT_VIRTUALSITE, "jnt:workflowTask", "jmix:noImportExport");
+    // shared by the concurrent exports, never modified
+    private static final Set<String> siteExportNodeTypesToIgnore = ImmutableSet.of("jnt:templatesFolder", "jnt:externalUser", "jnt:workflowTask", "jmix:noImportExport", "rep:system");
+    private static final Set<String> defaultExportNodeTypesToIgnore = ImmutableSet.of(Constants.JAHIANT_VIRTUALSITE, "jnt:workflowTask", "jmix:noImportExport", "rep:system");
     private final long scannerInterval = SettingsBean.getInstance().getJahiaSiteImportScannerInterval();
     private JahiaSitesService sitesService;
     private JahiaFileWatcherService fileWatcherService;
@@ -181,6 +183,7 @@ public final class ImportExportBaseService extends JahiaService implements Impor
     private SchedulerService schedulerService;
     private boolean expandImportedFilesOnDisk;
     private String expandImportedFilesOnDiskPath;
+    private int exportSiteThreads = 1;
     private List<AttributeProcessor> attributeProcessors;
     private TemplatePackageRegistry templatePackageRegistry;
     private List<XMLContentTransformer> xmlContentTransformers;
@@ -301,6 +304,16 @@ public final class ImportExportBaseService extends JahiaService implements Impor
         this.expandImportedFilesOnDiskPath = expandImportedFilesOnDiskPath;
     }
 
+    /**
+     * Sets the number of sites exported concurrently by {@link #exportSites(OutputStream, Map, List)}, each of them in its
+     * own thread with its own sessions. A value lower than 2 exports the sites sequentially in the calling thread.
+     *
+     * @param exportSiteThreads the number of threads
+     */
+    public void setExportSiteThreads(int exportSiteThreads) {
+        this.exportSiteThreads = exportSiteThreads;
+    }
+
     /**
      * Returns a list of configured attribute processors for the import.
      *
@@ -479,6 +492,10 @@ public final class ImportExportBaseService extends JahiaService implements Impor
 
     private void exportSites(Map<String, Object> params, List<JCRSiteNode> sites, String serverDirectory, ZipOutputStream zout,
                              Set<String> externalReferences) throws IOException, RepositoryException, SAXException, TransformerException {
+        if (exportSiteThreads > 1 && sites.size() > 1) {
+            exportSitesInParallel(params, sites, serverDirectory, zout, externalReferences);
+            return;
+        }
         ZipEntry anEntry;
         for (JCRSiteNode jahiaSite : sites) {
             long startSiteExportTime = System.currentTimeMillis();
@@ -495,6 +512,123 @@ public final class ImportExportBaseService extends JahiaService implements Impor
         }
     }
 
+    /**
+     * Exports the sites concurrently, each one in a worker thread using its own sessions, opened for the current user.
+     * Unless the export goes to a server directory, each site archive is written to a temporary segment. The segments are
+     * then appended to the export in the order of the sites, as stored entries, because the site archives are already
+     * compressed.
+     */
+    private void exportSitesInParallel(final Map<String, Object> params, List<JCRSiteNode> sites, final String serverDirectory,
+                                       final ZipOutputStream zout, Set<String> externalReferences)
+            throws IOException, RepositoryException, SAXException, TransformerException {
+        final JCRSessionFactory sessionFactory = jcrStoreService.getSessionFactory();
+        final JahiaUser user = sessionFactory.getCurrentUser();
+        final Locale locale = sessionFactory.getCurrentLocale();
+        final int threads = Math.min(exportSiteThreads, sites.size());
+        logger.info("Exporting {} sites using {} threads", sites.size(), threads);
+
+        List<File> segments = new ArrayList<>(sites.size());
+        List<Set<String>> siteReferences = new ArrayList<>(sites.size());
+        List<Future<Long>> results = new ArrayList<>(sites.size());
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Site export " + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            for (JCRSiteNode jahiaSite : sites) {
+                final String sitePath = jahiaSite.getPath();
+                final File segment = serverDirectory == null ? File.createTempFile("exportSite-" + jahiaSite.getSiteKey(), ".zip") : null;
+                final Set<String> references = new HashSet<>();
+                segments.add(segment);
+                siteReferences.add(references);
+                results.add(executor.submit(() -> {
+                    sessionFactory.setCurrentUser(user);
+                    sessionFactory.setCurrentLocale(locale);
+                    try {
+                        JCRSiteNode site = (JCRSiteNode) sessionFactory.getCurrentUserSession().getNode(sitePath);
+                        return exportSiteSegment(site, zout, references, params, serverDirectory, segment);
+                    } finally {
+                        sessionFactory.closeAllSessions();
+                        sessionFactory.setCurrentUser(null);
+                        sessionFactory.setCurrentLocale(null);
+                    }
+                }));
+            }
+
+            for (int i = 0; i < sites.size(); i++) {
+                long crc = getSiteExportResult(results.get(i));
+                externalReferences.addAll(siteReferences.get(i));
+                File segment = segments.get(i);
+                if (segment != null) {
+                    ZipEntry anEntry = new ZipEntry(sites.get(i).getSiteKey() + ".zip");
+                    anEntry.setMethod(ZipEntry.STORED);
+                    anEntry.setSize(segment.length());
+                    anEntry.setCompressedSize(segment.length());
+                    anEntry.setCrc(crc);
+                    zout.putNextEntry(anEntry);
+                    Files.copy(segment.toPath(), zout);
+                    zout.closeEntry();
+                    FileUtils.deleteQuietly(segment);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+            for (File segment : segments) {
+                FileUtils.deleteQuietly(segment);
+            }
+        }
+    }
+
+    private long exportSiteSegment(JCRSiteNode site, OutputStream out, Set<String> externalReferences, Map<String, Object> params,
+                                   String serverDirectory, File segment)
+            throws IOException, RepositoryException, SAXException, TransformerException {
+        long startSiteExportTime = System.currentTimeMillis();
+        logger.info("Exporting site internal nodes {} content started", site.getName());
+        long crc = 0;
+        if (segment == null) {
+            // the site is written to its own folder, the output stream is not used
+            exportSite(site, out, externalReferences, params, serverDirectory + "/" + site.getSiteKey());
+        } else {
+            try (CheckedOutputStream segmentOut = new CheckedOutputStream(new BufferedOutputStream(new FileOutputStream(segment), 64 * 1024), new CRC32())) {
+                exportSite(site, segmentOut, externalReferences, params, null);
+                crc = segmentOut.getChecksum().getValue();
+            }
+        }
+        logger.info("Exporting site internal nodes {} ended in {} seconds", site.getName(), getDuration(startSiteExportTime));
+        return crc;
+    }
+
+    private long getSiteExportResult(Future<Long> result) throws IOException, RepositoryException, SAXException, TransformerException {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RepositoryException("Interrupted while exporting sites", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RepositoryException) {
+                throw (RepositoryException) cause;
+            } else if (cause instanceof SAXException) {
+                throw (SAXException) cause;
+            } else if (cause instanceof TransformerException) {
+                throw (TransformerException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RepositoryException(cause);
+        }
+    }
+
     private void exportReferences(Map<String, Object> params, String serverDirectory, ZipOutputStream zout, Set<String> externalReferences,
                                   JCRSessionWrapper session) throws RepositoryException, IOException {
         Set<JCRNodeWrapper> refs = new HashSet<>();
@@ -829,7 +963,9 @@ public final class ImportExportBaseService extends JahiaService implements Impor
         if (externalReferences != null) {
             exporter.setExternalReferences(externalReferences);
         }
-        typesToIgnore.add("rep:system");
+        if (!typesToIgnore.contains("rep:system")) {
+            typesToIgnore.add("rep:system");
+        }
         if (params.containsKey(INCLUDE_LIVE_EXPORT)) {
             List<String> l = new ArrayList<>(exporter.getPropertiestoIgnore());
             l.remove("jcr:uuid");
@@ -1128,8 +1264,9 @@ public final class ImportExportBaseService extends JahiaService implements Impor
 
         logger.info("Start analyzing import file {}", file);
         long timer = System.currentTimeMillis();
-        File expandedFolder = getFileList(file, sizes, fileList, false);
-        try {
+        File expandedFolder = null;
+        try (ImportArchive archive = ImportArchive.open(file)) {
+            expandedFolder = getFileList(file, archive, sizes, fileList, false);
             if (logger.isInfoEnabled()) {
                 logger.info("Done analyzing import file {} in {}", file, DateUtils.formatDurationWords(System.currentTimeMillis() - timer));
             }
@@ -1137,7 +1274,7 @@ public final class ImportExportBaseService extends JahiaService implements Impor
             Map<String, String> pathMapping = getRegisteredModulesPathMapping(session);
 
 
-            userProps = importUsersIfPresentInArchive(file, usersImportHandler, userProps, sizes);
+            userProps = importUsersIfPresentInArchive(archive, usersImportHandler, userProps, sizes);
 
             // Check if it is an 5.x or 6.1 import :
             for (Map.Entry<String, Long> entry : sizes.entrySet()) {
@@ -1147,16 +1284,16 @@ public final class ImportExportBaseService extends JahiaService implements Impor
                 }
             }
 
-            importSitePropertiesIfPresentInArchive(file, site, session, sizes);
+            importSitePropertiesIfPresentInArchive(archive, site, session, sizes);
 
             if (sizes.containsKey(REPOSITORY_XML)) {
-                importRepositoryDescriptorIfPresentInArchive(file, site, session, pathMapping);
+                importRepositoryDescriptorIfPresentInArchive(file, archive, site, session, pathMapping, fileList);
             } else {
                 // No repository descriptor - prepare to import files directly
                 pathMapping.put("/", "/sites/" + site.getSiteKey() + "/files/");
             }
 
-            catProps = importAdditionalFilesIfPresentInArchiveOrPerformLegacyImportIfNeeded(file, site, infos, legacyMappingFilePath, legacyDefinitionsFilePath, session, timerSite, categoriesImportHandler, legacyImport, catProps, sizes, fileList, pathMapping);
+            catProps = importAdditionalFilesIfPresentInArchiveOrPerformLegacyImportIfNeeded(file, archive, site, infos, legacyMappingFilePath, legacyDefinitionsFilePath, session, timerSite, categoriesImportHandler, legacyImport, catProps, sizes, fileList, pathMapping);
 
             categoriesImportHandler.setUuidProps(catProps);
             usersImportHandler.setUuidProps(userProps);
@@ -1180,7 +1317,7 @@ public final class ImportExportBaseService extends JahiaService implements Impor
     }
 
     @SuppressWarnings("java:S107")
-    private List<String[]> importAdditionalFilesIfPresentInArchiveOrPerformLegacyImportIfNeeded(Resource file, JahiaSite site, Map<Object, Object> infos, Resource legacyMappingFilePath, Resource legacyDefinitionsFilePath, JCRSessionWrapper session, long timerSite, CategoriesImportHandler categoriesImportHandler, boolean legacyImport, List<String[]> catProps, Map<String, Long> sizes, List<String> fileList, Map<String, String> pathMapping) throws IOException, RepositoryException {
+    private List<String[]> importAdditionalFilesIfPresentInArchiveOrPerformLegacyImportIfNeeded(Resource file, ImportArchive archive, JahiaSite site, Map<Object, Object> infos, Resource legacyMappingFilePath, Resource legacyDefinitionsFilePath, JCRSessionWrapper session, long timerSite, CategoriesImportHandler categoriesImportHandler, boolean legacyImport, List<String[]> catProps, Map<String, Long> sizes, List<String> fileList, Map<String, String> pathMapping) throws IOException, RepositoryException {
         NodeTypeRegistry reg = NodeTypeRegistry.getInstance();
         DefinitionsMapping mapping = null;
 
@@ -1188,37 +1325,34 @@ public final class ImportExportBaseService extends JahiaService implements Impor
         // and eventual plain file from 5.x imports
         if (!sizes.containsKey(REPOSITORY_XML) || sizes.containsKey(SITE_PROPERTIES) || sizes.containsKey(CATEGORIES_XML)
                 || sizes.containsKey(SITE_PERMISSIONS_XML) || sizes.containsKey(DEFINITIONS_CND) || sizes.containsKey(DEFINITIONS_MAP)) {
-            try (ZipInputStream zis = getZipInputStream(file)) {
-                ZipEntry zipentry;
-                while ((zipentry = zis.getNextEntry()) != null) {
-                    String name = zipentry.getName();
-                    if (name.indexOf('\\') > -1) {
-                        name = name.replace('\\', '/');
+            for (String name : archive.getEntryNames()) {
+                if (name.indexOf('/') > -1) {
+                    importBinaryFileFromOldSiteArchiveFormat(site, session, sizes, pathMapping, archive, name);
+                } else if (name.equals(CATEGORIES_XML)) {
+                    try (InputStream is = archive.getInputStream(name)) {
+                        catProps = importCategoriesAndGetUuidProps(is, categoriesImportHandler);
                     }
-                    if (name.indexOf('/') > -1) {
-                        importBinaryFileFromOldSiteArchiveFormat(site, session, sizes, pathMapping, zis, zipentry, name);
-                    } else if (name.equals(CATEGORIES_XML)) {
-                        catProps = importCategoriesAndGetUuidProps(zis, categoriesImportHandler);
-                    } else if (name.equals(DEFINITIONS_CND)) {
-                        reg = getSafeNodeTypeRegistryFromLegacyArchive(file, legacyImport, zis, zipentry);
-                    } else if (name.equals(DEFINITIONS_MAP)) {
-                        mapping = new DefinitionsMapping();
-                        mapping.load(zis);
-
+                } else if (name.equals(DEFINITIONS_CND)) {
+                    try (InputStream is = archive.getInputStream(name)) {
+                        reg = getSafeNodeTypeRegistryFromLegacyArchive(file, legacyImport, is, name);
+                    }
+                } else if (name.equals(DEFINITIONS_MAP)) {
+                    mapping = new DefinitionsMapping();
+                    try (InputStream is = archive.getInputStream(name)) {
+                        mapping.load(is);
                     }
-                    zis.closeEntry();
                 }
             }
         }
 
         // Import legacy content from 5.x and 6.x
         if (legacyImport) {
-            performLegacyImport(file, site, infos, legacyMappingFilePath, legacyDefinitionsFilePath, session, timerSite, fileList, reg, mapping);
+            performLegacyImport(file, archive, site, infos, legacyMappingFilePath, legacyDefinitionsFilePath, session, timerSite, fileList, reg, mapping);
         }
         return catProps;
     }
 
-    private NodeTypeRegistry getSafeNodeTypeRegistryFromLegacyArchive(Resource file, boolean legacyImport, ZipInputStream zis, ZipEntry zipentry) throws IOException {
+    private NodeTypeRegistry getSafeNodeTypeRegistryFromLegacyArchive(Resource file, boolean legacyImport, InputStream is, String entryName) throws IOException {
         NodeTypeRegistry reg;
         reg = new NodeTypeRegistry(); // this is fishy: a new instance is created here when NodeTypeRegistry is meant to be used as a singleton
         try {
@@ -1226,11 +1360,11 @@ public final class ImportExportBaseService extends JahiaService implements Impor
                 reg.addDefinitionsFile(entry.getValue(), entry.getKey());
             }
             if (legacyImport) {
-                JahiaCndReaderLegacy r = new JahiaCndReaderLegacy(new InputStreamReader(zis, StandardCharsets.UTF_8), zipentry.getName(),
+                JahiaCndReaderLegacy r = new JahiaCndReaderLegacy(new InputStreamReader(is, StandardCharsets.UTF_8), entryName,
                         file.getURL().getPath(), reg);
                 r.parse();
             } else {
-                reg.addDefinitionsFile(new InputStreamResource(zis, zipentry.getName()), file.getURL().getPath());
+                reg.addDefinitionsFile(new InputStreamResource(is, entryName), file.getURL().getPath());
             }
         } catch (RepositoryException | ParseException e) {
             logger.error(e.getMessage(), e);
@@ -1238,16 +1372,16 @@ public final class ImportExportBaseService extends JahiaService implements Impor
         return reg;
     }
 
-    private void importBinaryFileFromOldSiteArchiveFormat(JahiaSite site, JCRSessionWrapper session, Map<String, Long> sizes, Map<String, String> pathMapping, ZipInputStream zis, ZipEntry zipentry, String name) throws RepositoryException {
+    private void importBinaryFileFromOldSiteArchiveFormat(JahiaSite site, JCRSessionWrapper session, Map<String, Long> sizes, Map<String, String> pathMapping, ImportArchive archive, String entryName) throws RepositoryException {
         if (!sizes.containsKey(REPOSITORY_XML) && !sizes.containsKey(FILESACL_XML)) {
             // No repository descriptor - Old import format only
-            name = convertOldEntryName(pathMapping, name);
-            if (!zipentry.isDirectory()) {
-                try {
+            String name = convertOldEntryName(pathMapping, entryName);
+            if (!archive.isDirectory(entryName)) {
+                try (InputStream is = archive.getInputStream(entryName)) {
                     String filename = name.substring(name.lastIndexOf('/') + 1);
-                    ensureFile(session, name, zis, JCRContentUtils.getMimeType(filename), site);
+                    ensureFile(session, name, is, JCRContentUtils.getMimeType(filename), site);
                 } catch (Exception e) {
-                    logger.error("Cannot upload file " + zipentry.getName(), e);
+                    logger.error("Cannot upload file " + entryName, e);
                 }
             } else {
                 ensureDir(session, name, site);
@@ -1280,73 +1414,57 @@ public final class ImportExportBaseService extends JahiaService implements Impor
         return name;
     }
 
-    private void importRepositoryDescriptorIfPresentInArchive(Resource file, JahiaSite site, JCRSessionWrapper session, Map<String, String> pathMapping) throws IOException, RepositoryException {
-        long timer;
+    private void importRepositoryDescriptorIfPresentInArchive(Resource file, ImportArchive archive, JahiaSite site, JCRSessionWrapper session, Map<String, String> pathMapping, List<String> fileList) throws IOException, RepositoryException {
         // Parse import file to detect sites
-        try (ZipInputStream zis = getZipInputStream(file)) {
-            ZipEntry zipentry;
-            while ((zipentry = zis.getNextEntry()) != null) {
-                String name = zipentry.getName();
-                if (name.equals(REPOSITORY_XML)) {
-                    timer = System.currentTimeMillis();
-                    logger.info("Start importing {}", REPOSITORY_XML);
-
-                    DocumentViewValidationHandler h = new DocumentViewValidationHandler();
-                    h.setSession(session);
-                    List<ImportValidator> validators = new ArrayList<>();
-                    SitesValidator sitesValidator = new SitesValidator();
-                    validators.add(sitesValidator);
-                    h.setValidators(validators);
-                    handleImport(zis, h, name);
-
-                    Map<String, Properties> sites = ((SitesValidatorResult) sitesValidator.getResult()).getSitesProperties();
-                    for (String s : sites.keySet()) {
-                        // Only the first site returned is mapped (if its not the systemsite, which is always the same key)
-                        if (!s.equals("systemsite") && !site.getSiteKey().equals("systemsite")) {
-                            // Map to the new sitekey
-                            pathMapping.put("/sites/" + s + "/", "/sites/" + site.getSiteKey() + "/");
-                            break;
-                        }
+        try (InputStream is = archive.getInputStream(REPOSITORY_XML)) {
+            if (is != null) {
+                long timer = System.currentTimeMillis();
+                logger.info("Start importing {}", REPOSITORY_XML);
+
+                DocumentViewValidationHandler h = new DocumentViewValidationHandler();
+                h.setSession(session);
+                List<ImportValidator> validators = new ArrayList<>();
+                SitesValidator sitesValidator = new SitesValidator();
+                validators.add(sitesValidator);
+                h.setValidators(validators);
+                handleImport(is, h, REPOSITORY_XML);
+
+                Map<String, Properties> sites = ((SitesValidatorResult) sitesValidator.getResult()).getSitesProperties();
+                for (String s : sites.keySet()) {
+                    // Only the first site returned is mapped (if its not the systemsite, which is always the same key)
+                    if (!s.equals("systemsite") && !site.getSiteKey().equals("systemsite")) {
+                        // Map to the new sitekey
+                        pathMapping.put("/sites/" + s + "/", "/sites/" + site.getSiteKey() + "/");
+                        break;
                     }
+                }
 
-                    if (logger.isInfoEnabled()) {
-                        logger.info("Done importing " + REPOSITORY_XML + " in {}",
-                                DateUtils.formatDurationWords(System.currentTimeMillis() - timer));
-                    }
-                    break;
+                if (logger.isInfoEnabled()) {
+                    logger.info("Done importing " + REPOSITORY_XML + " in {}",
+                            DateUtils.formatDurationWords(System.currentTimeMillis() - timer));
                 }
-                zis.closeEntry();
             }
         }
 
-        importZip(null, file, DocumentViewImportHandler.ROOT_BEHAVIOUR_IGNORE, session, Sets.newHashSet(USERS_XML, CATEGORIES_XML), true);
+        importZip(null, file, archive, fileList, DocumentViewImportHandler.ROOT_BEHAVIOUR_IGNORE, session, Sets.newHashSet(USERS_XML, CATEGORIES_XML), true);
     }
 
-    private void importSitePropertiesIfPresentInArchive(Resource file, JahiaSite site, JCRSessionWrapper session, Map<String, Long> sizes) throws IOException {
+    private void importSitePropertiesIfPresentInArchive(ImportArchive archive, JahiaSite site, JCRSessionWrapper session, Map<String, Long> sizes) throws IOException {
         if (sizes.containsKey(SITE_PROPERTIES)) {
-            try (ZipInputStream zis = getZipInputStream(file)) {
-                ZipEntry zipentry;
-                while ((zipentry = zis.getNextEntry()) != null) {
-                    if (zipentry.getName().equals(SITE_PROPERTIES)) {
-                        importSiteProperties(zis, site, session);
-                        break;
-                    }
-                    zis.closeEntry();
+            try (InputStream is = archive.getInputStream(SITE_PROPERTIES)) {
+                if (is != null) {
+                    importSiteProperties(is, site, session);
                 }
             }
         }
     }
 
-    private List<String[]> importUsersIfPresentInArchive(Resource file, UsersImportHandler usersImportHandler, List<String[]> userProps, Map<String, Long> sizes) throws IOException {
+    private List<String[]> importUsersIfPresentInArchive(ImportArchive archive, UsersImportHandler usersImportHandler, List<String[]> userProps, Map<String, Long> sizes) throws IOException {
         if (sizes.containsKey(USERS_XML)) {
             // Import users first
-            try (ZipInputStream zis = getZipInputStream(file)) {
-                ZipEntry zipentry;
-                while ((zipentry = zis.getNextEntry()) != null) {
-                    if (zipentry.getName().equals(USERS_XML)) {
-                        userProps = importUsers(zis, usersImportHandler);
-                        break;
-                    }
+            try (InputStream is = archive.getInputStream(USERS_XML)) {
+                if (is != null) {
+                    userProps = importUsers(is, usersImportHandler);
                 }
             }
         }
@@ -1363,7 +1481,7 @@ public final class ImportExportBaseService extends JahiaService implements Impor
     }
 
     @SuppressWarnings({"java:S107", "java:S3776"})
-    private void performLegacyImport(Resource file, JahiaSite site, Map<Object, Object> infos, Resource legacyMappingFilePath, Resource legacyDefinitionsFilePath, JCRSessionWrapper session, long timerSite, List<String> fileList, NodeTypeRegistry reg, DefinitionsMapping mapping) throws IOException, RepositoryException {
+    private void performLegacyImport(Resource file, ImportArchive archive, JahiaSite site, Map<Object, Object> infos, Resource legacyMappingFilePath, Resource legacyDefinitionsFilePath, JCRSessionWrapper session, long timerSite, List<String> fileList, NodeTypeRegistry reg, DefinitionsMapping mapping) throws IOException, RepositoryException {
         long timerLegacy = System.currentTimeMillis();
         final String originatingJahiaRelease = (String) infos.get("originatingJahiaRelease");
         logger.info("Start legacy import, source version is {}", originatingJahiaRelease);
@@ -1379,68 +1497,53 @@ public final class ImportExportBaseService extends JahiaService implements Impor
         // Old import
         JCRNodeWrapper siteFolder = session.getNode("/sites/" + site.getSiteKey());
 
-        ZipInputStream zis = new NoCloseZipInputStream(new BufferedInputStream(file.getInputStream()));
-        try {
-            int legacyImportHandlerCtnId = 1;
-            while (true) {
-                ZipEntry zipentry = zis.getNextEntry();
-                if (zipentry == null)
-                    break;
-                String name = zipentry.getName();
-                if (name.equals(FILESACL_XML)) {
-                    logger.info("Importing file " + FILESACL_XML);
-                    importFilesAcl(site, file, zis, mapping, fileList);
-                } else if (name.startsWith("export")) {
-                    logger.info("Importing file {}", name);
-                    String languageCode;
-                    if (name.indexOf('_') != -1) {
-                        languageCode = name.substring(7, name.lastIndexOf('.'));
-                    } else {
-                        languageCode = site.getLanguagesAsLocales().iterator().next().toString();
-                    }
-                    zipentry.getSize();
-
-                    LegacyImportHandler importHandler = new LegacyImportHandler(session, siteFolder, reg, mapping, LanguageCodeConverters.languageCodeToLocale(languageCode), infos != null ? originatingJahiaRelease : null, legacyPidMappingTool, legacyImportHandlerCtnId);
-                    Map<String, List<String>> references = new LinkedHashMap<>();
-                    importHandler.setReferences(references);
+        int legacyImportHandlerCtnId = 1;
+        for (String name : archive.getEntryNames()) {
+            if (name.equals(FILESACL_XML)) {
+                logger.info("Importing file " + FILESACL_XML);
+                try (InputStream is = archive.getInputStream(name)) {
+                    importFilesAcl(site, file, archive, is, mapping, fileList);
+                }
+            } else if (name.startsWith("export")) {
+                logger.info("Importing file {}", name);
+                String languageCode;
+                if (name.indexOf('_') != -1) {
+                    languageCode = name.substring(7, name.lastIndexOf('.'));
+                } else {
+                    languageCode = site.getLanguagesAsLocales().iterator().next().toString();
+                }
 
-                    InputStream documentInput = getDocumentInput(file, site, timerSite, zis, name, languageCode);
+                LegacyImportHandler importHandler = new LegacyImportHandler(session, siteFolder, reg, mapping, LanguageCodeConverters.languageCodeToLocale(languageCode), infos != null ? originatingJahiaRelease : null, legacyPidMappingTool, legacyImportHandlerCtnId);
+                Map<String, List<String>> references = new LinkedHashMap<>();
+                importHandler.setReferences(references);
 
+                try (InputStream documentInput = getDocumentInput(archive, site, timerSite, name, languageCode)) {
                     handleImport(documentInput, importHandler, name);
-                    legacyImportHandlerCtnId = importHandler.getCtnId();
-                    ReferencesHelper.resolveCrossReferences(session, references);
-                    siteFolder.getSession().save(JCRObservationManager.IMPORT);
                 }
-                zis.closeEntry();
+                legacyImportHandlerCtnId = importHandler.getCtnId();
+                ReferencesHelper.resolveCrossReferences(session, references);
+                siteFolder.getSession().save(JCRObservationManager.IMPORT);
             }
-            ReferencesHelper.resolveReferencesKeeper(session);
-            siteFolder.getSession().save(JCRObservationManager.IMPORT);
-        } finally {
-            closeInputStream(zis);
         }
+        ReferencesHelper.resolveReferencesKeeper(session);
+        siteFolder.getSession().save(JCRObservationManager.IMPORT);
         if (logger.isInfoEnabled()) {
             logger.info("Done legacy import in {}", DateUtils.formatDurationWords(System.currentTimeMillis() - timerLegacy));
         }
     }
 
-    private InputStream getDocumentInput(Resource file, JahiaSite site, long timerSite, ZipInputStream zis, String name, String languageCode) throws IOException {
-        InputStream documentInput = zis;
+    private InputStream getDocumentInput(ImportArchive archive, JahiaSite site, long timerSite, String name, String languageCode) throws IOException {
+        InputStream documentInput = archive.getInputStream(name);
         if (this.xmlContentTransformers != null && !this.xmlContentTransformers.isEmpty()) {
-            documentInput = new ZipInputStream(file.getInputStream());
-            while (!name.equals(((ZipInputStream) documentInput).getNextEntry().getName())) ;
-            byte[] buffer = new byte[2048];
             final File tmpDirectoryForSite = new File(new File(System.getProperty("java.io.tmpdir"), "jahia-migration"),
                     FastDateFormat.getInstance("yyyy_MM_dd-HH_mm_ss_SSS").format(timerSite) + "_" + site.getSiteKey());
             tmpDirectoryForSite.mkdirs();
             File document = new File(tmpDirectoryForSite, "export_" + languageCode + "_00_extracted.xml");
-            try (final OutputStream output = new BufferedOutputStream(new FileOutputStream(document), 2048)) {
-                int count = 0;
-                while ((count = documentInput.read(buffer, 0, 2048)) > 0) {
-                    output.write(buffer, 0, count);
-                }
-                output.flush();
+            try {
+                FileUtils.copyInputStreamToFile(documentInput, document);
+            } finally {
+                documentInput.close();
             }
-            documentInput.close();
             for (XMLContentTransformer xct : xmlContentTransformers) {
                 document = xct.transform(document, tmpDirectoryForSite);
             }
@@ -1620,36 +1723,11 @@ public final class ImportExportBaseService extends JahiaService implements Impor
         logger.info("Done loading properties for site {} in {}", site.getSiteKey(), DateUtils.formatDurationWords(System.currentTimeMillis() - timer));
     }
 
-    private void importFilesAcl(JahiaSite site, Resource file, InputStream is, DefinitionsMapping mapping, List<String> fileList) {
-        Map<String, File> filePath = new HashMap<>();
-        File temp = null;
-        try {
-            Path tempPath = Files.createTempDirectory("migration");
-            temp = tempPath.toFile();
-            ZipInputStream zis = getZipInputStream(file);
-            try {
-                ZipEntry zipentry;
-                while ((zipentry = zis.getNextEntry()) != null) {
-                    String fileName = zipentry.getName();
-                    if (!zipentry.isDirectory()) {
-                        fileName = fileName.replace('\\', '/');
-                        File newFile = new File(temp, fileName);
-                        newFile.getParentFile().mkdirs();
-                        FileUtils.copyInputStreamToFile(zis, newFile);
-                        filePath.put("/" + fileName, newFile);
-                    }
-                    zis.closeEntry();
-                }
-            } finally {
-                closeInputStream(zis);
-            }
-
-            handleImport(is, new FilesAclImportHandler(site, mapping, file, fileList, filePath), file.getFilename());
-        } catch (IOException e) {
-            logger.error("Cannot extract zip", e);
-        } finally {
-            FileUtils.deleteQuietly(temp);
-        }
+    private void importFilesAcl(JahiaSite site, Resource file, ImportArchive archive, InputStream is, DefinitionsMapping mapping, List<String> fileList) {
+        // binaries are read directly from the indexed archive, no need to extract them first
+        FilesAclImportHandler filesAclImportHandler = new FilesAclImportHandler(site, mapping, file, fileList, null);
+        filesAclImportHandler.setImportArchive(archive);
+        handleImport(is, filesAclImportHandler, file.getFilename());
     }
 
     @SuppressWarnings("java:S3776")
@@ -2051,184 +2129,155 @@ public final class ImportExportBaseService extends JahiaService implements Impor
     @SuppressWarnings("java:S3776")
     public void importZip(String parentNodePath, Resource file, int rootBehaviour, final JCRSessionWrapper session, Set<String> filesToIgnore, boolean useReferenceKeeper)
             throws IOException, RepositoryException {
+        Map<String, Long> sizes = new HashMap<>();
+        List<String> fileList = new ArrayList<>();
+
+        File expandedFolder = null;
+        try (ImportArchive archive = ImportArchive.open(file)) {
+            expandedFolder = getFileList(file, archive, sizes, fileList, false);
+            importZip(parentNodePath, file, archive, fileList, rootBehaviour, session, filesToIgnore, useReferenceKeeper);
+        } finally {
+            cleanFilesList(expandedFolder);
+        }
+    }
+
+    @SuppressWarnings("java:S3776")
+    private void importZip(String parentNodePath, Resource file, ImportArchive archive, List<String> fileList, int rootBehaviour, final JCRSessionWrapper session, Set<String> filesToIgnore, boolean useReferenceKeeper)
+            throws IOException, RepositoryException {
         long timer = System.currentTimeMillis();
         if (filesToIgnore == null) {
             filesToIgnore = Collections.<String>emptySet();
         }
         logger.info("Start importing file {} into path {} ", file, parentNodePath != null ? parentNodePath : "/");
 
-        Map<String, Long> sizes = new HashMap<>();
-        List<String> fileList = new ArrayList<>();
-
         Map<String, List<String>> references = new HashMap<>();
 
-        File expandedFolder = getFileList(file, sizes, fileList, false);
-        try {
-            ZipInputStream zis;
+        Map<String, String> pathMapping = getRegisteredModulesPathMapping(session);
 
-            Map<String, String> pathMapping = getRegisteredModulesPathMapping(session);
+        boolean importLive = archive.contains(LIVE_REPOSITORY_XML);
 
-            boolean importLive = sizes.containsKey(LIVE_REPOSITORY_XML);
+        List<String> liveUuids = null;
+        if (importLive && !filesToIgnore.contains(LIVE_REPOSITORY_XML)) {
+            // Import live content
+            try (InputStream is = archive.getInputStream(LIVE_REPOSITORY_XML)) {
+                long timerLive = System.currentTimeMillis();
+                logger.info("Start importing " + LIVE_REPOSITORY_XML);
 
-            List<String> liveUuids = null;
-            if (importLive) {
-                // Import live content
-                zis = getZipInputStream(file);
-                try {
-                    while (true) {
-                        ZipEntry zipentry = zis.getNextEntry();
-                        if (zipentry == null) {
-                            break;
-                        }
-                        String name = zipentry.getName();
-                        if (name.equals(LIVE_REPOSITORY_XML) && !filesToIgnore.contains(name)) {
-                            long timerLive = System.currentTimeMillis();
-                            logger.info("Start importing " + LIVE_REPOSITORY_XML);
-
-                            final DocumentViewImportHandler documentViewImportHandler = getDocumentViewImportHandlerForLiveWorkspace(parentNodePath, file, rootBehaviour, session, fileList, references, zis);
-
-                            if (rootBehaviour == DocumentViewImportHandler.ROOT_BEHAVIOUR_RENAME) {
-                                // Use path mapping to get new name
-                                rootBehaviour = DocumentViewImportHandler.ROOT_BEHAVIOUR_REPLACE;
-                            }
-
-                            logger.debug("Resolving cross-references for " + LIVE_REPOSITORY_XML);
+                final DocumentViewImportHandler documentViewImportHandler = getDocumentViewImportHandlerForLiveWorkspace(parentNodePath, file, archive, rootBehaviour, session, fileList, references, is);
 
-                            ReferencesHelper.resolveCrossReferences(session, references, useReferenceKeeper, true);
+                if (rootBehaviour == DocumentViewImportHandler.ROOT_BEHAVIOUR_RENAME) {
+                    // Use path mapping to get new name
+                    rootBehaviour = DocumentViewImportHandler.ROOT_BEHAVIOUR_REPLACE;
+                }
 
-                            logger.debug("Saving JCR session for " + LIVE_REPOSITORY_XML);
+                logger.debug("Resolving cross-references for " + LIVE_REPOSITORY_XML);
 
-                            session.save(JCRObservationManager.IMPORT);
+                ReferencesHelper.resolveCrossReferences(session, references, useReferenceKeeper, true);
 
-                            liveUuids = documentViewImportHandler.getUuids();
+                logger.debug("Saving JCR session for " + LIVE_REPOSITORY_XML);
 
-                            logger.debug("Publishing...");
+                session.save(JCRObservationManager.IMPORT);
 
-                            final JCRPublicationService publicationService = ServicesRegistry.getInstance().getJCRPublicationService();
-                            final List<String> toPublish = documentViewImportHandler.getUuids();
+                liveUuids = documentViewImportHandler.getUuids();
 
-                            JCRObservationManager.doWithOperationType(null, JCRObservationManager.IMPORT, new JCRCallback<Object>() {
-                                public Object doInJCR(JCRSessionWrapper session) throws RepositoryException {
-                                    publicationService.publish(toPublish, Constants.EDIT_WORKSPACE, Constants.LIVE_WORKSPACE, false, false, null);
-                                    return null;
-                                }
-                            });
+                logger.debug("Publishing...");
 
-                            logger.debug("publishing done");
+                final JCRPublicationService publicationService = ServicesRegistry.getInstance().getJCRPublicationService();
+                final List<String> toPublish = documentViewImportHandler.getUuids();
 
-                            String label = "published_at_" + new SimpleDateFormat("yyyy_MM_dd_HH_mm_ss").format(Calendar.getInstance().getTime());
-                            JCRVersionService.getInstance().addVersionLabel(toPublish, label, Constants.LIVE_WORKSPACE);
+                JCRObservationManager.doWithOperationType(null, JCRObservationManager.IMPORT, new JCRCallback<Object>() {
+                    public Object doInJCR(JCRSessionWrapper session) throws RepositoryException {
+                        publicationService.publish(toPublish, Constants.EDIT_WORKSPACE, Constants.LIVE_WORKSPACE, false, false, null);
+                        return null;
+                    }
+                });
 
-                            logger.info("Done importing " + LIVE_REPOSITORY_XML + " in {}", DateUtils.formatDurationWords(System.currentTimeMillis() - timerLive));
+                logger.debug("publishing done");
 
-                            break;
-                        }
-                        zis.closeEntry();
+                String label = "published_at_" + new SimpleDateFormat("yyyy_MM_dd_HH_mm_ss").format(Calendar.getInstance().getTime());
+                JCRVersionService.getInstance().addVersionLabel(toPublish, label, Constants.LIVE_WORKSPACE);
 
-                    }
-                } catch (RepositoryException e) {
-                    throw e;
-                } catch (Exception e) {
-                    logger.error("Cannot import", e);
-                } finally {
-                    closeInputStream(zis);
-                }
+                logger.info("Done importing " + LIVE_REPOSITORY_XML + " in {}", DateUtils.formatDurationWords(System.currentTimeMillis() - timerLive));
+            } catch (RepositoryException e) {
+                throw e;
+            } catch (Exception e) {
+                logger.error("Cannot import", e);
             }
+        }
 
-            importRepositoryContent(parentNodePath, file, rootBehaviour, session, filesToIgnore, fileList, references, importLive, liveUuids);
+        importRepositoryContent(parentNodePath, file, archive, rootBehaviour, session, filesToIgnore, fileList, references, importLive, liveUuids);
 
-            // during import/export, never try to resolve the references between templates and site.
-            resolveReferences(session, useReferenceKeeper, references);
+        // during import/export, never try to resolve the references between templates and site.
+        resolveReferences(session, useReferenceKeeper, references);
 
-            if (importLive) {
-                importUserGeneratedContent(parentNodePath, file, rootBehaviour, fileList, pathMapping);
-            }
-        } finally {
-            cleanFilesList(expandedFolder);
+        if (importLive) {
+            importUserGeneratedContent(parentNodePath, file, archive, rootBehaviour, fileList, pathMapping);
         }
         if (logger.isInfoEnabled()) {
             logger.info("Done importing file {} in {}", file, DateUtils.formatDurationWords(System.currentTimeMillis() - timer));
         }
     }
 
-    private void importUserGeneratedContent(String parentNodePath, Resource file, int rootBehaviour, List<String> fileList, Map<String, String> pathMapping) throws IOException {
-        ZipInputStream zis;
+    private void importUserGeneratedContent(String parentNodePath, Resource file, ImportArchive archive, int rootBehaviour, List<String> fileList, Map<String, String> pathMapping) throws IOException {
+        if (jcrStoreService.getSessionFactory().getCurrentUser() == null) {
+            return;
+        }
         // Import user generated content
-        zis = getZipInputStream(file);
-        try {
-            while (true) {
-                ZipEntry zipentry = zis.getNextEntry();
-                if (zipentry == null) {
-                    break;
-                }
-                String name = zipentry.getName();
-                if (name.equals(LIVE_REPOSITORY_XML) && jcrStoreService.getSessionFactory().getCurrentUser() != null) {
-                    long timerUGC = System.currentTimeMillis();
-                    logger.info("Start importing user generated content");
-                    JCRSessionWrapper liveSession = jcrStoreService.getSessionFactory().getCurrentUserSession(
-                            "live", null, null);
-                    DocumentViewImportHandler documentViewImportHandler = new DocumentViewImportHandler(
-                            liveSession, parentNodePath, file, fileList);
-
-                    documentViewImportHandler.setImportUserGeneratedContent(true);
-                    documentViewImportHandler.setRootBehavior(rootBehaviour);
-                    documentViewImportHandler.setBaseFilesPath("/live-content");
-                    documentViewImportHandler.setAttributeProcessors(attributeProcessors);
-                    liveSession.getPathMapping().putAll(pathMapping);
-                    handleImport(zis, documentViewImportHandler, LIVE_REPOSITORY_XML);
-
-                    logger.debug("Saving JCR session for UGC");
-
-                    liveSession.save(JCRObservationManager.IMPORT);
-                    if (logger.isInfoEnabled()) {
-                        logger.info("Done importing user generated content in {}",
-                                DateUtils.formatDurationWords(System.currentTimeMillis() - timerUGC));
-                    }
-                    break;
-                }
-                zis.closeEntry();
-
+        try (InputStream is = archive.getInputStream(LIVE_REPOSITORY_XML)) {
+            long timerUGC = System.currentTimeMillis();
+            logger.info("Start importing user generated content");
+            JCRSessionWrapper liveSession = jcrStoreService.getSessionFactory().getCurrentUserSession(
+                    "live", null, null);
+            DocumentViewImportHandler documentViewImportHandler = new DocumentViewImportHandler(
+                    liveSession, parentNodePath, file, fileList);
+
+            documentViewImportHandler.setImportArchive(archive);
+            documentViewImportHandler.setImportUserGeneratedContent(true);
+            documentViewImportHandler.setRootBehavior(rootBehaviour);
+            documentViewImportHandler.setBaseFilesPath("/live-content");
+            documentViewImportHandler.setAttributeProcessors(attributeProcessors);
+            liveSession.getPathMapping().putAll(pathMapping);
+            handleImport(is, documentViewImportHandler, LIVE_REPOSITORY_XML);
+
+            logger.debug("Saving JCR session for UGC");
+
+            liveSession.save(JCRObservationManager.IMPORT);
+            if (logger.isInfoEnabled()) {
+                logger.info("Done importing user generated content in {}",
+                        DateUtils.formatDurationWords(System.currentTimeMillis() - timerUGC));
             }
         } catch (Exception e) {
             logger.error("Cannot import", e);
-        } finally {
-            closeInputStream(zis);
         }
     }
 
     @SuppressWarnings({"java:S107", "java:S3776"})
-    private void importRepositoryContent(String parentNodePath, Resource file, int rootBehaviour, JCRSessionWrapper session, Set<String> filesToIgnore, List<String> fileList, Map<String, List<String>> references, boolean importLive, List<String> liveUuids) throws IOException, RepositoryException {
-        ZipInputStream zis;
+    private void importRepositoryContent(String parentNodePath, Resource file, ImportArchive archive, int rootBehaviour, JCRSessionWrapper session, Set<String> filesToIgnore, List<String> fileList, Map<String, List<String>> references, boolean importLive, List<String> liveUuids) throws IOException, RepositoryException {
         // Import repository content
-        zis = getZipInputStream(file);
         try {
-            while (true) {
-                ZipEntry zipentry = zis.getNextEntry();
-                if (zipentry == null) {
-                    break;
-                }
-                String name = zipentry.getName();
+            for (String name : archive.getEntryNames()) {
                 if (name.equals(REPOSITORY_XML) && !filesToIgnore.contains(name)) {
-                    importRepositoryXMLFile(parentNodePath, file, rootBehaviour, session, fileList, references, zis, importLive, liveUuids);
+                    try (InputStream is = archive.getInputStream(name)) {
+                        importRepositoryXMLFile(parentNodePath, file, archive, rootBehaviour, session, fileList, references, is, importLive, liveUuids);
+                    }
                 } else if (name.endsWith(".xml") && !name.equals(REPOSITORY_XML) && !name.equals(LIVE_REPOSITORY_XML) && !filesToIgnore.contains(name) && !name.contains("/")) {
                     long timerOther = System.currentTimeMillis();
                     logger.info("Start importing {}", name);
                     String thisPath = (parentNodePath != null ? getParentNodePath(parentNodePath) : "") + StringUtils.substringBefore(name, ".xml");
-                    importXML(thisPath, zis, rootBehaviour, references, session);
+                    try (InputStream is = archive.getInputStream(name)) {
+                        importXML(thisPath, is, rootBehaviour, references, session);
+                    }
                     logger.debug("Saving JCR session for {}", name);
                     session.save(JCRObservationManager.IMPORT);
                     if (logger.isInfoEnabled()) {
                         logger.info("Done importing {} in {}", name, DateUtils.formatDurationWords(System.currentTimeMillis() - timerOther));
                     }
                 }
-                zis.closeEntry();
             }
         } catch (RepositoryException e) {
             throw e;
         } catch (Exception e) {
             logger.error("Cannot import", e);
-        } finally {
-            closeInputStream(zis);
         }
     }
 
@@ -2241,10 +2290,11 @@ public final class ImportExportBaseService extends JahiaService implements Impor
     }
 
     @SuppressWarnings("java:S107")
-    private void importRepositoryXMLFile(String parentNodePath, Resource file, int rootBehaviour, JCRSessionWrapper session, List<String> fileList, Map<String, List<String>> references, ZipInputStream zis, boolean importLive, List<String> liveUuids) throws IOException, RepositoryException {
+    private void importRepositoryXMLFile(String parentNodePath, Resource file, ImportArchive archive, int rootBehaviour, JCRSessionWrapper session, List<String> fileList, Map<String, List<String>> references, InputStream is, boolean importLive, List<String> liveUuids) throws IOException, RepositoryException {
         long timerDefault = System.currentTimeMillis();
         logger.info("Start importing " + REPOSITORY_XML);
         DocumentViewImportHandler documentViewImportHandler = new DocumentViewImportHandler(session, parentNodePath, file, fileList);
+        documentViewImportHandler.setImportArchive(archive);
         if (importLive) {
             // Restore publication status
             Set<String> props = new HashSet<>(documentViewImportHandler.getPropertiesToSkip());
@@ -2260,7 +2310,7 @@ public final class ImportExportBaseService extends JahiaService implements Impor
         documentViewImportHandler.setReferences(references);
         documentViewImportHandler.setRootBehavior(rootBehaviour);
         documentViewImportHandler.setAttributeProcessors(attributeProcessors);
-        handleImport(zis, documentViewImportHandler, REPOSITORY_XML);
+        handleImport(is, documentViewImportHandler, REPOSITORY_XML);
 
         if (importLive && liveUuids != null) {
             liveUuids.removeAll(documentViewImportHandler.getUuids());
@@ -2283,8 +2333,9 @@ public final class ImportExportBaseService extends JahiaService implements Impor
     }
 
     @NotNull
-    private DocumentViewImportHandler getDocumentViewImportHandlerForLiveWorkspace(String parentNodePath, Resource file, int rootBehaviour, JCRSessionWrapper session, List<String> fileList, Map<String, List<String>> references, ZipInputStream zis) throws IOException, RepositoryException {
+    private DocumentViewImportHandler getDocumentViewImportHandlerForLiveWorkspace(String parentNodePath, Resource file, ImportArchive archive, int rootBehaviour, JCRSessionWrapper session, List<String> fileList, Map<String, List<String>> references, InputStream is) throws IOException, RepositoryException {
         final DocumentViewImportHandler documentViewImportHandler = new DocumentViewImportHandler(session, parentNodePath, file, fileList);
+        documentViewImportHandler.setImportArchive(archive);
 
         documentViewImportHandler.setReferences(references);
         documentViewImportHandler.setRootBehavior(rootBehaviour);
@@ -2296,7 +2347,7 @@ public final class ImportExportBaseService extends JahiaService implements Impor
         props.remove(Constants.LASTPUBLISHEDBY);
         props.remove(Constants.PUBLISHED);
         documentViewImportHandler.setPropertiesToSkip(props);
-        handleImport(zis, documentViewImportHandler, LIVE_REPOSITORY_XML);
+        handleImport(is, documentViewImportHandler, LIVE_REPOSITORY_XML);
 
         logger.debug("Saving JCR session for " + LIVE_REPOSITORY_XML);
 
@@ -2323,42 +2374,24 @@ public final class ImportExportBaseService extends JahiaService implements Impor
      * @throws IOException
      */
     public File getFileList(Resource file, Map<String, Long> sizes, List<String> fileList, boolean forceClean) throws IOException {
-        File expandedFolder = getExpandedFolder(file, forceClean);
-        ZipInputStream zis = getZipInputStream(file);
-        try {
-            while (true) {
-                ZipEntry zipentry = zis.getNextEntry();
-                if (zipentry == null) {
-                    break;
-                }
-                String name = zipentry.getName().replace('\\', '/');
-                if (expandedFolder != null) {
-                    expandZipEntryInExpandedFolderTarget(expandedFolder, zis, zipentry, name);
-                }
-                storeFileSizeInSizesMap(sizes, zis, zipentry, name);
-                if (name.contains("/")) {
-                    fileList.add("/" + name);
-                }
-                zis.closeEntry();
-            }
-        } finally {
-            closeInputStream(zis);
+        try (ImportArchive archive = ImportArchive.open(file)) {
+            return getFileList(file, archive, sizes, fileList, forceClean);
         }
-        return expandedFolder;
     }
 
-    private void storeFileSizeInSizesMap(Map<String, Long> sizes, ZipInputStream zis, ZipEntry zipentry, String name) throws IOException {
-        if (name.endsWith(".xml")) {
-            try (BufferedReader br = new BufferedReader(new InputStreamReader(zis))) {
-                long i = 0;
-                while (br.readLine() != null) {
-                    i++;
-                }
-                sizes.put(name, i);
+    private File getFileList(Resource file, ImportArchive archive, Map<String, Long> sizes, List<String> fileList, boolean forceClean) throws IOException {
+        File expandedFolder = getExpandedFolder(file, forceClean);
+        for (String name : archive.getEntryNames()) {
+            if (expandedFolder != null) {
+                expandZipEntryInExpandedFolderTarget(expandedFolder, archive, name);
+            }
+            // sizes come from the archive index, the entries are not read here
+            sizes.put(name, archive.getSize(name));
+            if (name.contains("/")) {
+                fileList.add("/" + name);
             }
-        } else {
-            sizes.put(name, zipentry.getSize());
         }
+        return expandedFolder;
     }
 
     private File getExpandedFolder(Resource file, boolean forceClean) throws IOException {
@@ -2376,23 +2409,24 @@ public final class ImportExportBaseService extends JahiaService implements Impor
         return expandedFolder;
     }
 
-    private void expandZipEntryInExpandedFolderTarget(File expandedFolder, ZipInputStream zis, ZipEntry zipentry, String name) throws IOException {
+    private void expandZipEntryInExpandedFolderTarget(File expandedFolder, ImportArchive archive, String name) throws IOException {
         final File importedFile = new File(expandedFolder + File.separator + name);
         if (!importedFile.getCanonicalPath().startsWith(expandedFolder.getCanonicalPath() + File.separator)) {
             throw new IOException("Zip entry is outside of the 'expandedFolder' directory. Potential Zip file attack averted.");
         }
-        if (zipentry.isDirectory()) {
+        if (archive.isDirectory(name)) {
             FileUtils.forceMkdir(importedFile);
         } else {
             long timer = System.currentTimeMillis();
             if (logger.isDebugEnabled()) {
-                logger.debug("Expanding {} into {}", zipentry.getName(), importedFile);
+                logger.debug("Expanding {} into {}", name, importedFile);
             }
             FileUtils.forceMkdir(importedFile.getParentFile());
-            try (final OutputStream output = new BufferedOutputStream(new FileOutputStream(importedFile), 1024 * 64)) {
-                IOUtils.copyLarge(zis, output);
+            try (InputStream is = archive.getInputStream(name);
+                 final OutputStream output = new BufferedOutputStream(new FileOutputStream(importedFile), 1024 * 64)) {
+                IOUtils.copyLarge(is, output);
                 if (logger.isDebugEnabled()) {
-                    logger.debug("Expanded {} in {}", zipentry.getName(), DateUtils.formatDurationWords(System.currentTimeMillis() - timer));
+                    logger.debug("Expanded {} in {}", name, DateUtils.formatDurationWords(System.currentTimeMillis() - timer));
                 }
             }
         }
@@ -2402,24 +2436,6 @@ public final class ImportExportBaseService extends JahiaService implements Impor
         return new File(expandImportedFilesOnDiskPath + File.separator + "import-" + Base64.getEncoder().encodeToString(file.getURL().toString().getBytes(StandardCharsets.UTF_8)));
     }
 
-    private void closeInputStream(ZipInputStream zis) throws IOException {
-        if (zis instanceof NoCloseZipInputStream) {
-            ((NoCloseZipInputStream) zis).reallyClose();
-        } else {
-            zis.close();
-        }
-    }
-
-    private ZipInputStream getZipInputStream(Resource file) throws IOException {
-        ZipInputStream zis;
-        if (!file.isReadable() && file instanceof FileSystemResource) {
-            zis = new DirectoryZipInputStream(file.getFile());
-        } else {
-            zis = new NoCloseZipInputStream(new BufferedInputStream(file.getInputStream()));
-        }
-        return zis;
-    }
-
     /**
      * Injects an instance of the category service
      *
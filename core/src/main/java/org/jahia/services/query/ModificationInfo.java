@@ -60,6 +60,8 @@ class ModificationInfo {
 
     private boolean modificationNecessary = false;
 
+    private boolean contentDependent = false;
+
     private Join newJoin = null;
 
     private QueryObjectModelFactory queryObjectModelFactory = null;
@@ -96,6 +98,24 @@ class ModificationInfo {
         this.modificationNecessary = modificationNecessary;
     }
 
+    /**
+     * @return true when the modification depends on the content of the repository and not only on the query and the
+     * node type definitions, so that it cannot be reused for another execution of the same query
+     */
+    public boolean isContentDependent() {
+        return contentDependent;
+    }
+
+    /**
+     * Set true when the modification depends on the content of the repository
+     *
+     * @param contentDependent
+     *            true when the modification depends on the content of the repository
+     */
+    public void setContentDependent(boolean contentDependent) {
+        this.contentDependent = contentDependent;
+    }
+
     /**
      * @return the QueryObjectModelFactory to be used when creating the modified query
      */
@@ -137,6 +137,7 @@ class QueryModifierAndOptimizerVisitor extends DefaultQOMTreeVisitor {
                 String nodeTypeName = selector.getNodeTypeName();
                 if (Constants.NT_BASE.equals(nodeTypeName) || Constants.JAHIANT_CONTENT.equals(nodeTypeName)) {
                     Set<String> commonChildNodeTypes = new HashSet<String>();
+                    getModificationInfo().setContentDependent(true);
                     String primaryChildNodeType = getCommonChildNodeTypes(node.getParentPath(),
                             commonChildNodeTypes);
                     if (primaryChildNodeType != null) {
@@ -0,0 +1,245 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/Apache2 OR 2/JSEL
+ *
+ *     1/ Apache2
+ *     ==================================================================================
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.services.query;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of the query plans computed by the {@link QueryServiceImpl}. A plan is the statement of the modified
+ * and optimized query, or an empty string when the query does not need to be modified. The plans are keyed by the
+ * normalized query statement, which keeps the bind variables as parameters, and the locale of the session. When the
+ * cache is full, the least recently used plan is evicted.
+ *
+ * The plans depend on the node type definitions: each operation takes the modification count of the node type
+ * registry, and all the plans are discarded when it changes.
+ */
+public class QueryPlanCache implements QueryPlanCacheMBean {
+
+    /**
+     * The plan of the queries which do not need to be modified
+     */
+    public static final String UNMODIFIED = "";
+
+    /**
+     * Access ordered map, guarded by its own lock as looking up a plan moves it to the end of the map
+     */
+    private final Map<String, String> plans = new LinkedHashMap<String, String>(16, 0.75f, true) {
+
+        private static final long serialVersionUID = -2904337469232436263L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            if (size() > maxSize) {
+                evictionCount.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    private volatile int maxSize;
+
+    private volatile long definitionsVersion;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+    private final AtomicLong invalidationCount = new AtomicLong();
+
+    /**
+     * Initializes an instance of this class.
+     *
+     * @param maxSize the maximum number of plans to keep, 0 disables the cache
+     */
+    public QueryPlanCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return true if the plans are cached
+     */
+    public boolean isEnabled() {
+        return maxSize > 0;
+    }
+
+    public void setMaxSize(int maxSize) {
+        synchronized (plans) {
+            this.maxSize = maxSize;
+            // drop the least recently used plans exceeding the new size
+            for (Iterator<String> iterator = plans.keySet().iterator(); plans.size() > Math.max(maxSize, 0); ) {
+                iterator.next();
+                iterator.remove();
+                evictionCount.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Returns the cached plan of a query.
+     *
+     * @param key                the key of the query
+     * @param definitionsVersion the current modification count of the node type registry
+     * @return the plan, {@link #UNMODIFIED} if the query does not need to be modified, or null if the plan is not cached
+     */
+    public String get(String key, long definitionsVersion) {
+        if (!isEnabled()) {
+            return null;
+        }
+        String plan = null;
+        if (checkDefinitionsVersion(definitionsVersion)) {
+            synchronized (plans) {
+                plan = plans.get(key);
+            }
+        }
+        if (plan != null) {
+            hitCount.incrementAndGet();
+        } else {
+            missCount.incrementAndGet();
+        }
+        return plan;
+    }
+
+    /**
+     * Stores the plan of a query. The plan is not stored if the node type definitions changed since the given version
+     * was read.
+     *
+     * @param key                the key of the query
+     * @param plan               the statement of the modified query or {@link #UNMODIFIED}
+     * @param definitionsVersion the modification count of the node type registry read before computing the plan
+     */
+    public void put(String key, String plan, long definitionsVersion) {
+        if (!isEnabled() || !checkDefinitionsVersion(definitionsVersion)) {
+            return;
+        }
+        synchronized (plans) {
+            plans.put(key, plan);
+            if (definitionsVersion != this.definitionsVersion) {
+                // the definitions were modified concurrently, the plan may be stale
+                plans.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Removes the plan of a query, used when it cannot be applied anymore.
+     *
+     * @param key the key of the query
+     */
+    public void remove(String key) {
+        synchronized (plans) {
+            plans.remove(key);
+        }
+    }
+
+    private boolean checkDefinitionsVersion(long version) {
+        if (version != definitionsVersion) {
+            synchronized (this) {
+                if (version > definitionsVersion) {
+                    synchronized (plans) {
+                        plans.clear();
+                    }
+                    definitionsVersion = version;
+                    invalidationCount.incrementAndGet();
+                }
+            }
+        }
+        return version == definitionsVersion;
+    }
+
+    @Override
+    public int getSize() {
+        synchronized (plans) {
+            return plans.size();
+        }
+    }
+
+    @Override
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    @Override
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    @Override
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    @Override
+    public double getHitRate() {
+        long hits = hitCount.get();
+        long total = hits + missCount.get();
+        return total > 0 ? (double) hits / total : 0;
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    @Override
+    public long getInvalidationCount() {
+        return invalidationCount.get();
+    }
+
+    @Override
+    public void flush() {
+        synchronized (plans) {
+            plans.clear();
+        }
+    }
+
+    @Override
+    public void resetStatistics() {
+        hitCount.set(0);
+        missCount.set(0);
+        evictionCount.set(0);
+        invalidationCount.set(0);
+    }
+}
@@ -42,15 +42,21 @@
  */
 package org.jahia.services.query;
 
+import java.lang.management.ManagementFactory;
 import java.util.Arrays;
 
 import javax.jcr.RepositoryException;
 import javax.jcr.ValueFactory;
 import javax.jcr.query.qom.*;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
+import org.apache.jackrabbit.commons.query.sql2.Parser;
+import org.apache.jackrabbit.commons.query.sql2.QOMFormatter;
 import org.apache.jackrabbit.spi.commons.query.qom.*;
 import org.apache.jackrabbit.value.ValueFactoryImpl;
 import org.jahia.services.content.JCRSessionWrapper;
+import org.jahia.services.content.nodetypes.NodeTypeRegistry;
 import org.jahia.services.query.QueryModifierAndOptimizerVisitor.TraversingMode;
 import org.slf4j.Logger;
 
@@ -90,8 +96,12 @@ public class QueryServiceImpl extends QueryService {
      */
     static int MODIFY_MODE = 3;
 
+    private static final String QUERY_PLAN_CACHE_MBEAN_NAME = "org.jahia.services.cache:type=QueryPlanCache";
+
     private ValueFactory valueFactory = ValueFactoryImpl.getInstance();
 
+    private final QueryPlanCache queryPlanCache = new QueryPlanCache(1000);
+
     private QueryServiceImpl() {
     }
 
@@ -114,12 +124,49 @@ public class QueryServiceImpl extends QueryService {
      */
     @Override
     public void start() {
-        // do nothing
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        if (mBeanServer != null) {
+            try {
+                ObjectName name = new ObjectName(QUERY_PLAN_CACHE_MBEAN_NAME);
+                if (!mBeanServer.isRegistered(name)) {
+                    mBeanServer.registerMBean(queryPlanCache, name);
+                }
+            } catch (Exception e) {
+                logger.warn("Unable to register JMX bean for the query plan cache due to {}", e.getMessage());
+            }
+        }
     }
 
     @Override
     public void stop() {
-        // do nothing
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        if (mBeanServer != null) {
+            try {
+                ObjectName name = new ObjectName(QUERY_PLAN_CACHE_MBEAN_NAME);
+                if (mBeanServer.isRegistered(name)) {
+                    mBeanServer.unregisterMBean(name);
+                }
+            } catch (Exception e) {
+                logger.warn("Unable to unregister JMX bean for the query plan cache due to {}", e.getMessage());
+            }
+        }
+        queryPlanCache.flush();
+    }
+
+    /**
+     * Sets the maximum number of query plans to keep in the cache, 0 disables the cache.
+     *
+     * @param queryPlanCacheSize the maximum number of cached query plans
+     */
+    public void setQueryPlanCacheSize(int queryPlanCacheSize) {
+        queryPlanCache.setMaxSize(queryPlanCacheSize);
+    }
+
+    /**
+     * @return the cache of the query plans
+     */
+    public QueryPlanCache getQueryPlanCache() {
+        return queryPlanCache;
     }
 
     /*
@@ -132,9 +179,46 @@ public class QueryServiceImpl extends QueryService {
     public QueryObjectModel modifyAndOptimizeQuery(QueryObjectModel qom,
                                                    QueryObjectModelFactory qomFactory, JCRSessionWrapper session)
             throws RepositoryException {
+        if (!queryPlanCache.isEnabled()) {
+            ModificationInfo info = getModificationInfo(qom.getSource(), qom.getConstraint(),
+                    qom.getOrderings(), qom.getColumns(), qomFactory, session);
+            return info.getNewQueryObjectModel() != null ? info.getNewQueryObjectModel() : qom;
+        }
+        long definitionsVersion = NodeTypeRegistry.getInstance().getModificationCount();
+        String key = getQueryPlanKey(qom, session);
+        if (key != null) {
+            String plan = queryPlanCache.get(key, definitionsVersion);
+            if (plan != null) {
+                if (plan.equals(QueryPlanCache.UNMODIFIED)) {
+                    return qom;
+                }
+                try {
+                    return new Parser(qomFactory, getValueFactory()).createQueryObjectModel(plan);
+                } catch (RepositoryException e) {
+                    logger.debug("Unable to apply the cached plan of query {}, computing it again", key, e);
+                    queryPlanCache.remove(key);
+                }
+            }
+        }
+
         ModificationInfo info = getModificationInfo(qom.getSource(), qom.getConstraint(),
                 qom.getOrderings(), qom.getColumns(), qomFactory, session);
-        return info.getNewQueryObjectModel() != null ? info.getNewQueryObjectModel() : qom;
+        QueryObjectModel newQueryObjectModel = info.getNewQueryObjectModel();
+        if (key != null && !info.isContentDependent()) {
+            if (newQueryObjectModel == null) {
+                queryPlanCache.put(key, QueryPlanCache.UNMODIFIED, definitionsVersion);
+            } else {
+                try {
+                    String plan = QOMFormatter.format(newQueryObjectModel);
+                    // make sure the statement can be parsed back, e.g. some facet column names cannot
+                    new Parser(qomFactory, getValueFactory()).createQueryObjectModel(plan);
+                    queryPlanCache.put(key, plan, definitionsVersion);
+                } catch (RepositoryException e) {
+                    logger.debug("Unable to cache the plan of query {}", key, e);
+                }
+            }
+        }
+        return newQueryObjectModel != null ? newQueryObjectModel : qom;
     }
 
     /*
@@ -148,12 +232,32 @@ public class QueryServiceImpl extends QueryService {
     public QueryObjectModel modifyAndOptimizeQuery(Source source, Constraint constraint,
                                                    Ordering[] orderings, Column[] columns, QueryObjectModelFactory qomFactory,
                                                    JCRSessionWrapper session) throws RepositoryException {
+        if (queryPlanCache.isEnabled()) {
+            return modifyAndOptimizeQuery(qomFactory.createQuery(source, constraint, orderings, columns),
+                    qomFactory, session);
+        }
         ModificationInfo info = getModificationInfo(source, constraint, orderings, columns,
                 qomFactory, session);
         return info.getNewQueryObjectModel() != null ? info.getNewQueryObjectModel() : qomFactory
                 .createQuery(source, constraint, orderings, columns);
     }
 
+    /**
+     * Returns the key of a query in the plan cache: its normalized SQL-2 statement, in which the bind variables remain
+     * parameters, and the locale of the session, used by the language constraints.
+     *
+     * @return the key, or null if the query cannot be formatted and must not be cached
+     */
+    private String getQueryPlanKey(QueryObjectModel qom, JCRSessionWrapper session) {
+        try {
+            return (session != null && session.getLocale() != null ? session.getLocale().toString() : "") + "|"
+                    + QOMFormatter.format(qom);
+        } catch (RepositoryException e) {
+            logger.debug("Unable to format query, its plan will not be cached", e);
+            return null;
+        }
+    }
+
     /**
      * We use a QOMTreeVisitor implementation to traverse through the query object model three times.
      *
@@ -52,6 +52,7 @@ import org.jahia.services.render.RenderException;
 import org.jahia.services.render.RenderService;
 import org.jahia.services.render.Resource;
 import org.jahia.services.render.filter.cache.CacheKeyGenerator;
+import org.jahia.services.render.filter.cache.FragmentCacheEntry;
 import org.jahia.services.render.filter.cache.PathCacheKeyPartGenerator;
 import org.jahia.settings.SettingsBean;
 import org.jahia.utils.LanguageCodeConverters;
@@ -126,6 +127,12 @@ public class AggregateFilter extends AbstractFilter {
     // if this parameter is set to true in the request attributes, the aggregation is skipped
     public static final String SKIP_AGGREGATION = "aggregateFilter.skip";
 
+    // pre-parsed form of the fragment content, set in the module map by the cache filter
+    private static final String PARSED_FRAGMENT = "aggregateFilter.parsedFragment";
+
+    // fragment content corresponding to the pre-parsed form, used to check it has not been modified in the meantime
+    private static final String PARSED_FRAGMENT_CONTENT = "aggregateFilter.parsedFragment.content";
+
     private CacheKeyGenerator keyGenerator;
 
     @Override
@@ -220,6 +227,10 @@ public class AggregateFilter extends AbstractFilter {
                 logger.debug("Rendered fragment for {} took {} ms.", resource.getPath(), System.currentTimeMillis() - start);
             }
 
+            Object parsedFragment = moduleMap.remove(PARSED_FRAGMENT);
+            if (parsedFragment != null && moduleMap.remove(PARSED_FRAGMENT_CONTENT) == previousOut) {
+                return aggregateContent((FragmentCacheEntry) parsedFragment, renderContext);
+            }
             return aggregateContent(previousOut, renderContext);
         } else {
             // we are rendering a sub fragment, break the chain to return the placeholder
@@ -266,24 +277,49 @@ public class AggregateFilter extends AbstractFilter {
         int esiTagStartIndex = content.indexOf(ESI_TAG_START);
         if (esiTagStartIndex == -1) {
             return content;
-        } else {
-            StringBuilder sb = new StringBuilder(content);
-            while (esiTagStartIndex != -1) {
-                int esiTagEndIndex = sb.indexOf(ESI_TAG_END, esiTagStartIndex);
-                if (esiTagEndIndex != -1) {
-                    String replacement = generateContent(renderContext, sb.substring(esiTagStartIndex + ESI_TAG_START.length(), esiTagEndIndex));
-                    if (replacement == null) {
-                        replacement = "";
-                    }
-                    sb.replace(esiTagStartIndex, esiTagEndIndex + ESI_TAG_END_LENGTH, replacement);
-                    esiTagStartIndex = sb.indexOf(ESI_TAG_START, esiTagStartIndex + replacement.length());
-                } else {
-                    // no closed esi end tag found
-                    return sb.toString();
-                }
+        }
+        // single pass: append the static segments and the generated sub fragments in document order
+        StringBuilder sb = new StringBuilder(content.length());
+        int segmentStart = 0;
+        while (esiTagStartIndex != -1) {
+            int esiTagEndIndex = content.indexOf(ESI_TAG_END, esiTagStartIndex);
+            if (esiTagEndIndex == -1) {
+                // no closed esi end tag found
+                break;
+            }
+            sb.append(content, segmentStart, esiTagStartIndex);
+            String replacement = generateContent(renderContext, content.substring(esiTagStartIndex + ESI_TAG_START.length(), esiTagEndIndex));
+            if (replacement != null) {
+                sb.append(replacement);
+            }
+            segmentStart = esiTagEndIndex + ESI_TAG_END_LENGTH;
+            esiTagStartIndex = content.indexOf(ESI_TAG_START, segmentStart);
+        }
+        sb.append(content, segmentStart, content.length());
+        return sb.toString();
+    }
+
+    /**
+     * Aggregate the sub modules inside the pre-parsed fragment, without scanning its content for include tags.
+     *
+     * @param fragment The pre-parsed fragment
+     * @param renderContext The render context
+     */
+    protected String aggregateContent(FragmentCacheEntry fragment, RenderContext renderContext) throws RenderException {
+        int includeCount = fragment.getIncludeCount();
+        if (includeCount == 0) {
+            return fragment.getObject();
+        }
+        StringBuilder sb = new StringBuilder(fragment.getLength());
+        for (int i = 0; i < includeCount; i++) {
+            fragment.appendSegment(sb, i);
+            String replacement = generateContent(renderContext, fragment.getIncludeKey(i), fragment.getIncludeKeyParts(i, keyGenerator));
+            if (replacement != null) {
+                sb.append(replacement);
             }
-            return sb.toString();
         }
+        fragment.appendSegment(sb, includeCount);
+        return sb.toString();
     }
 
     /**
@@ -293,11 +329,22 @@ public class AggregateFilter extends AbstractFilter {
      * @param key The key of the fragment to generate
      */
     protected String generateContent(RenderContext renderContext, String key) throws RenderException {
+        return generateContent(renderContext, key, null);
+    }
+
+    /**
+     * Generates content for a sub fragment, which key has already been parsed.
+     *
+     * @param renderContext The render context
+     * @param key The key of the fragment to generate
+     * @param parsedKey The parsed key attributes or <code>null</code> if the key has to be parsed
+     */
+    protected String generateContent(RenderContext renderContext, String key, Map<String, String> parsedKey) throws RenderException {
 
         try {
 
             // Parse the key to get all separate key attributes like node path and template
-            Map<String, String> keyAttrs = keyGenerator.parse(key);
+            Map<String, String> keyAttrs = parsedKey != null ? parsedKey : keyGenerator.parse(key);
 
             // Create lazy resource
             String path = StringUtils.replace(keyAttrs.get("path"), PathCacheKeyPartGenerator.MAIN_RESOURCE_KEY, StringUtils.EMPTY);
@@ -339,6 +386,24 @@ public class AggregateFilter extends AbstractFilter {
         this.keyGenerator = keyGenerator;
     }
 
+    /**
+     * Provides the pre-parsed form of the fragment content being rendered in the current render chain, so that its
+     * aggregation does not need to parse it again. It is only used if the content reaching this filter is the
+     * specified one.
+     *
+     * @param renderContext the current render context
+     * @param content the fragment content
+     * @param fragment the pre-parsed form of the content
+     */
+    public static void setParsedFragment(RenderContext renderContext, String content, FragmentCacheEntry fragment) {
+        @SuppressWarnings("unchecked")
+        Map<String, Object> moduleMap = (Map<String, Object>) renderContext.getRequest().getAttribute("moduleMap");
+        if (moduleMap != null) {
+            moduleMap.put(PARSED_FRAGMENT, fragment);
+            moduleMap.put(PARSED_FRAGMENT_CONTENT, content);
+        }
+    }
+
     /**
      * Utility method to check if the aggregation is skipped.
      * @param request is the current request
@@ -49,6 +49,7 @@ import org.apache.commons.lang.StringUtils;
 import org.jahia.api.Constants;
 import org.jahia.exceptions.JahiaRuntimeException;
 import org.jahia.exceptions.JahiaServiceUnavailableException;
+import org.jahia.services.SpringContextSingleton;
 import org.jahia.services.cache.CacheEntry;
 import org.jahia.services.cache.ehcache.DependenciesCacheEvictionPolicy;
 import org.jahia.services.content.JCRNodeWrapper;
@@ -76,6 +77,7 @@ import java.io.Serializable;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
@@ -97,6 +99,7 @@ public class AggregateCacheFilter extends AbstractFilter implements ApplicationL
     public static final String CACHE_EXPIRATION = "cache.expiration";
     public static final String HAS_PROCESSING_SEMAPHORE_PARAM = "aggregateCacheFilter.hasProcessingSemaphore";
     public static final String EMPTY_USERKEY = "";
+    public static final String CACHE_REFRESH_AFTER = "cache.refreshAfter";
 
     public static final String ALL = DependenciesCacheEvictionPolicy.ALL;
     public static final Set<String> ALL_SET = Collections.singleton(ALL);
@@ -107,7 +110,6 @@ public class AggregateCacheFilter extends AbstractFilter implements ApplicationL
     private static final String CACHE_TAG_END = "<!-- /cache:include -->";
     private static final String CACHE_ESI_TAG_START = "<jahia_esi:include src=\"";
     private static final String CACHE_ESI_TAG_END = "\"></jahia_esi:include>";
-    private static final int CACHE_ESI_TAG_END_LENGTH = CACHE_ESI_TAG_END.length();
     private static final int CACHE_TAG_LENGTH = CACHE_TAG_START_1.length() + CACHE_TAG_START_2.length() + CACHE_TAG_END.length();
 
     // The "v" parameter is aimed to bypass the cache in order to be able to view the page at a specific date.
@@ -139,13 +141,38 @@ public class AggregateCacheFilter extends AbstractFilter implements ApplicationL
     // We use ConcurrentHashMap instead of Set since we absolutely need the thread safety of this implementation but we don't want reads to lock.
     // @todo when migrating to JDK 1.6 we can replacing this with Collections.newSetFromMap(Map m) calls.
     protected static final Map<String, Boolean> notCacheableFragment = new ConcurrentHashMap<String, Boolean>(512);
-    static protected ThreadLocal<Set<CountDownLatch>> processingLatches = new ThreadLocal<Set<CountDownLatch>>();
+    /**
+     * @deprecated the generations are no longer tracked with latches, see {@link ModuleGeneratorQueue#isGenerating(String)};
+     * the value is a snapshot of the latches of the fragments being generated by the current thread, and setting it has
+     * no effect
+     */
+    @Deprecated
+    static protected ThreadLocal<Set<CountDownLatch>> processingLatches = new ThreadLocal<Set<CountDownLatch>>() {
+        @Override
+        public Set<CountDownLatch> get() {
+            return ((ModuleGeneratorQueue) SpringContextSingleton.getBean("moduleGeneratorQueue")).getCurrentThreadLatches();
+        }
+
+        @Override
+        public void set(Set<CountDownLatch> value) {
+            // ignored, the fragments generated by the current thread are tracked by the ModuleGeneratorQueue
+        }
+
+        @Override
+        public void remove() {
+            // nothing is stored per thread
+        }
+    };
     static protected ThreadLocal<LinkedList<String>> userKeys = new ThreadLocal<LinkedList<String>>();
     protected static long lastThreadDumpTime = 0L;
     protected Byte[] threadDumpCheckLock = new Byte[0];
     protected int dependenciesLimit = 1000;
+    protected DependenciesLimitPolicy dependenciesLimitPolicy;
     protected boolean cascadeFragmentErrors = false;
     protected int errorCacheExpiration = 5;
+    protected int refreshAheadWindow = 0;
+    private FragmentRefresher fragmentRefresher;
+    private ParallelFragmentRenderer parallelFragmentRenderer;
 
     private Set<String> skipLatchForConfigurations;
     private Set<String> skipLatchForPaths;
@@ -155,6 +182,10 @@ public class AggregateCacheFilter extends AbstractFilter implements ApplicationL
         this.dependenciesLimit = dependenciesLimit;
     }
 
+    public void setDependenciesLimitPolicy(DependenciesLimitPolicy dependenciesLimitPolicy) {
+        this.dependenciesLimitPolicy = dependenciesLimitPolicy;
+    }
+
     public void setCacheProvider(ModuleCacheProvider cacheProvider) {
         this.cacheProvider = cacheProvider;
     }
@@ -171,6 +202,29 @@ public class AggregateCacheFilter extends AbstractFilter implements ApplicationL
         this.errorCacheExpiration = errorCacheExpiration;
     }
 
+    /**
+     * @param refreshAheadWindow the time, in seconds, before the expiration of a fragment during which it is
+     *                           regenerated in the background while the requests are still served the cached content;
+     *                           <code>0</code> to disable the refresh-ahead
+     */
+    public void setRefreshAheadWindow(int refreshAheadWindow) {
+        this.refreshAheadWindow = refreshAheadWindow;
+    }
+
+    /**
+     * @param fragmentRefresher the refresher regenerating in the background the fragments about to expire
+     */
+    public void setFragmentRefresher(FragmentRefresher fragmentRefresher) {
+        this.fragmentRefresher = fragmentRefresher;
+    }
+
+    /**
+     * @param parallelFragmentRenderer the renderer used to generate concurrently the sub fragments missing from the cache
+     */
+    public void setParallelFragmentRenderer(ParallelFragmentRenderer parallelFragmentRenderer) {
+        this.parallelFragmentRenderer = parallelFragmentRenderer;
+    }
+
     public void setSkipLatchForConfigurations(Set<String> skipLatchForConfigurations) {
         this.skipLatchForConfigurations = skipLatchForConfigurations;
     }
@@ -258,27 +312,26 @@ public class AggregateCacheFilter extends AbstractFilter implements ApplicationL
         }
 
         if (element != null && element.getObjectValue() != null) {
+            if (isRefreshDue((CacheEntry<?>) element.getObjectValue())) {
+                // The element is about to expire: regenerate it in the background, this request being still served
+                // the cached content.
+                Object areaListResource = renderContext.getRequest().getAttribute("areaListResource");
+                refreshAhead(finalKey, renderContext, key, areaListResource instanceof JCRNodeWrapper ?
+                        ((JCRNodeWrapper) areaListResource).getIdentifier() : null, null, null);
+            }
             // The element is found in the cache. Need to
             return returnFromCache(renderContext, resource, key, finalKey, element, cache);
         } else {
-            // The element is not found in the cache with that key. Use CountLatch to avoid parallel processing of the
+            // The element is not found in the cache with that key. Use single-flight generation to avoid parallel processing of the
             // module - if somebody else is generating this fragment, wait for the entry to be generated and
             // return the content from the cache. Otherwise, return null to continue the render chain.
             // Note that the fragment MIGHT be in cache, but the key may not be correct - some parameters impacting the
             // key like dependencies can only be calculated when the fragment has been generated.
-            CountDownLatch countDownLatch = avoidParallelProcessingOfSameModule(finalKey, renderContext, resource, properties);
-            if (countDownLatch == null) {
+            if (avoidParallelProcessingOfSameModule(finalKey, renderContext, resource, properties)) {
                 element = cache.get(finalKey);
                 if (element != null && element.getObjectValue() != null) {
                     return returnFromCache(renderContext, resource, key, finalKey, element, cache);
                 }
-            } else {
-                Set<CountDownLatch> latches = processingLatches.get();
-                if (latches == null) {
-                    latches = new HashSet<>();
-                    processingLatches.set(latches);
-                }
-                latches.add(countDownLatch);
             }
             return null;
         }
@@ -357,15 +410,15 @@ public class AggregateCacheFilter extends AbstractFilter implements ApplicationL
         if (logger.isDebugEnabled()) {
             logger.debug("Content retrieved from cache for node with key: {}", finalKey);
         }
-        CacheEntry<?> cacheEntry = (CacheEntry<?>) element.getObjectValue();
-        String cachedContent = (String) cacheEntry.getObject();
+        FragmentCacheEntry cacheEntry = FragmentCacheEntry.valueOf((CacheEntry<?>) element.getObjectValue());
 
         restorePropertiesFromCacheEntry(cacheEntry, renderContext);
 
         // Calls aggregation on the fragment content
-        cachedContent = aggregateContent(cache, cachedContent, renderContext,
-                (String) cacheEntry.getProperty("areaResource"), new Stack<String>(),
-                (Set<String>) cacheEntry.getProperty("allPaths"));
+        StringBuilder out = new StringBuilder(cacheEntry.getLength());
+        aggregateContent(cache, cacheEntry, renderContext, (String) cacheEntry.getProperty("areaResource"),
+                new Stack<String>(), (Set<String>) cacheEntry.getProperty("allPaths"), out);
+        String cachedContent = out.toString();
 
         if (renderContext.getMainResource() == resource) {
             cachedContent = removeCacheTags(cachedContent);
@@ -505,6 +558,9 @@ public class AggregateCacheFilter extends AbstractFilter implements ApplicationL
         Element cachedElement = new Element(finalKey, cacheEntry);
 
         if (expiration > 0) {
+            if (refreshAheadWindow > 0 && expiration > refreshAheadWindow) {
+                cacheEntry.setProperty(CACHE_REFRESH_AFTER, System.currentTimeMillis() + (expiration - refreshAheadWindow) * 1000L);
+            }
             addExpirationToCacheElements(cache, finalKey, expiration, cachedElement);
         }
         if (!bypassDependencies) {
@@ -569,10 +625,13 @@ public class AggregateCacheFilter extends AbstractFilter implements ApplicationL
     private void storeDependency(RenderContext renderContext, String finalKey, final Cache dependenciesCache, String path) {
         Element element1 = dependenciesCache.get(path);
         @SuppressWarnings("unchecked")
-        Set<String> dependencies = element1 != null ? (Set<String>) element1.getObjectValue() : Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        Set<String> dependencies = element1 != null ? (Set<String>) element1.getObjectValue() : new CompactDependencySet();
         if (!dependencies.contains(ALL)) {
-            if ((dependencies.size() + 1) > dependenciesLimit) {
-                if (logger.isDebugEnabled()) {
+            int limit = dependenciesLimitPolicy != null ? dependenciesLimitPolicy.getLimit(path) : dependenciesLimit;
+            if ((dependencies.size() + 1) > limit && !dependencies.contains(finalKey)) {
+                if (dependenciesLimitPolicy != null) {
+                    dependenciesLimitPolicy.collapsed(path, dependencies.size());
+                } else if (logger.isDebugEnabled()) {
                     logger.debug("Dependencies limit exceeded by path {}: {}/{}",
                             path, dependencies.size(), dependenciesLimit);
                 }
@@ -706,7 +765,7 @@ public class AggregateCacheFilter extends AbstractFilter implements ApplicationL
         sb.append(out);
         // Finally, add the  <!-- cache:include --> around the content and create cache entry.
         surroundWithCacheTag(key, sb);
-        return new CacheEntry<>(sb.toString());
+        return new FragmentCacheEntry(sb.toString(), cacheProvider.getKeyGenerator());
     }
 
     /**
@@ -770,12 +829,10 @@ public class AggregateCacheFilter extends AbstractFilter implements ApplicationL
         return cacheProvider.getKeyGenerator().replacePlaceholdersInCacheKey(renderContext, key);
     }
 
-    private int replaceInContent(StringBuilder sb, int start, int end, String replacement) {
-        if (replacement == null) {
-            replacement = "";
+    private static void appendContent(StringBuilder out, String content) {
+        if (content != null) {
+            out.append(content);
         }
-        sb.replace(start, end, replacement);
-        return sb.indexOf(CACHE_ESI_TAG_START, start + replacement.length());
     }
 
     /**
@@ -792,99 +849,167 @@ public class AggregateCacheFilter extends AbstractFilter implements ApplicationL
      */
     protected String aggregateContent(Cache cache, String cachedContent, RenderContext renderContext, String areaIdentifier,
                                       Stack<String> cacheKeyStack, Set<String> allPaths) throws RenderException {
-
-        int esiTagStartIndex = cachedContent.indexOf(CACHE_ESI_TAG_START);
-        if(esiTagStartIndex == -1){
+        if (cachedContent.indexOf(CACHE_ESI_TAG_START) == -1) {
             return cachedContent;
-        } else {
-            StringBuilder sb = new StringBuilder(cachedContent);
-            while (esiTagStartIndex != -1){
-                int esiTagEndIndex = sb.indexOf(CACHE_ESI_TAG_END, esiTagStartIndex);
-                if (esiTagEndIndex != -1) {
-                    String cacheKey = sb.substring(esiTagStartIndex + CACHE_ESI_TAG_START.length(), esiTagEndIndex);
-                    String replacedCacheKey = replacePlaceholdersInCacheKey(renderContext, cacheKey);
+        }
+        StringBuilder out = new StringBuilder(cachedContent.length());
+        aggregateContent(cache, new FragmentCacheEntry(cachedContent), renderContext, areaIdentifier, cacheKeyStack, allPaths, out);
+        return out.toString();
+    }
 
-                    if (logger.isDebugEnabled()) {
-                        logger.debug("Check if {} is in cache", replacedCacheKey);
+    /**
+     * Aggregates the pre-parsed cached fragment in a single pass: the static segments and the resolved sub fragments
+     * are appended in document order to the output, sub fragments found in the cache being aggregated recursively
+     * into the same output. When the parallel rendering is enabled, the sub fragments missing from the cache are
+     * generated concurrently before being spliced in document order.
+     */
+    private void aggregateContent(Cache cache, FragmentCacheEntry fragment, RenderContext renderContext, String areaIdentifier,
+                                  Stack<String> cacheKeyStack, Set<String> allPaths, StringBuilder out) throws RenderException {
+        int includeCount = fragment.getIncludeCount();
+        ParallelFragmentRenderer.Task[] tasks = null;
+        if (includeCount > 1 && parallelFragmentRenderer != null && parallelFragmentRenderer.isEnabled(renderContext)) {
+            tasks = submitMissingFragments(cache, fragment, renderContext, areaIdentifier, allPaths);
+        }
+        try {
+            aggregateContent(cache, fragment, renderContext, areaIdentifier, cacheKeyStack, allPaths, out, tasks);
+        } finally {
+            if (tasks != null) {
+                for (ParallelFragmentRenderer.Task task : tasks) {
+                    if (task != null) {
+                        task.cancel();
                     }
+                }
+            }
+        }
+    }
+
+    /**
+     * Schedules the concurrent generation of the sub fragments of the specified fragment which are missing from the
+     * cache, if there are at least two of them.
+     *
+     * @return the scheduled generations, indexed by include, or <code>null</code> if nothing has been scheduled
+     */
+    private ParallelFragmentRenderer.Task[] submitMissingFragments(Cache cache, FragmentCacheEntry fragment,
+                                                                   RenderContext renderContext, final String areaIdentifier,
+                                                                   final Set<String> allPaths) {
+        int includeCount = fragment.getIncludeCount();
+        List<Integer> missing = new ArrayList<>(includeCount);
+        Map<Integer, Map<String, String>> missingKeyAttrbs = new HashMap<>();
+        final String ecParameter = renderContext.getRequest().getParameter(EC);
+        final boolean bypass = renderContext.getRequest().getParameter(V) != null && renderContext.isLoggedIn();
+        for (int i = 0; i < includeCount; i++) {
+            String cacheKey = fragment.getIncludeKey(i);
+            Map<String, String> keyAttrbs = fragment.getIncludeKeyParts(i, cacheProvider.getKeyGenerator());
+            boolean cacheable = !bypass && (ecParameter == null || !ecParameter.equals(keyAttrbs.get("resourceID")));
+            if (!cacheable || !cache.isKeyInCache(replacePlaceholdersInCacheKey(renderContext, cacheKey))) {
+                missing.add(i);
+                missingKeyAttrbs.put(i, keyAttrbs);
+            }
+        }
+        if (missing.size() < 2) {
+            return null;
+        }
+        ParallelFragmentRenderer.Task[] tasks = new ParallelFragmentRenderer.Task[includeCount];
+        for (Integer i : missing) {
+            final String cacheKey = fragment.getIncludeKey(i);
+            final Map<String, String> keyAttrbs = missingKeyAttrbs.get(i);
+            tasks[i] = parallelFragmentRenderer.submit(renderContext,
+                    context -> generateContent(context, cacheKey, areaIdentifier, allPaths, keyAttrbs));
+        }
+        return tasks;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void aggregateContent(Cache cache, FragmentCacheEntry fragment, RenderContext renderContext, String areaIdentifier,
+                                  Stack<String> cacheKeyStack, Set<String> allPaths, StringBuilder out,
+                                  ParallelFragmentRenderer.Task[] tasks) throws RenderException {
+        int includeCount = fragment.getIncludeCount();
+        for (int i = 0; i < includeCount; i++) {
+            fragment.appendSegment(out, i);
+
+            if (tasks != null && tasks[i] != null) {
+                // The fragment was missing from the cache, its generation has been scheduled
+                try {
+                    appendContent(out, tasks[i].join());
+                } catch (RenderException e) {
+                    throw new RuntimeException(e.getMessage(), e);
+                }
+                continue;
+            }
+
+            String cacheKey = fragment.getIncludeKey(i);
+            String replacedCacheKey = replacePlaceholdersInCacheKey(renderContext, cacheKey);
+
+            if (logger.isDebugEnabled()) {
+                logger.debug("Check if {} is in cache", replacedCacheKey);
+            }
+
+            boolean cacheable = true;
+            Map<String, String> keyAttrbs = fragment.getIncludeKeyParts(i, cacheProvider.getKeyGenerator());
+            final String ecParameter = renderContext.getRequest().getParameter(EC);
+            if ((ecParameter != null && ecParameter.equals(keyAttrbs.get("resourceID"))) ||
+                    (renderContext.getRequest().getParameter(V) != null && renderContext.isLoggedIn())) {
+                cacheable = false;
+            }
 
-                    boolean cacheable = true;
-                    CacheKeyGenerator keyGenerator = cacheProvider.getKeyGenerator();
-                    Map<String, String> keyAttrbs = keyGenerator.parse(cacheKey);
-                    final String ecParameter = renderContext.getRequest().getParameter(EC);
-                    if ((ecParameter != null && ecParameter.equals(keyAttrbs.get("resourceID"))) ||
-                            (renderContext.getRequest().getParameter(V) != null && renderContext.isLoggedIn())) {
-                        cacheable = false;
+            if (cacheable && cache.isKeyInCache(replacedCacheKey)) {
+                // If fragment is in cache, get it from there and aggregate recursively
+                final Element element = cache.get(replacedCacheKey);
+                if (element != null && element.getObjectValue() != null) {
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("It has been found in cache");
                     }
+                    final FragmentCacheEntry cacheEntry = FragmentCacheEntry.valueOf((CacheEntry<?>) element.getObjectValue());
 
-                    if (cacheable && cache.isKeyInCache(replacedCacheKey)) {
-                        // If fragment is in cache, get it from there and aggregate recursively
-                        final Element element = cache.get(replacedCacheKey);
-                        if (element != null && element.getObjectValue() != null) {
-                            if (logger.isDebugEnabled()) {
-                                logger.debug("It has been found in cache");
-                            }
-                            @SuppressWarnings("unchecked")
-                            final CacheEntry<String> cacheEntry = (CacheEntry<String>) element.getObjectValue();
-                            String content = cacheEntry.getObject();
-
-                            // Avoid loops
-                            if (cacheKeyStack.contains(cacheKey)) {
-                                // replace by empty
-                                esiTagStartIndex = replaceInContent(sb, esiTagStartIndex, esiTagEndIndex + CACHE_ESI_TAG_END_LENGTH, StringUtils.EMPTY);
-                                continue;
-                            }
-                            cacheKeyStack.push(cacheKey);
-
-                            try {
-                                if (!cachedContent.equals(content)) {
-                                    try {
-                                        restorePropertiesFromCacheEntry(cacheEntry, renderContext);
-
-                                        esiTagStartIndex = replaceInContent(sb, esiTagStartIndex, esiTagEndIndex + CACHE_ESI_TAG_END_LENGTH,
-                                                aggregateContent(cache, content, renderContext, (String) cacheEntry.getProperty("areaResource"), cacheKeyStack, (Set<String>) cacheEntry.getProperty("allPaths")));
-                                    } catch (RenderException e) {
-                                        throw new RuntimeException(e.getMessage(), e);
-                                    }
-                                } else {
-                                    // TODO: need to investigate here, seem's that the if condition is always true.
-                                    esiTagStartIndex = replaceInContent(sb, esiTagStartIndex, esiTagEndIndex + CACHE_ESI_TAG_END_LENGTH, content);
-                                }
-                            } finally {
-                                cacheKeyStack.pop();
-                            }
-                        } else {
-                            cache.put(new Element(replacedCacheKey, null));
-                            if (logger.isDebugEnabled()) {
-                                logger.debug("Content is expired");
-                            }
-                            // The fragment is not in the cache, generate it
-                            try {
-                                esiTagStartIndex = replaceInContent(sb, esiTagStartIndex, esiTagEndIndex + CACHE_ESI_TAG_END_LENGTH,
-                                        generateContent(renderContext, cacheKey, areaIdentifier, allPaths));
-                            } catch (RenderException e) {
-                                throw new RuntimeException(e.getMessage(), e);
-                            }
+                    // Avoid loops, replace by empty
+                    if (!cacheKeyStack.contains(cacheKey)) {
+                        if (isRefreshDue(cacheEntry)) {
+                            // The fragment is about to expire, regenerate it in the background and serve it from the cache
+                            refreshAhead(replacedCacheKey, renderContext, cacheKey, areaIdentifier, allPaths, keyAttrbs);
                         }
-                    } else {
-                        if (logger.isDebugEnabled()) {
-                            logger.debug("Content is missing from cache");
-                        }
-                        // The fragment is not in the cache, generate it
+                        cacheKeyStack.push(cacheKey);
                         try {
-                            esiTagStartIndex = replaceInContent(sb, esiTagStartIndex, esiTagEndIndex + CACHE_ESI_TAG_END_LENGTH,
-                                    generateContent(renderContext, cacheKey, areaIdentifier, allPaths));
-                        } catch (RenderException e) {
-                            throw new RuntimeException(e.getMessage(), e);
+                            if (cacheEntry != fragment) {
+                                try {
+                                    restorePropertiesFromCacheEntry(cacheEntry, renderContext);
+                                    aggregateContent(cache, cacheEntry, renderContext, (String) cacheEntry.getProperty("areaResource"),
+                                            cacheKeyStack, (Set<String>) cacheEntry.getProperty("allPaths"), out);
+                                } catch (RenderException e) {
+                                    throw new RuntimeException(e.getMessage(), e);
+                                }
+                            } else {
+                                // TODO: need to investigate here, seem's that the if condition is always true.
+                                appendContent(out, cacheEntry.getObject());
+                            }
+                        } finally {
+                            cacheKeyStack.pop();
                         }
                     }
                 } else {
-                    // no closed esi end tag found
-                    return sb.toString();
+                    cache.put(new Element(replacedCacheKey, null));
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("Content is expired");
+                    }
+                    // The fragment is not in the cache, generate it
+                    try {
+                        appendContent(out, generateContent(renderContext, cacheKey, areaIdentifier, allPaths, keyAttrbs));
+                    } catch (RenderException e) {
+                        throw new RuntimeException(e.getMessage(), e);
+                    }
+                }
+            } else {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Content is missing from cache");
+                }
+                // The fragment is not in the cache, generate it
+                try {
+                    appendContent(out, generateContent(renderContext, cacheKey, areaIdentifier, allPaths, keyAttrbs));
+                } catch (RenderException e) {
+                    throw new RuntimeException(e.getMessage(), e);
                 }
             }
-            return sb.toString();
         }
+        fragment.appendSegment(out, includeCount);
     }
 
     /**
@@ -911,11 +1036,24 @@ public class AggregateCacheFilter extends AbstractFilter implements ApplicationL
     protected String generateContent(RenderContext renderContext,
                                      String cacheKey, String areaIdentifier,
                                      Set<String> allPaths) throws RenderException {
+        return generateContent(renderContext, cacheKey, areaIdentifier, allPaths, null);
+    }
+
+    /**
+     * Generates content for a sub fragment, which key has already been parsed.
+     *
+     * @param renderContext  The render context
+     * @param cacheKey       The cache key of the fragment to generate
+     * @param areaIdentifier
+     * @param allPaths
+     * @param parsedKey      The parsed key attributes or <code>null</code> if the key has to be parsed
+     */
+    protected String generateContent(RenderContext renderContext, String cacheKey, String areaIdentifier,
+                                     Set<String> allPaths, Map<String, String> parsedKey) throws RenderException {
         getFragmentGenerationPermit(cacheKey, renderContext.getRequest());
-        final CacheKeyGenerator cacheKeyGenerator = cacheProvider.getKeyGenerator();
         try {
             // Parse the key to get all separate key attributes like node path and template
-            Map<String, String> keyAttrbs = cacheKeyGenerator.parse(cacheKey);
+            Map<String, String> keyAttrbs = parsedKey != null ? parsedKey : cacheProvider.getKeyGenerator().parse(cacheKey);
             JCRSessionWrapper currentUserSession = JCRSessionFactory.getInstance().getCurrentUserSession(renderContext.getWorkspace(), LanguageCodeConverters.languageCodeToLocale(keyAttrbs.get("language")),
                     renderContext.getFallbackLocale());
             JCRNodeWrapper node = null;
@@ -1131,15 +1269,7 @@ public class AggregateCacheFilter extends AbstractFilter implements ApplicationL
                 releaseFragmentGenerationPermit(renderContext.getRequest());
             }
 
-            Set<CountDownLatch> latches = processingLatches.get();
-            Map<String, CountDownLatch> countDownLatchMap = generatorQueue.getGeneratingModules();
-            CountDownLatch latch = countDownLatchMap.get(finalKey);
-            if (latches != null && latches.contains(latch)) {
-                latch.countDown();
-                synchronized (countDownLatchMap) {
-                    latches.remove(countDownLatchMap.remove(finalKey));
-                }
-            }
+            generatorQueue.endGeneration(finalKey);
         }
     }
 
@@ -1164,6 +1294,40 @@ public class AggregateCacheFilter extends AbstractFilter implements ApplicationL
         }
     }
 
+    /**
+     * @param cacheEntry a cached fragment
+     * @return <code>true</code> if the cached fragment has entered its refresh-ahead window
+     */
+    private boolean isRefreshDue(CacheEntry<?> cacheEntry) {
+        if (fragmentRefresher == null || refreshAheadWindow <= 0) {
+            return false;
+        }
+        Long refreshAfter = (Long) cacheEntry.getProperty(CACHE_REFRESH_AFTER);
+        return refreshAfter != null && refreshAfter <= System.currentTimeMillis();
+    }
+
+    /**
+     * Schedules the regeneration of a cached fragment in the background, with a copy of the current render context.
+     * The regenerated content replaces the cached one, the current request being served the cached content.
+     *
+     * @param finalKey       the final key of the fragment
+     * @param renderContext  the current render context
+     * @param cacheKey       the key of the fragment, with placeholders
+     * @param areaIdentifier the identifier of the area the fragment is rendered in, if any
+     * @param allPaths       the paths rendered by the fragment parents, if known
+     * @param keyAttrbs      the parsed key attributes or <code>null</code> if the key has to be parsed
+     */
+    private void refreshAhead(String finalKey, RenderContext renderContext, final String cacheKey,
+                              final String areaIdentifier, final Set<String> allPaths,
+                              final Map<String, String> keyAttrbs) {
+        if (fragmentRefresher.refresh(finalKey, renderContext,
+                context -> generateContent(context, cacheKey, areaIdentifier, allPaths, keyAttrbs))) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Refreshing content ahead of its expiration for key: {}", finalKey);
+            }
+        }
+    }
+
     private void releaseFragmentGenerationPermit(HttpServletRequest request) {
         if (Boolean.TRUE.equals(request.getAttribute(HAS_PROCESSING_SEMAPHORE_PARAM))) {
             // another thread wanted the same module and got the latch first, so release the semaphore immediately as we must wait
@@ -1172,46 +1336,36 @@ public class AggregateCacheFilter extends AbstractFilter implements ApplicationL
         }
     }
 
-    protected CountDownLatch avoidParallelProcessingOfSameModule(String key, RenderContext renderContext,
-                                                                 Resource resource, Properties properties) throws RepositoryException {
+    /**
+     * Registers the current thread as the one generating the fragment, or waits for the thread already generating it.
+     *
+     * @return <code>false</code> if the current thread has to generate the fragment, <code>true</code> if it may have
+     * been generated by another thread and has to be looked up in the cache again
+     */
+    protected boolean avoidParallelProcessingOfSameModule(String key, RenderContext renderContext,
+                                                          Resource resource, Properties properties) throws RepositoryException {
         final HttpServletRequest request = renderContext.getRequest();
-        CountDownLatch latch = null;
-        boolean mustWait = true;
-        Map<String, CountDownLatch> generatingModules = generatorQueue.getGeneratingModules();
-        if (generatingModules.get(key) == null) {
+        if (!generatorQueue.isGenerating(key)) {
             getFragmentGenerationPermit(key, request);
         }
-        if (shouldUseLatch(resource, properties)) {
-            synchronized (generatingModules) {
-                latch = generatingModules.get(key);
-                if (latch == null) {
-                    latch = new CountDownLatch(1);
-                    generatingModules.put(key, latch);
-                    mustWait = false;
-                }
-            }
-        } else {
-            mustWait = false;
+        if (!shouldUseLatch(resource, properties)) {
+            return true;
         }
-        if (mustWait) {
-            releaseFragmentGenerationPermit(request);
+        CompletableFuture<Void> generation = generatorQueue.startGeneration(key);
+        if (generation == null) {
+            return false;
+        }
+        releaseFragmentGenerationPermit(request);
+        if (!generatorQueue.awaitGeneration(key, generation)) {
             try {
-                if (!latch.await(generatorQueue.getModuleGenerationWaitTime(), TimeUnit.MILLISECONDS)) {
-                    manageThreadDump();
-                    StringBuilder errorMsgBuilder = new StringBuilder(512);
-                    errorMsgBuilder.append("Module generation takes too long due to module not generated fast enough (>")
-                            .append(generatorQueue.getModuleGenerationWaitTime()).append(" ms)- ").append(key).append(" - ")
-                            .append(request.getRequestURI());
-                    renderContext.getRenderedPaths().remove(resource.getNode().getPath());
-                    throw new JahiaServiceUnavailableException(errorMsgBuilder.toString());
-                }
-                latch = null;
-            } catch (InterruptedException ie) {
-                Thread.currentThread().interrupt();
-                throw new JahiaRuntimeException(ie);
+                generatorQueue.handleWaitTimeout(key, request);
+            } catch (JahiaServiceUnavailableException e) {
+                renderContext.getRenderedPaths().remove(resource.getNode().getPath());
+                throw e;
             }
+            getFragmentGenerationPermit(key, request);
         }
-        return latch;
+        return true;
     }
 
     private boolean shouldUseLatch(Resource resource, Properties properties) throws RepositoryException {
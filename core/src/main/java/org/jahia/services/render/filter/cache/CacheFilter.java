@@ -61,7 +61,6 @@ import javax.servlet.http.HttpServletRequest;
 import java.io.Serializable;
 import java.text.SimpleDateFormat;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 
 import static org.jahia.services.render.filter.AggregateFilter.RESOURCES_STACK;
 
@@ -93,6 +92,7 @@ public class CacheFilter extends AbstractFilter {
     protected boolean cascadeFragmentErrors = false;
     protected int errorCacheExpiration = 5;
     protected int dependenciesLimit = 1000;
+    protected DependenciesLimitPolicy dependenciesLimitPolicy;
 
     private ModuleGeneratorQueue generatorQueue;
 
@@ -299,7 +299,7 @@ public class CacheFilter extends AbstractFilter {
         Set<String> depNodeWrappers = Collections.emptySet();
 
         // Create the fragment entry based on the rendered content
-        CacheEntry<String> cacheEntry = new CacheEntry<String>(previousOut);
+        FragmentCacheEntry cacheEntry = new FragmentCacheEntry(previousOut, cacheProvider.getKeyGenerator());
 
         // Store some properties that may have been set during fragment execution (todo : handle this another way)
         addPropertiesToCacheEntry(cacheEntry, renderContext);
@@ -313,6 +313,7 @@ public class CacheFilter extends AbstractFilter {
             storeDependencies(renderContext, resource, finalKey, depNodeWrappers);
         }
         cache.put(cachedElement);
+        AggregateFilter.setParsedFragment(renderContext, previousOut, cacheEntry);
 
         if (logger.isDebugEnabled()) {
             logger.debug("Store in cache content of fragment with key: {}", finalKey);
@@ -339,9 +340,13 @@ public class CacheFilter extends AbstractFilter {
             for (String path : depNodeWrappers) {
                 if(!path.startsWith("/modules")) {
                     Element element1 = dependenciesCache.get(path);
-                    Set<String> dependencies = element1 != null ? (Set<String>) element1.getObjectValue() : Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+                    Set<String> dependencies = element1 != null ? (Set<String>) element1.getObjectValue() : new CompactDependencySet();
                     if (!dependencies.contains(FLAG_ALL)) {
-                        if ((dependencies.size() + 1) > dependenciesLimit) {
+                        int limit = dependenciesLimitPolicy != null ? dependenciesLimitPolicy.getLimit(path) : dependenciesLimit;
+                        if ((dependencies.size() + 1) > limit && !dependencies.contains(finalKey)) {
+                            if (dependenciesLimitPolicy != null) {
+                                dependenciesLimitPolicy.collapsed(path, dependencies.size());
+                            }
                             Element element = new Element(path, FLAGS_ALL_SET);
                             element.setEternal(true);
                             dependenciesCache.put(element);
@@ -355,7 +360,7 @@ public class CacheFilter extends AbstractFilter {
             Set<String> regexpDepNodeWrappers = resource.getRegexpDependencies();
             for (String regexp : regexpDepNodeWrappers) {
                 Element element1 = regexpDependenciesCache.get(regexp);
-                Set<String> dependencies = element1 != null ? (Set<String>) element1.getObjectValue() : Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+                Set<String> dependencies = element1 != null ? (Set<String>) element1.getObjectValue() : new CompactDependencySet();
                 addDependencies(renderContext, finalKey, regexpDependenciesCache, regexp, dependencies);
             }
         }
@@ -472,6 +477,10 @@ public class CacheFilter extends AbstractFilter {
         logger.debug("Content retrieved from cache for node with key: {}", finalKey);
         CacheEntry<?> cacheEntry = (CacheEntry<?>) element.getObjectValue();
         String cachedContent = (String) cacheEntry.getObject();
+        if (cacheEntry instanceof FragmentCacheEntry) {
+            // let the aggregation reuse the parsed fragment instead of scanning the content again
+            AggregateFilter.setParsedFragment(renderContext, cachedContent, (FragmentCacheEntry) cacheEntry);
+        }
 
         // restore properties from cache entry
         // (todo : handle this another way), kept for now because fix pager issue
@@ -515,6 +524,10 @@ public class CacheFilter extends AbstractFilter {
         this.dependenciesLimit = dependenciesLimit;
     }
 
+    public void setDependenciesLimitPolicy(DependenciesLimitPolicy dependenciesLimitPolicy) {
+        this.dependenciesLimitPolicy = dependenciesLimitPolicy;
+    }
+
     public void setGeneratorQueue(ModuleGeneratorQueue generatorQueue) {
         this.generatorQueue = generatorQueue;
     }
@@ -0,0 +1,339 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/Apache2 OR 2/JSEL
+ *
+ *     1/ Apache2
+ *     ==================================================================================
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.services.render.filter.cache;
+
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Collects the HTML cache flushes to be propagated to the other cluster nodes during a short time window and sends
+ * them as a single batch message.
+ * <p/>
+ * Flushes are coalesced while they are pending: a path flush is dropped if the same path or one of its ancestors is
+ * already pending for a subtree flush, and a subtree flush replaces all the pending flushes below it. The subtree of a
+ * path is resolved exactly as {@link DependenciesPathIndex#getSubtree(String)} does on the receiving nodes: the path
+ * itself and the paths starting with the path followed by a <code>/</code>, the path being used as is.
+ * <p/>
+ * A batch is encoded as a list of entries separated by <code>|</code>, a character which is not allowed in JCR names:
+ * the first entry is <code>T</code> followed by the time the oldest flush of the batch was requested, the following
+ * ones are <code>P</code> followed by a node path or identifier to flush, or <code>C</code> followed by the root path
+ * of a subtree to flush.
+ */
+public class ClusterFlushPropagationBuffer implements ClusterFlushPropagationBufferMBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusterFlushPropagationBuffer.class);
+
+    private static final char SEPARATOR = '|';
+    private static final char TIMESTAMP = 'T';
+    private static final char PATH_FLUSH = 'P';
+    private static final char SUBTREE_FLUSH = 'C';
+
+    private final long window;
+    private final int maxBatchSize;
+    private final Consumer<String> sender;
+
+    private final Object lock = new Object();
+    private NavigableSet<String> pendingPaths = new TreeSet<String>();
+    private NavigableSet<String> pendingSubtrees = new TreeSet<String>();
+    private long oldestPendingTime;
+    private ScheduledExecutorService executor;
+
+    private final AtomicLong batchesSent = new AtomicLong();
+    private final AtomicLong flushesSent = new AtomicLong();
+    private final AtomicLong flushesCoalesced = new AtomicLong();
+    private final AtomicLong batchesReceived = new AtomicLong();
+    private final AtomicLong totalLatency = new AtomicLong();
+    private final AtomicLong maxLatency = new AtomicLong();
+
+    /**
+     * Initializes an instance of this class.
+     *
+     * @param window       the time, in milliseconds, flushes are collected before being sent
+     * @param maxBatchSize the number of pending flushes triggering the sending of the batch before the end of the
+     *                     time window
+     * @param sender       callback sending the encoded batch to the other cluster nodes
+     */
+    public ClusterFlushPropagationBuffer(long window, int maxBatchSize, Consumer<String> sender) {
+        this.window = window;
+        this.maxBatchSize = maxBatchSize;
+        this.sender = sender;
+    }
+
+    /**
+     * Starts the background sending of the collected flushes.
+     */
+    public void start() {
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "HTML cache flush propagation");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Sends the pending flushes and stops the background sending.
+     */
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        send();
+    }
+
+    /**
+     * Queues the flush of the dependencies of the specified node path or identifier.
+     *
+     * @param nodePathOrIdentifier the node path or identifier
+     */
+    public void addPath(String nodePathOrIdentifier) {
+        boolean full;
+        synchronized (lock) {
+            if (isCovered(nodePathOrIdentifier) || !pendingPaths.add(nodePathOrIdentifier)) {
+                flushesCoalesced.incrementAndGet();
+                return;
+            }
+            full = pendingAdded();
+        }
+        if (full) {
+            send();
+        }
+    }
+
+    /**
+     * Queues the flush of the dependencies of the specified path and of all the paths below it.
+     *
+     * @param path the root path of the subtree
+     */
+    public void addSubtree(String path) {
+        boolean full;
+        synchronized (lock) {
+            if (isCovered(path)) {
+                flushesCoalesced.incrementAndGet();
+                return;
+            }
+            flushesCoalesced.addAndGet(removeSubtree(pendingSubtrees, path) + removeSubtree(pendingPaths, path)
+                    + (pendingPaths.remove(path) ? 1 : 0));
+            pendingSubtrees.add(path);
+            full = pendingAdded();
+        }
+        if (full) {
+            send();
+        }
+    }
+
+    private boolean pendingAdded() {
+        int size = pendingPaths.size() + pendingSubtrees.size();
+        if (size == 1) {
+            oldestPendingTime = System.currentTimeMillis();
+            ScheduledExecutorService currentExecutor = executor;
+            if (currentExecutor != null) {
+                currentExecutor.schedule(this::send, window, TimeUnit.MILLISECONDS);
+            }
+        }
+        return size >= maxBatchSize || executor == null;
+    }
+
+    private boolean isCovered(String nodePathOrIdentifier) {
+        if (pendingSubtrees.isEmpty() || !nodePathOrIdentifier.startsWith("/")) {
+            return false;
+        }
+        if (pendingSubtrees.contains(nodePathOrIdentifier)) {
+            return true;
+        }
+        int idx = nodePathOrIdentifier.indexOf('/');
+        while (idx != -1) {
+            if (pendingSubtrees.contains(nodePathOrIdentifier.substring(0, idx))) {
+                return true;
+            }
+            idx = nodePathOrIdentifier.indexOf('/', idx + 1);
+        }
+        return false;
+    }
+
+    private static int removeSubtree(NavigableSet<String> paths, String path) {
+        NavigableSet<String> subtree = paths.subSet(path + '/', true, path + '0', false);
+        int size = subtree.size();
+        subtree.clear();
+        return size;
+    }
+
+    /**
+     * Sends the pending flushes, if any, as one batch.
+     */
+    public void send() {
+        NavigableSet<String> paths;
+        NavigableSet<String> subtrees;
+        long oldest;
+        synchronized (lock) {
+            if (pendingPaths.isEmpty() && pendingSubtrees.isEmpty()) {
+                return;
+            }
+            paths = pendingPaths;
+            subtrees = pendingSubtrees;
+            oldest = oldestPendingTime;
+            pendingPaths = new TreeSet<String>();
+            pendingSubtrees = new TreeSet<String>();
+        }
+        StringBuilder message = new StringBuilder().append(TIMESTAMP).append(oldest);
+        for (String subtree : subtrees) {
+            message.append(SEPARATOR).append(SUBTREE_FLUSH).append(subtree);
+        }
+        for (String path : paths) {
+            message.append(SEPARATOR).append(PATH_FLUSH).append(path);
+        }
+        try {
+            sender.accept(message.toString());
+            batchesSent.incrementAndGet();
+            flushesSent.addAndGet(paths.size() + subtrees.size());
+            if (logger.isDebugEnabled()) {
+                logger.debug("Sent batch of {} subtree and {} path flushes to the cluster", subtrees.size(), paths.size());
+            }
+        } catch (Exception e) {
+            logger.error("Unable to propagate HTML cache flushes to the cluster", e);
+        }
+    }
+
+    /**
+     * Decodes a received batch message.
+     *
+     * @param message  the batch message
+     * @param paths    the collection to add the node paths or identifiers to flush to
+     * @param subtrees the collection to add the root paths of the subtrees to flush to
+     * @return the time the oldest flush of the batch was requested, or <code>0</code> if unknown
+     */
+    public static long decode(String message, Collection<String> paths, Collection<String> subtrees) {
+        long timestamp = 0;
+        for (String entry : StringUtils.split(message, SEPARATOR)) {
+            char type = entry.charAt(0);
+            String value = entry.substring(1);
+            if (type == PATH_FLUSH) {
+                paths.add(value);
+            } else if (type == SUBTREE_FLUSH) {
+                subtrees.add(value);
+            } else if (type == TIMESTAMP) {
+                try {
+                    timestamp = Long.parseLong(value);
+                } catch (NumberFormatException e) {
+                    logger.warn("Invalid timestamp in HTML cache flush batch: {}", value);
+                }
+            }
+        }
+        return timestamp;
+    }
+
+    /**
+     * Records the processing of a batch received from another cluster node.
+     *
+     * @param timestamp the time the oldest flush of the batch was requested
+     */
+    public void batchReceived(long timestamp) {
+        batchesReceived.incrementAndGet();
+        if (timestamp > 0) {
+            long latency = Math.max(0, System.currentTimeMillis() - timestamp);
+            totalLatency.addAndGet(latency);
+            long max;
+            do {
+                max = maxLatency.get();
+            } while (latency > max && !maxLatency.compareAndSet(max, latency));
+        }
+    }
+
+    @Override
+    public long getBatchesSent() {
+        return batchesSent.get();
+    }
+
+    @Override
+    public long getFlushesSent() {
+        return flushesSent.get();
+    }
+
+    @Override
+    public long getFlushesCoalesced() {
+        return flushesCoalesced.get();
+    }
+
+    @Override
+    public long getBatchesReceived() {
+        return batchesReceived.get();
+    }
+
+    @Override
+    public long getAverageFlushLatency() {
+        long received = batchesReceived.get();
+        return received > 0 ? totalLatency.get() / received : 0;
+    }
+
+    @Override
+    public long getMaxFlushLatency() {
+        return maxLatency.get();
+    }
+
+    @Override
+    public int getPendingFlushes() {
+        synchronized (lock) {
+            return pendingPaths.size() + pendingSubtrees.size();
+        }
+    }
+
+    @Override
+    public void resetStatistics() {
+        batchesSent.set(0);
+        flushesSent.set(0);
+        flushesCoalesced.set(0);
+        batchesReceived.set(0);
+        totalLatency.set(0);
+        maxLatency.set(0);
+    }
+}
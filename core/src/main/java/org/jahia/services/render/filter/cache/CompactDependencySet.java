@@ -0,0 +1,223 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/Apache2 OR 2/JSEL
+ *
+ *     1/ Apache2
+ *     ==================================================================================
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.services.render.filter.cache;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Set of the fragment keys depending on a path, as stored in the dependencies caches.
+ * <p/>
+ * Keys are kept compressed in a sorted array (see {@link KeyCompressor#compressKey(String)}): each key only takes an
+ * array of references to its shared parts, instead of a string and a hash table node. The array is guarded by a
+ * read/write lock: lookups are binary searches done under the read lock, so they run concurrently, and modifications
+ * shift the keys in place under the write lock. A {@link StampedLock} is used rather than a {@link java.util.concurrent.locks.ReentrantReadWriteLock},
+ * which would keep a per-thread hold count for each of the many sets.
+ */
+public class CompactDependencySet extends AbstractSet<String> implements Serializable {
+
+    private static final long serialVersionUID = 2511962604286391043L;
+    private static final String[][] EMPTY = new String[0][];
+    private static final Comparator<String[]> KEY_ORDER = KeyCompressor::compare;
+
+    private transient StampedLock lock = new StampedLock();
+    private transient String[][] keys = EMPTY;
+    private transient int size;
+
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof String)) {
+            return false;
+        }
+        String[] parts = KeyCompressor.splitKey((String) o);
+        long stamp = lock.readLock();
+        try {
+            return Arrays.binarySearch(keys, 0, size, parts, KEY_ORDER) >= 0;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public boolean add(String key) {
+        String[] parts = KeyCompressor.splitKey(key);
+        long stamp = lock.writeLock();
+        try {
+            int index = Arrays.binarySearch(keys, 0, size, parts, KEY_ORDER);
+            if (index >= 0) {
+                return false;
+            }
+            index = -index - 1;
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, Math.max(4, size + (size >> 1)));
+            }
+            System.arraycopy(keys, index, keys, index + 1, size - index);
+            keys[index] = KeyCompressor.shareParts(parts);
+            size++;
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (!(o instanceof String)) {
+            return false;
+        }
+        String[] parts = KeyCompressor.splitKey((String) o);
+        long stamp = lock.writeLock();
+        try {
+            int index = Arrays.binarySearch(keys, 0, size, parts, KEY_ORDER);
+            if (index < 0) {
+                return false;
+            }
+            System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+            keys[--size] = null;
+            if (size == 0) {
+                keys = EMPTY;
+            }
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            keys = EMPTY;
+            size = 0;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public int size() {
+        long stamp = lock.tryOptimisticRead();
+        int current = size;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                current = size;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Iterates over a snapshot of the keys, decompressed as they are iterated: the iterator does not reflect later
+     * modifications and does not support removal.
+     */
+    @Override
+    public Iterator<String> iterator() {
+        final String[][] snapshot = snapshot();
+        return new Iterator<String>() {
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return index < snapshot.length;
+            }
+
+            @Override
+            public String next() {
+                if (index >= snapshot.length) {
+                    throw new NoSuchElementException();
+                }
+                return KeyCompressor.decompressKey(snapshot[index++]);
+            }
+        };
+    }
+
+    @Override
+    public Object[] toArray() {
+        String[][] snapshot = snapshot();
+        String[] array = new String[snapshot.length];
+        for (int i = 0; i < snapshot.length; i++) {
+            array[i] = KeyCompressor.decompressKey(snapshot[i]);
+        }
+        return array;
+    }
+
+    private String[][] snapshot() {
+        long stamp = lock.readLock();
+        try {
+            return Arrays.copyOf(keys, size);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        // the decompressed keys, as written by the previous versions
+        out.writeObject(toArray());
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        String[] read = (String[]) in.readObject();
+        String[][] compressed = new String[read.length][];
+        for (int i = 0; i < read.length; i++) {
+            compressed[i] = KeyCompressor.compressKey(read[i]);
+        }
+        // the order of the compressed keys differs from the order of the strings
+        Arrays.sort(compressed, KEY_ORDER);
+        lock = new StampedLock();
+        keys = compressed;
+        size = compressed.length;
+    }
+}
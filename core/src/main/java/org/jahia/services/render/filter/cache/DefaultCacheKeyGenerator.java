@@ -66,7 +66,7 @@ public class DefaultCacheKeyGenerator implements CacheKeyGenerator {
 
     private static final Logger logger = LoggerFactory.getLogger(DefaultCacheKeyGenerator.class);
 
-    private static final String KEY_PART_DELIMITER = "@@";
+    static final String KEY_PART_DELIMITER = "@@";
 
     private static final String KEY_PART_DELIMITER_ESCAPE = "&dblAt;";
     private static final String AMPERSAND_ESCAPE = "&amp;";
@@ -0,0 +1,333 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/Apache2 OR 2/JSEL
+ *
+ *     1/ Apache2
+ *     ==================================================================================
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.services.render.filter.cache;
+
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.Element;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the number of fragments a path of the dependencies caches can reference.
+ * <p/>
+ * Once a dependency set exceeds its limit, it is replaced by the <code>ALL</code> flag and any change on the path
+ * flushes the whole HTML cache. The limit can be set per path category, using patterns matching the beginning of the
+ * paths, where <code>*</code> stands for any path segment (e.g. <code>/sites/*&#47;files=200</code>); the most
+ * specific pattern applies, other paths use the default limit.
+ * <p/>
+ * The policy also counts the sets exceeding their limit and exposes, over JMX, the largest dependency sets, so that
+ * the paths causing full HTML cache flushes can be identified.
+ */
+public class DependenciesLimitPolicy implements InitializingBean, DisposableBean, DependenciesLimitPolicyMBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(DependenciesLimitPolicy.class);
+
+    private static final String MBEAN_NAME = "org.jahia.services.cache:type=HTMLDependencies";
+
+    private ModuleCacheProvider cacheProvider;
+    private int defaultLimit = 1000;
+    private List<Category> categories = Collections.emptyList();
+    private int maxTrackedPaths = 1000;
+    private int largestSetsCount = 20;
+
+    private final AtomicLong collapseCount = new AtomicLong();
+    private final ConcurrentMap<String, AtomicLong> collapsedPaths = new ConcurrentHashMap<String, AtomicLong>();
+
+    /**
+     * A category of paths, with its limit.
+     */
+    private static final class Category {
+
+        private final String pattern;
+        private final String[] segments;
+        private final int limit;
+
+        private Category(String pattern, int limit) {
+            this.pattern = pattern;
+            this.segments = StringUtils.split(pattern, '/');
+            this.limit = limit;
+        }
+
+        private boolean matches(String[] pathSegments) {
+            if (pathSegments.length < segments.length) {
+                return false;
+            }
+            for (int i = 0; i < segments.length; i++) {
+                if (!"*".equals(segments[i]) && !segments[i].equals(pathSegments[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Returns the maximum number of fragments the dependency set of the specified path can reference.
+     *
+     * @param path the path or regular expression of the dependency
+     * @return the limit applying to the path
+     */
+    public int getLimit(String path) {
+        List<Category> current = categories;
+        if (current.isEmpty() || !path.startsWith("/")) {
+            return defaultLimit;
+        }
+        String[] pathSegments = StringUtils.split(path, '/');
+        for (Category category : current) {
+            if (category.matches(pathSegments)) {
+                return category.limit;
+            }
+        }
+        return defaultLimit;
+    }
+
+    /**
+     * Records that the dependency set of the specified path exceeded its limit.
+     *
+     * @param path the path or regular expression of the dependency
+     * @param size the size the set reached
+     */
+    public void collapsed(String path, int size) {
+        collapseCount.incrementAndGet();
+        AtomicLong count = collapsedPaths.get(path);
+        if (count == null && collapsedPaths.size() < maxTrackedPaths) {
+            AtomicLong previous = collapsedPaths.putIfAbsent(path, count = new AtomicLong());
+            if (previous != null) {
+                count = previous;
+            } else {
+                logger.info("Dependencies limit {} exceeded by path {}, any change on it will flush the whole HTML cache",
+                        getLimit(path), path);
+            }
+        }
+        if (count != null) {
+            count.incrementAndGet();
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Dependencies limit exceeded by path {}: {}/{}", path, size, getLimit(path));
+        }
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        if (mBeanServer != null) {
+            try {
+                ObjectName name = new ObjectName(MBEAN_NAME);
+                if (!mBeanServer.isRegistered(name)) {
+                    mBeanServer.registerMBean(this, name);
+                }
+            } catch (Exception e) {
+                logger.warn("Unable to register JMX bean for the HTML dependencies due to {}", e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        if (mBeanServer != null) {
+            try {
+                ObjectName name = new ObjectName(MBEAN_NAME);
+                if (mBeanServer.isRegistered(name)) {
+                    mBeanServer.unregisterMBean(name);
+                }
+            } catch (Exception e) {
+                logger.warn("Unable to unregister JMX bean for the HTML dependencies due to {}", e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public int getDefaultLimit() {
+        return defaultLimit;
+    }
+
+    @Override
+    public String[] getCategoryLimits() {
+        List<Category> current = categories;
+        String[] limits = new String[current.size()];
+        for (int i = 0; i < limits.length; i++) {
+            limits[i] = current.get(i).pattern + "=" + current.get(i).limit;
+        }
+        return limits;
+    }
+
+    @Override
+    public long getCollapseCount() {
+        return collapseCount.get();
+    }
+
+    @Override
+    public String[] getCollapsedPaths() {
+        List<Map.Entry<String, AtomicLong>> entries = new ArrayList<Map.Entry<String, AtomicLong>>(collapsedPaths.entrySet());
+        Collections.sort(entries, new Comparator<Map.Entry<String, AtomicLong>>() {
+            @Override
+            public int compare(Map.Entry<String, AtomicLong> o1, Map.Entry<String, AtomicLong> o2) {
+                return Long.compare(o2.getValue().get(), o1.getValue().get());
+            }
+        });
+        String[] result = new String[entries.size()];
+        for (int i = 0; i < result.length; i++) {
+            Map.Entry<String, AtomicLong> entry = entries.get(i);
+            result[i] = entry.getKey() + ": " + entry.getValue().get() + " (limit " + getLimit(entry.getKey()) + ")";
+        }
+        return result;
+    }
+
+    @Override
+    public String[] getLargestDependencySets() {
+        PriorityQueue<Map.Entry<String, Integer>> largest = new PriorityQueue<Map.Entry<String, Integer>>(largestSetsCount + 1,
+                new Comparator<Map.Entry<String, Integer>>() {
+                    @Override
+                    public int compare(Map.Entry<String, Integer> o1, Map.Entry<String, Integer> o2) {
+                        return Integer.compare(o1.getValue(), o2.getValue());
+                    }
+                });
+        if (cacheProvider != null) {
+            collectLargest(cacheProvider.getDependenciesCache(), largest);
+            collectLargest(cacheProvider.getRegexpDependenciesCache(), largest);
+        }
+        String[] result = new String[largest.size()];
+        for (int i = result.length - 1; i >= 0; i--) {
+            Map.Entry<String, Integer> entry = largest.poll();
+            result[i] = entry.getKey() + ": " + (entry.getValue() == Integer.MAX_VALUE ? AggregateCacheFilter.ALL : entry.getValue())
+                    + " (limit " + getLimit(entry.getKey()) + ")";
+        }
+        return result;
+    }
+
+    private void collectLargest(Cache cache, PriorityQueue<Map.Entry<String, Integer>> largest) {
+        if (cache == null) {
+            return;
+        }
+        for (Object key : cache.getKeys()) {
+            Element element = cache.getQuiet(key);
+            if (element == null || !(element.getObjectValue() instanceof Set)) {
+                continue;
+            }
+            Set<?> dependencies = (Set<?>) element.getObjectValue();
+            int size = dependencies.contains(AggregateCacheFilter.ALL) ? Integer.MAX_VALUE : dependencies.size();
+            if (largest.size() < largestSetsCount || size > largest.peek().getValue()) {
+                largest.add(new AbstractMap.SimpleImmutableEntry<String, Integer>(String.valueOf(key), size));
+                if (largest.size() > largestSetsCount) {
+                    largest.poll();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void resetStatistics() {
+        collapseCount.set(0);
+        collapsedPaths.clear();
+    }
+
+    public void setCacheProvider(ModuleCacheProvider cacheProvider) {
+        this.cacheProvider = cacheProvider;
+    }
+
+    /**
+     * @param defaultLimit the maximum number of fragments depending on a path not matching any category
+     */
+    public void setDefaultLimit(int defaultLimit) {
+        this.defaultLimit = defaultLimit;
+    }
+
+    /**
+     * Sets the limits per path category, as a comma separated list of <code>pattern=limit</code> entries.
+     *
+     * @param categoryLimits the limits per path category
+     */
+    public void setCategoryLimits(String categoryLimits) {
+        List<Category> parsed = new ArrayList<Category>();
+        for (String entry : StringUtils.split(StringUtils.defaultString(categoryLimits), ',')) {
+            String pattern = StringUtils.substringBeforeLast(entry, "=").trim();
+            String limit = StringUtils.substringAfterLast(entry, "=").trim();
+            if (pattern.isEmpty() || !StringUtils.isNumeric(limit) || limit.isEmpty()) {
+                logger.warn("Ignoring invalid dependencies limit: {}", entry);
+                continue;
+            }
+            parsed.add(new Category(pattern, Integer.parseInt(limit)));
+        }
+        // most specific patterns first
+        Collections.sort(parsed, new Comparator<Category>() {
+            @Override
+            public int compare(Category o1, Category o2) {
+                return Integer.compare(o2.segments.length, o1.segments.length);
+            }
+        });
+        categories = parsed;
+    }
+
+    /**
+     * @param maxTrackedPaths the maximum number of paths for which the collapses are counted
+     */
+    public void setMaxTrackedPaths(int maxTrackedPaths) {
+        this.maxTrackedPaths = maxTrackedPaths;
+    }
+
+    /**
+     * @param largestSetsCount the number of dependency sets listed by {@link #getLargestDependencySets()}
+     */
+    public void setLargestSetsCount(int largestSetsCount) {
+        this.largestSetsCount = largestSetsCount;
+    }
+}
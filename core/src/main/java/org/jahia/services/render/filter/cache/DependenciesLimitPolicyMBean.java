@@ -0,0 +1,82 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/Apache2 OR 2/JSEL
+ *
+ *     1/ Apache2
+ *     ==================================================================================
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.services.render.filter.cache;
+
+/**
+ * Management interface of the {@link DependenciesLimitPolicy}.
+ */
+public interface DependenciesLimitPolicyMBean {
+
+    /**
+     * @return the maximum number of fragments depending on a path not matching any category
+     */
+    int getDefaultLimit();
+
+    /**
+     * @return the path categories and their limits, as <code>pattern=limit</code> entries
+     */
+    String[] getCategoryLimits();
+
+    /**
+     * @return the number of dependency sets which exceeded their limit and were replaced by the flag flushing the
+     * whole HTML cache
+     */
+    long getCollapseCount();
+
+    /**
+     * @return the paths whose dependency set exceeded its limit, with the number of times it happened and the limit
+     * applied, most frequent first
+     */
+    String[] getCollapsedPaths();
+
+    /**
+     * @return the largest dependency sets currently in the dependencies cache, with their size and the limit applied,
+     * largest first. Flushing one of the paths flagged as <code>ALL</code> flushes the whole HTML cache.
+     */
+    String[] getLargestDependencySets();
+
+    /**
+     * Resets the statistics.
+     */
+    void resetStatistics();
+}
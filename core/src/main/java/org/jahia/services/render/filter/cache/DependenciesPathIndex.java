@@ -0,0 +1,165 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/Apache2 OR 2/JSEL
+ *
+ *     1/ Apache2
+ *     ==================================================================================
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.services.render.filter.cache;
+
+import net.sf.ehcache.CacheException;
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.Element;
+import net.sf.ehcache.event.CacheEventListenerAdapter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Sorted secondary index over the path keys of the HTML dependencies cache.
+ * <p/>
+ * All keys below a given path form a contiguous range in the sorted set (<code>path + '/'</code> inclusive up to
+ * <code>path + '0'</code> exclusive, as <code>'0'</code> is the character following <code>'/'</code>), so the subtree
+ * of a node can be resolved in a time proportional to the size of that subtree instead of scanning all the keys of
+ * the cache. The index is kept in sync with the cache by registering it as a cache event listener.
+ * <p/>
+ * Only keys starting with a <code>/</code> are indexed, node identifiers used as dependency keys are ignored.
+ */
+public class DependenciesPathIndex extends CacheEventListenerAdapter {
+
+    private final NavigableSet<String> paths = new ConcurrentSkipListSet<String>();
+
+    /**
+     * Registers the index as an event listener of the specified cache and indexes the keys already present in it.
+     *
+     * @param cache the dependencies cache to index
+     */
+    public void bind(Ehcache cache) {
+        cache.getCacheEventNotificationService().registerListener(this);
+        for (Object key : cache.getKeys()) {
+            add(key);
+        }
+    }
+
+    /**
+     * Returns the indexed path itself (if present) and all the indexed paths starting with <code>path + '/'</code>,
+     * like a scan of the keys would. The path is used as is: the subtree of <code>/</code> is made of <code>/</code>
+     * and the paths starting with <code>//</code>, not of all the paths, and the subtree of a path with a trailing
+     * slash does not include the paths below the same path without it.
+     *
+     * @param path the root path of the subtree
+     * @return the list of indexed paths in the subtree of the specified path
+     */
+    public List<String> getSubtree(String path) {
+        List<String> result = new ArrayList<String>();
+        if (paths.contains(path)) {
+            result.add(path);
+        }
+        result.addAll(paths.subSet(path + '/', true, path + '0', false));
+        return result;
+    }
+
+    /**
+     * Returns all the indexed paths in the subtrees of the specified paths.
+     *
+     * @param rootPaths the root paths of the subtrees
+     * @param result the collection to add the matching paths to
+     */
+    public void collectSubtrees(Collection<String> rootPaths, Collection<String> result) {
+        for (String rootPath : rootPaths) {
+            result.addAll(getSubtree(rootPath));
+        }
+    }
+
+    /**
+     * @return the number of indexed paths
+     */
+    public int size() {
+        return paths.size();
+    }
+
+    void add(Object key) {
+        if (key instanceof String && ((String) key).startsWith("/")) {
+            paths.add((String) key);
+        }
+    }
+
+    private void remove(Ehcache cache, Object key) {
+        // the key could have been put again concurrently, in which case it must stay indexed
+        if (key instanceof String && !cache.isKeyInCache(key)) {
+            paths.remove(key);
+        }
+    }
+
+    @Override
+    public void notifyElementPut(Ehcache cache, Element element) throws CacheException {
+        add(element.getObjectKey());
+    }
+
+    @Override
+    public void notifyElementUpdated(Ehcache cache, Element element) throws CacheException {
+        add(element.getObjectKey());
+    }
+
+    @Override
+    public void notifyElementRemoved(Ehcache cache, Element element) throws CacheException {
+        remove(cache, element.getObjectKey());
+    }
+
+    @Override
+    public void notifyElementExpired(Ehcache cache, Element element) {
+        remove(cache, element.getObjectKey());
+    }
+
+    @Override
+    public void notifyElementEvicted(Ehcache cache, Element element) {
+        remove(cache, element.getObjectKey());
+    }
+
+    @Override
+    public void notifyRemoveAll(Ehcache cache) {
+        paths.clear();
+        // re-index entries which were put between the flush of the cache and this notification
+        for (Object key : cache.getKeys()) {
+            add(key);
+        }
+    }
+}
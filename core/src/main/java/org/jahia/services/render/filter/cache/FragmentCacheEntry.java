@@ -0,0 +1,249 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/Apache2 OR 2/JSEL
+ *
+ *     1/ Apache2
+ *     ==================================================================================
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.services.render.filter.cache;
+
+import org.jahia.services.cache.CacheEntry;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * HTML fragment cache entry, holding the fragment content in a pre-parsed form: the content is kept as is, together
+ * with the positions of the &lt;jahia_esi:include&gt; placeholders it contains. The keys of the included fragments and
+ * their parsed key parts are derived from the content once per entry, when it is created with a key generator or on
+ * first use, and are shared across entries.
+ * <p/>
+ * Fragments can then be aggregated on each cache hit without scanning the content for the include tags again, without
+ * splitting the include keys and without copying or decoding the static segments. The {@link #getObject()} method
+ * still returns the full fragment content.
+ * <p/>
+ * Memory-wise, the content is held once, as the single string the former plain entries held, plus two integers per
+ * include. The include keys and their parsed parts are computed when first needed and are not serialized; the values
+ * of the parts are interned by the {@link KeyCompressor}, so that the ones repeated across fragments are only held
+ * once.
+ */
+public class FragmentCacheEntry extends CacheEntry<String> {
+
+    private static final long serialVersionUID = -2745520593812934627L;
+
+    private static final String ESI_TAG_START = "<jahia_esi:include src=\"";
+    private static final String ESI_TAG_END = "\"></jahia_esi:include>";
+
+    /**
+     * Start and end of each include tag in the content: <code>includeBounds[2 * i]</code> is the index of the include
+     * tag <code>i</code>, and <code>includeBounds[2 * i + 1]</code> the index following its end.
+     */
+    private int[] includeBounds;
+    private transient volatile String[] includeKeys;
+    private transient volatile List<Map<String, String>> includeKeyParts;
+
+    /**
+     * Creates the entry for the specified fragment content, the keys of the included fragments are parsed on first use.
+     *
+     * @param content the fragment content
+     */
+    public FragmentCacheEntry(String content) {
+        this(content, null);
+    }
+
+    /**
+     * Creates the entry for the specified fragment content.
+     *
+     * @param content      the fragment content
+     * @param keyGenerator the key generator used to parse the keys of the included fragments, can be
+     *                     <code>null</code>
+     */
+    public FragmentCacheEntry(String content, CacheKeyGenerator keyGenerator) {
+        super(content);
+        tokenize(content);
+        if (keyGenerator != null) {
+            parseIncludeKeys(keyGenerator);
+        }
+    }
+
+    /**
+     * Returns a cache entry for the specified cached object: the object itself if it is a pre-parsed fragment, or a
+     * newly parsed one for an entry holding the content as a plain string.
+     *
+     * @param cacheEntry the cached entry
+     * @return the corresponding pre-parsed fragment entry
+     */
+    public static FragmentCacheEntry valueOf(CacheEntry<?> cacheEntry) {
+        if (cacheEntry instanceof FragmentCacheEntry) {
+            return (FragmentCacheEntry) cacheEntry;
+        }
+        FragmentCacheEntry fragment = new FragmentCacheEntry((String) cacheEntry.getObject());
+        fragment.setExtendedProperties(cacheEntry.getExtendedProperties());
+        return fragment;
+    }
+
+    private void tokenize(String content) {
+        includeKeys = null;
+        includeKeyParts = null;
+        if (content == null) {
+            includeBounds = null;
+            return;
+        }
+        int[] bounds = new int[16];
+        int count = 0;
+        int esiTagStartIndex = content.indexOf(ESI_TAG_START);
+        while (esiTagStartIndex != -1) {
+            int esiTagEndIndex = content.indexOf(ESI_TAG_END, esiTagStartIndex);
+            if (esiTagEndIndex == -1) {
+                // no closed esi end tag found
+                break;
+            }
+            if (count == bounds.length) {
+                int[] newBounds = new int[count * 2];
+                System.arraycopy(bounds, 0, newBounds, 0, count);
+                bounds = newBounds;
+            }
+            bounds[count++] = esiTagStartIndex;
+            bounds[count++] = esiTagEndIndex + ESI_TAG_END.length();
+            esiTagStartIndex = content.indexOf(ESI_TAG_START, esiTagEndIndex + ESI_TAG_END.length());
+        }
+        includeBounds = new int[count];
+        System.arraycopy(bounds, 0, includeBounds, 0, count);
+    }
+
+    private String[] getIncludeKeys() {
+        String[] keys = includeKeys;
+        if (keys == null) {
+            String content = getObject();
+            keys = new String[getIncludeCount()];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = content.substring(includeBounds[2 * i] + ESI_TAG_START.length(),
+                        includeBounds[2 * i + 1] - ESI_TAG_END.length());
+            }
+            includeKeys = keys;
+        }
+        return keys;
+    }
+
+    private List<Map<String, String>> parseIncludeKeys(CacheKeyGenerator keyGenerator) {
+        List<Map<String, String>> parts = includeKeyParts;
+        if (parts == null) {
+            String[] keys = getIncludeKeys();
+            parts = new ArrayList<Map<String, String>>(keys.length);
+            for (String key : keys) {
+                // paths, templates, languages and ACLs are repeated across many fragments, share them
+                parts.add(KeyCompressor.encodeKeyParts(keyGenerator.parse(key)));
+            }
+            includeKeyParts = parts;
+        }
+        return parts;
+    }
+
+    @Override
+    public void setObject(String object) {
+        super.setObject(object);
+        tokenize(object);
+    }
+
+    /**
+     * @return the number of included fragments; the fragment has one more static segment than included fragments
+     */
+    public int getIncludeCount() {
+        return includeBounds != null ? includeBounds.length / 2 : 0;
+    }
+
+    /**
+     * Returns the static content segment preceding the included fragment at the specified index, the last segment
+     * being the one following the last included fragment.
+     *
+     * @param index the segment index, from <code>0</code> to {@link #getIncludeCount()} inclusive
+     * @return the content segment
+     * @see #appendSegment(StringBuilder, int)
+     */
+    public String getSegment(int index) {
+        return getObject().substring(getSegmentStart(index), getSegmentEnd(index));
+    }
+
+    /**
+     * Appends the static content segment at the specified index to the specified builder, without copying it first.
+     *
+     * @param out   the builder to append the segment to
+     * @param index the segment index, from <code>0</code> to {@link #getIncludeCount()} inclusive
+     */
+    public void appendSegment(StringBuilder out, int index) {
+        out.append(getObject(), getSegmentStart(index), getSegmentEnd(index));
+    }
+
+    private int getSegmentStart(int index) {
+        return index == 0 ? 0 : includeBounds[2 * index - 1];
+    }
+
+    private int getSegmentEnd(int index) {
+        return index == getIncludeCount() ? getObject().length() : includeBounds[2 * index];
+    }
+
+    /**
+     * @param index the index of the included fragment
+     * @return the key (with placeholders) of the included fragment at the specified index
+     */
+    public String getIncludeKey(int index) {
+        return getIncludeKeys()[index];
+    }
+
+    /**
+     * Returns the parsed key parts of the included fragment at the specified index. The keys of all the included
+     * fragments are parsed on the first call, unless it was done when creating the entry.
+     *
+     * @param index        the index of the included fragment
+     * @param keyGenerator the key generator used to parse the keys of the included fragments
+     * @return a modifiable copy of the parsed key parts
+     */
+    public Map<String, String> getIncludeKeyParts(int index, CacheKeyGenerator keyGenerator) {
+        return new LinkedHashMap<String, String>(parseIncludeKeys(keyGenerator).get(index));
+    }
+
+    /**
+     * @return the length, in characters, of the full fragment content
+     */
+    public int getLength() {
+        String content = getObject();
+        return content != null ? content.length() : 0;
+    }
+}
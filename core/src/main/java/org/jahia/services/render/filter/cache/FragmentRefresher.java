@@ -0,0 +1,208 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/Apache2 OR 2/JSEL
+ *
+ *     1/ Apache2
+ *     ==================================================================================
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.services.render.filter.cache;
+
+import org.jahia.services.render.RenderContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import javax.jcr.RepositoryException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Regenerates the cached fragments which are about to expire on a bounded pool of background threads, while the
+ * requests are still served the cached content.
+ * <p/>
+ * A fragment is refreshed at most once at a time, with a copy of the render context of the request which scheduled it
+ * (see {@link RenderContextSnapshot}), and only if a module generation permit of the {@link ModuleGeneratorQueue} can
+ * be acquired immediately. A refresh which cannot be scheduled, because the queue is full, or started, because no
+ * permit is available, is skipped: another request will schedule it again, or the fragment expires and is regenerated
+ * as usual.
+ * <p/>
+ * The status, headers, cookies and redirects set during a refresh cannot be applied to any request: a fragment setting
+ * any of them is removed from the cache once refreshed, so that the next request regenerates it itself. A fragment is
+ * not refreshed either if the URLs of the response cannot be encoded outside of the requesting thread (see
+ * {@link RenderContextSnapshot#isDetachable()}).
+ */
+public class FragmentRefresher implements InitializingBean, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(FragmentRefresher.class);
+
+    private final Set<String> refreshingFragments = ConcurrentHashMap.newKeySet();
+
+    private ModuleGeneratorQueue generatorQueue;
+    private ModuleCacheProvider cacheProvider;
+    private int threads = 2;
+    private int queueSize = 100;
+    private ThreadPoolExecutor executor;
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        if (threads > 0) {
+            final AtomicInteger count = new AtomicInteger();
+            executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(queueSize), runnable -> {
+                        Thread thread = new Thread(runnable, "Fragment refresh " + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            executor.allowCoreThreadTimeOut(true);
+        }
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * Schedules the regeneration of a fragment, unless it is already being refreshed. Must be called by the requesting
+     * thread.
+     *
+     * @param finalKey      the final key of the fragment
+     * @param renderContext the current render context
+     * @param generator     the generator of the fragment content, storing it in the cache
+     * @return <code>true</code> if the regeneration has been scheduled
+     */
+    public boolean refresh(String finalKey, RenderContext renderContext, ParallelFragmentRenderer.FragmentGenerator generator) {
+        ThreadPoolExecutor executor = this.executor;
+        if (executor == null || !refreshingFragments.add(finalKey)) {
+            return false;
+        }
+        try {
+            RenderContextSnapshot snapshot = new RenderContextSnapshot(renderContext);
+            if (!snapshot.isDetachable()) {
+                refreshingFragments.remove(finalKey);
+                return false;
+            }
+            executor.execute(new Refresh(finalKey, snapshot, generator));
+            return true;
+        } catch (RejectedExecutionException | RepositoryException e) {
+            refreshingFragments.remove(finalKey);
+            if (logger.isDebugEnabled()) {
+                logger.debug("Unable to schedule the refresh of fragment " + finalKey, e);
+            }
+            return false;
+        }
+    }
+
+    public void setGeneratorQueue(ModuleGeneratorQueue generatorQueue) {
+        this.generatorQueue = generatorQueue;
+    }
+
+    public void setCacheProvider(ModuleCacheProvider cacheProvider) {
+        this.cacheProvider = cacheProvider;
+    }
+
+    /**
+     * @param threads the number of threads refreshing fragments; <code>0</code> to disable the refresh-ahead
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * @param queueSize the maximum number of fragments waiting to be refreshed, further refreshes being skipped
+     */
+    public void setQueueSize(int queueSize) {
+        this.queueSize = queueSize;
+    }
+
+    private class Refresh implements Runnable {
+
+        private final String finalKey;
+        private final RenderContextSnapshot snapshot;
+        private final ParallelFragmentRenderer.FragmentGenerator generator;
+
+        private Refresh(String finalKey, RenderContextSnapshot snapshot, ParallelFragmentRenderer.FragmentGenerator generator) {
+            this.finalKey = finalKey;
+            this.snapshot = snapshot;
+            this.generator = generator;
+        }
+
+        @Override
+        public void run() {
+            try {
+                Semaphore permits = generatorQueue.getAvailableProcessings();
+                if (!permits.tryAcquire()) {
+                    logger.debug("No generation permit available, skipping the refresh of fragment {}", finalKey);
+                    return;
+                }
+                FragmentRequest request = snapshot.getRequest();
+                request.setAttribute(AggregateCacheFilter.HAS_PROCESSING_SEMAPHORE_PARAM, Boolean.TRUE);
+                try {
+                    snapshot.bindToCurrentThread();
+                    FragmentResponse response = snapshot.createResponse();
+                    RenderContext renderContext = snapshot.createRenderContext(response);
+                    generator.generate(renderContext);
+                    if (response.hasSideEffects() || renderContext.getRedirect() != null) {
+                        logger.debug("Fragment {} sets the response status, headers or cookies, removing it from the cache", finalKey);
+                        cacheProvider.getCache().remove(finalKey);
+                    }
+                } catch (Exception e) {
+                    logger.warn("Unable to refresh fragment " + finalKey, e);
+                } finally {
+                    if (Boolean.TRUE.equals(request.getAttribute(AggregateCacheFilter.HAS_PROCESSING_SEMAPHORE_PARAM))) {
+                        permits.release();
+                        request.removeAttribute(AggregateCacheFilter.HAS_PROCESSING_SEMAPHORE_PARAM);
+                    }
+                    snapshot.unbindFromCurrentThread();
+                }
+            } finally {
+                refreshingFragments.remove(finalKey);
+            }
+        }
+    }
+}
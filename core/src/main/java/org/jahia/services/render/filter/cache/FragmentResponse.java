@@ -0,0 +1,403 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/Apache2 OR 2/JSEL
+ *
+ *     1/ Apache2
+ *     ==================================================================================
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.services.render.filter.cache;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.UnsupportedEncodingException;
+import java.util.*;
+
+/**
+ * A response used to render fragments outside of the requesting thread. It keeps no reference to the original response:
+ * the output is buffered, and the status, redirect, headers and cookies set during the rendering are recorded, to be
+ * {@link #replay(HttpServletResponse) replayed} on the original response by the requesting thread.
+ * <p/>
+ * The URLs are not encoded with the session id, which the {@link org.jahia.services.seo.urlrewrite.SessionidRemovalResponseWrapper}
+ * replaces in the rendered fragments anyway. The outbound URL rewriting is applied by wrapping this response the same
+ * way as the original one (see {@link RenderContextSnapshot#createResponse()}).
+ */
+class FragmentResponse implements HttpServletResponse {
+
+    private static final String DEFAULT_ENCODING = "UTF-8";
+
+    private final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    private final StringWriter sw = new StringWriter();
+    private final Map<String, List<String>> headers = new TreeMap<String, List<String>>(String.CASE_INSENSITIVE_ORDER);
+    private final List<Cookie> cookies = new ArrayList<Cookie>();
+    private final List<Action> actions = new ArrayList<Action>();
+
+    private final ServletOutputStream sos = new ServletOutputStream() {
+        @Override
+        public void write(int b) {
+            bos.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            bos.write(b, off, len);
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            throw new IllegalStateException("Asynchronous processing is not supported when rendering a fragment");
+        }
+    };
+
+    private PrintWriter writer;
+    private boolean isStreamUsed;
+    private String characterEncoding;
+    private String contentType;
+    private Locale locale;
+    private int status = SC_OK;
+    private String redirect;
+
+    /**
+     * A change of the response, recorded to be replayed on the original response.
+     */
+    private interface Action {
+        void replay(HttpServletResponse response) throws IOException;
+    }
+
+    /**
+     * Creates a response with the character encoding, content type and locale of the original one.
+     *
+     * @param characterEncoding the character encoding of the original response
+     * @param contentType       the content type of the original response
+     * @param locale            the locale of the original response
+     */
+    FragmentResponse(String characterEncoding, String contentType, Locale locale) {
+        this.characterEncoding = characterEncoding;
+        this.contentType = contentType;
+        this.locale = locale;
+    }
+
+    /**
+     * @return the output written so far
+     * @throws UnsupportedEncodingException if the character encoding is not supported
+     */
+    public String getString() throws UnsupportedEncodingException {
+        if (writer != null) {
+            writer.flush();
+            return sw.toString();
+        }
+        return isStreamUsed ? bos.toString(characterEncoding != null ? characterEncoding : DEFAULT_ENCODING) : "";
+    }
+
+    /**
+     * @return the location of the redirect requested during the rendering, if any
+     */
+    public String getRedirect() {
+        return redirect;
+    }
+
+    /**
+     * @return the cookies added during the rendering
+     */
+    public List<Cookie> getCookies() {
+        return Collections.unmodifiableList(cookies);
+    }
+
+    /**
+     * @return <code>true</code> if the status, a header or a cookie has been set, or a redirect or an error sent during
+     * the rendering
+     */
+    public boolean hasSideEffects() {
+        return !actions.isEmpty();
+    }
+
+    /**
+     * Applies to the specified response the status, headers, cookies, redirect and error set during the rendering, in
+     * the order they were set. Must be called by the thread processing the specified response.
+     *
+     * @param response the original response
+     * @throws IOException in case the redirect or error cannot be sent
+     */
+    public void replay(HttpServletResponse response) throws IOException {
+        for (Action action : actions) {
+            action.replay(response);
+        }
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() {
+        if (writer != null) {
+            throw new IllegalStateException("The getWriter() was already called before on this object");
+        }
+        isStreamUsed = true;
+        return sos;
+    }
+
+    @Override
+    public PrintWriter getWriter() {
+        if (isStreamUsed) {
+            throw new IllegalStateException("The getOutputStream() was already called before on this object");
+        }
+        if (writer == null) {
+            writer = new PrintWriter(sw);
+        }
+        return writer;
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+    }
+
+    @Override
+    public void resetBuffer() {
+        bos.reset();
+        sw.getBuffer().setLength(0);
+    }
+
+    @Override
+    public void reset() {
+        resetBuffer();
+        headers.clear();
+        cookies.clear();
+        actions.clear();
+        status = SC_OK;
+        redirect = null;
+    }
+
+    @Override
+    public boolean isCommitted() {
+        return false;
+    }
+
+    @Override
+    public void setBufferSize(int size) {
+        // the output is entirely buffered
+    }
+
+    @Override
+    public int getBufferSize() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public String getCharacterEncoding() {
+        return characterEncoding != null ? characterEncoding : "ISO-8859-1";
+    }
+
+    @Override
+    public void setCharacterEncoding(String charset) {
+        characterEncoding = charset;
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public void setContentType(String type) {
+        contentType = type;
+    }
+
+    @Override
+    public void setContentLength(int len) {
+        // not relevant for a fragment
+    }
+
+    @Override
+    public void setContentLengthLong(long len) {
+        // not relevant for a fragment
+    }
+
+    @Override
+    public Locale getLocale() {
+        return locale;
+    }
+
+    @Override
+    public void setLocale(Locale loc) {
+        locale = loc;
+    }
+
+    @Override
+    public void addCookie(Cookie cookie) {
+        cookies.add(cookie);
+        actions.add(response -> response.addCookie(cookie));
+    }
+
+    @Override
+    public boolean containsHeader(String name) {
+        return headers.containsKey(name);
+    }
+
+    @Override
+    public String getHeader(String name) {
+        List<String> values = headers.get(name);
+        return values != null && !values.isEmpty() ? values.get(0) : null;
+    }
+
+    @Override
+    public Collection<String> getHeaders(String name) {
+        List<String> values = headers.get(name);
+        return values != null ? new ArrayList<String>(values) : Collections.<String>emptyList();
+    }
+
+    @Override
+    public Collection<String> getHeaderNames() {
+        return new ArrayList<String>(headers.keySet());
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        headers.remove(name);
+        putHeader(name, value);
+        actions.add(response -> response.setHeader(name, value));
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        putHeader(name, value);
+        actions.add(response -> response.addHeader(name, value));
+    }
+
+    private void putHeader(String name, String value) {
+        List<String> values = headers.get(name);
+        if (values == null) {
+            values = new ArrayList<String>(1);
+            headers.put(name, values);
+        }
+        values.add(value);
+    }
+
+    @Override
+    public void setDateHeader(String name, long date) {
+        headers.remove(name);
+        putHeader(name, String.valueOf(date));
+        actions.add(response -> response.setDateHeader(name, date));
+    }
+
+    @Override
+    public void addDateHeader(String name, long date) {
+        putHeader(name, String.valueOf(date));
+        actions.add(response -> response.addDateHeader(name, date));
+    }
+
+    @Override
+    public void setIntHeader(String name, int value) {
+        headers.remove(name);
+        putHeader(name, String.valueOf(value));
+        actions.add(response -> response.setIntHeader(name, value));
+    }
+
+    @Override
+    public void addIntHeader(String name, int value) {
+        putHeader(name, String.valueOf(value));
+        actions.add(response -> response.addIntHeader(name, value));
+    }
+
+    @Override
+    public String encodeURL(String url) {
+        return url;
+    }
+
+    @Override
+    public String encodeRedirectURL(String url) {
+        return url;
+    }
+
+    @Override
+    @Deprecated
+    public String encodeUrl(String url) {
+        return url;
+    }
+
+    @Override
+    @Deprecated
+    public String encodeRedirectUrl(String url) {
+        return url;
+    }
+
+    @Override
+    public void sendError(int sc, String msg) {
+        status = sc;
+        actions.add(response -> response.sendError(sc, msg));
+    }
+
+    @Override
+    public void sendError(int sc) {
+        status = sc;
+        actions.add(response -> response.sendError(sc));
+    }
+
+    @Override
+    public void sendRedirect(String location) {
+        redirect = location;
+        status = SC_FOUND;
+        actions.add(response -> response.sendRedirect(location));
+    }
+
+    @Override
+    public void setStatus(int sc) {
+        status = sc;
+        actions.add(response -> response.setStatus(sc));
+    }
+
+    @Override
+    @Deprecated
+    public void setStatus(int sc, String sm) {
+        setStatus(sc);
+    }
+
+    @Override
+    public int getStatus() {
+        return status;
+    }
+}
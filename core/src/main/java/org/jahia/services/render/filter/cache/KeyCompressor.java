@@ -42,72 +42,131 @@
  */
 package org.jahia.services.render.filter.cache;
 
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Class of utility method for compressing/decompressing cache key.
+ * <p/>
+ * Cache keys are long strings, made of the values of all the key part generators, and the dependency sets of the
+ * dependencies caches hold a key for every fragment depending on a path, long after the fragment itself has been
+ * evicted. Most of the parts are the same for many keys: paths, templates, languages, ACL signatures. A compressed key
+ * is the array of its parts, each part being interned, so that a part is held once whatever the number of keys using
+ * it, and a key only costs an array of references to its parts. Keys are decompressed to their original format, so
+ * they can still be parsed and compared as plain strings.
  */
 
 public class KeyCompressor {
     protected transient static Logger logger = org.slf4j.LoggerFactory.getLogger(KeyCompressor.class);
 
+    private static final Interner<String> KEY_PARTS = Interners.newWeakInterner();
+
     /**
      * Encode a cacheKey.
      * @param inputString The key to encode
-     * @return the encoded key as a Base-64 url safe string
+     * @return the key, unchanged: keys are compressed where they are stored, see {@link #compressKey(String)}
      */
     public static String encodeKey(String inputString) {
-        if (StringUtils.isEmpty(inputString)) {
-            return inputString;
-        }
-//        // Compress the bytes
-//        byte[] output = new byte[4096];
-//        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(4096);
-//        Deflater compresser = new Deflater(Deflater.BEST_SPEED);
-//        try {
-//            compresser.setInput(inputString.getBytes("UTF-8"));
-//            compresser.finish();
-//            int compressedDataLength;
-//            do {
-//                compressedDataLength = compresser.deflate(output);
-//                if (compressedDataLength > 0) {
-//                    outputStream.write(output, 0, compressedDataLength);
-//                }
-//            } while (compressedDataLength > 0);
-//            return Base64.encodeBase64URLSafeString(outputStream.toByteArray());
-//        } catch (UnsupportedEncodingException e) {
-//            logger.warn("Not able to encode dependency: " + inputString, e);
-//        } finally {
-//            compresser.end();
-//        }
-
         return inputString;
     }
 
     /**
-     * Decode a base-64 url safe cache key.
+     * Decode a cache key.
      *
      * @param inputString encoded key.
      * @return decoded key
      */
     public static String decodeKey(String inputString) {
-//        if (StringUtils.isEmpty(inputString)) {
-            return inputString;
-//        }
-//        byte[] input = Base64.decodeBase64(inputString);
-//        // Decompress the bytes
-//        StringBuilder outputString = new StringBuilder();
-//        try {
-//            ByteArrayOutputStream outputStream = new ByteArrayOutputStream(2048);
-//            InflaterOutputStream inflaterOutputStream = new InflaterOutputStream(outputStream);
-//            inflaterOutputStream.write(input, 0, input.length);
-//            outputString.append(outputStream.toString("UTF-8"));
-//        } catch (UnsupportedEncodingException e) {
-//            logger.warn("Not able to decode dependency: " + inputString, e);
-//        } catch (IOException e) {
-//            logger.warn("Not able to encode dependency: " + inputString, e);
-//        }
-//        return outputString.toString();
+        return inputString;
+    }
+
+    /**
+     * Compresses a key into the array of its parts, as separated by the {@link DefaultCacheKeyGenerator}, each part
+     * being a shared instance.
+     *
+     * @param key the key to compress
+     * @return the shared parts of the key
+     * @see #decompressKey(String[])
+     */
+    public static String[] compressKey(String key) {
+        return shareParts(splitKey(key));
+    }
+
+    /**
+     * Rebuilds a key from its compressed parts.
+     *
+     * @param parts the parts returned by {@link #compressKey(String)}
+     * @return the key
+     */
+    public static String decompressKey(String[] parts) {
+        return StringUtils.join(parts, DefaultCacheKeyGenerator.KEY_PART_DELIMITER);
+    }
+
+    /**
+     * Splits a key into its parts, without sharing them, to look up a compressed key.
+     */
+    static String[] splitKey(String key) {
+        List<String> parts = new ArrayList<String>(16);
+        int start = 0;
+        int end;
+        while ((end = key.indexOf(DefaultCacheKeyGenerator.KEY_PART_DELIMITER, start)) > -1) {
+            parts.add(key.substring(start, end));
+            start = end + DefaultCacheKeyGenerator.KEY_PART_DELIMITER.length();
+        }
+        parts.add(key.substring(start));
+        return parts.toArray(new String[parts.size()]);
+    }
+
+    /**
+     * Replaces the parts returned by {@link #splitKey(String)} by their shared instances.
+     */
+    static String[] shareParts(String[] parts) {
+        for (int i = 0; i < parts.length; i++) {
+            parts[i] = KEY_PARTS.intern(parts[i]);
+        }
+        return parts;
+    }
+
+    /**
+     * Compares two compressed keys, part by part. Parts of stored keys being shared, equal parts are usually the same
+     * instance.
+     */
+    static int compare(String[] parts1, String[] parts2) {
+        int length = Math.min(parts1.length, parts2.length);
+        for (int i = 0; i < length; i++) {
+            if (parts1[i] != parts2[i]) {
+                int result = parts1[i].compareTo(parts2[i]);
+                if (result != 0) {
+                    return result;
+                }
+            }
+        }
+        return parts1.length - parts2.length;
+    }
+
+    /**
+     * Returns a copy of the specified parsed key parts, sharing their names and values.
+     *
+     * @param keyParts the parsed key parts
+     * @return an unmodifiable copy of the key parts
+     */
+    public static Map<String, String> encodeKeyParts(Map<String, String> keyParts) {
+        if (keyParts == null) {
+            return null;
+        }
+        Map<String, String> encoded = new LinkedHashMap<String, String>(keyParts.size());
+        for (Map.Entry<String, String> entry : keyParts.entrySet()) {
+            encoded.put(KEY_PARTS.intern(entry.getKey()),
+                    entry.getValue() != null ? KEY_PARTS.intern(entry.getValue()) : null);
+        }
+        return Collections.unmodifiableMap(encoded);
     }
-}
\ No newline at end of file
+}
@@ -55,9 +55,13 @@ import org.jahia.services.templates.JahiaTemplateManagerService.TemplatePackageR
 import org.jahia.settings.SettingsBean;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.context.ApplicationListener;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -67,22 +71,28 @@ import java.util.concurrent.ConcurrentHashMap;
  * @author Cedric Mailleux
  * @author Sergiy Shyrkov
  */
-public class ModuleCacheProvider implements InitializingBean, ApplicationListener<TemplatePackageRedeployedEvent> {
+public class ModuleCacheProvider implements InitializingBean, DisposableBean, ApplicationListener<TemplatePackageRedeployedEvent> {
 
     private static final String CACHE_NAME = "HTMLCache";
     private static final String CACHE_SYNC_NAME = "HTMLCacheEventSync";
     private static final String DEPS_CACHE_NAME = "HTMLDependenciesCache";
     private static final String REGEXPDEPS_CACHE_NAME = "HTMLREGEXPDependenciesCache";
+    private static final String FLUSH_PROPAGATION_MBEAN_NAME = "org.jahia.services.cache:type=HTMLCacheFlushPropagation";
 
     private static final Logger logger = LoggerFactory.getLogger(ModuleCacheProvider.class);
 
     private Cache regexpDependenciesCache;
+    private RegexpDependenciesMatcher regexpDependenciesMatcher = new RegexpDependenciesMatcher();
     private Cache htmlCache;
     private EhCacheProvider cacheProvider;
     private Cache dependenciesCache;
+    private DependenciesPathIndex dependenciesPathIndex = new DependenciesPathIndex();
     private Cache syncCache;
     private Set<String> nonCacheableFragments = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
     private CacheKeyGenerator keyGenerator;
+    private long flushPropagationWindow;
+    private int flushPropagationMaxBatchSize = 5000;
+    private ClusterFlushPropagationBuffer flushPropagationBuffer;
 
     // needed for retro compatibility with old cache implem
     private AggregateCacheFilter aggregateCacheFilter;
@@ -120,12 +130,14 @@ public class ModuleCacheProvider implements InitializingBean, ApplicationListene
             dependenciesCache = cacheManager.getCache(DEPS_CACHE_NAME);
         }
         dependenciesCache.setMemoryStoreEvictionPolicy(new DependenciesCacheEvictionPolicy());
+        dependenciesPathIndex.bind(dependenciesCache);
         regexpDependenciesCache = cacheManager.getCache(REGEXPDEPS_CACHE_NAME);
         if (regexpDependenciesCache == null) {
             cacheManager.addCache(REGEXPDEPS_CACHE_NAME);
             regexpDependenciesCache = cacheManager.getCache(REGEXPDEPS_CACHE_NAME);
         }
         regexpDependenciesCache.setMemoryStoreEvictionPolicy(new DependenciesCacheEvictionPolicy());
+        regexpDependenciesMatcher.bind(regexpDependenciesCache);
 
         if (SettingsBean.getInstance().isClusterActivated()) {
             // only create syncCache in cluster
@@ -134,6 +146,49 @@ public class ModuleCacheProvider implements InitializingBean, ApplicationListene
                 cacheManager.addCache(CACHE_SYNC_NAME);
                 syncCache = cacheManager.getCache(CACHE_SYNC_NAME);
             }
+            if (flushPropagationWindow > 0) {
+                flushPropagationBuffer = new ClusterFlushPropagationBuffer(flushPropagationWindow,
+                        flushPropagationMaxBatchSize, batch -> sendCacheFlushCommandToCluster(CMD_FLUSH_BATCH, batch));
+                flushPropagationBuffer.start();
+                registerMBean();
+            }
+        }
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (flushPropagationBuffer != null) {
+            unregisterMBean();
+            flushPropagationBuffer.stop();
+            flushPropagationBuffer = null;
+        }
+    }
+
+    private void registerMBean() {
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        if (mBeanServer != null) {
+            try {
+                ObjectName name = new ObjectName(FLUSH_PROPAGATION_MBEAN_NAME);
+                if (!mBeanServer.isRegistered(name)) {
+                    mBeanServer.registerMBean(flushPropagationBuffer, name);
+                }
+            } catch (Exception e) {
+                logger.warn("Unable to register JMX bean for the HTML cache flush propagation due to {}", e.getMessage());
+            }
+        }
+    }
+
+    private void unregisterMBean() {
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        if (mBeanServer != null) {
+            try {
+                ObjectName name = new ObjectName(FLUSH_PROPAGATION_MBEAN_NAME);
+                if (mBeanServer.isRegistered(name)) {
+                    mBeanServer.unregisterMBean(name);
+                }
+            } catch (Exception e) {
+                logger.warn("Unable to unregister JMX bean for the HTML cache flush propagation due to {}", e.getMessage());
+            }
         }
     }
 
@@ -204,6 +259,13 @@ public class ModuleCacheProvider implements InitializingBean, ApplicationListene
         return dependenciesCache;
     }
 
+    /**
+     * @return the sorted index of the node paths, used as keys in the dependencies cache
+     */
+    public DependenciesPathIndex getDependenciesPathIndex() {
+        return dependenciesPathIndex;
+    }
+
     public CacheKeyGenerator getKeyGenerator() {
         return keyGenerator;
     }
@@ -234,6 +296,13 @@ public class ModuleCacheProvider implements InitializingBean, ApplicationListene
         return regexpDependenciesCache;
     }
 
+    /**
+     * @return the compiled regular expressions, used as keys in the regexp dependencies cache
+     */
+    public RegexpDependenciesMatcher getRegexpDependenciesMatcher() {
+        return regexpDependenciesMatcher;
+    }
+
     public void invalidateRegexp(String key) {
         invalidateRegexp(key, true);
     }
@@ -258,7 +327,11 @@ public class ModuleCacheProvider implements InitializingBean, ApplicationListene
 
     public void propagateChildrenDependenciesFlushToCluster(String path, boolean propagateToOtherClusterNodes) {
         if (propagateToOtherClusterNodes) {
-            sendCacheFlushCommandToCluster(CMD_FLUSH_CHILDREN, path);
+            if (flushPropagationBuffer != null) {
+                flushPropagationBuffer.addSubtree(path);
+            } else {
+                sendCacheFlushCommandToCluster(CMD_FLUSH_CHILDREN, path);
+            }
         }
     }
 
@@ -269,19 +342,35 @@ public class ModuleCacheProvider implements InitializingBean, ApplicationListene
      */
     public void flushChildrenDependenciesOfPath(String path, boolean propagateToOtherClusterNodes) {
         logger.debug("Flushing dependencies for path: {}", path);
-        @SuppressWarnings("unchecked")
-        List<String> keys = dependenciesCache.getKeys();
-        String pathWithTrailingSlash = null;
-        if (!keys.isEmpty()) {
-            pathWithTrailingSlash = path + '/';
+        boolean propagateSubtree = propagateToOtherClusterNodes && SettingsBean.getInstance().isClusterActivated();
+        if (propagateSubtree && flushPropagationBuffer != null) {
+            // queue the subtree first, the per-path flushes below are then coalesced into it
+            propagateChildrenDependenciesFlushToCluster(path, true);
+            propagateSubtree = false;
         }
-        for (String key : keys) {
-            if (key.equals(path) || key.startsWith(pathWithTrailingSlash)) {
-                invalidate(key, propagateToOtherClusterNodes);
-            }
+        for (String key : dependenciesPathIndex.getSubtree(path)) {
+            invalidate(key, propagateToOtherClusterNodes);
         }
-        if (SettingsBean.getInstance().isClusterActivated()) {
-            propagateChildrenDependenciesFlushToCluster(path, propagateToOtherClusterNodes);
+        if (propagateSubtree) {
+            propagateChildrenDependenciesFlushToCluster(path, true);
+        }
+    }
+
+    /**
+     * Processes a batch of flushes received from another cluster node.
+     *
+     * @param batch the encoded batch, as produced by the {@link ClusterFlushPropagationBuffer}
+     */
+    public void flushBatch(String batch) {
+        List<String> paths = new ArrayList<String>();
+        List<String> subtrees = new ArrayList<String>();
+        long timestamp = ClusterFlushPropagationBuffer.decode(batch, paths, subtrees);
+        for (String subtree : subtrees) {
+            flushChildrenDependenciesOfPath(subtree, false);
+        }
+        invalidate(paths, false);
+        if (flushPropagationBuffer != null) {
+            flushPropagationBuffer.batchReceived(timestamp);
         }
     }
 
@@ -295,12 +384,8 @@ public class ModuleCacheProvider implements InitializingBean, ApplicationListene
      */
     public void flushRegexpDependenciesOfPath(String path, boolean propagateToOtherClusterNodes) {
         logger.debug("Flushing dependencies for path: {}", path);
-        @SuppressWarnings("unchecked")
-        List<String> keys = getRegexpDependenciesCache().getKeys();
-        for (String key : keys) {
-            if (path.matches(key)) {
-                invalidateRegexp(key, propagateToOtherClusterNodes);
-            }
+        for (String key : regexpDependenciesMatcher.getMatchingRegexps(path)) {
+            invalidateRegexp(key, propagateToOtherClusterNodes);
         }
         if (propagateToOtherClusterNodes && SettingsBean.getInstance().isClusterActivated()) {
             propagateFlushRegexpDependenciesOfPath(path, propagateToOtherClusterNodes);
@@ -360,7 +445,35 @@ public class ModuleCacheProvider implements InitializingBean, ApplicationListene
     }
 
     public void propagatePathFlushToCluster(String nodePathOrIdentifier) {
-        sendCacheFlushCommandToCluster(CMD_FLUSH_PATH, nodePathOrIdentifier);
+        if (flushPropagationBuffer != null) {
+            flushPropagationBuffer.addPath(nodePathOrIdentifier);
+        } else {
+            sendCacheFlushCommandToCluster(CMD_FLUSH_PATH, nodePathOrIdentifier);
+        }
+    }
+
+    /**
+     * @return the buffer batching the flushes propagated to the other cluster nodes, or <code>null</code> if flushes
+     * are sent one by one
+     */
+    public ClusterFlushPropagationBuffer getFlushPropagationBuffer() {
+        return flushPropagationBuffer;
+    }
+
+    /**
+     * @param flushPropagationWindow the time, in milliseconds, flushes are collected before being propagated to the
+     *                               other cluster nodes as one batch; <code>0</code> to send them one by one
+     */
+    public void setFlushPropagationWindow(long flushPropagationWindow) {
+        this.flushPropagationWindow = flushPropagationWindow;
+    }
+
+    /**
+     * @param flushPropagationMaxBatchSize the number of pending flushes triggering the propagation of the batch
+     *                                     before the end of the time window
+     */
+    public void setFlushPropagationMaxBatchSize(int flushPropagationMaxBatchSize) {
+        this.flushPropagationMaxBatchSize = flushPropagationMaxBatchSize;
     }
 
     @Deprecated
@@ -48,29 +48,45 @@ import org.jahia.services.render.RenderContext;
 import org.jahia.tools.jvm.ThreadMonitor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import javax.servlet.http.HttpServletRequest;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 /**
  * @author : rincevent
  * @since JAHIA 6.5
  * Created : 12 oct. 2010
  */
-public class ModuleGeneratorQueue implements InitializingBean {
+public class ModuleGeneratorQueue implements InitializingBean, DisposableBean, ModuleGeneratorQueueMBean {
 
     public static final String HAS_PROCESSING_SEMAPHORE_PARAM = "moduleGeneratorQueue.hasProcessingSemaphore";
 
+    private static final String MBEAN_NAME = "org.jahia.services.cache:type=ModuleGeneratorQueue";
+    private static final long[] HISTOGRAM_BOUNDS = {10, 50, 100, 500, 1000, 5000, 10000};
+
     private Map<String, String> notCacheableModule = new ConcurrentHashMap<String, String>(2503);
-    private Map<String, CountDownLatch> generatingModules;
+    private final ConcurrentMap<String, FragmentGeneration> generatingModules = new ConcurrentHashMap<String, FragmentGeneration>();
+    private boolean generateOnWaitTimeout = false;
     private int maxModulesToGenerateInParallel = 50;
     private long moduleGenerationWaitTime = 5000;
     private volatile Semaphore availableProcessings = null;
@@ -80,8 +96,13 @@ public class ModuleGeneratorQueue implements InitializingBean {
     private static long lastThreadDumpTime = 0L;
     private Byte[] threadDumpCheckLock = new Byte[0];
 
-    private static ThreadLocal<Set<CountDownLatch>> processingLatches = new ThreadLocal<Set<CountDownLatch>>();
-    private static ThreadLocal<String> generatingKeySemaphore = new ThreadLocal<String>();
+    private final AtomicLong waitCount = new AtomicLong();
+    private final AtomicLong waitTimeouts = new AtomicLong();
+    private final AtomicLong totalWaitTime = new AtomicLong();
+    private final AtomicLongArray waitTimeHistogram = new AtomicLongArray(HISTOGRAM_BOUNDS.length + 1);
+    private final AtomicLong generationCount = new AtomicLong();
+    private final AtomicLong totalGenerationTime = new AtomicLong();
+    private final AtomicLongArray generationTimeHistogram = new AtomicLongArray(HISTOGRAM_BOUNDS.length + 1);
 
     private static final Logger logger = LoggerFactory.getLogger(ModuleGeneratorQueue.class);
 
@@ -89,8 +110,55 @@ public class ModuleGeneratorQueue implements InitializingBean {
         return notCacheableModule;
     }
 
+    /**
+     * A fragment being generated: the thread generating it completes the future once the fragment is available, the
+     * other threads needing it wait on the future.
+     */
+    private static final class FragmentGeneration {
+
+        private final CompletableFuture<Void> future = new CompletableFuture<Void>();
+        private final Thread owner = Thread.currentThread();
+        private final long start = System.nanoTime();
+        private final AtomicInteger waiting = new AtomicInteger();
+        private CountDownLatch latch;
+
+        private synchronized CountDownLatch getLatch() {
+            if (latch == null) {
+                latch = new CountDownLatch(1);
+                future.thenRun(latch::countDown);
+            }
+            return latch;
+        }
+    }
+
+    /**
+     * @return a snapshot of the fragments being generated, each with a latch released at the end of its generation
+     * @deprecated the generations are no longer tracked with latches, use {@link #isGenerating(String)},
+     * {@link #startGeneration(String)} and {@link #awaitGeneration(String, CompletableFuture)} instead; the returned
+     * map is not modifiable and does not reflect the generations started after the call
+     */
+    @Deprecated
     public Map<String, CountDownLatch> getGeneratingModules() {
-        return generatingModules;
+        Map<String, CountDownLatch> latches = new HashMap<String, CountDownLatch>();
+        for (Map.Entry<String, FragmentGeneration> entry : generatingModules.entrySet()) {
+            latches.put(entry.getKey(), entry.getValue().getLatch());
+        }
+        return Collections.unmodifiableMap(latches);
+    }
+
+    /**
+     * @return the latches of the fragments being generated by the current thread
+     * @deprecated only used to support {@link AggregateCacheFilter#processingLatches}
+     */
+    @Deprecated
+    Set<CountDownLatch> getCurrentThreadLatches() {
+        Set<CountDownLatch> latches = new HashSet<CountDownLatch>();
+        for (FragmentGeneration generation : generatingModules.values()) {
+            if (generation.owner == Thread.currentThread()) {
+                latches.add(generation.getLatch());
+            }
+        }
+        return latches;
     }
 
     /**
@@ -114,48 +182,148 @@ public class ModuleGeneratorQueue implements InitializingBean {
     }
 
     /**
-     * This is the main function of the latch mechanism that will acquire the latch or wait until the release
-     * @param key the key for the latch
-     * @param request current request
-     * @return return null when the latch is released, or an instance of CountDownLatch when the latch is acquired
+     * Registers the current thread as the one generating the specified fragment, unless another thread is already
+     * generating it.
+     *
+     * @param key the key of the fragment
+     * @return <code>null</code> if the current thread has to generate the fragment and call
+     * {@link #endGeneration(String)} once done, or the future completed when the thread generating the fragment is done
      */
-    private CountDownLatch avoidParallelProcessingOfSameModule(String key, HttpServletRequest request) throws Exception {
+    public CompletableFuture<Void> startGeneration(String key) {
+        FragmentGeneration generation = new FragmentGeneration();
+        FragmentGeneration current = generatingModules.putIfAbsent(key, generation);
+        return current != null ? current.future : null;
+    }
 
-        CountDownLatch latch;
-        boolean mustWait = true;
+    /**
+     * Signals that the current thread has finished generating the specified fragment, releasing the threads waiting for
+     * it. Does nothing if the fragment is not being generated by the current thread.
+     *
+     * @param key the key of the fragment
+     */
+    public void endGeneration(String key) {
+        if (key == null) {
+            return;
+        }
+        FragmentGeneration generation = generatingModules.get(key);
+        if (generation != null && generation.owner == Thread.currentThread() && generatingModules.remove(key, generation)) {
+            long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - generation.start);
+            generationCount.incrementAndGet();
+            totalGenerationTime.addAndGet(duration);
+            record(generationTimeHistogram, duration);
+            generation.future.complete(null);
+        }
+    }
 
-        if (generatingModules.get(key) == null) {
-            // get permit to generate fragment (based on maximum allowed number of fragment generation in parallel)
-            getFragmentsGenerationPermit(key, request);
+    /**
+     * @param key the key of the fragment
+     * @return <code>true</code> if the fragment is being generated by a thread
+     */
+    public boolean isGenerating(String key) {
+        return generatingModules.containsKey(key);
+    }
+
+    /**
+     * Waits, at most for the module generation wait time, for the end of the generation of a fragment by another
+     * thread.
+     *
+     * @param key        the key of the fragment
+     * @param generation the future returned by {@link #startGeneration(String)}
+     * @return <code>true</code> if the generation has ended, <code>false</code> if the wait timed out
+     */
+    public boolean awaitGeneration(String key, CompletableFuture<Void> generation) {
+        FragmentGeneration current = generatingModules.get(key);
+        AtomicInteger waiting = current != null && current.future == generation ? current.waiting : null;
+        if (waiting != null) {
+            waiting.incrementAndGet();
         }
-        synchronized (generatingModules) {
-            latch = generatingModules.get(key);
-            if (latch == null) {
-                latch = new CountDownLatch(1);
-                generatingModules.put(key, latch);
-                mustWait = false;
+        long start = System.nanoTime();
+        try {
+            generation.get(moduleGenerationWaitTime, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            waitTimeouts.incrementAndGet();
+            return false;
+        } catch (ExecutionException e) {
+            // the future is only completed normally
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JahiaRuntimeException(e);
+        } finally {
+            if (waiting != null) {
+                waiting.decrementAndGet();
             }
+            long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            waitCount.incrementAndGet();
+            totalWaitTime.addAndGet(duration);
+            record(waitTimeHistogram, duration);
         }
-        if (mustWait) {
-            // another thread wanted the same module and got the latch first, so release the semaphore immediately as we must wait
-            releaseFragmentsGenerationPermit(request);
+    }
 
-            try {
-                if (!latch.await(getModuleGenerationWaitTime(), TimeUnit.MILLISECONDS)) {
-                    manageThreadDump();
-                    StringBuilder errorMsgBuilder = new StringBuilder(512);
-                    errorMsgBuilder.append("Module generation takes too long due to module not generated fast enough (>")
-                            .append(moduleGenerationWaitTime).append(" ms)- ").append(key).append(" - ")
-                            .append(request.getRequestURI());
-                    throw new JahiaServiceUnavailableException(errorMsgBuilder.toString());
-                }
-                latch = null;
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                throw new JahiaRuntimeException(e);
-            }
+    /**
+     * Handles a wait for a fragment generated by another thread which timed out: either lets the current thread
+     * generate the fragment itself, if {@link #isGenerateOnWaitTimeout()} is set, or throws an exception.
+     *
+     * @param key     the key of the fragment
+     * @param request the current request
+     * @throws JahiaServiceUnavailableException if the current thread must not generate the fragment
+     */
+    public void handleWaitTimeout(String key, HttpServletRequest request) {
+        if (generateOnWaitTimeout) {
+            logger.warn("Fragment {} not generated in {} ms by another thread, generating it for {}", key,
+                    moduleGenerationWaitTime, request.getRequestURI());
+            return;
+        }
+        manageThreadDump();
+        StringBuilder errorMsgBuilder = new StringBuilder(512);
+        errorMsgBuilder.append("Module generation takes too long due to module not generated fast enough (>")
+                .append(moduleGenerationWaitTime).append(" ms)- ").append(key).append(" - ")
+                .append(request.getRequestURI());
+        throw new JahiaServiceUnavailableException(errorMsgBuilder.toString());
+    }
+
+    private static void record(AtomicLongArray histogram, long duration) {
+        int i = 0;
+        while (i < HISTOGRAM_BOUNDS.length && duration > HISTOGRAM_BOUNDS[i]) {
+            i++;
+        }
+        histogram.incrementAndGet(i);
+    }
+
+    private static long[] toArray(AtomicLongArray histogram) {
+        long[] values = new long[histogram.length()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = histogram.get(i);
+        }
+        return values;
+    }
+
+    /**
+     * This is the main function of the single-flight mechanism that registers the current thread as generating the
+     * fragment or waits until the thread generating it is done
+     * @param key the key of the fragment
+     * @param request current request
+     * @return <code>true</code> when the fragment has been generated by another thread, <code>false</code> when the
+     * current thread has to generate it
+     */
+    private boolean avoidParallelProcessingOfSameModule(String key, HttpServletRequest request) throws Exception {
+        if (!generatingModules.containsKey(key)) {
+            // get permit to generate fragment (based on maximum allowed number of fragment generation in parallel)
+            getFragmentsGenerationPermit(key, request);
+        }
+        CompletableFuture<Void> generation = startGeneration(key);
+        if (generation == null) {
+            return false;
+        }
+        // another thread wanted the same module and got the generation first, so release the semaphore immediately as we must wait
+        releaseFragmentsGenerationPermit(request);
+        if (awaitGeneration(key, generation)) {
+            return true;
         }
-        return latch;
+        handleWaitTimeout(key, request);
+        getFragmentsGenerationPermit(key, request);
+        return false;
     }
 
     /**
@@ -233,22 +401,7 @@ public class ModuleGeneratorQueue implements InitializingBean {
      * @return false for first thread or return true for others thread when first thread have released the latch
      */
     protected boolean getLatch(RenderContext renderContext, String finalKey) throws Exception {
-        // get the latch
-        CountDownLatch latch = avoidParallelProcessingOfSameModule(finalKey, renderContext.getRequest());
-
-        // latch is null mean that it's have been released
-        if (latch == null) {
-            return true;
-        } else {
-            // Latch have been acquired by current thread, store it
-            Set<CountDownLatch> latches = processingLatches.get();
-            if (latches == null) {
-                latches = new HashSet<>();
-                processingLatches.set(latches);
-            }
-            latches.add(latch);
-            return false;
-        }
+        return avoidParallelProcessingOfSameModule(finalKey, renderContext.getRequest());
     }
 
     /**
@@ -259,14 +412,7 @@ public class ModuleGeneratorQueue implements InitializingBean {
      * The permit is automatically released, no need to do additional call to release the permit.
      */
     protected void releaseLatch(String finalKey) {
-        Set<CountDownLatch> latches = processingLatches.get();
-        CountDownLatch latch = generatingModules.get(finalKey);
-        if (latches != null && latches.contains(latch)) {
-            latch.countDown();
-            synchronized (generatingModules) {
-                latches.remove(generatingModules.remove(finalKey));
-            }
-        }
+        endGeneration(finalKey);
     }
 
     public int getMaxModulesToGenerateInParallel() {
@@ -288,7 +434,117 @@ public class ModuleGeneratorQueue implements InitializingBean {
      *                   as failure to set an essential property) or if initialization fails.
      */
     public void afterPropertiesSet() throws Exception {
-        generatingModules = new HashMap<String, CountDownLatch>(maxModulesToGenerateInParallel);
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        if (mBeanServer != null) {
+            try {
+                ObjectName name = new ObjectName(MBEAN_NAME);
+                if (!mBeanServer.isRegistered(name)) {
+                    mBeanServer.registerMBean(this, name);
+                }
+            } catch (Exception e) {
+                logger.warn("Unable to register JMX bean for the module generator queue due to {}", e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        if (mBeanServer != null) {
+            try {
+                ObjectName name = new ObjectName(MBEAN_NAME);
+                if (mBeanServer.isRegistered(name)) {
+                    mBeanServer.unregisterMBean(name);
+                }
+            } catch (Exception e) {
+                logger.warn("Unable to unregister JMX bean for the module generator queue due to {}", e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public int getGeneratingFragmentCount() {
+        return generatingModules.size();
+    }
+
+    @Override
+    public Map<String, Integer> getWaitingThreadsPerFragment() {
+        Map<String, Integer> waiting = new HashMap<String, Integer>();
+        for (Map.Entry<String, FragmentGeneration> entry : generatingModules.entrySet()) {
+            int count = entry.getValue().waiting.get();
+            if (count > 0) {
+                waiting.put(entry.getKey(), count);
+            }
+        }
+        return waiting;
+    }
+
+    @Override
+    public long getWaitCount() {
+        return waitCount.get();
+    }
+
+    @Override
+    public long getWaitTimeouts() {
+        return waitTimeouts.get();
+    }
+
+    @Override
+    public long getAverageWaitTime() {
+        long count = waitCount.get();
+        return count > 0 ? totalWaitTime.get() / count : 0;
+    }
+
+    @Override
+    public long[] getWaitTimeHistogram() {
+        return toArray(waitTimeHistogram);
+    }
+
+    @Override
+    public long getGenerationCount() {
+        return generationCount.get();
+    }
+
+    @Override
+    public long getAverageGenerationTime() {
+        long count = generationCount.get();
+        return count > 0 ? totalGenerationTime.get() / count : 0;
+    }
+
+    @Override
+    public long[] getGenerationTimeHistogram() {
+        return toArray(generationTimeHistogram);
+    }
+
+    @Override
+    public long[] getHistogramBounds() {
+        return HISTOGRAM_BOUNDS.clone();
+    }
+
+    @Override
+    public void resetStatistics() {
+        waitCount.set(0);
+        waitTimeouts.set(0);
+        totalWaitTime.set(0);
+        generationCount.set(0);
+        totalGenerationTime.set(0);
+        for (int i = 0; i < waitTimeHistogram.length(); i++) {
+            waitTimeHistogram.set(i, 0);
+            generationTimeHistogram.set(i, 0);
+        }
+    }
+
+    public boolean isGenerateOnWaitTimeout() {
+        return generateOnWaitTimeout;
+    }
+
+    /**
+     * @param generateOnWaitTimeout if <code>true</code>, a thread which waited for the module generation wait time for
+     *                              a fragment generated by another thread generates the fragment itself instead of
+     *                              failing
+     */
+    public void setGenerateOnWaitTimeout(boolean generateOnWaitTimeout) {
+        this.generateOnWaitTimeout = generateOnWaitTimeout;
     }
 
     public void setMaxModulesToGenerateInParallel(int maxModulesToGenerateInParallel) {
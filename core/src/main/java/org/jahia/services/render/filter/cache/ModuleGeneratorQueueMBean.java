@@ -0,0 +1,108 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/Apache2 OR 2/JSEL
+ *
+ *     1/ Apache2
+ *     ==================================================================================
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.services.render.filter.cache;
+
+import java.util.Map;
+
+/**
+ * Management interface of the {@link ModuleGeneratorQueue}.
+ */
+public interface ModuleGeneratorQueueMBean {
+
+    /**
+     * @return the number of fragments currently being generated
+     */
+    int getGeneratingFragmentCount();
+
+    /**
+     * @return the number of threads currently waiting for a fragment generated by another thread, by fragment key
+     */
+    Map<String, Integer> getWaitingThreadsPerFragment();
+
+    /**
+     * @return the number of waits for a fragment generated by another thread
+     */
+    long getWaitCount();
+
+    /**
+     * @return the number of waits for a fragment generated by another thread which timed out
+     */
+    long getWaitTimeouts();
+
+    /**
+     * @return the average time, in milliseconds, spent waiting for a fragment generated by another thread
+     */
+    long getAverageWaitTime();
+
+    /**
+     * @return the number of waits by duration, using the buckets defined by {@link #getHistogramBounds()}
+     */
+    long[] getWaitTimeHistogram();
+
+    /**
+     * @return the number of fragment generations other threads could wait for
+     */
+    long getGenerationCount();
+
+    /**
+     * @return the average duration, in milliseconds, of the fragment generations
+     */
+    long getAverageGenerationTime();
+
+    /**
+     * @return the number of fragment generations by duration, using the buckets defined by
+     * {@link #getHistogramBounds()}
+     */
+    long[] getGenerationTimeHistogram();
+
+    /**
+     * @return the upper bounds, in milliseconds, of the histogram buckets, the last bucket of the histograms counting
+     * the longer durations
+     */
+    long[] getHistogramBounds();
+
+    /**
+     * Resets the statistics.
+     */
+    void resetStatistics();
+}
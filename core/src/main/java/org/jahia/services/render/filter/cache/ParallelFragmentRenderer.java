@@ -0,0 +1,317 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/Apache2 OR 2/JSEL
+ *
+ *     1/ Apache2
+ *     ==================================================================================
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.services.render.filter.cache;
+
+import org.jahia.services.render.RenderContext;
+import org.jahia.services.render.RenderException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import javax.jcr.RepositoryException;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Renders the sub fragments of a page missing from the cache concurrently on a bounded pool of threads.
+ * <p/>
+ * Each fragment is rendered with its own copy of the request and its own buffered response (see {@link FragmentRequest}
+ * and {@link FragmentResponse}), its own {@link RenderContext} and JCR sessions, so that the worker threads never use the
+ * servlet request and response, which are not thread-safe. The status, headers, cookies and redirects set by a fragment
+ * rendered by a worker thread are applied to the original response and render context by the requesting thread, when it
+ * reaches the fragment. A fragment is rendered by a worker thread only if a module
+ * generation permit of the {@link ModuleGeneratorQueue} can be acquired immediately. Fragments which could not be
+ * started by a worker thread, because the pool is saturated or no permit is available, are rendered by the requesting
+ * thread itself when it reaches them, so that the requesting thread never waits for a fragment which has not been
+ * started.
+ */
+public class ParallelFragmentRenderer implements InitializingBean, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParallelFragmentRenderer.class);
+
+    private static final String WORKER_ATTRIBUTE = "parallelFragmentRenderer.worker";
+
+    private ModuleGeneratorQueue generatorQueue;
+    private int threads;
+    private int queueSize = 1000;
+    private ThreadPoolExecutor executor;
+
+    /**
+     * Generates the content of a fragment.
+     */
+    public interface FragmentGenerator {
+
+        /**
+         * Generates the content of the fragment.
+         *
+         * @param renderContext the render context to use
+         * @return the generated content
+         * @throws RenderException in case of rendering error
+         */
+        String generate(RenderContext renderContext) throws RenderException;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        if (threads > 0) {
+            final AtomicInteger count = new AtomicInteger();
+            executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(queueSize), runnable -> {
+                        Thread thread = new Thread(runnable, "Parallel fragment rendering " + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }, new ThreadPoolExecutor.DiscardPolicy());
+            executor.allowCoreThreadTimeOut(true);
+        }
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * @param renderContext the current render context
+     * @return <code>true</code> if the fragments can be rendered concurrently in the current request, i.e. the
+     * parallel rendering is enabled and the current request is not itself rendered by a worker thread
+     */
+    public boolean isEnabled(RenderContext renderContext) {
+        return executor != null && renderContext.getRequest().getAttribute(WORKER_ATTRIBUTE) == null;
+    }
+
+    /**
+     * Schedules the rendering of a fragment. Must be called by the requesting thread.
+     *
+     * @param renderContext the current render context
+     * @param generator     the generator of the fragment content
+     * @return the scheduled rendering, to be {@link Task#join() joined} by the requesting thread
+     */
+    public Task submit(RenderContext renderContext, FragmentGenerator generator) {
+        Task task = new Task(renderContext, generator);
+        executor.execute(task);
+        return task;
+    }
+
+    public void setGeneratorQueue(ModuleGeneratorQueue generatorQueue) {
+        this.generatorQueue = generatorQueue;
+    }
+
+    /**
+     * @param threads the number of threads rendering fragments concurrently; <code>0</code> to disable the parallel
+     *                rendering
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * @param queueSize the maximum number of fragments waiting for a worker thread, further fragments being rendered
+     *                  by the requesting threads
+     */
+    public void setQueueSize(int queueSize) {
+        this.queueSize = queueSize;
+    }
+
+    /**
+     * The rendering of a fragment, either by a worker thread or by the requesting thread.
+     */
+    public class Task implements Runnable {
+
+        private static final int NEW = 0;
+        private static final int RUNNING = 1;
+        private static final int STOLEN = 2;
+        private static final int ABANDONED = 3;
+
+        private final AtomicInteger state = new AtomicInteger(NEW);
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        private final RenderContext parentContext;
+        private final FragmentGenerator generator;
+        private final RenderContextSnapshot snapshot;
+
+        private String result;
+        private FragmentResponse response;
+        private String redirect;
+        private RenderException renderException;
+        private RuntimeException runtimeException;
+
+        private Task(RenderContext parentContext, FragmentGenerator generator) {
+            this.parentContext = parentContext;
+            this.generator = generator;
+            // snapshot the state of the requesting thread, which keeps on modifying it
+            RenderContextSnapshot snapshot = null;
+            try {
+                snapshot = new RenderContextSnapshot(parentContext);
+                snapshot.getRequest().setAttribute(WORKER_ATTRIBUTE, Boolean.TRUE);
+            } catch (RepositoryException e) {
+                logger.warn("Unable to prepare the parallel rendering of a fragment, it will be rendered sequentially", e);
+            }
+            if (snapshot == null || !snapshot.isDetachable()) {
+                state.set(ABANDONED);
+                done.countDown();
+            }
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public void run() {
+            if (!state.compareAndSet(NEW, RUNNING)) {
+                return;
+            }
+            Semaphore permits = generatorQueue.getAvailableProcessings();
+            if (!permits.tryAcquire()) {
+                // leave it to the requesting thread
+                state.set(ABANDONED);
+                done.countDown();
+                return;
+            }
+            FragmentRequest request = snapshot.getRequest();
+            request.setAttribute(AggregateCacheFilter.HAS_PROCESSING_SEMAPHORE_PARAM, Boolean.TRUE);
+            try {
+                snapshot.bindToCurrentThread();
+                FragmentResponse fragmentResponse = snapshot.createResponse();
+                RenderContext renderContext;
+                try {
+                    renderContext = snapshot.createRenderContext(fragmentResponse);
+                } catch (Exception e) {
+                    logger.warn("Unable to prepare the parallel rendering of a fragment, it will be rendered sequentially", e);
+                    state.set(ABANDONED);
+                    return;
+                }
+                response = fragmentResponse;
+                try {
+                    result = generator.generate(renderContext);
+                } finally {
+                    redirect = renderContext.getRedirect();
+                }
+            } catch (RenderException e) {
+                renderException = e;
+            } catch (RuntimeException e) {
+                runtimeException = e;
+            } finally {
+                if (Boolean.TRUE.equals(request.getAttribute(AggregateCacheFilter.HAS_PROCESSING_SEMAPHORE_PARAM))) {
+                    permits.release();
+                    request.removeAttribute(AggregateCacheFilter.HAS_PROCESSING_SEMAPHORE_PARAM);
+                }
+                snapshot.unbindFromCurrentThread();
+                done.countDown();
+            }
+        }
+
+        /**
+         * Waits for the rendering of the fragment, rendering it in the requesting thread with the original render
+         * context if it has not been started by a worker thread.
+         *
+         * @return the content of the fragment
+         * @throws RenderException in case of rendering error
+         */
+        public String join() throws RenderException {
+            if (state.compareAndSet(NEW, STOLEN)) {
+                return generator.generate(parentContext);
+            }
+            awaitDone();
+            if (state.get() == ABANDONED) {
+                return generator.generate(parentContext);
+            }
+            replaySideEffects();
+            if (renderException != null) {
+                throw renderException;
+            }
+            if (runtimeException != null) {
+                throw runtimeException;
+            }
+            return result;
+        }
+
+        /**
+         * Applies the status, headers, cookies and redirects set during the rendering by the worker thread to the
+         * original response and render context, as if the fragment had been rendered by the requesting thread.
+         */
+        private void replaySideEffects() throws RenderException {
+            if (response != null && response.hasSideEffects()) {
+                try {
+                    response.replay(parentContext.getResponse());
+                } catch (IOException e) {
+                    throw new RenderException(e);
+                }
+            }
+            if (redirect != null && parentContext.getRedirect() == null) {
+                parentContext.setRedirect(redirect);
+            }
+        }
+
+        /**
+         * Prevents the rendering of the fragment if it has not been started yet, or waits for its end otherwise, so that
+         * no worker thread still renders a fragment of the request once the requesting thread has returned.
+         */
+        public void cancel() {
+            if (!state.compareAndSet(NEW, STOLEN)) {
+                awaitDone();
+            }
+        }
+
+        private void awaitDone() {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    done.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/Apache2 OR 2/JSEL
+ *
+ *     1/ Apache2
+ *     ==================================================================================
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.services.render.filter.cache;
+
+import net.sf.ehcache.CacheException;
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.Element;
+import net.sf.ehcache.event.CacheEventListenerAdapter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Keeps the compiled form of the regular expressions, used as keys in the HTML regexp dependencies cache, so that a
+ * flushed path can be matched against all of them without compiling a {@link Pattern} for each key and each path.
+ * <p/>
+ * The expressions are grouped by their literal prefix, truncated to the last <code>/</code>, so that a path is only
+ * tested against the expressions whose literal prefix is one of its ancestor paths. Expressions without a usable
+ * literal prefix (e.g. with top-level alternatives or starting with a group) are tested against every path. The
+ * matcher is kept in sync with the cache by registering it as a cache event listener.
+ */
+public class RegexpDependenciesMatcher extends CacheEventListenerAdapter {
+
+    private static final Logger logger = LoggerFactory.getLogger(RegexpDependenciesMatcher.class);
+
+    private static final String METACHARACTERS = "\\^$.|?*+()[]{}";
+    private static final String QUANTIFIERS = "?*+{";
+
+    private final Map<String, Map<String, Pattern>> patternsByPrefix = new ConcurrentHashMap<String, Map<String, Pattern>>();
+
+    /**
+     * Registers the matcher as an event listener of the specified cache and compiles the expressions already present
+     * in it.
+     *
+     * @param cache the regexp dependencies cache
+     */
+    public void bind(Ehcache cache) {
+        cache.getCacheEventNotificationService().registerListener(this);
+        for (Object key : cache.getKeys()) {
+            add(key);
+        }
+    }
+
+    /**
+     * Returns all the registered regular expressions fully matching the specified path.
+     *
+     * @param path the node path to test
+     * @return the list of matching regular expressions
+     */
+    public List<String> getMatchingRegexps(String path) {
+        List<String> result = new ArrayList<String>();
+        collectMatches(path, "", result);
+        int idx = path.indexOf('/');
+        while (idx != -1) {
+            collectMatches(path, path.substring(0, idx + 1), result);
+            idx = path.indexOf('/', idx + 1);
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of registered regular expressions
+     */
+    public int size() {
+        int size = 0;
+        for (Map<String, Pattern> patterns : patternsByPrefix.values()) {
+            size += patterns.size();
+        }
+        return size;
+    }
+
+    private void collectMatches(String path, String prefix, List<String> result) {
+        Map<String, Pattern> patterns = patternsByPrefix.get(prefix);
+        if (patterns != null) {
+            for (Map.Entry<String, Pattern> entry : patterns.entrySet()) {
+                if (entry.getValue().matcher(path).matches()) {
+                    result.add(entry.getKey());
+                }
+            }
+        }
+    }
+
+    void add(Object key) {
+        if (!(key instanceof String)) {
+            return;
+        }
+        final String regexp = (String) key;
+        final Pattern pattern;
+        try {
+            pattern = Pattern.compile(regexp);
+        } catch (PatternSyntaxException e) {
+            logger.warn("Invalid regular expression used as cache dependency, it will be ignored: {}", regexp);
+            return;
+        }
+        patternsByPrefix.compute(getLiteralPrefix(regexp), (prefix, patterns) -> {
+            if (patterns == null) {
+                patterns = new ConcurrentHashMap<String, Pattern>();
+            }
+            patterns.put(regexp, pattern);
+            return patterns;
+        });
+    }
+
+    private void remove(Ehcache cache, Object key) {
+        // the key could have been put again concurrently, in which case it must stay registered
+        if (!(key instanceof String) || cache.isKeyInCache(key)) {
+            return;
+        }
+        final String regexp = (String) key;
+        patternsByPrefix.computeIfPresent(getLiteralPrefix(regexp), (prefix, patterns) -> {
+            patterns.remove(regexp);
+            return patterns.isEmpty() ? null : patterns;
+        });
+    }
+
+    /**
+     * Returns the part of the expression matching literally, up to its last <code>/</code> character, or an empty
+     * string if no such prefix can be safely determined.
+     */
+    static String getLiteralPrefix(String regexp) {
+        if (regexp.indexOf('|') != -1) {
+            return "";
+        }
+        int end = 0;
+        while (end < regexp.length() && METACHARACTERS.indexOf(regexp.charAt(end)) == -1) {
+            end++;
+        }
+        if (end < regexp.length() && end > 0 && QUANTIFIERS.indexOf(regexp.charAt(end)) != -1) {
+            // the last literal character is optional or repeated
+            end--;
+        }
+        return regexp.substring(0, regexp.lastIndexOf('/', end - 1) + 1);
+    }
+
+    @Override
+    public void notifyElementPut(Ehcache cache, Element element) throws CacheException {
+        add(element.getObjectKey());
+    }
+
+    @Override
+    public void notifyElementUpdated(Ehcache cache, Element element) throws CacheException {
+        add(element.getObjectKey());
+    }
+
+    @Override
+    public void notifyElementRemoved(Ehcache cache, Element element) throws CacheException {
+        remove(cache, element.getObjectKey());
+    }
+
+    @Override
+    public void notifyElementExpired(Ehcache cache, Element element) {
+        remove(cache, element.getObjectKey());
+    }
+
+    @Override
+    public void notifyElementEvicted(Ehcache cache, Element element) {
+        remove(cache, element.getObjectKey());
+    }
+
+    @Override
+    public void notifyRemoveAll(Ehcache cache) {
+        patternsByPrefix.clear();
+        // re-register entries which were put between the flush of the cache and this notification
+        for (Object key : cache.getKeys()) {
+            add(key);
+        }
+    }
+}
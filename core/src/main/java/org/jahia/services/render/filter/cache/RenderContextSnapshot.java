@@ -0,0 +1,303 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/Apache2 OR 2/JSEL
+ *
+ *     1/ Apache2
+ *     ==================================================================================
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.services.render.filter.cache;
+
+import org.jahia.services.SpringContextSingleton;
+import org.jahia.services.channels.Channel;
+import org.jahia.services.content.JCRNodeWrapper;
+import org.jahia.services.content.JCRSessionFactory;
+import org.jahia.services.content.JCRSessionWrapper;
+import org.jahia.services.content.decorator.JCRSiteNode;
+import org.jahia.services.render.RenderContext;
+import org.jahia.services.render.Resource;
+import org.jahia.services.render.SiteInfo;
+import org.jahia.services.render.URLGenerator;
+import org.jahia.services.seo.urlrewrite.SessionidRemovalResponseWrapper;
+import org.jahia.services.seo.urlrewrite.UrlRewriteService;
+import org.jahia.services.uicomponents.bean.editmode.EditConfiguration;
+import org.jahia.services.usermanager.JahiaUser;
+import org.tuckey.web.filters.urlrewrite.UrlRewriteWrappedResponse;
+import org.tuckey.web.filters.urlrewrite.UrlRewriter;
+
+import javax.jcr.RepositoryException;
+import javax.servlet.ServletResponse;
+import javax.servlet.ServletResponseWrapper;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.util.Calendar;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * The state of a render context, copied by the requesting thread so that a fragment can be rendered by another thread,
+ * concurrently with the request or after its end. The render context created from the copy uses a
+ * {@link FragmentRequest} and a {@link FragmentResponse}, and reads the main resource and the site again with the JCR
+ * sessions of the rendering thread.
+ * <p/>
+ * The URLs are encoded the same way as by the original response: the {@link FragmentResponse} is wrapped by the
+ * outbound URL rewriting and session id removal wrappers found on the original response, bound to the copy of the
+ * request. A response encoding the URLs in any other way cannot be reproduced, and the snapshot is then not
+ * {@link #isDetachable() detachable}.
+ */
+class RenderContextSnapshot {
+
+    private final FragmentRequest request;
+    private final JahiaUser user;
+
+    private final JahiaUser aliasedUser;
+    private final Locale locale;
+    private final Locale fallbackLocale;
+    private final String currentServletPath;
+    private final Calendar previewDate;
+
+    private final String servletPath;
+    private final String workspace;
+    private final boolean editMode;
+    private final EditConfiguration editModeConfig;
+    private final boolean contributionMode;
+    private final Channel channel;
+    private final SiteInfo siteInfo;
+    private final boolean forceUILocaleForJCRSession;
+    private final boolean portletActionRequest;
+    private final boolean ugcEnabled;
+    private final boolean ajaxRequest;
+    private final String contentType;
+    private final Set<String> renderedPaths;
+
+    private final String mainResourceIdentifier;
+    private final Locale mainResourceLocale;
+    private final Locale mainResourceFallbackLocale;
+    private final String templateType;
+    private final String template;
+    private final String contextConfiguration;
+    private final String sitePath;
+
+    private final String characterEncoding;
+    private final String responseContentType;
+    private final Locale responseLocale;
+    private final UrlRewriter urlRewriter;
+    private final boolean sessionIdRemoval;
+    private final boolean detachable;
+
+    /**
+     * Copies the specified render context and the state of the JCR session factory for the current thread. Must be
+     * called by the requesting thread.
+     *
+     * @param renderContext the render context to copy
+     * @throws RepositoryException in case the main resource cannot be read
+     */
+    RenderContextSnapshot(RenderContext renderContext) throws RepositoryException {
+        request = new FragmentRequest(renderContext.getRequest());
+        user = renderContext.getUser();
+
+        JCRSessionFactory sessionFactory = JCRSessionFactory.getInstance();
+        aliasedUser = sessionFactory.getCurrentAliasedUser();
+        locale = sessionFactory.getCurrentLocale();
+        fallbackLocale = sessionFactory.getFallbackLocale();
+        currentServletPath = sessionFactory.getCurrentServletPath();
+        previewDate = sessionFactory.getCurrentPreviewDate();
+
+        servletPath = renderContext.getServletPath();
+        workspace = renderContext.getWorkspace();
+        editMode = renderContext.isEditMode();
+        editModeConfig = renderContext.getEditModeConfig();
+        contributionMode = renderContext.isContributionMode();
+        channel = renderContext.getChannel();
+        siteInfo = renderContext.getSiteInfo();
+        forceUILocaleForJCRSession = renderContext.isForceUILocaleForJCRSession();
+        portletActionRequest = renderContext.isPortletActionRequest();
+        ugcEnabled = renderContext.isUgcEnabled();
+        ajaxRequest = renderContext.isAjaxRequest();
+        contentType = renderContext.getContentType();
+        renderedPaths = new HashSet<String>(renderContext.getRenderedPaths());
+
+        Resource mainResource = renderContext.getMainResource();
+        if (mainResource != null) {
+            mainResourceIdentifier = mainResource.getNode().getIdentifier();
+            mainResourceLocale = mainResource.getNode().getSession().getLocale();
+            mainResourceFallbackLocale = renderContext.getFallbackLocale();
+            templateType = mainResource.getTemplateType();
+            template = mainResource.getTemplate();
+            contextConfiguration = mainResource.getContextConfiguration();
+        } else {
+            mainResourceIdentifier = null;
+            mainResourceLocale = null;
+            mainResourceFallbackLocale = null;
+            templateType = null;
+            template = null;
+            contextConfiguration = null;
+        }
+        sitePath = renderContext.getSite() != null ? renderContext.getSite().getPath() : null;
+
+        characterEncoding = renderContext.getResponse().getCharacterEncoding();
+        responseContentType = renderContext.getResponse().getContentType();
+        responseLocale = renderContext.getResponse().getLocale();
+
+        boolean outboundRewriting = false;
+        boolean removesSessionId = false;
+        boolean encodesUrls = false;
+        ServletResponse response = renderContext.getResponse();
+        while (response instanceof ServletResponseWrapper) {
+            if (response instanceof UrlRewriteWrappedResponse) {
+                outboundRewriting = true;
+            } else if (response instanceof SessionidRemovalResponseWrapper) {
+                removesSessionId = true;
+            } else if (encodesUrls(response)) {
+                encodesUrls = true;
+            }
+            response = ((ServletResponseWrapper) response).getResponse();
+        }
+        urlRewriter = outboundRewriting ? ((UrlRewriteService) SpringContextSingleton.getBean("UrlRewriteService")).getEngine() : null;
+        sessionIdRemoval = removesSessionId;
+        // without the session id removal, the container adds the session id to the URLs
+        detachable = !encodesUrls && (removesSessionId || renderContext.getRequest().getSession(false) == null);
+    }
+
+    private static boolean encodesUrls(ServletResponse response) {
+        if (!(response instanceof HttpServletResponseWrapper)) {
+            return false;
+        }
+        try {
+            return response.getClass().getMethod("encodeURL", String.class).getDeclaringClass() != HttpServletResponseWrapper.class
+                    || response.getClass().getMethod("encodeRedirectURL", String.class).getDeclaringClass() != HttpServletResponseWrapper.class;
+        } catch (NoSuchMethodException e) {
+            return true;
+        }
+    }
+
+    /**
+     * @return <code>false</code> if the original response encodes the URLs in a way which cannot be reproduced outside
+     * of the requesting thread, in which case the fragments have to be rendered by the requesting thread
+     */
+    boolean isDetachable() {
+        return detachable;
+    }
+
+    /**
+     * @return the copy of the request, shared by all the render contexts created from this snapshot
+     */
+    FragmentRequest getRequest() {
+        return request;
+    }
+
+    /**
+     * Sets the state of the JCR session factory for the current thread, as it was in the requesting thread.
+     */
+    void bindToCurrentThread() {
+        JCRSessionFactory sessionFactory = JCRSessionFactory.getInstance();
+        sessionFactory.setCurrentUser(user);
+        sessionFactory.setCurrentAliasedUser(aliasedUser);
+        sessionFactory.setCurrentLocale(locale);
+        sessionFactory.setFallbackLocale(fallbackLocale);
+        sessionFactory.setCurrentServletPath(currentServletPath);
+        sessionFactory.setCurrentPreviewDate(previewDate);
+    }
+
+    /**
+     * Closes the JCR sessions opened by the current thread and resets the state of the JCR session factory.
+     */
+    void unbindFromCurrentThread() {
+        JCRSessionFactory sessionFactory = JCRSessionFactory.getInstance();
+        sessionFactory.closeAllSessions();
+        sessionFactory.setCurrentUser(null);
+        sessionFactory.setCurrentAliasedUser(null);
+        sessionFactory.setCurrentLocale(null);
+        sessionFactory.setFallbackLocale(null);
+        sessionFactory.setCurrentServletPath(null);
+        sessionFactory.setCurrentPreviewDate(null);
+    }
+
+    /**
+     * @return a new response with the character encoding, content type and locale of the original one
+     */
+    FragmentResponse createResponse() {
+        return new FragmentResponse(characterEncoding, responseContentType, responseLocale);
+    }
+
+    /**
+     * Creates a render context from the copy, writing to the specified response wrapped as the original one. Must be
+     * called by a thread {@link #bindToCurrentThread() bound} to the snapshot.
+     *
+     * @param response the response to write to, created by {@link #createResponse()}
+     * @return the render context
+     * @throws RepositoryException in case the main resource or the site cannot be read
+     */
+    RenderContext createRenderContext(FragmentResponse response) throws RepositoryException {
+        HttpServletResponse wrappedResponse = response;
+        if (urlRewriter != null) {
+            wrappedResponse = new UrlRewriteWrappedResponse(wrappedResponse, request, urlRewriter);
+        }
+        if (sessionIdRemoval) {
+            wrappedResponse = new SessionidRemovalResponseWrapper(request, wrappedResponse);
+        }
+        RenderContext renderContext = new RenderContext(request, wrappedResponse, user);
+        request.setAttribute("renderContext", renderContext);
+        renderContext.setServletPath(servletPath);
+        renderContext.setWorkspace(workspace);
+        renderContext.setEditMode(editMode);
+        renderContext.setEditModeConfig(editModeConfig);
+        renderContext.setContributionMode(contributionMode);
+        renderContext.setChannel(channel);
+        renderContext.setSiteInfo(siteInfo);
+        renderContext.setForceUILocaleForJCRSession(forceUILocaleForJCRSession);
+        renderContext.setPortletActionRequest(portletActionRequest);
+        renderContext.setUgcEnabled(ugcEnabled);
+        renderContext.setAjaxRequest(ajaxRequest);
+        renderContext.setContentType(contentType);
+        renderContext.getRenderedPaths().addAll(renderedPaths);
+
+        if (mainResourceIdentifier != null) {
+            JCRSessionWrapper session = JCRSessionFactory.getInstance().getCurrentUserSession(workspace,
+                    mainResourceLocale, mainResourceFallbackLocale);
+            JCRNodeWrapper mainNode = session.getNodeByIdentifier(mainResourceIdentifier);
+            Resource resource = new Resource(mainNode, templateType, template, contextConfiguration);
+            renderContext.setMainResource(resource);
+            if (sitePath != null) {
+                renderContext.setSite((JCRSiteNode) session.getNode(sitePath));
+            }
+            new URLGenerator(renderContext, resource);
+        }
+        return renderContext;
+    }
+}
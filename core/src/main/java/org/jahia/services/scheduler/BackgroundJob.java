@@ -86,13 +86,26 @@ public abstract class BackgroundJob implements StatefulJob {
     public static final String STATUS_CANCELED = "canceled";
 
     public static JobDetail createJahiaJob(String desc, Class<? extends BackgroundJob> jobClass) {
-        // jobdetail is non-volatile,durable,non-recoverable
+        return createJahiaJob(desc, jobClass, false);
+    }
+
+    /**
+     * Creates the details of a background job.
+     *
+     * @param desc             the job description
+     * @param jobClass         the job class
+     * @param requestsRecovery whether the job is executed again if the scheduler crashes during its execution, for jobs
+     *                         storing checkpoints in their data to resume from
+     * @return the job details
+     */
+    public static JobDetail createJahiaJob(String desc, Class<? extends BackgroundJob> jobClass, boolean requestsRecovery) {
+        // jobdetail is non-volatile,durable
         JobDetail jobDetail = new JobDetail(getGroupName(jobClass) + "-" + idGen.nextIdentifier(),
                 getGroupName(jobClass),
                 jobClass,
                 false,
                 true,
-                false);
+                requestsRecovery);
         jobDetail.setDescription(desc);
         JobDataMap jobDataMap = new JobDataMap();
         jobDataMap.put(JOB_CREATED, new Date()); // creation date
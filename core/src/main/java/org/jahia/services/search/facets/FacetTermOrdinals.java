@@ -0,0 +1,164 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/Apache2 OR 2/JSEL
+ *
+ *     1/ Apache2
+ *     ==================================================================================
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.services.search.facets;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.util.OpenBitSet;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Ordinals of the terms of a facet field, in index order, with the documents holding each term. They are computed once
+ * per index reader and reused by the following faceted searches until the index changes, instead of enumerating the
+ * terms and running a query per term for every search.
+ */
+public class FacetTermOrdinals {
+
+    /**
+     * Computes the ordinals of a field when they are not cached for the current index reader.
+     */
+    public interface Loader {
+        FacetTermOrdinals load() throws IOException;
+    }
+
+    private static final int MAX_CACHED_FIELDS_PER_READER = 32;
+
+    private static final Map<IndexReader, Map<List<String>, FacetTermOrdinals>> cache =
+            new WeakHashMap<IndexReader, Map<List<String>, FacetTermOrdinals>>();
+
+    private final String[] terms;
+    private final int[] docFreqs;
+    private final int[][] docs;
+
+    /**
+     * Initializes an instance of this class.
+     *
+     * @param terms    the terms of the field, in index order
+     * @param docFreqs the document frequency of each term
+     * @param docs     the sorted ids of the documents holding each term
+     */
+    public FacetTermOrdinals(String[] terms, int[] docFreqs, int[][] docs) {
+        this.terms = terms;
+        this.docFreqs = docFreqs;
+        this.docs = docs;
+    }
+
+    /**
+     * Returns the ordinals of a field for an index reader, computing them with the loader if they are not cached yet.
+     * Only the most recently used fields of each reader are kept.
+     *
+     * @param reader    the index reader
+     * @param fieldName the name of the field in the index
+     * @param locale    the locale used to resolve the translation nodes, or null
+     * @param loader    computes the ordinals
+     * @return the ordinals of the field
+     * @throws IOException in case the index cannot be read
+     */
+    public static FacetTermOrdinals get(IndexReader reader, String fieldName, String locale, Loader loader)
+            throws IOException {
+        List<String> key = Arrays.asList(fieldName, locale);
+        Map<List<String>, FacetTermOrdinals> fields;
+        synchronized (cache) {
+            fields = cache.get(reader);
+            if (fields == null) {
+                fields = Collections.synchronizedMap(new LinkedHashMap<List<String>, FacetTermOrdinals>(16, 0.75f, true) {
+                    private static final long serialVersionUID = -4587237263578929574L;
+
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<List<String>, FacetTermOrdinals> eldest) {
+                        return size() > MAX_CACHED_FIELDS_PER_READER;
+                    }
+                });
+                cache.put(reader, fields);
+            }
+        }
+        FacetTermOrdinals ordinals = fields.get(key);
+        if (ordinals == null) {
+            ordinals = loader.load();
+            fields.put(key, ordinals);
+        }
+        return ordinals;
+    }
+
+    /**
+     * @return the number of terms
+     */
+    public int size() {
+        return terms.length;
+    }
+
+    public String getTerm(int ordinal) {
+        return terms[ordinal];
+    }
+
+    public int getDocFreq(int ordinal) {
+        return docFreqs[ordinal];
+    }
+
+    /**
+     * @param term the term to look for
+     * @return the ordinal of the first term greater than or equal to the given one
+     */
+    public int getOrdinal(String term) {
+        int ordinal = Arrays.binarySearch(terms, term);
+        return ordinal >= 0 ? ordinal : -ordinal - 1;
+    }
+
+    /**
+     * Counts the documents of a set holding a term.
+     *
+     * @param ordinal the ordinal of the term
+     * @param docSet  the set of documents
+     * @return the number of documents of the set holding the term
+     */
+    public int count(int ordinal, OpenBitSet docSet) {
+        int count = 0;
+        for (int doc : docs[ordinal]) {
+            if (docSet.get(doc)) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -152,6 +152,11 @@ public class SimpleJahiaJcrFacets {
     protected final Session session;
     
     private NamespaceMappings nsMappings;
+
+    /**
+     * Cumulated counts of the documents per field cache ordinal, by field, used to answer the range facets.
+     */
+    private final Map<String, int[]> ordinalCountSums = new HashMap<String, int[]>();
     
     @SuppressWarnings("serial")
     public static final FieldSelector PARENT_AND_TRANSLATION_FIELDS = new FieldSelector() {
@@ -741,6 +746,41 @@ public class SimpleJahiaJcrFacets {
         int lim = limit >= 0 ? limit : Integer.MAX_VALUE;
 
         String startTerm = prefix == null ? "" : ft.toInternal(prefix);
+
+        if (minDfFilterCache <= 0) {
+            // every term would use the filter cache: count from the term ordinals cached for the index reader
+            FacetTermOrdinals ordinals = getTermOrdinals(fieldName, locale);
+            if (docs.size() >= mincount) {
+                for (int i = ordinals.getOrdinal(startTerm); i < ordinals.size(); i++) {
+                    String text = ordinals.getTerm(i);
+
+                    if (prefix != null && !text.startsWith(prefix))
+                        break;
+
+                    int df = ordinals.getDocFreq(i);
+                    if (df > 0 && df > min) {
+                        int c = ordinals.count(i, docs);
+
+                        if (queue != null) {
+                            if (c > min) {
+                                queue.add(new SimpleFacets.CountPair<String, Integer>(text, c));
+                                if (queue.size() >= maxsize) {
+                                    break;
+                                }
+                            }
+                        } else {
+                            if (c >= mincount && --off < 0) {
+                                if (--lim < 0)
+                                    break;
+                                res.add(ft.indexedToReadable(text), c);
+                            }
+                        }
+                    }
+                }
+            }
+            return addSortedAndMissingCounts(res, queue, off, lim, ft, missing, searcher, docs, fieldName, locale);
+        }
+
         TermEnum te = r.terms(new Term(fieldName, startTerm));
         TermDocs td = r.termDocs();
         SolrIndexSearcher.TermDocsState tdState = new SolrIndexSearcher.TermDocsState();
@@ -805,7 +845,16 @@ public class SimpleJahiaJcrFacets {
             } while (te.next());
         }
 
-        if (sort.equals("count") || sort.equals("true")) {
+        te.close();
+        td.close();
+
+        return addSortedAndMissingCounts(res, queue, off, lim, ft, missing, searcher, docs, fieldName, locale);
+    }
+
+    private NamedList<Object> addSortedAndMissingCounts(NamedList<Object> res,
+            TreeSet<SimpleFacets.CountPair<String, Integer>> queue, int off, int lim, FieldType ft, boolean missing,
+            IndexSearcher searcher, OpenBitSet docs, String fieldName, String locale) throws IOException {
+        if (queue != null) {
             for (SimpleFacets.CountPair<String, Integer> p : queue) {
                 if (--off >= 0)
                     continue;
@@ -819,12 +868,77 @@ public class SimpleJahiaJcrFacets {
             res.add(null, getFieldMissingCount(searcher, docs, fieldName, locale));
         }
 
-        te.close();
-        td.close();
-
         return res;
     }
 
+    /**
+     * Returns the ordinals of the terms of a field, with the documents holding each term as the filter cache would
+     * compute them: the document itself and, when a locale is set, the main node of a translation node.
+     */
+    private FacetTermOrdinals getTermOrdinals(final String fieldName, final String locale) throws IOException {
+        final IndexReader reader = searcher.getIndexReader();
+        return FacetTermOrdinals.get(reader, fieldName, locale, new FacetTermOrdinals.Loader() {
+            @Override
+            public FacetTermOrdinals load() throws IOException {
+                List<String> terms = new ArrayList<String>();
+                List<Integer> docFreqs = new ArrayList<Integer>();
+                List<int[]> termDocIds = new ArrayList<int[]>();
+                int[] buffer = new int[64];
+
+                TermEnum te = reader.terms(new Term(fieldName, ""));
+                TermDocs td = reader.termDocs();
+                try {
+                    do {
+                        Term t = te.term();
+                        if (null == t || !t.field().equals(fieldName))
+                            break;
+
+                        int size = 0;
+                        td.seek(te);
+                        while (td.next()) {
+                            if (size + 2 > buffer.length) {
+                                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                            }
+                            int doc = td.doc();
+                            buffer[size++] = doc;
+                            if (locale != null) {
+                                try {
+                                    int mainDocId = getMainDocIdForTranslations(reader.document(doc, TRANSLATION_FIELDS), locale);
+                                    if (mainDocId != -1) {
+                                        buffer[size++] = mainDocId;
+                                    }
+                                } catch (Exception e) {
+                                    logger.warn("Error getting index document while faceting", e);
+                                }
+                            }
+                        }
+                        Arrays.sort(buffer, 0, size);
+                        int unique = 0;
+                        for (int i = 0; i < size; i++) {
+                            if (unique == 0 || buffer[i] != buffer[unique - 1]) {
+                                buffer[unique++] = buffer[i];
+                            }
+                        }
+
+                        terms.add(t.text());
+                        docFreqs.add(te.docFreq());
+                        termDocIds.add(Arrays.copyOf(buffer, unique));
+                    } while (te.next());
+                } finally {
+                    te.close();
+                    td.close();
+                }
+
+                int[] frequencies = new int[docFreqs.size()];
+                for (int i = 0; i < frequencies.length; i++) {
+                    frequencies[i] = docFreqs.get(i);
+                }
+                return new FacetTermOrdinals(terms.toArray(new String[terms.size()]), frequencies,
+                        termDocIds.toArray(new int[termDocIds.size()][]));
+            }
+        });
+    }
+
     public String getFieldNameInIndex(String field, String propertyFieldName, ExtendedPropertyDefinition epd, String langCode) {
         String fieldName = propertyFieldName;
         try {
@@ -942,6 +1056,7 @@ public class SimpleJahiaJcrFacets {
 
       final String gap = required.getFieldParam(f, FacetParams.FACET_DATE_GAP);
       final DateMathParser dmp = new DateMathParser(DateField.UTC, Locale.US);
+      final boolean singleToken = isSingleTokenField(epd);
       dmp.setNow(NOW);
       
       String[] iStrs = params.getFieldParams(f,FacetParams.FACET_DATE_INCLUDE);
@@ -984,7 +1099,7 @@ public class SimpleJahiaJcrFacets {
               
               Query rangeQuery = getRangeQuery(ft, null, sf, prefix, low, high, includeLower, includeUpper);
 
-              int count = rangeCount(rangeQuery);
+              int count = rangeCount(rangeQuery, singleToken);
               if (count >= minCount) {
 // TODO: Can we use just label here ?                  
                   resInner.add(label + PROPNAME_INDEX_SEPARATOR + rangeQuery.toString(),
@@ -1022,7 +1137,7 @@ public class SimpleJahiaJcrFacets {
                           (include.contains(FacetRangeInclude.OUTER) ||
                                   (! (include.contains(FacetRangeInclude.LOWER) ||
                                       include.contains(FacetRangeInclude.EDGE)))));
-                  int count = rangeCount(rangeQuery);
+                  int count = rangeCount(rangeQuery, singleToken);
                   if (count >= minCount) {
                       resInner.add(FacetDateOther.BEFORE.toString()
                               + PROPNAME_INDEX_SEPARATOR + rangeQuery.toString(), count);
@@ -1035,7 +1150,7 @@ public class SimpleJahiaJcrFacets {
                             (include.contains(FacetRangeInclude.OUTER) || (!(include
                                     .contains(FacetRangeInclude.UPPER) || include
                                     .contains(FacetRangeInclude.EDGE)))), false);
-                  int count = rangeCount(rangeQuery);
+                  int count = rangeCount(rangeQuery, singleToken);
                   if (count >= minCount) {
                       resInner.add(FacetDateOther.AFTER.toString() + PROPNAME_INDEX_SEPARATOR
                               + rangeQuery.toString(), count);
@@ -1047,7 +1162,7 @@ public class SimpleJahiaJcrFacets {
                                   include.contains(FacetRangeInclude.EDGE)),
                               (include.contains(FacetRangeInclude.UPPER) ||
                                   include.contains(FacetRangeInclude.EDGE)));
-                  int count = rangeCount(rangeQuery);
+                  int count = rangeCount(rangeQuery, singleToken);
                   if (count >= minCount) {
                       resInner.add(FacetDateOther.BETWEEN.toString()
                               + PROPNAME_INDEX_SEPARATOR + rangeQuery.toString(), count);
@@ -1155,12 +1270,12 @@ public class SimpleJahiaJcrFacets {
               "Unable to range facet on field:" + sf);
     }
 
-    resOuter.add(key, getFacetRangeCounts(sf, f, calc));
+    resOuter.add(key, getFacetRangeCounts(sf, f, calc, isSingleTokenField(epd)));
   }
 
   private <T extends Comparable<T>> NamedList<Object> getFacetRangeCounts
     (final SchemaField sf, final String f,
-     final RangeEndpointCalculator<T> calc) throws IOException {
+     final RangeEndpointCalculator<T> calc, final boolean singleToken) throws IOException {
     String prefix = params.getFieldParam(f, FacetParams.FACET_PREFIX);
     
     final NamedList<Object> res = new SimpleOrderedMap<Object>();
@@ -1217,7 +1332,7 @@ public class SimpleJahiaJcrFacets {
 
       Query rangeQ = getRangeQuery(sf.getType(), null, sf, prefix, lowS, highS,
               includeLower,includeUpper);      
-      final int count = rangeCount(rangeQ);
+      final int count = rangeCount(rangeQ, singleToken);
       if (count >= minCount) {
         counts.add(lowS + PROPNAME_INDEX_SEPARATOR + rangeQ.toString(), count);
       }
@@ -1255,7 +1370,7 @@ public class SimpleJahiaJcrFacets {
                     (include.contains(FacetRangeInclude.OUTER) ||
                      (! (include.contains(FacetRangeInclude.LOWER) ||
                          include.contains(FacetRangeInclude.EDGE)))));
-            int count = rangeCount(rangeQ);        
+            int count = rangeCount(rangeQ, singleToken);        
             if (count >= minCount) {
               res.add(FacetRangeOther.BEFORE.toString(), count);
               counts.add(FacetRangeOther.BEFORE.toString() + PROPNAME_INDEX_SEPARATOR + rangeQ.toString(),
@@ -1269,7 +1384,7 @@ public class SimpleJahiaJcrFacets {
                             (! (include.contains(FacetRangeInclude.UPPER) ||
                                 include.contains(FacetRangeInclude.EDGE)))),  
                            false);
-            int count = rangeCount(rangeQ);
+            int count = rangeCount(rangeQ, singleToken);
             if (count >= minCount) {
               res.add(FacetRangeOther.AFTER.toString(), count);
               counts.add(FacetRangeOther.AFTER.toString() + PROPNAME_INDEX_SEPARATOR + rangeQ.toString(), count);
@@ -1281,7 +1396,7 @@ public class SimpleJahiaJcrFacets {
                             include.contains(FacetRangeInclude.EDGE)),
                            (include.contains(FacetRangeInclude.UPPER) ||
                             include.contains(FacetRangeInclude.EDGE)));
-            int count = rangeCount(rangeQ);
+            int count = rangeCount(rangeQ, singleToken);
             if (count >= minCount) {
               res.add(FacetRangeOther.BETWEEN.toString(), count);
               counts.add(FacetRangeOther.BETWEEN.toString() + PROPNAME_INDEX_SEPARATOR + rangeQ.toString(),
@@ -1325,6 +1440,72 @@ public class SimpleJahiaJcrFacets {
                 docs);
     }
 
+    /**
+     * Counts the documents of a range over docs. When the field holds a single token per document, the count is
+     * computed from the ordinals of the field cache instead of running the range query.
+     */
+    protected int rangeCount(Query rangeQuery, boolean singleToken) throws IOException {
+        if (singleToken && rangeQuery instanceof TermRangeQuery
+                && ((TermRangeQuery) rangeQuery).getCollator() == null) {
+            int count = rangeCountFromOrdinals((TermRangeQuery) rangeQuery);
+            if (count >= 0) {
+                return count;
+            }
+        }
+        return rangeCount(rangeQuery);
+    }
+
+    private int rangeCountFromOrdinals(TermRangeQuery rangeQuery) {
+        FieldCache.StringIndex si;
+        try {
+            si = FieldCache.DEFAULT.getStringIndex(searcher.getIndexReader(), rangeQuery.getField());
+        } catch (IOException | RuntimeException e) {
+            logger.debug("Cannot get the field cache of " + rangeQuery.getField() + ", running the range query", e);
+            return -1;
+        }
+        final String[] terms = si.lookup;
+        int[] sums = ordinalCountSums.get(rangeQuery.getField());
+        if (sums == null) {
+            // sums[i] is the number of documents which ordinal is lower than i
+            sums = new int[terms.length + 1];
+            try {
+                DocIdSetIterator iter = docs.iterator();
+                while (iter.nextDoc() != DocIdSetIterator.NO_MORE_DOCS) {
+                    int doc = iter.docID();
+                    if (doc < si.order.length) {
+                        sums[si.order[doc] + 1]++;
+                    }
+                }
+            } catch (IOException e) {
+                return -1;
+            }
+            for (int i = 1; i < sums.length; i++) {
+                sums[i] += sums[i - 1];
+            }
+            ordinalCountSums.put(rangeQuery.getField(), sums);
+        }
+
+        // the first ordinal is used by the documents without value
+        int from = 1;
+        if (rangeQuery.getLowerTerm() != null) {
+            int i = Arrays.binarySearch(terms, rangeQuery.getLowerTerm(), nullStrComparator);
+            from = i >= 0 ? (rangeQuery.includesLower() ? i : i + 1) : -i - 1;
+        }
+        int to = terms.length;
+        if (rangeQuery.getUpperTerm() != null) {
+            int i = Arrays.binarySearch(terms, rangeQuery.getUpperTerm(), nullStrComparator);
+            to = i >= 0 ? (rangeQuery.includesUpper() ? i + 1 : i) : -i - 1;
+        }
+        return to > from ? sums[to] - sums[from] : 0;
+    }
+
+    /**
+     * Returns true if the property is indexed in its own facet field, with a single token per document.
+     */
+    private boolean isSingleTokenField(ExtendedPropertyDefinition epd) {
+        return epd != null && epd.isFacetable() && !epd.isMultiple() && !epd.isHierarchical();
+    }
+
     /**
      * Perhaps someday instead of having a giant "instanceof" case 
      * statement to pick an impl, we can add a "RangeFacetable" marker 
@@ -101,7 +101,7 @@ public class PublishWorkItemHandler extends AbstractWorkItemHandler implements W
             logger.debug("Error occured when getting node paths for uuids", e);
         }
 
-        JobDetail jobDetail = BackgroundJob.createJahiaJob("Publication", PublicationJob.class);
+        JobDetail jobDetail = BackgroundJob.createJahiaJob("Publication", PublicationJob.class, true);
         JobDataMap jobDataMap = jobDetail.getJobDataMap();
         jobDataMap.put(BackgroundJob.JOB_USERKEY, userKey);
         jobDataMap.put(PublicationJob.PUBLICATION_UUIDS, uuids);
@@ -174,6 +174,7 @@ public class SettingsBean implements ServletContextAware, InitializingBean, Appl
     private boolean expandImportedFilesOnDisk;
     private String expandImportedFilesOnDiskPath;
     private int accessManagerPathPermissionCacheMaxSize = 100;
+    private int accessManagerAclIndexMaxSize = 10000;
     private int queryApproxCountLimit;
     private boolean readOnlyMode;
     private DataSource dataSource;
@@ -436,6 +437,7 @@ public class SettingsBean implements ServletContextAware, InitializingBean, Appl
             expandImportedFilesOnDiskPath = getString("expandImportedFilesOnDiskPath", "/tmp");
 
             accessManagerPathPermissionCacheMaxSize = getInt("accessManagerPathPermissionCacheMaxSize", 100);
+            accessManagerAclIndexMaxSize = getInt("accessManagerAclIndexMaxSize", 10000);
 
             queryApproxCountLimit = getInt("queryApproxCountLimit", 100);
 
@@ -571,6 +573,7 @@ public class SettingsBean implements ServletContextAware, InitializingBean, Appl
         setSystemProperty("jahia.jackrabbit.searchIndex.forceConsistencyCheck", getString("jahia.jackrabbit.searchIndex.forceConsistencyCheck", "false"));
         setSystemProperty("jahia.jackrabbit.searchIndex.autoRepair", getString("jahia.jackrabbit.searchIndex.autoRepair", "false"));
         setSystemProperty(JahiaSearchIndex.SKIP_VERSION_INDEX_SYSTEM_PROPERTY, getString(JahiaSearchIndex.SKIP_VERSION_INDEX_SYSTEM_PROPERTY, "true"));
+        setSystemProperty(JahiaSearchIndex.REINDEX_THREADS_SYSTEM_PROPERTY, getString(JahiaSearchIndex.REINDEX_THREADS_SYSTEM_PROPERTY, "1"));
 
         setSystemProperty(QueryEngine.NATIVE_SORT_SYSTEM_PROPERTY, getString("jahia.jackrabbit.useNativeSort", "true"));
 
@@ -1425,6 +1428,11 @@ public class SettingsBean implements ServletContextAware, InitializingBean, Appl
         return accessManagerPathPermissionCacheMaxSize;
     }
 
+    @Override
+    public int getAccessManagerAclIndexMaxSize() {
+        return accessManagerAclIndexMaxSize;
+    }
+
     @Override
     public int getQueryApproxCountLimit() {
         return queryApproxCountLimit;
@@ -45,6 +45,7 @@ package org.jahia.utils.security;
 import static org.jahia.services.cache.CacheHelper.*;
 
 import org.apache.commons.lang.StringUtils;
+import org.apache.jackrabbit.core.security.JahiaJCRPathWrapperImpl;
 import org.apache.jackrabbit.core.security.JahiaLoginModule;
 import org.apache.jackrabbit.core.security.JahiaPrivilegeRegistry;
 import org.jahia.api.Constants;
@@ -620,45 +621,17 @@ public class AccessManagerUtils {
                 acl = new CompiledAcl();
                 compiledAcls.put(pathWrapper.getInnerObject(), acl);
 
-                Item i = pathWrapper.getItem();
-                if (i.isNode()) {
-                    Node node = (Node) i;
-                    if (node.hasNode("j:acl")) {
-                        // Jahia specific ACL
-                        Node aclNode = node.getNode("j:acl");
-                        NodeIterator aces = aclNode.getNodes();
-
-                        while (aces.hasNext()) {
-                            Node aceNode = aces.nextNode();
-                            try {
-                                String principal = aceNode.getProperty("j:principal").getString();
-
-                                if (matchUser(principal, site, jahiaPrincipal)) {
-                                    CompiledAce ace = new CompiledAce();
-                                    acl.aces.add(ace);
-                                    ace.principal = principal;
-                                    ace.granted = !aceNode.getProperty("j:aceType").getString().equals("DENY");
-                                    if (aceNode.isNodeType("jnt:externalAce")) {
-                                        Value[] roleValues = aceNode.getProperty("j:roles").getValues();
-                                        for (Value role1 : roleValues) {
-                                            String role = role1.getString();
-                                            ace.roles.add(role + "/" + aceNode.getProperty("j:externalPermissionsName").getString());
-                                        }
-                                    } else {
-                                        Value[] roleValues = aceNode.getProperty("j:roles").getValues();
-                                        for (Value role1 : roleValues) {
-                                            String role = role1.getString();
-                                            ace.roles.add(role);
-                                        }
-                                    }
-                                }
-                            } catch (RepositoryException e) {
-                                logger.error("Can't read ACE " + aceNode.getPath(), e);
-                            }
-                        }
-                        acl.broken = aclNode.hasProperty("j:inherit") && !aclNode.getProperty("j:inherit").getBoolean();
+                AclIndex.NodeAcl nodeAcl = getNodeAcl(pathWrapper, workspaceName);
+                for (AclIndex.Ace nodeAce : nodeAcl.getAces()) {
+                    if (matchUser(nodeAce.getPrincipal(), site, jahiaPrincipal)) {
+                        CompiledAce ace = new CompiledAce();
+                        acl.aces.add(ace);
+                        ace.principal = nodeAce.getPrincipal();
+                        ace.granted = nodeAce.isGranted();
+                        Collections.addAll(ace.roles, nodeAce.getRoles());
                     }
                 }
+                acl.broken = nodeAcl.isBroken();
             }
 
             for (CompiledAce perm : acl.aces) {
@@ -690,6 +663,56 @@ public class AccessManagerUtils {
         return false;
     }
 
+    private static AclIndex.NodeAcl getNodeAcl(PathWrapper pathWrapper, String workspaceName) throws RepositoryException {
+        // only the paths of the Jackrabbit workspaces are indexed
+        AclIndex index = pathWrapper instanceof JahiaJCRPathWrapperImpl ? AclIndex.getInstance(workspaceName) : null;
+        String path = pathWrapper.getPathStr();
+        AclIndex.NodeAcl acl = index != null ? index.get(path) : null;
+        if (acl == null) {
+            long generation = index != null ? index.getGeneration() : 0;
+            acl = readNodeAcl(pathWrapper.getItem());
+            if (index != null) {
+                index.put(path, acl, generation);
+            }
+        }
+        return acl;
+    }
+
+    private static AclIndex.NodeAcl readNodeAcl(Item i) throws RepositoryException {
+        if (!i.isNode() || !((Node) i).hasNode("j:acl")) {
+            return AclIndex.NodeAcl.NONE;
+        }
+        // Jahia specific ACL
+        Node aclNode = ((Node) i).getNode("j:acl");
+        NodeIterator aceNodes = aclNode.getNodes();
+        List<AclIndex.Ace> aces = new ArrayList<AclIndex.Ace>();
+
+        while (aceNodes.hasNext()) {
+            Node aceNode = aceNodes.nextNode();
+            try {
+                String principal = aceNode.getProperty("j:principal").getString();
+                boolean granted = !aceNode.getProperty("j:aceType").getString().equals("DENY");
+                Value[] roleValues = aceNode.getProperty("j:roles").getValues();
+                String[] roles = new String[roleValues.length];
+                if (aceNode.isNodeType("jnt:externalAce")) {
+                    String externalPermissionsName = aceNode.getProperty("j:externalPermissionsName").getString();
+                    for (int j = 0; j < roleValues.length; j++) {
+                        roles[j] = roleValues[j].getString() + "/" + externalPermissionsName;
+                    }
+                } else {
+                    for (int j = 0; j < roleValues.length; j++) {
+                        roles[j] = roleValues[j].getString();
+                    }
+                }
+                aces.add(new AclIndex.Ace(principal, roles, granted));
+            } catch (RepositoryException e) {
+                logger.error("Can't read ACE " + aceNode.getPath(), e);
+            }
+        }
+        boolean broken = aclNode.hasProperty("j:inherit") && !aclNode.getProperty("j:inherit").getBoolean();
+        return new AclIndex.NodeAcl(aces.toArray(new AclIndex.Ace[aces.size()]), broken);
+    }
+
     private static Set<Privilege> internalGetPermissionsInRole(String role, JahiaPrivilegeRegistry privilegeRegistry) throws RepositoryException {
         Set<Privilege> privileges;
         String externalPermission = null;
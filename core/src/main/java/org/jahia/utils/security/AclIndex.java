@@ -0,0 +1,276 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/Apache2 OR 2/JSEL
+ *
+ *     1/ Apache2
+ *     ==================================================================================
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.utils.security;
+
+import org.jahia.settings.SettingsBean;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Index of the ACLs defined on the nodes of a workspace, shared by all the sessions. Each entry holds all the ACEs of a
+ * node, whatever their principal, or a marker for the nodes without ACL, so that checking the permissions of any user
+ * walks up the path in memory instead of reading the ACL nodes of every ancestor through the security session.
+ * <p/>
+ * Entries only depend on the node itself: a change on an ACL invalidates the entry of the node owning it, while moving
+ * or removing a node invalidates its whole subtree. An entry read while it was being invalidated is not kept. When the
+ * index is full, a small batch of entries is evicted, in path order from where the previous eviction stopped, so that the
+ * index is renewed gradually instead of all the sessions reading all the ACLs again at once.
+ */
+public class AclIndex {
+
+    private static final Map<String, AclIndex> indexes = new ConcurrentHashMap<String, AclIndex>(2);
+
+    /**
+     * An ACE of a node ACL.
+     */
+    public static final class Ace {
+
+        private final String principal;
+        private final String[] roles;
+        private final boolean granted;
+
+        public Ace(String principal, String[] roles, boolean granted) {
+            this.principal = principal;
+            this.roles = roles;
+            this.granted = granted;
+        }
+
+        public String getPrincipal() {
+            return principal;
+        }
+
+        public String[] getRoles() {
+            return roles;
+        }
+
+        public boolean isGranted() {
+            return granted;
+        }
+    }
+
+    /**
+     * The ACL defined on a node.
+     */
+    public static final class NodeAcl {
+
+        /**
+         * Marker of the nodes without ACL.
+         */
+        public static final NodeAcl NONE = new NodeAcl(new Ace[0], false);
+
+        private final Ace[] aces;
+        private final boolean broken;
+
+        public NodeAcl(Ace[] aces, boolean broken) {
+            this.aces = aces;
+            this.broken = broken;
+        }
+
+        public Ace[] getAces() {
+            return aces;
+        }
+
+        /**
+         * @return whether the ACL does not inherit the ACEs of the ancestors
+         */
+        public boolean isBroken() {
+            return broken;
+        }
+    }
+
+    private final int maxSize;
+    private final int evictionBatchSize;
+    private final ConcurrentNavigableMap<String, NodeAcl> acls = new ConcurrentSkipListMap<String, NodeAcl>();
+    // the size of a ConcurrentSkipListMap is computed by walking it
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong generation = new AtomicLong();
+    private volatile String evictionCursor = "";
+
+    public AclIndex(int maxSize) {
+        this.maxSize = maxSize;
+        this.evictionBatchSize = Math.max(1, maxSize / 100);
+    }
+
+    /**
+     * Returns the index of the specified workspace.
+     *
+     * @param workspace the workspace name
+     * @return the index, or <code>null</code> if the index is disabled
+     */
+    public static AclIndex getInstance(String workspace) {
+        AclIndex index = indexes.get(workspace);
+        if (index == null) {
+            SettingsBean settings = SettingsBean.getInstance();
+            int maxSize = settings != null ? settings.getAccessManagerAclIndexMaxSize() : 0;
+            if (maxSize <= 0) {
+                return null;
+            }
+            index = new AclIndex(maxSize);
+            AclIndex existing = indexes.putIfAbsent(workspace, index);
+            if (existing != null) {
+                index = existing;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Invalidates the ACL of a node, or of a whole subtree, in the index of the specified workspace.
+     *
+     * @param workspace the workspace name, or <code>null</code> for all the workspaces
+     * @param path      the node path
+     * @param subtree   whether to invalidate the ACLs of the descendants as well
+     */
+    public static void invalidate(String workspace, String path, boolean subtree) {
+        if (workspace == null) {
+            for (AclIndex index : indexes.values()) {
+                index.invalidate(path, subtree);
+            }
+        } else {
+            AclIndex index = indexes.get(workspace);
+            if (index != null) {
+                index.invalidate(path, subtree);
+            }
+        }
+    }
+
+    /**
+     * @param path the node path
+     * @return the ACL of the node, {@link NodeAcl#NONE} if it has none, or <code>null</code> if it is not indexed
+     */
+    public NodeAcl get(String path) {
+        return acls.get(path);
+    }
+
+    /**
+     * @return the current generation, to be read before reading an ACL and passed to {@link #put(String, NodeAcl, long)}
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Indexes the ACL of a node, unless an invalidation happened since the ACL was read.
+     *
+     * @param path       the node path
+     * @param acl        the ACL of the node
+     * @param generation the generation read before reading the ACL
+     */
+    public void put(String path, NodeAcl acl, long generation) {
+        if (size.get() >= maxSize) {
+            evict();
+        }
+        if (acls.put(path, acl) == null) {
+            size.incrementAndGet();
+        }
+        if (this.generation.get() != generation && acls.remove(path, acl)) {
+            size.decrementAndGet();
+        }
+    }
+
+    /**
+     * Removes the next batch of entries following the ones removed by the previous eviction, starting over from the
+     * first entry once the last one is reached.
+     */
+    private void evict() {
+        String cursor = evictionCursor;
+        Iterator<String> keys = acls.tailMap(cursor, false).keySet().iterator();
+        boolean wrapped = false;
+        int evicted = 0;
+        while (evicted < evictionBatchSize) {
+            if (!keys.hasNext()) {
+                if (wrapped) {
+                    break;
+                }
+                wrapped = true;
+                keys = acls.keySet().iterator();
+                continue;
+            }
+            cursor = keys.next();
+            if (acls.remove(cursor) != null) {
+                size.decrementAndGet();
+                evicted++;
+            }
+        }
+        evictionCursor = cursor;
+    }
+
+    private void removeAll(Collection<String> paths) {
+        for (String path : paths) {
+            if (acls.remove(path) != null) {
+                size.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Invalidates the ACL of a node, or of a whole subtree.
+     *
+     * @param path    the node path
+     * @param subtree whether to invalidate the ACLs of the descendants as well
+     */
+    public void invalidate(String path, boolean subtree) {
+        generation.incrementAndGet();
+        if (subtree && "/".equals(path)) {
+            removeAll(acls.keySet());
+            return;
+        }
+        if (acls.remove(path) != null) {
+            size.decrementAndGet();
+        }
+        if (subtree) {
+            removeAll(acls.subMap(path + "/", path + "0").keySet());
+        }
+    }
+
+    public int size() {
+        return size.get();
+    }
+}
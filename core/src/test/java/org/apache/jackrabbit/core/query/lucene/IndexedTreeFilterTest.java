@@ -0,0 +1,159 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/Apache2 OR 2/JSEL
+ *
+ *     1/ Apache2
+ *     ==================================================================================
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.apache.jackrabbit.core.query.lucene;
+
+import org.apache.jackrabbit.core.id.ItemId;
+import org.apache.jackrabbit.core.id.NodeId;
+import org.apache.jackrabbit.core.state.ItemState;
+import org.apache.jackrabbit.core.state.ItemStateManager;
+import org.apache.jackrabbit.core.state.NoSuchItemStateException;
+import org.apache.jackrabbit.core.state.NodeReferences;
+import org.apache.jackrabbit.core.state.NodeState;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+
+/**
+ * Unit test for the {@link IndexedTreeFilter} class.
+ */
+public class IndexedTreeFilterTest {
+
+    private final Map<NodeId, NodeState> states = new LinkedHashMap<>();
+    private final Map<NodeId, List<NodeId>> children = new HashMap<>();
+
+    private final ItemStateManager stateMgr = new ItemStateManager() {
+        @Override
+        public ItemState getItemState(ItemId id) throws NoSuchItemStateException {
+            NodeState state = states.get(id);
+            if (state == null) {
+                throw new NoSuchItemStateException(id.toString());
+            }
+            return state;
+        }
+
+        @Override
+        public boolean hasItemState(ItemId id) {
+            return states.containsKey(id);
+        }
+
+        @Override
+        public NodeReferences getNodeReferences(NodeId id) throws NoSuchItemStateException {
+            throw new NoSuchItemStateException(id.toString());
+        }
+
+        @Override
+        public boolean hasNodeReferences(NodeId id) {
+            return false;
+        }
+    };
+
+    private NodeId addNode(long id, NodeId parentId) {
+        NodeId nodeId = new NodeId(0, id);
+        states.put(nodeId, new NodeState(nodeId, null, parentId, ItemState.STATUS_EXISTING, false));
+        if (parentId != null) {
+            List<NodeId> siblings = children.get(parentId);
+            if (siblings == null) {
+                siblings = new ArrayList<>();
+                children.put(parentId, siblings);
+            }
+            siblings.add(nodeId);
+        }
+        return nodeId;
+    }
+
+    private int countByTraversal(NodeId id, Set<NodeId> excludedIDs) {
+        if (excludedIDs.contains(id)) {
+            return 0;
+        }
+        int count = 1;
+        List<NodeId> nodeChildren = children.get(id);
+        if (nodeChildren != null) {
+            for (NodeId child : nodeChildren) {
+                count += countByTraversal(child, excludedIDs);
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void testNodeCountOfSmallRepository() throws Exception {
+        NodeId root = addNode(1, null);
+        NodeId system = addNode(2, root);
+        addNode(3, system);
+        NodeId sites = addNode(4, root);
+        for (int site = 0; site < 3; site++) {
+            NodeId siteId = addNode(10 + site, sites);
+            for (int page = 0; page < 5; page++) {
+                NodeId pageId = addNode(100 + site * 10 + page, siteId);
+                addNode(1000 + site * 10 + page, pageId);
+            }
+        }
+        // nodes from another tree, or whose parent has been removed, are not reachable by a traversal
+        NodeId otherRoot = addNode(5, null);
+        addNode(6, otherRoot);
+        addNode(7, new NodeId(0, 8));
+        Set<NodeId> excludedIDs = Collections.singleton(system);
+
+        int expected = countByTraversal(root, excludedIDs);
+        Assert.assertEquals(1 + 1 + 3 * (1 + 5 * 2), expected);
+
+        // read the node IDs in small partitions, sharing the filter as the re-indexing threads do
+        List<NodeId> ids = new ArrayList<>(states.keySet());
+        Collections.shuffle(ids, new Random(42));
+        IndexedTreeFilter filter = new IndexedTreeFilter(stateMgr, root, excludedIDs);
+        Set<NodeId> indexed = new HashSet<>();
+        for (int start = 0; start < ids.size(); start += 7) {
+            for (NodeId id : ids.subList(start, Math.min(start + 7, ids.size()))) {
+                NodeState state = filter.getIndexedState(id);
+                if (state != null) {
+                    Assert.assertTrue("Node indexed twice: " + id, indexed.add(state.getNodeId()));
+                }
+            }
+        }
+        Assert.assertEquals(expected, indexed.size());
+        Assert.assertTrue(indexed.contains(root));
+        Assert.assertFalse(indexed.contains(system));
+        Assert.assertFalse(indexed.contains(otherRoot));
+    }
+}
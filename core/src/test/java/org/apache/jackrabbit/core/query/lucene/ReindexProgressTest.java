@@ -0,0 +1,78 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/Apache2 OR 2/JSEL
+ *
+ *     1/ Apache2
+ *     ==================================================================================
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.apache.jackrabbit.core.query.lucene;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit test for the {@link ReindexProgress} class.
+ */
+public class ReindexProgressTest {
+
+    @Test
+    public void testThroughputAndRemainingTime() {
+        ReindexProgress progress = new ReindexProgress("default", 1000, 4, 0);
+        Assert.assertEquals(0, progress.getThroughput(0), 0);
+        Assert.assertEquals(-1, progress.getEstimatedRemainingTime(1000));
+
+        for (int i = 0; i < 250; i++) {
+            progress.nodeIndexed();
+        }
+        Assert.assertEquals(250, progress.getIndexedNodes());
+        Assert.assertEquals(125, progress.getThroughput(2000), 0.001);
+        Assert.assertEquals(6000, progress.getEstimatedRemainingTime(2000));
+
+        progress.setPhase(ReindexProgress.PHASE_SWITCHING);
+        Assert.assertEquals(0, progress.getEstimatedRemainingTime(2000));
+    }
+
+    @Test
+    public void testMoreNodesThanEstimated() {
+        ReindexProgress progress = new ReindexProgress("default", 10, 1, 0);
+        for (int i = 0; i < 20; i++) {
+            progress.nodeIndexed();
+        }
+        Assert.assertEquals(0, progress.getEstimatedRemainingTime(1000));
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/Apache2 OR 2/JSEL
+ *
+ *     1/ Apache2
+ *     ==================================================================================
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.apache.jackrabbit.core.security;
+
+import org.jahia.utils.security.AccessManagerUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit test for the {@link PathPermissionCache} class.
+ */
+public class PathPermissionCacheTest {
+
+    private PathPermissionCache createCache(int maxSize) {
+        PathPermissionCache cache = new PathPermissionCache(maxSize);
+        cache.put("/sites/a : [jcr:read_default]", Boolean.TRUE);
+        cache.put("/sites/a/home : [jcr:read_default]", Boolean.TRUE);
+        cache.put("/sites/a/home/news : [jcr:write_default]", Boolean.FALSE);
+        cache.put("/sites/ab : [jcr:read_default]", Boolean.TRUE);
+        return cache;
+    }
+
+    @Test
+    public void testLookup() {
+        PathPermissionCache cache = createCache(100);
+        try {
+            long hits = PathPermissionCache.getHitCount();
+            long misses = PathPermissionCache.getMissCount();
+            Assert.assertEquals(Boolean.TRUE, cache.get("/sites/a : [jcr:read_default]"));
+            Assert.assertEquals(Boolean.FALSE, cache.get("/sites/a/home/news : [jcr:write_default]"));
+            Assert.assertNull(cache.get("/sites/a/home/news : [jcr:read_default]"));
+            Assert.assertEquals(hits + 2, PathPermissionCache.getHitCount());
+            Assert.assertEquals(misses + 1, PathPermissionCache.getMissCount());
+            Assert.assertEquals(4, cache.size());
+        } finally {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void testBounded() {
+        PathPermissionCache cache = createCache(3);
+        try {
+            Assert.assertEquals(3, cache.size());
+            cache.put("/sites/b : [jcr:read_default]", Boolean.TRUE);
+            Assert.assertEquals(3, cache.size());
+            Assert.assertEquals(Boolean.TRUE, cache.get("/sites/b : [jcr:read_default]"));
+        } finally {
+            cache.close();
+        }
+
+        PathPermissionCache disabled = createCache(0);
+        try {
+            Assert.assertEquals(0, disabled.size());
+            disabled.getIndexedAclChecks().put("6c4f5a26-5c5a-4b4e-9b2a-0e0e8e1b1a11", Boolean.TRUE);
+            Assert.assertTrue(disabled.getIndexedAclChecks().isEmpty());
+        } finally {
+            disabled.close();
+        }
+    }
+
+    @Test
+    public void testInvalidateSubtree() {
+        PathPermissionCache cache = createCache(100);
+        try {
+            cache.getCompiledAcls().put("/sites/a", new AccessManagerUtils.CompiledAcl());
+            cache.getIndexedAclChecks().put("6c4f5a26-5c5a-4b4e-9b2a-0e0e8e1b1a11", Boolean.TRUE);
+            PathPermissionCache.invalidateSubtree("/sites/a/home");
+            Assert.assertEquals(2, cache.size());
+            Assert.assertNull(cache.get("/sites/a/home : [jcr:read_default]"));
+            Assert.assertEquals(Boolean.TRUE, cache.get("/sites/a : [jcr:read_default]"));
+            Assert.assertTrue(cache.getCompiledAcls().isEmpty());
+            Assert.assertTrue(cache.getIndexedAclChecks().isEmpty());
+
+            PathPermissionCache.invalidateSubtree("/sites/a");
+            Assert.assertEquals(1, cache.size());
+            Assert.assertEquals(Boolean.TRUE, cache.get("/sites/ab : [jcr:read_default]"));
+
+            PathPermissionCache.invalidateSubtree("/");
+            Assert.assertEquals(0, cache.size());
+        } finally {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void testClosedCacheIsNotInvalidated() {
+        PathPermissionCache cache = createCache(100);
+        int openCaches = PathPermissionCache.getOpenCacheCount();
+        cache.close();
+        Assert.assertEquals(openCaches - 1, PathPermissionCache.getOpenCacheCount());
+        cache.put("/sites/a : [jcr:read_default]", Boolean.TRUE);
+        PathPermissionCache.invalidateSubtree("/");
+        Assert.assertEquals(1, cache.size());
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/Apache2 OR 2/JSEL
+ *
+ *     1/ Apache2
+ *     ==================================================================================
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.apache.jackrabbit.core.state;
+
+import org.apache.jackrabbit.core.id.NodeId;
+import org.apache.jackrabbit.spi.commons.name.NameConstants;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.*;
+
+/**
+ * Unit test for the {@link JahiaStripedISMLocking} class.
+ */
+public class JahiaStripedISMLockingTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private final NodeId parentId = new NodeId(1L, 1L);
+
+    private final NodeId childId = new NodeId(2L, 2L);
+
+    private final NodeId otherId = new NodeId(3L, 3L);
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private ChangeLog createChangeLog() {
+        ChangeLog changes = new ChangeLog();
+        changes.added(new NodeState(childId, NameConstants.NT_UNSTRUCTURED, parentId, ItemState.STATUS_NEW, false));
+        return changes;
+    }
+
+    private Future<ISMLocking.ReadLock> readInOtherThread(final ISMLocking locking, final NodeId id) {
+        return executor.submit(new Callable<ISMLocking.ReadLock>() {
+            @Override
+            public ISMLocking.ReadLock call() throws Exception {
+                return locking.acquireReadLock(id);
+            }
+        });
+    }
+
+    private Future<ISMLocking.WriteLock> writeInOtherThread(final ISMLocking locking, final ChangeLog changes) {
+        return executor.submit(new Callable<ISMLocking.WriteLock>() {
+            @Override
+            public ISMLocking.WriteLock call() throws Exception {
+                return locking.acquireWriteLock(changes);
+            }
+        });
+    }
+
+    private static void assertBlocked(Future<?> future) throws Exception {
+        try {
+            future.get(200, TimeUnit.MILLISECONDS);
+            Assert.fail("Lock should not have been acquired");
+        } catch (TimeoutException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testReadersOnlyWaitForDependentWriter() throws Exception {
+        JahiaStripedISMLocking locking = new JahiaStripedISMLocking();
+        ISMLocking.WriteLock writeLock = locking.acquireWriteLock(createChangeLog());
+
+        readInOtherThread(locking, otherId).get(1, TimeUnit.SECONDS).release();
+        Future<ISMLocking.ReadLock> blocked = readInOtherThread(locking, childId);
+        assertBlocked(blocked);
+        // the writer can read the items it changes
+        locking.acquireReadLock(childId).release();
+
+        writeLock.release();
+        blocked.get(1, TimeUnit.SECONDS).release();
+    }
+
+    @Test
+    public void testWriterWaitsForDependentReaders() throws Exception {
+        JahiaStripedISMLocking locking = new JahiaStripedISMLocking();
+        ISMLocking.ReadLock otherRead = locking.acquireReadLock(otherId);
+        ISMLocking.ReadLock childRead = locking.acquireReadLock(childId);
+
+        Future<ISMLocking.WriteLock> writer = writeInOtherThread(locking, createChangeLog());
+        assertBlocked(writer);
+        childRead.release();
+        ISMLocking.WriteLock writeLock = writer.get(1, TimeUnit.SECONDS);
+
+        // a global writer waits for all readers
+        Future<ISMLocking.WriteLock> globalWriter = writeInOtherThread(locking, null);
+        writeLock.release();
+        assertBlocked(globalWriter);
+        otherRead.release();
+        globalWriter.get(1, TimeUnit.SECONDS).release();
+    }
+
+    @Test
+    public void testDowngradedLockBlocksWriters() throws Exception {
+        JahiaStripedISMLocking locking = new JahiaStripedISMLocking();
+        ISMLocking.ReadLock downgraded = locking.acquireWriteLock(createChangeLog()).downgrade();
+
+        readInOtherThread(locking, childId).get(1, TimeUnit.SECONDS).release();
+        Future<ISMLocking.WriteLock> writer = writeInOtherThread(locking, new ChangeLog());
+        assertBlocked(writer);
+
+        downgraded.release();
+        writer.get(1, TimeUnit.SECONDS).release();
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/Apache2 OR 2/JSEL
+ *
+ *     1/ Apache2
+ *     ==================================================================================
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.services.content;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit test for the {@link JCRSharedNodeCache} class.
+ */
+public class JCRSharedNodeCacheTest {
+
+    private JCRSharedNodeCache createCache(int maxEntries) {
+        JCRSharedNodeCache cache = new JCRSharedNodeCache();
+        cache.setMaxEntries(maxEntries);
+        cache.put("site", "/sites/a");
+        cache.put("home", "/sites/a/home");
+        cache.put("news", "/sites/a/home/news");
+        cache.put("other", "/sites/ab");
+        return cache;
+    }
+
+    @Test
+    public void testLookup() {
+        JCRSharedNodeCache cache = createCache(100);
+        Assert.assertEquals("home", cache.getByPath("/sites/a/home").getIdentifier());
+        Assert.assertEquals("/sites/a/home/news", cache.getByIdentifier("news").getPath());
+        Assert.assertNull(cache.getByPath("/sites/b"));
+        Assert.assertEquals(2, cache.getHitCount());
+        Assert.assertEquals(1, cache.getMissCount());
+
+        cache.put("news", "/sites/a/news");
+        Assert.assertNull(cache.getByPath("/sites/a/home/news"));
+        Assert.assertEquals("news", cache.getByPath("/sites/a/news").getIdentifier());
+        Assert.assertEquals(4, cache.getSize());
+    }
+
+    @Test
+    public void testDisabledAndExcluded() {
+        JCRSharedNodeCache cache = createCache(0);
+        Assert.assertFalse(cache.isEnabled());
+        Assert.assertEquals(0, cache.getSize());
+
+        cache = createCache(100);
+        cache.put("ref", "/sites/a/home/ref" + JCRSessionWrapper.DEREF_SEPARATOR + "target");
+        cache.put("version", "/jcr:system/jcr:versionStorage/v");
+        Assert.assertEquals(4, cache.getSize());
+    }
+
+    @Test
+    public void testInvalidateSubtree() {
+        JCRSharedNodeCache cache = createCache(100);
+        cache.invalidateSubtree("/sites/a/home");
+        Assert.assertNull(cache.getByIdentifier("home"));
+        Assert.assertNull(cache.getByPath("/sites/a/home/news"));
+        Assert.assertNotNull(cache.getByPath("/sites/a"));
+        Assert.assertNotNull(cache.getByPath("/sites/ab"));
+
+        cache.invalidateSubtree("/sites/a");
+        Assert.assertNull(cache.getByIdentifier("site"));
+        Assert.assertNotNull(cache.getByIdentifier("other"));
+
+        cache.invalidateSubtree("/");
+        Assert.assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testInvalidateIdentifier() {
+        JCRSharedNodeCache cache = createCache(100);
+        cache.invalidateIdentifier("home");
+        Assert.assertNull(cache.getByPath("/sites/a/home"));
+        Assert.assertNotNull(cache.getByPath("/sites/a/home/news"));
+    }
+
+    @Test
+    public void testBounded() {
+        JCRSharedNodeCache cache = createCache(4);
+        Assert.assertEquals(4, cache.getSize());
+        cache.put("files", "/sites/a/files");
+        Assert.assertEquals(1, cache.getSize());
+        Assert.assertEquals("files", cache.getByPath("/sites/a/files").getIdentifier());
+    }
+}
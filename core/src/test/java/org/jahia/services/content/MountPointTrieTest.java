@@ -0,0 +1,155 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/Apache2 OR 2/JSEL
+ *
+ *     1/ Apache2
+ *     ==================================================================================
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.services.content;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Unit test for the {@link MountPointTrie} class, checking it resolves the same mount points as the former scan of the
+ * sorted mount points.
+ */
+public class MountPointTrieTest {
+
+    private static final String DEFAULT = "default";
+
+    private static SortedMap<String, String> createMountPoints(int count) {
+        SortedMap<String, String> mountPoints = new TreeMap<>(Collections.reverseOrder());
+        mountPoints.put("/", DEFAULT);
+        for (int i = 1; i < count; i++) {
+            String mountPoint = i % 3 == 0 ? "/sites/site" + i + "/files/external" : "/mounts/provider" + i;
+            mountPoints.put(mountPoint, "provider" + i);
+        }
+        if (count > 2) {
+            mountPoints.put("/mounts/provider1/nested", "nested");
+        }
+        return mountPoints;
+    }
+
+    private static List<String> createPaths(Map<String, String> mountPoints) {
+        List<String> paths = new ArrayList<>();
+        paths.add("/");
+        paths.add("/sites");
+        paths.add("/mounts");
+        paths.add("/mounts/provider");
+        paths.add("/mounts/provider10x/a");
+        paths.add("relative/path");
+        for (String mountPoint : mountPoints.keySet()) {
+            paths.add(mountPoint);
+            paths.add(mountPoint + "/");
+            paths.add(mountPoint + "/child/grandchild");
+            paths.add(mountPoint + "-sibling");
+            paths.add(mountPoint + "0/child");
+        }
+        return paths;
+    }
+
+    /**
+     * The resolution formerly implemented by {@link JCRSessionFactory#getProvider(String, boolean)}.
+     */
+    private static String scan(SortedMap<String, String> mountPoints, String path, boolean includeDefault) {
+        for (Map.Entry<String, String> mp : mountPoints.entrySet()) {
+            if ((includeDefault && DEFAULT.equals(mp.getValue())) || path.equals(mp.getKey())
+                    || path.startsWith(mp.getKey() + "/")) {
+                return mp.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static String find(MountPointTrie<String> trie, String path, boolean includeDefault) {
+        String found = trie.find(path);
+        return found == null && includeDefault ? trie.getDefault() : found;
+    }
+
+    private void checkSameResolution(int count) {
+        SortedMap<String, String> mountPoints = createMountPoints(count);
+        MountPointTrie<String> trie = MountPointTrie.build(mountPoints, DEFAULT);
+        Assert.assertEquals(mountPoints.size(), trie.size());
+        for (String path : createPaths(mountPoints)) {
+            Assert.assertEquals("Wrong mount point for " + path, scan(mountPoints, path, true), find(trie, path, true));
+            Assert.assertEquals("Wrong mount point for " + path, scan(mountPoints, path, false), find(trie, path, false));
+        }
+    }
+
+    @Test
+    public void testSingleMountPoint() {
+        checkSameResolution(1);
+    }
+
+    @Test
+    public void testTenMountPoints() {
+        checkSameResolution(10);
+    }
+
+    @Test
+    public void testHundredMountPoints() {
+        checkSameResolution(100);
+    }
+
+    @Test
+    public void testNestedMountPoints() {
+        MountPointTrie<String> trie = MountPointTrie.build(createMountPoints(10), DEFAULT);
+        Assert.assertEquals("provider1", trie.find("/mounts/provider1/other"));
+        Assert.assertEquals("nested", trie.find("/mounts/provider1/nested"));
+        Assert.assertEquals("nested", trie.find("/mounts/provider1/nested/child"));
+        Assert.assertNull(trie.find("/sites/site3"));
+        Assert.assertEquals("provider3", trie.find("/sites/site3/files/external/a"));
+    }
+
+    @Test
+    public void testEmpty() {
+        MountPointTrie<String> trie = MountPointTrie.empty();
+        Assert.assertEquals(0, trie.size());
+        Assert.assertNull(trie.find("/"));
+        Assert.assertNull(trie.find("/sites"));
+        Assert.assertNull(trie.getDefault());
+    }
+}
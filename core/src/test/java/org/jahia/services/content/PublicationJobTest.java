@@ -0,0 +1,180 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/Apache2 OR 2/JSEL
+ *
+ *     1/ Apache2
+ *     ==================================================================================
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.services.content;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.quartz.JobDataMap;
+import org.quartz.JobExecutionException;
+
+import javax.jcr.RepositoryException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit test for the {@link PublicationJob} class, checking a batched publication failing mid-way is resumed from its
+ * last checkpoint.
+ */
+public class PublicationJobTest {
+
+    private static final List<String> UUIDS = Arrays.asList("a", "b", "c", "d", "e", "f", "g", "h", "i", "j");
+
+    /**
+     * Publishes the uuids in batches of 2, failing after the given number of batches.
+     */
+    private static class BatchPublisher implements PublicationJob.Publisher {
+
+        private final int failAfterBatches;
+        private final List<String> skipped;
+        private final List<String> received = new ArrayList<>();
+        private final List<Integer> progress = new ArrayList<>();
+        private JobDataMap jobDataMap;
+
+        BatchPublisher(int failAfterBatches, String... skipped) {
+            this.failAfterBatches = failAfterBatches;
+            this.skipped = Arrays.asList(skipped);
+        }
+
+        @Override
+        public void publish(List<String> uuids, PublicationProgressListener progressListener) throws RepositoryException {
+            received.addAll(uuids);
+            // as the uuids the user cannot publish, which are left out of the batches
+            uuids = new ArrayList<>(uuids);
+            uuids.removeAll(skipped);
+            int batches = 0;
+            for (int i = 0; i < uuids.size(); i += 2) {
+                if (batches++ == failAfterBatches) {
+                    throw new RepositoryException("Batch failed");
+                }
+                int end = Math.min(i + 2, uuids.size());
+                progressListener.onBatchPublished(new ArrayList<>(uuids.subList(i, end)), end, uuids.size());
+                progress.add((Integer) jobDataMap.get(PublicationJob.PROGRESS));
+            }
+        }
+    }
+
+    private static JobDataMap createJobDataMap() {
+        JobDataMap jobDataMap = new JobDataMap();
+        jobDataMap.put(PublicationJob.PUBLICATION_UUIDS, UUIDS);
+        return jobDataMap;
+    }
+
+    @Test
+    public void testFailedPublicationIsResumed() throws Exception {
+        JobDataMap jobDataMap = createJobDataMap();
+        final Map<String, Object> stored = new HashMap<>();
+        BatchPublisher failing = new BatchPublisher(2);
+        failing.jobDataMap = jobDataMap;
+        try {
+            PublicationJob.publishRemaining(UUIDS, jobDataMap, failing, () -> {
+                stored.clear();
+                stored.putAll(jobDataMap);
+            });
+            Assert.fail("The publication should have failed");
+        } catch (JobExecutionException e) {
+            Assert.assertTrue("A publication failing after some batches should be executed again",
+                    e.refireImmediately());
+        }
+        Assert.assertEquals(UUIDS, failing.received);
+        Assert.assertEquals(Arrays.asList(20, 40), failing.progress);
+        Assert.assertEquals(4, stored.get(PublicationJob.PUBLISHED_COUNT));
+
+        // resume from the stored checkpoint, as after a crash
+        JobDataMap resumedJobDataMap = new JobDataMap(stored);
+        BatchPublisher resumed = new BatchPublisher(-1);
+        resumed.jobDataMap = resumedJobDataMap;
+        PublicationJob.publishRemaining(UUIDS, resumedJobDataMap, resumed, () -> {
+        });
+        Assert.assertEquals("Only the remaining uuids should be published", UUIDS.subList(4, 10), resumed.received);
+        Assert.assertEquals("The progress should be computed against all the uuids", Arrays.asList(60, 80, 100),
+                resumed.progress);
+        Assert.assertEquals(100, resumedJobDataMap.get(PublicationJob.PROGRESS));
+        Assert.assertFalse(resumedJobDataMap.containsKey(PublicationJob.PUBLISHED_COUNT));
+    }
+
+    @Test
+    public void testSkippedUuidsAreNotResumed() throws Exception {
+        JobDataMap jobDataMap = createJobDataMap();
+        final Map<String, Object> stored = new HashMap<>();
+        BatchPublisher failing = new BatchPublisher(2, "c", "f");
+        failing.jobDataMap = jobDataMap;
+        try {
+            PublicationJob.publishRemaining(UUIDS, jobDataMap, failing, () -> {
+                stored.clear();
+                stored.putAll(jobDataMap);
+            });
+            Assert.fail("The publication should have failed");
+        } catch (JobExecutionException e) {
+            Assert.assertTrue(e.refireImmediately());
+        }
+        Assert.assertEquals("The checkpoint should cover the skipped uuids", 5, stored.get(PublicationJob.PUBLISHED_COUNT));
+        Assert.assertEquals(Arrays.asList(20, 50), failing.progress);
+
+        JobDataMap resumedJobDataMap = new JobDataMap(stored);
+        BatchPublisher resumed = new BatchPublisher(-1, "c", "f");
+        resumed.jobDataMap = resumedJobDataMap;
+        PublicationJob.publishRemaining(UUIDS, resumedJobDataMap, resumed, () -> {
+        });
+        Assert.assertEquals(UUIDS.subList(5, 10), resumed.received);
+        Assert.assertEquals(100, resumedJobDataMap.get(PublicationJob.PROGRESS));
+    }
+
+    @Test
+    public void testFailureWithoutProgressIsNotRefired() {
+        JobDataMap jobDataMap = createJobDataMap();
+        BatchPublisher failing = new BatchPublisher(0);
+        failing.jobDataMap = jobDataMap;
+        try {
+            PublicationJob.publishRemaining(UUIDS, jobDataMap, failing, () -> {
+            });
+            Assert.fail("The publication should have failed");
+        } catch (JobExecutionException e) {
+            Assert.assertFalse(e.refireImmediately());
+        }
+        Assert.assertEquals(0, jobDataMap.get(PublicationJob.PROGRESS));
+        Assert.assertFalse(jobDataMap.containsKey(PublicationJob.PUBLISHED_COUNT));
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/Apache2 OR 2/JSEL
+ *
+ *     1/ Apache2
+ *     ==================================================================================
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.services.content.impl.jackrabbit;
+
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for the {@link DatabaseNodeLocker} class.
+ */
+public class DatabaseNodeLockerTest {
+
+    @Test
+    public void testIntegrityConstraintViolationIsLockConflict() {
+        assertTrue(DatabaseNodeLocker.isLockConflict(new SQLIntegrityConstraintViolationException("duplicate key")));
+    }
+
+    @Test
+    public void testSqlStateClass23IsLockConflict() {
+        // PostgreSQL unique_violation
+        assertTrue(DatabaseNodeLocker.isLockConflict(new SQLException("duplicate key", "23505")));
+        // SQL Server violation of a primary key constraint
+        assertTrue(DatabaseNodeLocker.isLockConflict(new SQLException("Violation of PRIMARY KEY constraint", "23000", 2627)));
+    }
+
+    @Test
+    public void testChainedSqlStateClass23IsLockConflict() {
+        SQLException batchException = new SQLException("Batch entry 0 was aborted", "HY000");
+        batchException.setNextException(new SQLException("duplicate key", "23505"));
+        assertTrue(DatabaseNodeLocker.isLockConflict(batchException));
+    }
+
+    @Test
+    public void testOtherErrorsAreNotLockConflicts() {
+        assertFalse(DatabaseNodeLocker.isLockConflict(new SQLException("connection refused", "08001")));
+        assertFalse(DatabaseNodeLocker.isLockConflict(new SQLException("unknown")));
+    }
+}
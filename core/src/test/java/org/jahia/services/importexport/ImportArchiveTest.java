@@ -0,0 +1,148 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/Apache2 OR 2/JSEL
+ *
+ *     1/ Apache2
+ *     ==================================================================================
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.services.importexport;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Unit test for the {@link ImportArchive} class.
+ */
+public class ImportArchiveTest {
+
+    private File tempDir;
+
+    private File createZip() throws IOException {
+        tempDir = Files.createTempDirectory("import-archive").toFile();
+        File zip = new File(tempDir, "import.zip");
+        try (ZipOutputStream zout = new ZipOutputStream(new FileOutputStream(zip))) {
+            addEntry(zout, "repository.xml", "<content/>");
+            addEntry(zout, "content\\sites\\a\\files\\doc.txt", "doc");
+            zout.putNextEntry(new ZipEntry("content/sites/a/images/"));
+            zout.closeEntry();
+            addEntry(zout, "live-repository.xml", "<live/>");
+        }
+        return zip;
+    }
+
+    private void addEntry(ZipOutputStream zout, String name, String content) throws IOException {
+        zout.putNextEntry(new ZipEntry(name));
+        zout.write(content.getBytes(StandardCharsets.UTF_8));
+        zout.closeEntry();
+    }
+
+    private String read(ImportArchive archive, String name) throws IOException {
+        try (InputStream is = archive.getInputStream(name)) {
+            return IOUtils.toString(is, StandardCharsets.UTF_8);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(tempDir);
+    }
+
+    @Test
+    public void testZipFile() throws IOException {
+        try (ImportArchive archive = ImportArchive.open(new FileSystemResource(createZip()))) {
+            Assert.assertEquals(Arrays.asList("repository.xml", "content/sites/a/files/doc.txt", "content/sites/a/images/", "live-repository.xml"),
+                    Arrays.asList(archive.getEntryNames().toArray()));
+            Assert.assertEquals("<live/>", read(archive, "live-repository.xml"));
+            Assert.assertEquals("doc", read(archive, "content/sites/a/files/doc.txt"));
+            Assert.assertEquals("<content/>", read(archive, "repository.xml"));
+            Assert.assertEquals(3, archive.getSize("content/sites/a/files/doc.txt"));
+            Assert.assertTrue(archive.isDirectory("content/sites/a/images/"));
+            Assert.assertNull(archive.getInputStream("content/sites/a/images/"));
+            Assert.assertFalse(archive.contains("users.xml"));
+            Assert.assertNull(archive.getInputStream("users.xml"));
+            Assert.assertEquals(-1, archive.getSize("users.xml"));
+        }
+    }
+
+    @Test
+    public void testStreamIsCopiedOnce() throws IOException {
+        byte[] content = FileUtils.readFileToByteArray(createZip());
+        File copy;
+        try (ImportArchive archive = ImportArchive.open(new ByteArrayResource(content))) {
+            copy = archive.getTempFile();
+            Assert.assertNotNull(copy);
+            Assert.assertTrue(copy.isFile());
+            Assert.assertEquals(content.length, copy.length());
+            Assert.assertEquals("<content/>", read(archive, "repository.xml"));
+            Assert.assertEquals("doc", read(archive, "content/sites/a/files/doc.txt"));
+        }
+        Assert.assertFalse(copy.exists());
+    }
+
+    @Test
+    public void testFileIsNotCopied() throws IOException {
+        try (ImportArchive archive = ImportArchive.open(new FileSystemResource(createZip()))) {
+            Assert.assertNull(archive.getTempFile());
+        }
+    }
+
+    @Test
+    public void testExpandedFolder() throws IOException {
+        tempDir = Files.createTempDirectory("import-archive").toFile();
+        FileUtils.writeStringToFile(new File(tempDir, "repository.xml"), "<content/>", StandardCharsets.UTF_8);
+        FileUtils.writeStringToFile(new File(tempDir, "content/sites/a/files/doc.txt"), "doc", StandardCharsets.UTF_8);
+        try (ImportArchive archive = ImportArchive.open(new FileSystemResource(tempDir))) {
+            Assert.assertTrue(archive.contains("repository.xml"));
+            Assert.assertTrue(archive.isDirectory("content/sites/a/"));
+            Assert.assertEquals("doc", read(archive, "content/sites/a/files/doc.txt"));
+            Assert.assertEquals(10, archive.getSize("repository.xml"));
+        }
+    }
+}
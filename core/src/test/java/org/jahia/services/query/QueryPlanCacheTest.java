@@ -0,0 +1,111 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/Apache2 OR 2/JSEL
+ *
+ *     1/ Apache2
+ *     ==================================================================================
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.services.query;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit test for the {@link QueryPlanCache} class.
+ */
+public class QueryPlanCacheTest {
+
+    private static final String QUERY = "en|SELECT * FROM [jnt:news] AS [news] WHERE [news].[jcr:title] = $title";
+
+    @Test
+    public void testLookup() {
+        QueryPlanCache cache = new QueryPlanCache(10);
+        Assert.assertNull(cache.get(QUERY, 0));
+        cache.put(QUERY, QueryPlanCache.UNMODIFIED, 0);
+        Assert.assertEquals(QueryPlanCache.UNMODIFIED, cache.get(QUERY, 0));
+        Assert.assertNull(cache.get("fr|" + QUERY.substring(3), 0));
+        Assert.assertEquals(1, cache.getHitCount());
+        Assert.assertEquals(2, cache.getMissCount());
+        Assert.assertEquals(1d / 3, cache.getHitRate(), 0.0001);
+    }
+
+    @Test
+    public void testBounded() {
+        QueryPlanCache cache = new QueryPlanCache(2);
+        cache.put("a", QueryPlanCache.UNMODIFIED, 0);
+        cache.put("b", QueryPlanCache.UNMODIFIED, 0);
+        cache.put("b", "SELECT * FROM [nt:base] AS [b]", 0);
+        Assert.assertEquals(2, cache.getSize());
+        Assert.assertEquals(0, cache.getEvictionCount());
+        // a is used again, b is the least recently used plan
+        Assert.assertNotNull(cache.get("a", 0));
+        cache.put("c", QueryPlanCache.UNMODIFIED, 0);
+        Assert.assertEquals(2, cache.getSize());
+        Assert.assertEquals(1, cache.getEvictionCount());
+        Assert.assertNull(cache.get("b", 0));
+        Assert.assertNotNull(cache.get("a", 0));
+        Assert.assertNotNull(cache.get("c", 0));
+
+        cache.setMaxSize(1);
+        Assert.assertEquals(1, cache.getSize());
+        Assert.assertEquals(2, cache.getEvictionCount());
+        Assert.assertNotNull("The most recently used plan should be kept", cache.get("c", 0));
+
+        QueryPlanCache disabled = new QueryPlanCache(0);
+        disabled.put("a", QueryPlanCache.UNMODIFIED, 0);
+        Assert.assertFalse(disabled.isEnabled());
+        Assert.assertNull(disabled.get("a", 0));
+        Assert.assertEquals(0, disabled.getMissCount());
+    }
+
+    @Test
+    public void testDefinitionsChange() {
+        QueryPlanCache cache = new QueryPlanCache(10);
+        cache.put(QUERY, QueryPlanCache.UNMODIFIED, 1);
+        long invalidations = cache.getInvalidationCount();
+        Assert.assertNull(cache.get(QUERY, 2));
+        Assert.assertEquals(0, cache.getSize());
+        Assert.assertEquals(invalidations + 1, cache.getInvalidationCount());
+
+        // a plan computed before the change is not stored
+        cache.put(QUERY, QueryPlanCache.UNMODIFIED, 1);
+        Assert.assertNull(cache.get(QUERY, 2));
+        cache.put(QUERY, QueryPlanCache.UNMODIFIED, 2);
+        Assert.assertEquals(QueryPlanCache.UNMODIFIED, cache.get(QUERY, 2));
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/Apache2 OR 2/JSEL
+ *
+ *     1/ Apache2
+ *     ==================================================================================
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.services.render.filter.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Unit test for the {@link ClusterFlushPropagationBuffer} class.
+ */
+public class ClusterFlushPropagationBufferTest {
+
+    @Test
+    public void testCoalescing() {
+        List<String> sent = new ArrayList<>();
+        ClusterFlushPropagationBuffer buffer = new ClusterFlushPropagationBuffer(1000, 100, sent::add);
+        buffer.start();
+        try {
+            buffer.addPath("/sites/a/home/news");
+            buffer.addPath("/sites/a/home/news");
+            buffer.addPath("/sites/a-b/home");
+            buffer.addPath("0c1d2e3f-uuid");
+            buffer.addSubtree("/sites/a/home");
+            buffer.addPath("/sites/a/home/events");
+            buffer.addPath("/sites/a/home");
+            buffer.addSubtree("/sites/a");
+            Assert.assertEquals(3, buffer.getPendingFlushes());
+            Assert.assertEquals(5, buffer.getFlushesCoalesced());
+            Assert.assertTrue(sent.isEmpty());
+
+            buffer.send();
+            Assert.assertEquals(1, sent.size());
+            Assert.assertEquals(0, buffer.getPendingFlushes());
+            Assert.assertEquals(1, buffer.getBatchesSent());
+            Assert.assertEquals(3, buffer.getFlushesSent());
+
+            List<String> paths = new ArrayList<>();
+            List<String> subtrees = new ArrayList<>();
+            long timestamp = ClusterFlushPropagationBuffer.decode(sent.get(0), paths, subtrees);
+            Assert.assertTrue(timestamp > 0);
+            Assert.assertEquals(Arrays.asList("/sites/a"), subtrees);
+            Assert.assertEquals(Arrays.asList("/sites/a-b/home", "0c1d2e3f-uuid"), paths);
+
+            buffer.send();
+            Assert.assertEquals(1, sent.size());
+        } finally {
+            buffer.stop();
+        }
+    }
+
+    @Test
+    public void testRootAndTrailingSlashSubtrees() {
+        List<String> pending = Arrays.asList("/", "//x", "/a", "/a/", "/a/b", "/a//c", "/ab");
+        DependenciesPathIndex index = new DependenciesPathIndex();
+        for (String path : pending) {
+            index.add(path);
+        }
+        for (String subtree : Arrays.asList("/", "/a/", "/a")) {
+            List<String> sent = new ArrayList<>();
+            ClusterFlushPropagationBuffer buffer = new ClusterFlushPropagationBuffer(60000, 100, sent::add);
+            buffer.start();
+            try {
+                for (String path : pending) {
+                    buffer.addPath(path);
+                }
+                buffer.addSubtree(subtree);
+            } finally {
+                buffer.stop();
+            }
+
+            List<String> paths = new ArrayList<>();
+            List<String> subtrees = new ArrayList<>();
+            ClusterFlushPropagationBuffer.decode(sent.get(0), paths, subtrees);
+            List<String> flushed = new ArrayList<>(paths);
+            index.collectSubtrees(subtrees, flushed);
+            Assert.assertTrue(subtree + " " + flushed, flushed.containsAll(pending));
+            Assert.assertEquals(subtree, pending.size() + 1 - buffer.getFlushesCoalesced(), (long) paths.size() + subtrees.size());
+        }
+    }
+
+    @Test
+    public void testBatchSizeLimit() {
+        List<String> sent = new ArrayList<>();
+        ClusterFlushPropagationBuffer buffer = new ClusterFlushPropagationBuffer(60000, 3, sent::add);
+        buffer.start();
+        try {
+            buffer.addPath("/a");
+            buffer.addPath("/b");
+            Assert.assertTrue(sent.isEmpty());
+            buffer.addPath("/c");
+            Assert.assertEquals(1, sent.size());
+            Assert.assertEquals(0, buffer.getPendingFlushes());
+        } finally {
+            buffer.stop();
+        }
+    }
+
+    @Test
+    public void testWindowExpiration() throws InterruptedException {
+        List<String> sent = new ArrayList<>();
+        ClusterFlushPropagationBuffer buffer = new ClusterFlushPropagationBuffer(10, 100, sent::add);
+        buffer.start();
+        try {
+            buffer.addPath("/a");
+            for (int i = 0; i < 500 && buffer.getPendingFlushes() > 0; i++) {
+                Thread.sleep(10);
+            }
+            Assert.assertEquals(0, buffer.getPendingFlushes());
+            Assert.assertEquals(1, buffer.getBatchesSent());
+        } finally {
+            buffer.stop();
+        }
+    }
+
+    @Test
+    public void testReceivedLatency() {
+        ClusterFlushPropagationBuffer buffer = new ClusterFlushPropagationBuffer(10, 100, batch -> { });
+        buffer.batchReceived(System.currentTimeMillis() - 50);
+        buffer.batchReceived(0);
+        Assert.assertEquals(2, buffer.getBatchesReceived());
+        Assert.assertTrue(buffer.getMaxFlushLatency() >= 50);
+        buffer.resetStatistics();
+        Assert.assertEquals(0, buffer.getBatchesReceived());
+        Assert.assertEquals(0, buffer.getMaxFlushLatency());
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/Apache2 OR 2/JSEL
+ *
+ *     1/ Apache2
+ *     ==================================================================================
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.services.render.filter.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Unit test for the {@link CompactDependencySet} and {@link DependenciesLimitPolicy} classes.
+ */
+public class CompactDependencySetTest {
+
+    @Test
+    public void testSetOperations() {
+        CompactDependencySet set = new CompactDependencySet();
+        Set<String> expected = new TreeSet<>();
+        for (String key : Arrays.asList("b@@1", "a@@2", "c@@3", "a@@1", "b@@1")) {
+            Assert.assertEquals(expected.add(key), set.add(key));
+        }
+        Assert.assertEquals(expected.size(), set.size());
+        Assert.assertEquals(expected, set);
+        Assert.assertTrue(set.contains("a@@1"));
+        Assert.assertFalse(set.contains("a@@3"));
+        Assert.assertFalse(set.contains(null));
+
+        Assert.assertTrue(set.remove("b@@1"));
+        Assert.assertFalse(set.remove("b@@1"));
+        expected.remove("b@@1");
+        Assert.assertEquals(expected, set);
+
+        set.clear();
+        Assert.assertTrue(set.isEmpty());
+    }
+
+    @Test
+    public void testConcurrentModifications() throws Exception {
+        final CompactDependencySet set = new CompactDependencySet();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int offset = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 500; i++) {
+                    String key = "key" + (i * threads.length + offset);
+                    set.add(key);
+                    Assert.assertTrue(set.contains(key));
+                    if (i % 2 == 1) {
+                        set.remove(key);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals(1000, set.size());
+        Assert.assertEquals(1000, new TreeSet<>(set).size());
+        Assert.assertTrue(set.contains("key0"));
+        Assert.assertFalse(set.contains("key4"));
+    }
+
+    @Test
+    public void testIteratorIsSnapshot() {
+        CompactDependencySet set = new CompactDependencySet();
+        set.add("a");
+        set.add("b");
+        Iterator<String> iterator = set.iterator();
+        set.add("c");
+        Assert.assertEquals("a", iterator.next());
+        Assert.assertEquals("b", iterator.next());
+        Assert.assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void testCompressedKeys() throws Exception {
+        CompactDependencySet set = new CompactDependencySet();
+        for (String key : Arrays.asList("/sites/a/home@@default@@en", "/sites/a/home@@full@@en", "/sites/a/home@@default",
+                "a@@@b", "@@", "")) {
+            Assert.assertTrue(set.add(new String(key)));
+            Assert.assertTrue(set.contains(key));
+        }
+        Assert.assertFalse(set.contains("/sites/a/home"));
+        Assert.assertEquals(new TreeSet<>(Arrays.asList("/sites/a/home@@default@@en", "/sites/a/home@@full@@en",
+                "/sites/a/home@@default", "a@@@b", "@@", "")), new TreeSet<>(set));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(out);
+        oos.writeObject(set);
+        oos.close();
+        @SuppressWarnings("unchecked")
+        Set<String> read = (Set<String>) new ObjectInputStream(new ByteArrayInputStream(out.toByteArray())).readObject();
+
+        Assert.assertEquals(set, read);
+        Assert.assertTrue(read.contains("/sites/a/home@@full@@en"));
+
+        // the parts are shared between the keys
+        String[] parts1 = KeyCompressor.compressKey(new String("/sites/a/home@@default@@en"));
+        String[] parts2 = KeyCompressor.compressKey(new String("/sites/a/home@@full@@en"));
+        Assert.assertSame(parts1[0], parts2[0]);
+        Assert.assertSame(parts1[2], parts2[2]);
+        Assert.assertEquals("/sites/a/home@@full@@en", KeyCompressor.decompressKey(parts2));
+    }
+
+    @Test
+    public void testCategoryLimits() {
+        DependenciesLimitPolicy policy = new DependenciesLimitPolicy();
+        policy.setDefaultLimit(1000);
+        policy.setCategoryLimits("/sites/*/files=200, /sites/a/files/big=5000,/users=50,invalid");
+
+        Assert.assertEquals(1000, policy.getLimit("/sites/a/home"));
+        Assert.assertEquals(200, policy.getLimit("/sites/a/files"));
+        Assert.assertEquals(200, policy.getLimit("/sites/b/files/images/logo.png"));
+        Assert.assertEquals(5000, policy.getLimit("/sites/a/files/big/file.pdf"));
+        Assert.assertEquals(1000, policy.getLimit("/sites/a/filesystem"));
+        Assert.assertEquals(50, policy.getLimit("/users/root"));
+        Assert.assertEquals(1000, policy.getLimit("8f2c6e0a-5a1b-4f1c-9d2e-0c3b5a6d7e8f"));
+        Assert.assertArrayEquals(new String[]{"/sites/a/files/big=5000", "/sites/*/files=200", "/users=50"},
+                policy.getCategoryLimits());
+    }
+
+    @Test
+    public void testCollapseStatistics() {
+        DependenciesLimitPolicy policy = new DependenciesLimitPolicy();
+        policy.setMaxTrackedPaths(2);
+        policy.collapsed("/sites/a", 1001);
+        policy.collapsed("/sites/b", 1001);
+        policy.collapsed("/sites/b", 1001);
+        policy.collapsed("/sites/c", 1001);
+
+        Assert.assertEquals(4, policy.getCollapseCount());
+        Assert.assertArrayEquals(new String[]{"/sites/b: 2 (limit 1000)", "/sites/a: 1 (limit 1000)"},
+                policy.getCollapsedPaths());
+
+        policy.resetStatistics();
+        Assert.assertEquals(0, policy.getCollapseCount());
+        Assert.assertEquals(0, policy.getCollapsedPaths().length);
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/Apache2 OR 2/JSEL
+ *
+ *     1/ Apache2
+ *     ==================================================================================
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.services.render.filter.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Unit test for the {@link DependenciesPathIndex} class.
+ */
+public class DependenciesPathIndexTest {
+
+    @Test
+    public void testSubtreeLookup() {
+        DependenciesPathIndex index = new DependenciesPathIndex();
+        for (String key : Arrays.asList("/sites/a", "/sites/a/home", "/sites/a/home/news", "/sites/a-b/home",
+                "/sites/a.b", "/sites/ab", "/sites/b/home", "0c1d2e3f-uuid")) {
+            index.add(key);
+        }
+        Assert.assertEquals(7, index.size());
+
+        Assert.assertEquals(new TreeSet<>(Arrays.asList("/sites/a", "/sites/a/home", "/sites/a/home/news")),
+                new TreeSet<>(index.getSubtree("/sites/a")));
+        Assert.assertEquals(Arrays.asList("/sites/b/home"), index.getSubtree("/sites/b"));
+        Assert.assertTrue(index.getSubtree("/sites/c").isEmpty());
+    }
+
+    @Test
+    public void testRootAndTrailingSlash() {
+        DependenciesPathIndex index = new DependenciesPathIndex();
+        for (String key : Arrays.asList("/", "/a", "/a/", "/a/b", "/a//c")) {
+            index.add(key);
+        }
+        Assert.assertEquals(Arrays.asList("/"), index.getSubtree("/"));
+        Assert.assertEquals(Arrays.asList("/a/", "/a//c"), index.getSubtree("/a/"));
+        Assert.assertEquals(new TreeSet<>(Arrays.asList("/a", "/a/", "/a/b", "/a//c")),
+                new TreeSet<>(index.getSubtree("/a")));
+    }
+
+    @Test
+    public void testCollectSubtrees() {
+        DependenciesPathIndex index = new DependenciesPathIndex();
+        for (String key : Arrays.asList("/a/b", "/a/b/c", "/a/bc", "/d/e")) {
+            index.add(key);
+        }
+        Set<String> result = new HashSet<>();
+        index.collectSubtrees(Arrays.asList("/a/b", "/d"), result);
+        Assert.assertEquals(new HashSet<>(Arrays.asList("/a/b", "/a/b/c", "/d/e")), result);
+    }
+
+    @Test
+    public void testMatchesFullScan() {
+        DependenciesPathIndex index = new DependenciesPathIndex();
+        List<String> keys = Arrays.asList("/", "//x", "/x", "/x/y", "/x/y/z", "/x/y-z", "/x/yz", "/x/y/", "/x/y//z",
+                "/x0", "/x/");
+        for (String key : keys) {
+            index.add(key);
+        }
+        for (String path : Arrays.asList("/", "/x", "/x/", "/x/y", "/x/y/", "/x/y/z", "/x/yz")) {
+            Set<String> expected = new TreeSet<>();
+            for (String key : keys) {
+                if (key.equals(path) || key.startsWith(path + '/')) {
+                    expected.add(key);
+                }
+            }
+            Assert.assertEquals("Wrong subtree for " + path, expected, new TreeSet<>(index.getSubtree(path)));
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/Apache2 OR 2/JSEL
+ *
+ *     1/ Apache2
+ *     ==================================================================================
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.services.render.filter.cache;
+
+import org.jahia.services.cache.CacheEntry;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit test for the {@link FragmentCacheEntry} class.
+ */
+public class FragmentCacheEntryTest {
+
+    private static final String CONTENT = "<div>caf\u00e9 \u2603</div><jahia_esi:include src=\"key1@@a\"></jahia_esi:include>"
+            + "<p>between</p><jahia_esi:include src=\"key2\"></jahia_esi:include><jahia_esi:include src=\"unclosed";
+
+    @Test
+    public void testTokenization() {
+        FragmentCacheEntry entry = new FragmentCacheEntry(CONTENT);
+        Assert.assertEquals(2, entry.getIncludeCount());
+        Assert.assertEquals("<div>caf\u00e9 \u2603</div>", entry.getSegment(0));
+        Assert.assertEquals("key1@@a", entry.getIncludeKey(0));
+        Assert.assertEquals("<p>between</p>", entry.getSegment(1));
+        Assert.assertEquals("key2", entry.getIncludeKey(1));
+        Assert.assertEquals("<jahia_esi:include src=\"unclosed", entry.getSegment(2));
+        Assert.assertEquals(CONTENT.length(), entry.getLength());
+        Assert.assertEquals(CONTENT, entry.getObject());
+    }
+
+    @Test
+    public void testSegmentsAreNotCopied() {
+        FragmentCacheEntry entry = new FragmentCacheEntry(CONTENT);
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i <= entry.getIncludeCount(); i++) {
+            entry.appendSegment(out, i);
+            out.append('|');
+        }
+        Assert.assertEquals("<div>caf\u00e9 \u2603</div>|<p>between</p>|<jahia_esi:include src=\"unclosed|", out.toString());
+        // the content is held once, as given
+        Assert.assertSame(CONTENT, entry.getObject());
+    }
+
+    @Test
+    public void testIncludeKeysAreParsedOnce() {
+        CacheKeyGenerator keyGenerator = mock(CacheKeyGenerator.class);
+        when(keyGenerator.parse("key1@@a")).thenReturn(Collections.singletonMap("path", "key1"));
+        when(keyGenerator.parse("key2")).thenReturn(Collections.singletonMap("path", "key2"));
+
+        FragmentCacheEntry entry = new FragmentCacheEntry(CONTENT);
+        Assert.assertEquals("key1", entry.getIncludeKeyParts(0, keyGenerator).get("path"));
+        Assert.assertEquals("key2", entry.getIncludeKeyParts(1, keyGenerator).get("path"));
+        entry.getIncludeKeyParts(0, keyGenerator).put("path", "modified");
+        Assert.assertEquals("key1", entry.getIncludeKeyParts(0, keyGenerator).get("path"));
+        verify(keyGenerator, times(1)).parse("key1@@a");
+        verify(keyGenerator, times(1)).parse("key2");
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+        FragmentCacheEntry entry = new FragmentCacheEntry(CONTENT);
+        entry.setProperty("areaResource", "uuid");
+        Assert.assertEquals("key1@@a", entry.getIncludeKey(0));
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bos)) {
+            out.writeObject(entry);
+        }
+        FragmentCacheEntry copy;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray()))) {
+            copy = (FragmentCacheEntry) in.readObject();
+        }
+        Assert.assertEquals(CONTENT, copy.getObject());
+        Assert.assertEquals(2, copy.getIncludeCount());
+        Assert.assertEquals("<p>between</p>", copy.getSegment(1));
+        Assert.assertEquals(entry.getIncludeKey(0), copy.getIncludeKey(0));
+        Assert.assertEquals("uuid", copy.getProperty("areaResource"));
+    }
+
+    @Test
+    public void testPlainContent() {
+        FragmentCacheEntry entry = new FragmentCacheEntry("<p>no include</p>");
+        Assert.assertEquals(0, entry.getIncludeCount());
+        Assert.assertEquals("<p>no include</p>", entry.getSegment(0));
+        Assert.assertEquals("<p>no include</p>", entry.getObject());
+
+        entry.setObject(null);
+        Assert.assertNull(entry.getObject());
+        Assert.assertEquals(0, entry.getIncludeCount());
+    }
+
+    @Test
+    public void testValueOf() {
+        CacheEntry<String> legacy = new CacheEntry<>(CONTENT);
+        legacy.setProperty("areaResource", "uuid");
+        FragmentCacheEntry entry = FragmentCacheEntry.valueOf(legacy);
+        Assert.assertEquals(CONTENT, entry.getObject());
+        Assert.assertEquals("uuid", entry.getProperty("areaResource"));
+        Assert.assertSame(entry, FragmentCacheEntry.valueOf(entry));
+    }
+
+    @Test
+    public void testSharedIncludeKeyParts() {
+        FragmentCacheEntry entry1 = new FragmentCacheEntry(new String(CONTENT));
+        FragmentCacheEntry entry2 = new FragmentCacheEntry(new String(CONTENT));
+        CacheKeyGenerator keyGenerator = mock(CacheKeyGenerator.class);
+        when(keyGenerator.parse("key1@@a")).thenAnswer(invocation -> {
+            Map<String, String> parts = new LinkedHashMap<>();
+            parts.put(new String("path"), new String("key1"));
+            parts.put(new String("template"), new String("a"));
+            return parts;
+        });
+        Assert.assertSame(entry1.getIncludeKeyParts(0, keyGenerator).get("path"),
+                entry2.getIncludeKeyParts(0, keyGenerator).get("path"));
+        Assert.assertSame(entry1.getIncludeKeyParts(0, keyGenerator).get("template"),
+                entry2.getIncludeKeyParts(0, keyGenerator).get("template"));
+    }
+}
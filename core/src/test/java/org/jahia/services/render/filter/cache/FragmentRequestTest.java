@@ -0,0 +1,152 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/Apache2 OR 2/JSEL
+ *
+ *     1/ Apache2
+ *     ==================================================================================
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.services.render.filter.cache;
+
+import org.jahia.services.content.JCRNodeWrapper;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+import java.util.*;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Unit test for the {@link FragmentRequest} and {@link FragmentResponse} classes.
+ */
+public class FragmentRequestTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testRequestIsDetached() {
+        MockHttpServletRequest original = new MockHttpServletRequest("GET", "/cms/render/live/en/sites/a/home.html");
+        original.setServletPath("/cms");
+        original.setPathInfo("/render/live/en/sites/a/home.html");
+        original.addParameter("p", "v");
+        original.addHeader("Accept-Language", "en");
+        original.setAttribute("attr", "value");
+        original.setAttribute("servedFromCache", new HashSet<String>(Collections.singleton("k1")));
+        original.setAttribute(AggregateCacheFilter.HAS_PROCESSING_SEMAPHORE_PARAM, Boolean.TRUE);
+
+        FragmentRequest request = new FragmentRequest(original);
+        Assert.assertNull(request.getAttribute(AggregateCacheFilter.HAS_PROCESSING_SEMAPHORE_PARAM));
+        Assert.assertEquals("value", request.getAttribute("attr"));
+        Assert.assertEquals("v", request.getParameter("p"));
+        Assert.assertEquals("en", request.getHeader("accept-language"));
+        Assert.assertEquals("/cms", request.getServletPath());
+        Assert.assertEquals("/cms/render/live/en/sites/a/home.html", request.getRequestURI());
+
+        request.setAttribute("attr", "other");
+        request.setAttribute("added", "added");
+        ((Set<String>) request.getAttribute("servedFromCache")).add("k2");
+        Assert.assertEquals("value", original.getAttribute("attr"));
+        Assert.assertNull(original.getAttribute("added"));
+        Assert.assertEquals(Collections.singleton("k1"), original.getAttribute("servedFromCache"));
+
+        // the original request is recycled by the container once the response is complete
+        original.removeAttribute("attr");
+        original.removeParameter("p");
+        Assert.assertEquals("other", request.getAttribute("attr"));
+        Assert.assertEquals("v", request.getParameter("p"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testNodesAreNotCopied() {
+        MockHttpServletRequest original = new MockHttpServletRequest("GET", "/cms/render/live/en/sites/a/home.html");
+        JCRNodeWrapper node = mock(JCRNodeWrapper.class);
+        original.setAttribute("currentNode", node);
+        original.setAttribute("areaListResource", mock(JCRNodeWrapper.class));
+        original.setAttribute("workspace", "live");
+        Map<String, Object> moduleMap = new HashMap<String, Object>();
+        moduleMap.put("currentList", Collections.singletonList(node));
+        original.setAttribute("moduleMap", moduleMap);
+
+        FragmentRequest request = new FragmentRequest(original);
+        for (Enumeration<String> names = request.getAttributeNames(); names.hasMoreElements(); ) {
+            String name = names.nextElement();
+            Assert.assertFalse(name, request.getAttribute(name) instanceof JCRNodeWrapper);
+        }
+        Assert.assertNull(request.getAttribute("currentNode"));
+        Assert.assertNull(request.getAttribute("areaListResource"));
+        Assert.assertEquals("live", request.getAttribute("workspace"));
+        Assert.assertTrue(((Map<String, Object>) request.getAttribute("moduleMap")).isEmpty());
+        Assert.assertSame(node, original.getAttribute("currentNode"));
+    }
+
+    @Test
+    public void testSideEffectsAreReplayed() throws Exception {
+        FragmentResponse response = new FragmentResponse("UTF-8", "text/html", Locale.ENGLISH);
+        Assert.assertFalse(response.hasSideEffects());
+        response.addCookie(new Cookie("c", "v"));
+        response.setHeader("X-Fragment", "a");
+        response.addHeader("X-Fragment", "b");
+        response.sendRedirect("/home.html");
+        Assert.assertTrue(response.hasSideEffects());
+
+        MockHttpServletResponse original = new MockHttpServletResponse();
+        original.setHeader("X-Fragment", "page");
+        response.replay(original);
+        Assert.assertEquals("v", original.getCookie("c").getValue());
+        Assert.assertEquals(Arrays.asList("a", "b"), original.getHeaders("X-Fragment"));
+        Assert.assertEquals("/home.html", original.getRedirectedUrl());
+        Assert.assertEquals(HttpServletResponse.SC_FOUND, original.getStatus());
+    }
+
+    @Test
+    public void testResponseIsBuffered() throws Exception {
+        FragmentResponse response = new FragmentResponse("UTF-8", "text/html", Locale.ENGLISH);
+        response.getWriter().print("<p>fragment</p>");
+        response.setHeader("Cache-Control", "no-cache");
+        response.sendRedirect("/home.html");
+
+        Assert.assertEquals("<p>fragment</p>", response.getString());
+        Assert.assertEquals("no-cache", response.getHeader("cache-control"));
+        Assert.assertEquals("/home.html", response.getRedirect());
+        Assert.assertFalse(response.isCommitted());
+        Assert.assertEquals("/home.html", response.encodeURL("/home.html"));
+    }
+}
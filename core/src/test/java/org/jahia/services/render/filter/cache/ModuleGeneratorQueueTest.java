@@ -0,0 +1,146 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/Apache2 OR 2/JSEL
+ *
+ *     1/ Apache2
+ *     ==================================================================================
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.services.render.filter.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Unit test for the single-flight fragment generation of the {@link ModuleGeneratorQueue}.
+ */
+public class ModuleGeneratorQueueTest {
+
+    @Test
+    public void testSingleFlight() throws Exception {
+        final ModuleGeneratorQueue queue = new ModuleGeneratorQueue();
+        Assert.assertNull(queue.startGeneration("key"));
+        Assert.assertTrue(queue.isGenerating("key"));
+
+        final CompletableFuture<Void> generation = queue.startGeneration("key");
+        Assert.assertNotNull(generation);
+
+        final CountDownLatch waiting = new CountDownLatch(1);
+        final AtomicBoolean generated = new AtomicBoolean();
+        Thread waiter = new Thread(() -> {
+            waiting.countDown();
+            generated.set(queue.awaitGeneration("key", generation));
+        });
+        waiter.start();
+        waiting.await();
+        for (int i = 0; i < 500 && queue.getWaitingThreadsPerFragment().isEmpty(); i++) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(Integer.valueOf(1), queue.getWaitingThreadsPerFragment().get("key"));
+
+        queue.endGeneration("key");
+        waiter.join();
+        Assert.assertTrue(generated.get());
+        Assert.assertFalse(queue.isGenerating("key"));
+        Assert.assertEquals(0, queue.getGeneratingFragmentCount());
+        Assert.assertEquals(1, queue.getGenerationCount());
+        Assert.assertEquals(1, queue.getWaitCount());
+        Assert.assertEquals(0, queue.getWaitTimeouts());
+    }
+
+    @Test
+    public void testEndGenerationByOtherThread() throws Exception {
+        final ModuleGeneratorQueue queue = new ModuleGeneratorQueue();
+        Assert.assertNull(queue.startGeneration("key"));
+        Thread other = new Thread(() -> queue.endGeneration("key"));
+        other.start();
+        other.join();
+        Assert.assertTrue(queue.isGenerating("key"));
+        queue.endGeneration("key");
+        Assert.assertFalse(queue.isGenerating("key"));
+    }
+
+    @Test
+    public void testWaitTimeout() {
+        ModuleGeneratorQueue queue = new ModuleGeneratorQueue();
+        queue.setModuleGenerationWaitTime(50);
+        Assert.assertNull(queue.startGeneration("key"));
+        CompletableFuture<Void> generation = queue.startGeneration("key");
+        Assert.assertFalse(queue.awaitGeneration("key", generation));
+        Assert.assertEquals(1, queue.getWaitTimeouts());
+        Assert.assertTrue(queue.getAverageWaitTime() >= 50);
+
+        long[] histogram = queue.getWaitTimeHistogram();
+        Assert.assertEquals(queue.getHistogramBounds().length + 1, histogram.length);
+        long total = 0;
+        for (long count : histogram) {
+            total += count;
+        }
+        Assert.assertEquals(1, total);
+
+        queue.resetStatistics();
+        Assert.assertEquals(0, queue.getWaitCount());
+        Assert.assertEquals(0, queue.getWaitTimeouts());
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testGeneratingModulesAdapter() throws Exception {
+        ModuleGeneratorQueue queue = new ModuleGeneratorQueue();
+        Assert.assertTrue(queue.getGeneratingModules().isEmpty());
+        Assert.assertNull(queue.startGeneration("key"));
+
+        Map<String, CountDownLatch> generatingModules = queue.getGeneratingModules();
+        CountDownLatch latch = generatingModules.get("key");
+        Assert.assertNotNull(latch);
+        Assert.assertEquals(1, latch.getCount());
+        Assert.assertSame(latch, queue.getGeneratingModules().get("key"));
+        Assert.assertEquals(Collections.singleton(latch), queue.getCurrentThreadLatches());
+
+        queue.endGeneration("key");
+        Assert.assertTrue(latch.await(1, TimeUnit.SECONDS));
+        Assert.assertTrue(queue.getGeneratingModules().isEmpty());
+        Assert.assertTrue(queue.getCurrentThreadLatches().isEmpty());
+    }
+}
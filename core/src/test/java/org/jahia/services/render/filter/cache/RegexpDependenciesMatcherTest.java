@@ -0,0 +1,93 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/Apache2 OR 2/JSEL
+ *
+ *     1/ Apache2
+ *     ==================================================================================
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.services.render.filter.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Unit test for the {@link RegexpDependenciesMatcher} class.
+ */
+public class RegexpDependenciesMatcherTest {
+
+    private static final List<String> REGEXPS = Arrays.asList("/sites/a/home/.*", "/sites/a/home/news.*",
+            "/sites/a/?", "/sites/a/home/[^/]*", "/sites/(a|b)/home", ".*/files/.*", "/sites/b/home|/sites/a/home",
+            "/sites/\\w+/home/.*", "/sites/a/hom*", "[invalid");
+
+    @Test
+    public void testLiteralPrefix() {
+        Assert.assertEquals("/sites/a/home/", RegexpDependenciesMatcher.getLiteralPrefix("/sites/a/home/.*"));
+        Assert.assertEquals("/sites/a/home/", RegexpDependenciesMatcher.getLiteralPrefix("/sites/a/home/news.*"));
+        Assert.assertEquals("/sites/", RegexpDependenciesMatcher.getLiteralPrefix("/sites/a/?"));
+        Assert.assertEquals("/sites/a/home/", RegexpDependenciesMatcher.getLiteralPrefix("/sites/a/home/"));
+        Assert.assertEquals("", RegexpDependenciesMatcher.getLiteralPrefix(".*/files/.*"));
+        Assert.assertEquals("", RegexpDependenciesMatcher.getLiteralPrefix("/sites/b/home|/sites/a/home"));
+        Assert.assertEquals("", RegexpDependenciesMatcher.getLiteralPrefix("(?i)/sites/a"));
+    }
+
+    @Test
+    public void testMatchesStringMatches() {
+        RegexpDependenciesMatcher matcher = new RegexpDependenciesMatcher();
+        for (String regexp : REGEXPS) {
+            matcher.add(regexp);
+        }
+        Assert.assertEquals(REGEXPS.size() - 1, matcher.size());
+
+        for (String path : Arrays.asList("/sites/a", "/sites/a/", "/sites/a/home", "/sites/a/home/news",
+                "/sites/a/home/news/item", "/sites/b/home", "/sites/b/home/files/x", "/sites/a/hommm", "/", "")) {
+            Set<String> expected = new TreeSet<>();
+            for (String regexp : REGEXPS) {
+                if (!regexp.equals("[invalid") && path.matches(regexp)) {
+                    expected.add(regexp);
+                }
+            }
+            Assert.assertEquals("Wrong matches for " + path, expected,
+                    new TreeSet<>(matcher.getMatchingRegexps(path)));
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/Apache2 OR 2/JSEL
+ *
+ *     1/ Apache2
+ *     ==================================================================================
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.services.search.facets;
+
+import org.apache.lucene.util.OpenBitSet;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit test for the {@link FacetTermOrdinals} class.
+ */
+public class FacetTermOrdinalsTest {
+
+    private FacetTermOrdinals createOrdinals() {
+        return new FacetTermOrdinals(new String[] {"blue", "green", "red"}, new int[] {3, 1, 2},
+                new int[][] {{1, 4, 7}, {2}, {4, 9}});
+    }
+
+    @Test
+    public void testGetOrdinal() {
+        FacetTermOrdinals ordinals = createOrdinals();
+        Assert.assertEquals(3, ordinals.size());
+        Assert.assertEquals(0, ordinals.getOrdinal(""));
+        Assert.assertEquals(1, ordinals.getOrdinal("green"));
+        Assert.assertEquals(2, ordinals.getOrdinal("orange"));
+        Assert.assertEquals(3, ordinals.getOrdinal("yellow"));
+        Assert.assertEquals("red", ordinals.getTerm(2));
+        Assert.assertEquals(2, ordinals.getDocFreq(2));
+    }
+
+    @Test
+    public void testCount() {
+        FacetTermOrdinals ordinals = createOrdinals();
+        OpenBitSet docs = new OpenBitSet();
+        docs.set(4);
+        docs.set(7);
+        docs.set(9);
+        Assert.assertEquals(2, ordinals.count(0, docs));
+        Assert.assertEquals(0, ordinals.count(1, docs));
+        Assert.assertEquals(2, ordinals.count(2, docs));
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/Apache2 OR 2/JSEL
+ *
+ *     1/ Apache2
+ *     ==================================================================================
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.utils.security;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit test for the {@link AclIndex} class.
+ */
+public class AclIndexTest {
+
+    private static AclIndex.NodeAcl acl(String principal, String role) {
+        return new AclIndex.NodeAcl(new AclIndex.Ace[] {new AclIndex.Ace(principal, new String[] {role}, true)}, false);
+    }
+
+    private AclIndex createIndex(int maxSize) {
+        AclIndex index = new AclIndex(maxSize);
+        index.put("/sites/a", acl("u:john", "editor"), index.getGeneration());
+        index.put("/sites/a/home", AclIndex.NodeAcl.NONE, index.getGeneration());
+        index.put("/sites/a/home/news", acl("g:users", "reader"), index.getGeneration());
+        index.put("/sites/ab", AclIndex.NodeAcl.NONE, index.getGeneration());
+        return index;
+    }
+
+    @Test
+    public void testLookup() {
+        AclIndex index = createIndex(100);
+        Assert.assertEquals(4, index.size());
+        Assert.assertEquals("u:john", index.get("/sites/a").getAces()[0].getPrincipal());
+        Assert.assertSame(AclIndex.NodeAcl.NONE, index.get("/sites/a/home"));
+        Assert.assertNull(index.get("/sites/b"));
+    }
+
+    @Test
+    public void testInvalidateNode() {
+        AclIndex index = createIndex(100);
+        index.invalidate("/sites/a", false);
+        Assert.assertNull(index.get("/sites/a"));
+        Assert.assertNotNull(index.get("/sites/a/home"));
+        Assert.assertNotNull(index.get("/sites/ab"));
+    }
+
+    @Test
+    public void testInvalidateSubtree() {
+        AclIndex index = createIndex(100);
+        index.invalidate("/sites/a", true);
+        Assert.assertEquals(1, index.size());
+        Assert.assertNotNull(index.get("/sites/ab"));
+
+        index.invalidate("/", true);
+        Assert.assertEquals(0, index.size());
+    }
+
+    @Test
+    public void testConcurrentInvalidation() {
+        AclIndex index = createIndex(100);
+        long generation = index.getGeneration();
+        // the ACL is invalidated while it is being read
+        index.invalidate("/sites/b", false);
+        index.put("/sites/b", acl("u:john", "editor"), generation);
+        Assert.assertNull(index.get("/sites/b"));
+    }
+
+    @Test
+    public void testEvictedWhenFull() {
+        AclIndex index = createIndex(4);
+        index.put("/sites/b", AclIndex.NodeAcl.NONE, index.getGeneration());
+        Assert.assertEquals(4, index.size());
+        Assert.assertNull(index.get("/sites/a"));
+        Assert.assertNotNull(index.get("/sites/a/home"));
+        Assert.assertNotNull(index.get("/sites/b"));
+
+        // the next eviction starts where the previous one stopped
+        index.put("/sites/c", AclIndex.NodeAcl.NONE, index.getGeneration());
+        Assert.assertEquals(4, index.size());
+        Assert.assertNull(index.get("/sites/a/home"));
+        Assert.assertNotNull(index.get("/sites/a/home/news"));
+        Assert.assertNotNull(index.get("/sites/c"));
+    }
+
+    @Test
+    public void testSizeUnderConcurrentUpdates() throws InterruptedException {
+        final AclIndex index = new AclIndex(50);
+        final String[] paths = new String[100];
+        for (int i = 0; i < paths.length; i++) {
+            paths[i] = "/sites/a/page" + (i % 10) + "/sub" + i;
+        }
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int seed = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 20000; i++) {
+                    String path = paths[(i * 7 + seed * 13) % paths.length];
+                    if (i % 10 == seed) {
+                        index.invalidate(path.substring(0, path.indexOf("/sub")), true);
+                    } else {
+                        index.put(path, AclIndex.NodeAcl.NONE, index.getGeneration());
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        int present = 0;
+        for (String path : paths) {
+            if (index.get(path) != null) {
+                present++;
+            }
+        }
+        Assert.assertEquals(present, index.size());
+        Assert.assertTrue(index.size() <= 50 + threads.length);
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/Apache2 OR 2/JSEL
+ *
+ *     1/ Apache2
+ *     ==================================================================================
+ *
+ *     Copyright (C) 2002-2022 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.test.services.content.publication;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+
+import javax.jcr.RepositoryException;
+
+import org.jahia.api.Constants;
+import org.jahia.osgi.BundleUtils;
+import org.jahia.services.content.JCRNodeWrapper;
+import org.jahia.services.content.JCRPublicationService;
+import org.jahia.services.content.JCRTemplate;
+import org.jahia.services.content.PublicationInfo;
+import org.jahia.test.JahiaTestCase;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Checks that the publication infos handed over to a {@link org.jahia.services.content.PublicationInfoCallback} match
+ * the list returned by {@link JCRPublicationService#getPublicationInfos(List, java.util.Set, boolean, boolean, boolean, String, String)}.
+ */
+public class PublicationInfoStreamingTest extends JahiaTestCase {
+
+    private static JCRPublicationService publicationService;
+
+    private static String rootUuid;
+    private static String sharedUuid;
+
+    @BeforeClass
+    public static void oneTimeSetup() throws Exception {
+
+        publicationService = BundleUtils.getOsgiService(JCRPublicationService.class, null);
+
+        final List<String> toPublish = new ArrayList<>();
+        JCRTemplate.getInstance().doExecuteWithSystemSessionAsUser(null, Constants.EDIT_WORKSPACE, Locale.ENGLISH, session -> {
+
+            JCRNodeWrapper root = addUnit(session.getNode("/"), "testStreamingList");
+            rootUuid = root.getIdentifier();
+
+            JCRNodeWrapper shared = root.addNode("shared", "jnt:contentList");
+            sharedUuid = shared.getIdentifier();
+
+            JCRNodeWrapper unitA = addUnit(root, "unitA");
+            unitA.addNode("refA", "jnt:contentReference").setProperty("j:node", shared);
+            JCRNodeWrapper unitA1 = addUnit(unitA, "unitA1");
+            unitA1.addNode("refA1", "jnt:contentReference").setProperty("j:node", shared);
+            JCRNodeWrapper unitA11 = addUnit(unitA1, "unitA11");
+            unitA11.addNode("list", "jnt:contentList");
+
+            JCRNodeWrapper unitB = addUnit(root, "unitB");
+            unitB.addNode("list", "jnt:contentList").addNode("subList", "jnt:contentList");
+            addUnit(unitB, "unitB1");
+
+            session.save();
+
+            toPublish.addAll(Arrays.asList(rootUuid, unitA.getIdentifier(), unitA1.getIdentifier()));
+            return null;
+        });
+
+        publicationService.publish(toPublish, Constants.EDIT_WORKSPACE, Constants.LIVE_WORKSPACE, null);
+
+        JCRTemplate.getInstance().doExecuteWithSystemSessionAsUser(null, Constants.EDIT_WORKSPACE, Locale.ENGLISH, session -> {
+            session.getNode("/testStreamingList/unitA").setProperty("jcr:title", "modified");
+            session.save();
+            return null;
+        });
+    }
+
+    @AfterClass
+    public static void oneTimeTearDown() throws Exception {
+        removeTestNodes(Constants.EDIT_WORKSPACE);
+        removeTestNodes(Constants.LIVE_WORKSPACE);
+    }
+
+    @Test
+    public void streamedInfos_Sequentially_MatchList() throws Exception {
+        Assert.assertEquals(getListedInfos(), getStreamedInfos(1, false));
+    }
+
+    @Test
+    public void streamedInfos_WithThreads_MatchList() throws Exception {
+        Assert.assertEquals(getListedInfos(), getStreamedInfos(4, false));
+    }
+
+    @Test
+    public void streamedInfos_Sequentially_Aborted() throws Exception {
+        Assert.assertEquals(1, getStreamedInfos(1, true).size());
+    }
+
+    @Test
+    public void streamedInfos_WithThreads_Aborted() throws Exception {
+        Assert.assertEquals(1, getStreamedInfos(4, true).size());
+    }
+
+    @Test
+    public void streamedInfos_SharedReference_InEveryReferencingUnit() throws Exception {
+        int units = 0;
+        for (String summary : getStreamedInfos(4, false).values()) {
+            if (summary.contains("references=[" + sharedUuid + "]")) {
+                units++;
+            }
+        }
+        Assert.assertEquals(2, units);
+    }
+
+    private static JCRNodeWrapper addUnit(JCRNodeWrapper parent, String name) throws RepositoryException {
+        JCRNodeWrapper node = parent.addNode(name, "jnt:contentList");
+        node.addMixin("jmix:publication");
+        return node;
+    }
+
+    private static Map<String, String> getListedInfos() throws RepositoryException {
+        Map<String, String> infos = new HashMap<>();
+        for (PublicationInfo info : publicationService.getPublicationInfos(Arrays.asList(rootUuid), null, true, true, true,
+                Constants.EDIT_WORKSPACE, Constants.LIVE_WORKSPACE)) {
+            infos.put(info.getRoot().getUuid(), summarize(info));
+        }
+        return infos;
+    }
+
+    private static Map<String, String> getStreamedInfos(int threads, boolean abort) throws RepositoryException {
+        final Map<String, String> infos = new HashMap<>();
+        int previousThreads = publicationService.getPublicationInfoThreads();
+        publicationService.setPublicationInfoThreads(threads);
+        try {
+            int count = JCRTemplate.getInstance().doExecuteWithSystemSessionAsUser(null, Constants.EDIT_WORKSPACE, null, session ->
+                    JCRTemplate.getInstance().doExecuteWithSystemSessionAsUser(null, Constants.LIVE_WORKSPACE, null, liveSession ->
+                            publicationService.getPublicationInfos(Arrays.asList(rootUuid), null, true, true, session, liveSession, info -> {
+                                Assert.assertNull("Unit handed over twice", infos.put(info.getRoot().getUuid(), summarize(info)));
+                                return !abort;
+                            })));
+            Assert.assertEquals(infos.size(), count);
+        } finally {
+            publicationService.setPublicationInfoThreads(previousThreads);
+        }
+        return infos;
+    }
+
+    private static String summarize(PublicationInfo info) {
+        TreeSet<String> references = new TreeSet<>();
+        for (PublicationInfo reference : info.getAllReferences()) {
+            references.add(reference.getRoot().getUuid());
+        }
+        return "status=" + info.getRoot().getStatus() + ", nodes=" + new TreeSet<>(info.getAllUuids()) + ", references=" + references;
+    }
+
+    private static void removeTestNodes(String workspace) throws RepositoryException {
+        JCRTemplate.getInstance().doExecuteWithSystemSessionAsUser(null, workspace, null, session -> {
+            if (session.itemExists("/testStreamingList")) {
+                session.getNode("/testStreamingList").remove();
+                session.save();
+            }
+            return null;
+        });
+    }
+}
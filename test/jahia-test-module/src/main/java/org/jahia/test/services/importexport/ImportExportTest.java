@@ -48,6 +48,7 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicReference;
@@ -61,6 +62,7 @@ import javax.jcr.nodetype.NoSuchNodeTypeException;
 import javax.jcr.version.VersionException;
 import javax.xml.transform.TransformerException;
 
+import org.apache.commons.io.FileUtils;
 import org.jahia.bin.listeners.JahiaContextLoaderListener;
 import org.jahia.services.content.decorator.JCRUserNode;
 import org.slf4j.Logger;
@@ -80,6 +82,7 @@ import org.jahia.services.content.JCRSessionFactory;
 import org.jahia.services.content.JCRSessionWrapper;
 import org.jahia.services.content.JCRTemplate;
 import org.jahia.services.content.decorator.JCRSiteNode;
+import org.jahia.services.importexport.ImportExportBaseService;
 import org.jahia.services.importexport.ImportExportService;
 import org.jahia.services.importexport.NoCloseZipInputStream;
 import org.jahia.services.importexport.validation.MissingNodetypesValidationResult;
@@ -592,6 +595,73 @@ public class ImportExportTest {
     }
 
 
+    @Test
+    public void testParallelSitesExport() throws Exception {
+        String otherSiteName = TESTSITE_NAME + "Parallel";
+        ImportExportBaseService importExportService = ImportExportBaseService.getInstance();
+        File sequentialZip = null;
+        File parallelZip = null;
+        try {
+            TestHelper.createSite(otherSiteName);
+            JCRSessionFactory.getInstance().closeAllSessions();
+
+            sequentialZip = exportSites(TESTSITE_NAME, otherSiteName);
+            importExportService.setExportSiteThreads(2);
+            parallelZip = exportSites(TESTSITE_NAME, otherSiteName);
+
+            List<String> sequentialEntries = getEntryNames(sequentialZip);
+            assertTrue(sequentialEntries.contains(TESTSITE_NAME + ".zip"));
+            assertTrue(sequentialEntries.contains(otherSiteName + ".zip"));
+            assertEquals(sequentialEntries, getEntryNames(parallelZip));
+        } finally {
+            importExportService.setExportSiteThreads(1);
+            FileUtils.deleteQuietly(sequentialZip);
+            FileUtils.deleteQuietly(parallelZip);
+            TestHelper.deleteSite(otherSiteName);
+            JCRSessionFactory.getInstance().closeAllSessions();
+        }
+    }
+
+    private static File exportSites(String... siteNames) throws Exception {
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put(ImportExportService.VIEW_ACL, Boolean.TRUE);
+        params.put(ImportExportService.VIEW_CONTENT, Boolean.TRUE);
+        params.put(ImportExportService.VIEW_JAHIALINKS, Boolean.TRUE);
+        params.put(ImportExportService.VIEW_METADATA, Boolean.TRUE);
+        params.put(ImportExportService.VIEW_VERSION, Boolean.FALSE);
+        params.put(ImportExportService.INCLUDE_LIVE_EXPORT, Boolean.TRUE);
+        List<JCRSiteNode> sites = new ArrayList<JCRSiteNode>();
+        for (String siteName : siteNames) {
+            sites.add((JCRSiteNode) ServicesRegistry.getInstance().getJahiaSitesService().getSiteByKey(siteName));
+        }
+        File zipFile = File.createTempFile("parallelexporttest", ".zip");
+        try (OutputStream outputStream = new FileOutputStream(zipFile)) {
+            ServicesRegistry.getInstance().getImportExportService().exportSites(outputStream, params, sites);
+        }
+        return zipFile;
+    }
+
+    /**
+     * Lists the entries of an export, the entries of the nested archives being prefixed with the name of the archive.
+     */
+    private static List<String> getEntryNames(File zipFile) throws IOException {
+        List<String> names = new ArrayList<String>();
+        try (InputStream is = new BufferedInputStream(new FileInputStream(zipFile))) {
+            collectEntryNames(new NoCloseZipInputStream(is), "", names);
+        }
+        return names;
+    }
+
+    private static void collectEntryNames(ZipInputStream zis, String prefix, List<String> names) throws IOException {
+        ZipEntry entry;
+        while ((entry = zis.getNextEntry()) != null) {
+            names.add(prefix + entry.getName());
+            if (entry.getName().endsWith(".zip")) {
+                collectEntryNames(new NoCloseZipInputStream(zis), prefix + entry.getName() + "/", names);
+            }
+        }
+    }
+
     public void testExportImportWithUGCComplexChanges() throws Exception {
         JCRSessionFactory sf = JCRSessionFactory.getInstance();
         sf.closeAllSessions();
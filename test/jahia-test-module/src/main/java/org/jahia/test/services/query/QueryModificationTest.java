@@ -48,6 +48,8 @@ import org.jahia.services.content.JCRCallback;
 import org.jahia.services.content.JCRSessionFactory;
 import org.jahia.services.content.JCRSessionWrapper;
 import org.jahia.services.content.JCRTemplate;
+import org.jahia.services.query.QueryPlanCache;
+import org.jahia.services.query.QueryServiceImpl;
 import org.jahia.services.query.QueryWrapper;
 import org.jahia.test.TestHelper;
 import org.junit.After;
@@ -289,7 +291,60 @@ public class QueryModificationTest {
         }
     }
 
-    
+    @Test
+    public void testCachedPlans() throws Exception {
+        JCRSessionWrapper session = JCRSessionFactory.getInstance().getCurrentUserSession(Constants.EDIT_WORKSPACE,
+                Locale.ENGLISH);
+        QueryManager queryManager = session.getWorkspace().getQueryManager();
+        String[] queries = new String[] {
+                "SELECT * FROM [jnt:news] as news WHERE ISCHILDNODE(news, ['" + SITECONTENT_ROOT_NODE + "/home/page8/news']) ORDER BY news.[jcr:title]",
+                "SELECT * FROM [jnt:news] as news WHERE ISCHILDNODE(news, ['" + SITECONTENT_ROOT_NODE + "/home/page8/news']) ORDER BY news.[jcr:created] desc",
+                "SELECT * FROM [jnt:news] as news WHERE news.[jcr:title] = 'Hello' OR news.[desc] = 'World'",
+                "SELECT * FROM [jnt:news] as news WHERE CONTAINS(news.*, 'world')"
+        };
+        QueryPlanCache cache = ((QueryServiceImpl) QueryServiceImpl.getInstance()).getQueryPlanCache();
+        int cacheSize = cache.getMaxSize();
+        int iterations = 500;
+        try {
+            ((QueryServiceImpl) QueryServiceImpl.getInstance()).setQueryPlanCacheSize(0);
+            List<String> statements = getStatements(queryManager, queries);
+            long timer = System.currentTimeMillis();
+            for (int i = 0; i < iterations; i++) {
+                getStatements(queryManager, queries);
+            }
+            timer = System.currentTimeMillis() - timer;
+
+            ((QueryServiceImpl) QueryServiceImpl.getInstance()).setQueryPlanCacheSize(cacheSize > 0 ? cacheSize : 1000);
+            assertEquals("The plans should be the same as the modified queries", statements, getStatements(queryManager, queries));
+            long hits = cache.getHitCount();
+            long timerCached = System.currentTimeMillis();
+            for (int i = 0; i < iterations; i++) {
+                assertEquals(statements, getStatements(queryManager, queries));
+            }
+            timerCached = System.currentTimeMillis() - timerCached;
+            // queries depending on the content are not cached
+            assertTrue("The queries should use their cached plans", cache.getHitCount() - hits >= iterations);
+
+            logger.info("Created {} queries in {} ms with the query plan cache and {} ms without it",
+                    iterations * queries.length, timerCached, timer);
+            if (timerCached > timer) {
+                logger.warn("Creating queries with the query plan cache is slower ({} ms) than without it ({} ms)",
+                        timerCached, timer);
+            }
+        } finally {
+            ((QueryServiceImpl) QueryServiceImpl.getInstance()).setQueryPlanCacheSize(cacheSize);
+        }
+    }
+
+    private static List<String> getStatements(QueryManager queryManager, String[] queries) throws RepositoryException {
+        List<String> statements = new ArrayList<String>();
+        for (String query : queries) {
+            Query q = queryManager.createQuery(query, Query.JCR_SQL2);
+            statements.add(((QueryWrapper) q).getQueries().values().iterator().next().getStatement());
+        }
+        return statements;
+    }
+
     @AfterClass
     public static void oneTimeTearDown() throws Exception {
         try {